@@ -5,11 +5,14 @@ import static jalse.tags.Tags.setCreated;
 import static jalse.tags.Tags.setRootDepth;
 import static jalse.tags.Tags.setRootMember;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -22,9 +25,13 @@ import jalse.actions.ForkJoinActionEngine;
 import jalse.actions.ManualActionEngine;
 import jalse.actions.SchedulableActionContext;
 import jalse.actions.ThreadPoolActionEngine;
+import jalse.attributes.AttributeBuffer;
 import jalse.attributes.AttributeContainer;
+import jalse.attributes.NamedAttributeType;
 import jalse.entities.DefaultEntityContainer;
 import jalse.entities.DefaultEntityFactory;
+import jalse.entities.DefaultEntityFactory.AttributeStorage;
+import jalse.entities.DefaultEntityFactory.EntityIDMode;
 import jalse.entities.Entities;
 import jalse.entities.Entity;
 import jalse.entities.EntityContainer;
@@ -81,6 +88,11 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	private Supplier<UUID> idSupplier;
 	private int parallelism;
 	private int totalEntityLimit;
+	private AttributeStorage attributeStorage;
+	private EntityIDMode entityIDMode;
+	private Supplier<UUID> entityIDSupplier;
+	private int entityPoolLimit;
+	private boolean persistentMaps;
 
 	/**
 	 * Creates a new Builder instance.
@@ -90,6 +102,11 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	    parallelism = MINIMUM_PARALLALISM;
 	    totalEntityLimit = Integer.MAX_VALUE;
 	    engineType = EngineType.COMMON;
+	    attributeStorage = AttributeStorage.DEFAULT;
+	    entityIDMode = EntityIDMode.SEQUENTIAL;
+	    entityIDSupplier = null;
+	    entityPoolLimit = 0;
+	    persistentMaps = false;
 	}
 
 	/**
@@ -119,7 +136,38 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 		throw new IllegalStateException();
 	    }
 
-	    return new DefaultJALSE(idSupplier.get(), engine, new DefaultEntityFactory(totalEntityLimit));
+	    final DefaultEntityFactory factory = entityIDSupplier != null
+		    ? new DefaultEntityFactory(totalEntityLimit, attributeStorage, entityIDSupplier)
+		    : new DefaultEntityFactory(totalEntityLimit, attributeStorage, entityIDMode);
+	    factory.setPoolLimit(entityPoolLimit);
+	    factory.setPersistentMaps(persistentMaps);
+
+	    return new DefaultJALSE(idSupplier.get(), engine, factory);
+	}
+
+	/**
+	 * Sets entity attribute writes to be held back until the attribute buffer is swapped.
+	 *
+	 * @return This builder.
+	 *
+	 * @see AttributeStorage#BUFFERED
+	 * @see DefaultJALSE#getAttributeBuffer()
+	 */
+	public Builder setBufferedAttributeStorage() {
+	    attributeStorage = AttributeStorage.BUFFERED;
+	    return this;
+	}
+
+	/**
+	 * Sets sibling entities to store their attributes together in columns.
+	 *
+	 * @return This builder.
+	 *
+	 * @see AttributeStorage#COLUMNAR
+	 */
+	public Builder setColumnarAttributeStorage() {
+	    attributeStorage = AttributeStorage.COLUMNAR;
+	    return this;
 	}
 
 	/**
@@ -135,6 +183,48 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	    return this;
 	}
 
+	/**
+	 * Sets each entity to store its own attributes (default).
+	 *
+	 * @return This builder.
+	 *
+	 * @see AttributeStorage#DEFAULT
+	 */
+	public Builder setDefaultAttributeStorage() {
+	    attributeStorage = AttributeStorage.DEFAULT;
+	    return this;
+	}
+
+	/**
+	 * Sets the supplier of IDs for entities created without one.
+	 *
+	 * @param entityIDSupplier
+	 *            Entity ID supplier.
+	 * @return This builder.
+	 */
+	public Builder setEntityIDSupplier(final Supplier<UUID> entityIDSupplier) {
+	    this.entityIDSupplier = Objects.requireNonNull(entityIDSupplier);
+	    return this;
+	}
+
+	/**
+	 * Sets the maximum number of killed entity parts kept for reuse by new entities.
+	 *
+	 * @param entityPoolLimit
+	 *            Pool limit (0 to stop pooling).
+	 * @return This builder.
+	 * @throws IllegalArgumentException
+	 *
+	 * @see DefaultEntityFactory#setPoolLimit(int)
+	 */
+	public Builder setEntityPoolLimit(final int entityPoolLimit) {
+	    if (entityPoolLimit < 0) {
+		throw new IllegalArgumentException("Entity pool limit must not be negative");
+	    }
+	    this.entityPoolLimit = entityPoolLimit;
+	    return this;
+	}
+
 	/**
 	 * Sets fork join engine to be used.
 	 *
@@ -181,6 +271,18 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	    return this;
 	}
 
+	/**
+	 * Sets entity attributes to be read optimistically (only locking when a write overlaps).
+	 *
+	 * @return This builder.
+	 *
+	 * @see AttributeStorage#OPTIMISTIC
+	 */
+	public Builder setOptimisticAttributeStorage() {
+	    attributeStorage = AttributeStorage.OPTIMISTIC;
+	    return this;
+	}
+
 	/**
 	 * Sets the parallelism to be utilised by the engine.
 	 *
@@ -210,6 +312,33 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	    return this;
 	}
 
+	/**
+	 * Sets entities (and the top level) to store their children and attributes in persistent
+	 * maps so they can be snapshot in constant time.
+	 *
+	 * @return This builder.
+	 *
+	 * @see DefaultEntityFactory#setPersistentMaps(boolean)
+	 * @see DefaultJALSE#snapshotEntities()
+	 */
+	public Builder setPersistentMaps() {
+	    persistentMaps = true;
+	    return this;
+	}
+
+	/**
+	 * Sets entities created without an ID to be given a random ID.
+	 *
+	 * @return This builder.
+	 *
+	 * @see EntityIDMode#RANDOM
+	 */
+	public Builder setRandomEntityIDs() {
+	    entityIDMode = EntityIDMode.RANDOM;
+	    entityIDSupplier = null;
+	    return this;
+	}
+
 	/**
 	 * Sets the ID to a random one.
 	 *
@@ -222,6 +351,20 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	    return this;
 	}
 
+	/**
+	 * Sets entities created without an ID to be given a sequential ID (tracked as primitive
+	 * longs).
+	 *
+	 * @return This builder.
+	 *
+	 * @see EntityIDMode#SEQUENTIAL
+	 */
+	public Builder setSequentialEntityIDs() {
+	    entityIDMode = EntityIDMode.SEQUENTIAL;
+	    entityIDSupplier = null;
+	    return this;
+	}
+
 	/**
 	 * Sets to use a single thread.
 	 *
@@ -307,11 +450,17 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	factory.setEngine(engine);
 	scheduler = new DefaultActionScheduler<>(this);
 	scheduler.setEngine(engine);
-	entities = new DefaultEntityContainer(factory, this);
+	entities = new DefaultEntityContainer(factory, this,
+		factory instanceof DefaultEntityFactory && ((DefaultEntityFactory) factory).isPersistentMaps());
 	tags = new TagTypeSet();
 	addTags();
     }
 
+    @Override
+    public <T> boolean addAttributeIndex(final NamedAttributeType<T> namedType) {
+	return entities.addAttributeIndex(namedType);
+    }
+
     @Override
     public boolean addEntityListener(final EntityListener listener) {
 	return entities.addEntityListener(listener);
@@ -330,11 +479,38 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	setRootDepth(tags);
     }
 
+    @Override
+    public <T extends Comparable<? super T>> boolean addSortedAttributeIndex(final NamedAttributeType<T> namedType) {
+	return entities.addSortedAttributeIndex(namedType);
+    }
+
     @Override
     public void cancelAllScheduledForActor() {
 	scheduler.cancelAllScheduledForActor();
     }
 
+    @Override
+    public <T> Set<Entity> findEntities(final NamedAttributeType<T> namedType, final T value) {
+	return entities.findEntities(namedType, value);
+    }
+
+    @Override
+    public <T extends Comparable<? super T>> Set<Entity> findEntitiesInRange(final NamedAttributeType<T> namedType,
+	    final T from, final T to) {
+	return entities.findEntitiesInRange(namedType, from, to);
+    }
+
+    /**
+     * Gets the buffer that commits entity attribute writes.
+     *
+     * @return The attribute buffer or null if the factory does not buffer attributes.
+     *
+     * @see DefaultEntityFactory#getAttributeBuffer()
+     */
+    public AttributeBuffer getAttributeBuffer() {
+	return factory instanceof DefaultEntityFactory ? ((DefaultEntityFactory) factory).getAttributeBuffer() : null;
+    }
+
     @Override
     public ActionBindings getBindings() {
 	return engine.getBindings();
@@ -345,6 +521,15 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	return entities.getEntity(id);
     }
 
+    /**
+     * Gets the backing container for top level entities.
+     *
+     * @return Top level entity container.
+     */
+    public DefaultEntityContainer getEntityContainer() {
+	return entities;
+    }
+
     @Override
     public int getEntityCount() {
 	return entities.getEntityCount();
@@ -360,6 +545,11 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	return entities.getEntityListeners();
     }
 
+    @Override
+    public Entity getEntityInTree(final UUID id) {
+	return Entities.getEntityRecursively(entities, id); // Uses the factory ID index
+    }
+
     @Override
     public Set<UUID> getIDsInTree() {
 	return Entities.getEntityIDsRecursively(entities);
@@ -375,6 +565,16 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	return Entities.getEntityCountRecursively(entities);
     }
 
+    @Override
+    public boolean hasAttributeIndex(final NamedAttributeType<?> namedType) {
+	return entities.hasAttributeIndex(namedType);
+    }
+
+    @Override
+    public boolean hasSortedAttributeIndex(final NamedAttributeType<?> namedType) {
+	return entities.hasSortedAttributeIndex(namedType);
+    }
+
     @Override
     public boolean isPaused() {
 	return engine.isPaused();
@@ -390,6 +590,11 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	entities.killEntities();
     }
 
+    @Override
+    public int killEntities(final Predicate<? super Entity> filter) {
+	return entities.killEntities(filter);
+    }
+
     @Override
     public boolean killEntity(final UUID id) {
 	return entities.killEntity(id);
@@ -405,6 +610,27 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	return scheduler.newContextForActor(action);
     }
 
+    @Override
+    public List<Entity> newEntities(final int count, final AttributeContainer sourceContainer) {
+	return entities.newEntities(count, sourceContainer);
+    }
+
+    @Override
+    public <T extends Entity> List<T> newEntities(final int count, final Class<T> type,
+	    final AttributeContainer sourceContainer) {
+	return entities.newEntities(count, type, sourceContainer);
+    }
+
+    @Override
+    public Entity newEntity(final AttributeContainer sourceContainer) {
+	return entities.newEntity(sourceContainer);
+    }
+
+    @Override
+    public <T extends Entity> T newEntity(final Class<T> type, final AttributeContainer sourceContainer) {
+	return entities.newEntity(type, sourceContainer);
+    }
+
     @Override
     public Entity newEntity(final UUID id, final AttributeContainer sourceContainer) {
 	return entities.newEntity(id, sourceContainer);
@@ -426,6 +652,11 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	return entities.receiveEntity(e);
     }
 
+    @Override
+    public boolean removeAttributeIndex(final NamedAttributeType<?> namedType) {
+	return entities.removeAttributeIndex(namedType);
+    }
+
     @Override
     public boolean removeEntityListener(final EntityListener listener) {
 	return entities.removeEntityListener(listener);
@@ -447,6 +678,17 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	return scheduler.scheduleForActor(action, initialDelay, period, unit);
     }
 
+    /**
+     * Gets an immutable snapshot of the top level entities (by ID).
+     *
+     * @return Entity snapshot.
+     *
+     * @see DefaultEntityContainer#snapshot()
+     */
+    public Map<UUID, Entity> snapshotEntities() {
+	return entities.snapshot();
+    }
+
     @Override
     public void stop() {
 	engine.stop();
@@ -457,6 +699,16 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	return entities.streamEntities();
     }
 
+    @Override
+    public <T extends Entity> Stream<T> streamEntitiesOfType(final Class<T> type) {
+	return entities.streamEntitiesOfType(type);
+    }
+
+    @Override
+    public Stream<UUID> streamEntityIDs() {
+	return entities.streamEntityIDs();
+    }
+
     @Override
     public Stream<Entity> streamEntityTree() {
 	return Entities.walkEntities(entities);
@@ -467,6 +719,11 @@ public class DefaultJALSE extends AbstractIdentifiable implements JALSE {
 	return tags.stream();
     }
 
+    @Override
+    public Set<UUID> transferEntities(final Set<UUID> entityIDs, final EntityContainer destination) {
+	return entities.transferEntities(entityIDs, destination);
+    }
+
     @Override
     public boolean transferEntity(final UUID id, final EntityContainer destination) {
 	return entities.transferEntity(id, destination);
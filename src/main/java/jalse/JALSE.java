@@ -26,6 +26,20 @@ import jalse.tags.Taggable;
  */
 public interface JALSE extends Identifiable, ActionEngine, ActionScheduler<JALSE>, EntityContainer, Taggable {
 
+    /**
+     * Gets the entity with the specified ID from anywhere within the entity tree. By default this
+     * uses {@link Entities#getEntityRecursively(EntityContainer, UUID)}.
+     *
+     * @param id
+     *            Entity ID.
+     * @return The entity or null if it is not within the tree.
+     *
+     * @see Entities#getEntityRecursively(EntityContainer, UUID)
+     */
+    default Entity getEntityInTree(final UUID id) {
+	return Entities.getEntityRecursively(this, id);
+    }
+
     /**
      * Gets a set containing the entire entity tree.
      *
@@ -56,7 +70,7 @@ public interface JALSE extends Identifiable, ActionEngine, ActionScheduler<JALSE
     public int getTreeCount();
 
     /**
-     * Streams the entire entity tree.
+     * Streams the entire entity tree (depth-first).
      *
      * @return Stream of the entire tree.
      *
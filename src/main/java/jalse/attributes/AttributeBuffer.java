@@ -0,0 +1,78 @@
+package jalse.attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An AttributeBuffer commits the pending writes of every {@link BufferedAttributeContainer} bound
+ * to it at once ({@link #swap()}). Between swaps all reads see the committed state of the previous
+ * swap so entities can be updated in parallel (reading each other) with a result that does not
+ * depend on the update order.<br>
+ * <br>
+ * A typical tick reads and sets attributes for every entity and then calls {@link #swap()} once
+ * every update has finished.
+ *
+ * @author Elliot Ford
+ *
+ * @see BufferedAttributeContainer
+ *
+ */
+public class AttributeBuffer {
+
+    private final Set<BufferedAttributeContainer> pending;
+    private final AtomicLong swapCount;
+
+    /**
+     * Creates a new attribute buffer.
+     */
+    public AttributeBuffer() {
+	pending = ConcurrentHashMap.newKeySet();
+	swapCount = new AtomicLong();
+    }
+
+    void addPending(final BufferedAttributeContainer container) {
+	pending.add(container);
+    }
+
+    /**
+     * Gets the number of containers with pending writes.
+     *
+     * @return Pending container count.
+     */
+    public int getPendingCount() {
+	return pending.size();
+    }
+
+    /**
+     * Gets the number of swaps so far.
+     *
+     * @return Swap count.
+     */
+    public long getSwapCount() {
+	return swapCount.get();
+    }
+
+    /**
+     * Commits the pending writes of every container (firing their attribute events). Writes made
+     * while swapping may be committed by the next swap instead.
+     *
+     * @return Number of containers committed.
+     */
+    public int swap() {
+	final List<BufferedAttributeContainer> toCommit = new ArrayList<>(pending);
+	for (final BufferedAttributeContainer container : toCommit) {
+	    pending.remove(container); // Writes from now mark it again (or are committed now)
+	    container.commit();
+	}
+	swapCount.incrementAndGet();
+	return toCommit.size();
+    }
+
+    @Override
+    public String toString() {
+	return "AttributeBuffer [pending=" + getPendingCount() + ", swaps=" + getSwapCount() + "]";
+    }
+}
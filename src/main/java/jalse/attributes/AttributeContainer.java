@@ -1,7 +1,9 @@
 package jalse.attributes;
 
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -64,6 +66,105 @@ public interface AttributeContainer {
 	}
     }
 
+    /**
+     * Adds the delta to the double attribute for the supplied type and gets the result (will fire
+     * the same events as {@link #setAttribute(NamedAttributeType, Object)}). An absent attribute is
+     * treated as 0.0.
+     *
+     * @param namedType
+     *            Named attribute type.
+     * @param delta
+     *            Value to add.
+     * @return The updated value.
+     *
+     * @see #updateAttribute(NamedAttributeType, UnaryOperator)
+     */
+    default double addAndGetDouble(final NamedAttributeType<Double> namedType, final double delta) {
+	return updateAttribute(namedType, v -> (v != null ? v : 0.0) + delta);
+    }
+
+    /**
+     * Adds the delta to the double attribute with the supplied name (of {@link Attributes#DOUBLE_TYPE})
+     * and gets the result.
+     *
+     * @param name
+     *            Attribute type name.
+     * @param delta
+     *            Value to add.
+     * @return The updated value.
+     *
+     * @see #addAndGetDouble(NamedAttributeType, double)
+     */
+    default double addAndGetDouble(final String name, final double delta) {
+	return addAndGetDouble(new NamedAttributeType<>(name, Attributes.DOUBLE_TYPE), delta);
+    }
+
+    /**
+     * Adds the delta to the int attribute for the supplied type and gets the result (will fire
+     * the same events as {@link #setAttribute(NamedAttributeType, Object)}). An absent attribute is
+     * treated as 0.
+     *
+     * @param namedType
+     *            Named attribute type.
+     * @param delta
+     *            Value to add.
+     * @return The updated value.
+     *
+     * @see #updateAttribute(NamedAttributeType, UnaryOperator)
+     */
+    default int addAndGetInt(final NamedAttributeType<Integer> namedType, final int delta) {
+	return updateAttribute(namedType, v -> (v != null ? v : 0) + delta);
+    }
+
+    /**
+     * Adds the delta to the int attribute with the supplied name (of {@link Attributes#INTEGER_TYPE})
+     * and gets the result.
+     *
+     * @param name
+     *            Attribute type name.
+     * @param delta
+     *            Value to add.
+     * @return The updated value.
+     *
+     * @see #addAndGetInt(NamedAttributeType, int)
+     */
+    default int addAndGetInt(final String name, final int delta) {
+	return addAndGetInt(new NamedAttributeType<>(name, Attributes.INTEGER_TYPE), delta);
+    }
+
+    /**
+     * Adds the delta to the long attribute for the supplied type and gets the result (will fire
+     * the same events as {@link #setAttribute(NamedAttributeType, Object)}). An absent attribute is
+     * treated as 0L.
+     *
+     * @param namedType
+     *            Named attribute type.
+     * @param delta
+     *            Value to add.
+     * @return The updated value.
+     *
+     * @see #updateAttribute(NamedAttributeType, UnaryOperator)
+     */
+    default long addAndGetLong(final NamedAttributeType<Long> namedType, final long delta) {
+	return updateAttribute(namedType, v -> (v != null ? v : 0L) + delta);
+    }
+
+    /**
+     * Adds the delta to the long attribute with the supplied name (of {@link Attributes#LONG_TYPE})
+     * and gets the result.
+     *
+     * @param name
+     *            Attribute type name.
+     * @param delta
+     *            Value to add.
+     * @return The updated value.
+     *
+     * @see #addAndGetLong(NamedAttributeType, long)
+     */
+    default long addAndGetLong(final String name, final long delta) {
+	return addAndGetLong(new NamedAttributeType<>(name, Attributes.LONG_TYPE), delta);
+    }
+
     /**
      * Adds an attribute listener for the supplied named attribute type.
      *
@@ -94,6 +195,52 @@ public interface AttributeContainer {
 	return addAttributeListener(new NamedAttributeType<>(name, type), listener);
     }
 
+    /**
+     * Sets the attribute to the update if the current attribute equals the expected attribute (will
+     * fire the same events as {@link #setAttribute(NamedAttributeType, Object)}). Implementations
+     * should compare and set atomically (this default implementation does not).
+     *
+     * @param namedType
+     *            Named attribute type.
+     * @param expect
+     *            Expected attribute (null if expected to be absent).
+     * @param update
+     *            Attribute to set.
+     * @return Whether the attribute was set.
+     */
+    default <T> boolean compareAndSetAttribute(final NamedAttributeType<T> namedType, final T expect,
+	    final T update) {
+	Objects.requireNonNull(update);
+
+	if (!Objects.equals(getAttribute(namedType), expect)) {
+	    return false;
+	}
+
+	setAttribute(namedType, update);
+	return true;
+    }
+
+    /**
+     * Sets the attribute to the update if the current attribute equals the expected attribute.
+     *
+     * @param name
+     *            Attribute type name.
+     *
+     * @param type
+     *            Attribute type.
+     * @param expect
+     *            Expected attribute (null if expected to be absent).
+     * @param update
+     *            Attribute to set.
+     * @return Whether the attribute was set.
+     *
+     * @see #compareAndSetAttribute(NamedAttributeType, Object, Object)
+     */
+    default <T> boolean compareAndSetAttribute(final String name, final AttributeType<T> type, final T expect,
+	    final T update) {
+	return compareAndSetAttribute(new NamedAttributeType<>(name, type), expect, update);
+    }
+
     /**
      * Manually fires an attribute change for the supplied attribute type. This is used for mutable
      * attributes that can change their internal state.
@@ -253,6 +400,90 @@ public interface AttributeContainer {
 		.collect(Collectors.toSet());
     }
 
+    /**
+     * Gets the double attribute matching the supplied type. Implementations may store these
+     * values unboxed.
+     *
+     * @param namedType
+     *            Named attribute type to check for.
+     * @return The attribute value or 0.0 if none found.
+     *
+     * @see #getAttribute(NamedAttributeType)
+     */
+    default double getDouble(final NamedAttributeType<Double> namedType) {
+	final Double value = getAttribute(namedType);
+	return value != null ? value : 0.0;
+    }
+
+    /**
+     * Gets the double attribute with the supplied name (of {@link Attributes#DOUBLE_TYPE}).
+     *
+     * @param name
+     *            Attribute type name.
+     * @return The attribute value or 0.0 if none found.
+     *
+     * @see #getDouble(NamedAttributeType)
+     */
+    default double getDouble(final String name) {
+	return getDouble(new NamedAttributeType<>(name, Attributes.DOUBLE_TYPE));
+    }
+
+    /**
+     * Gets the int attribute matching the supplied type. Implementations may store these
+     * values unboxed.
+     *
+     * @param namedType
+     *            Named attribute type to check for.
+     * @return The attribute value or 0 if none found.
+     *
+     * @see #getAttribute(NamedAttributeType)
+     */
+    default int getInt(final NamedAttributeType<Integer> namedType) {
+	final Integer value = getAttribute(namedType);
+	return value != null ? value : 0;
+    }
+
+    /**
+     * Gets the int attribute with the supplied name (of {@link Attributes#INTEGER_TYPE}).
+     *
+     * @param name
+     *            Attribute type name.
+     * @return The attribute value or 0 if none found.
+     *
+     * @see #getInt(NamedAttributeType)
+     */
+    default int getInt(final String name) {
+	return getInt(new NamedAttributeType<>(name, Attributes.INTEGER_TYPE));
+    }
+
+    /**
+     * Gets the long attribute matching the supplied type. Implementations may store these
+     * values unboxed.
+     *
+     * @param namedType
+     *            Named attribute type to check for.
+     * @return The attribute value or 0 if none found.
+     *
+     * @see #getAttribute(NamedAttributeType)
+     */
+    default long getLong(final NamedAttributeType<Long> namedType) {
+	final Long value = getAttribute(namedType);
+	return value != null ? value : 0;
+    }
+
+    /**
+     * Gets the long attribute with the supplied name (of {@link Attributes#LONG_TYPE}).
+     *
+     * @param name
+     *            Attribute type name.
+     * @return The attribute value or 0 if none found.
+     *
+     * @see #getLong(NamedAttributeType)
+     */
+    default long getLong(final String name) {
+	return getLong(new NamedAttributeType<>(name, Attributes.LONG_TYPE));
+    }
+
     /**
      * This is a convenience method for getting an attribute (optional).
      *
@@ -518,6 +749,99 @@ public interface AttributeContainer {
 	return setAttribute(new NamedAttributeType<>(name, type), attr);
     }
 
+    /**
+     * Sets the double attribute for the supplied type (will fire the same events as
+     * {@link #setAttribute(NamedAttributeType, Object)}). Implementations may store these values
+     * unboxed.
+     *
+     * @param namedType
+     *            Named attribute type.
+     * @param value
+     *            Attribute value.
+     * @return The previous value or 0.0 if there was none.
+     */
+    default double setDouble(final NamedAttributeType<Double> namedType, final double value) {
+	final Double prev = setAttribute(namedType, value);
+	return prev != null ? prev : 0.0;
+    }
+
+    /**
+     * Sets the double attribute with the supplied name (of {@link Attributes#DOUBLE_TYPE}).
+     *
+     * @param name
+     *            Attribute type name.
+     * @param value
+     *            Attribute value.
+     * @return The previous value or 0.0 if there was none.
+     *
+     * @see #setDouble(NamedAttributeType, double)
+     */
+    default double setDouble(final String name, final double value) {
+	return setDouble(new NamedAttributeType<>(name, Attributes.DOUBLE_TYPE), value);
+    }
+
+    /**
+     * Sets the int attribute for the supplied type (will fire the same events as
+     * {@link #setAttribute(NamedAttributeType, Object)}). Implementations may store these values
+     * unboxed.
+     *
+     * @param namedType
+     *            Named attribute type.
+     * @param value
+     *            Attribute value.
+     * @return The previous value or 0 if there was none.
+     */
+    default int setInt(final NamedAttributeType<Integer> namedType, final int value) {
+	final Integer prev = setAttribute(namedType, value);
+	return prev != null ? prev : 0;
+    }
+
+    /**
+     * Sets the int attribute with the supplied name (of {@link Attributes#INTEGER_TYPE}).
+     *
+     * @param name
+     *            Attribute type name.
+     * @param value
+     *            Attribute value.
+     * @return The previous value or 0 if there was none.
+     *
+     * @see #setInt(NamedAttributeType, int)
+     */
+    default int setInt(final String name, final int value) {
+	return setInt(new NamedAttributeType<>(name, Attributes.INTEGER_TYPE), value);
+    }
+
+    /**
+     * Sets the long attribute for the supplied type (will fire the same events as
+     * {@link #setAttribute(NamedAttributeType, Object)}). Implementations may store these values
+     * unboxed.
+     *
+     * @param namedType
+     *            Named attribute type.
+     * @param value
+     *            Attribute value.
+     * @return The previous value or 0 if there was none.
+     */
+    default long setLong(final NamedAttributeType<Long> namedType, final long value) {
+	final Long prev = setAttribute(namedType, value);
+	return prev != null ? prev : 0;
+    }
+
+    /**
+     * Sets the long attribute with the supplied name (of {@link Attributes#LONG_TYPE}).
+     *
+     * @param name
+     *            Attribute type name.
+     * @param value
+     *            Attribute value.
+     * @return The previous value or 0 if there was none.
+     *
+     * @see #setLong(NamedAttributeType, long)
+     */
+    default long setLong(final String name, final long value) {
+	return setLong(new NamedAttributeType<>(name, Attributes.LONG_TYPE), value);
+    }
+
     /**
      * This is a convenience method for adding an attribute (optional).
      *
@@ -558,4 +882,48 @@ public interface AttributeContainer {
      * @return Stream of all attributes.
      */
     Stream<?> streamAttributes();
+
+    /**
+     * Updates the attribute using the supplied operator (will fire the same events as
+     * {@link #setAttribute(NamedAttributeType, Object)}, or
+     * {@link #removeAttribute(NamedAttributeType)} if the operator returns null). Implementations
+     * should read and update atomically (this default implementation does not), so the operator may
+     * be called while holding a lock and should be quick and free of side effects.
+     *
+     * @param namedType
+     *            Named attribute type.
+     * @param operator
+     *            Operator to calculate the new attribute from the current one (null if absent).
+     * @return The updated attribute or null if it was removed.
+     */
+    default <T> T updateAttribute(final NamedAttributeType<T> namedType, final UnaryOperator<T> operator) {
+	Objects.requireNonNull(operator);
+
+	final T attr = operator.apply(getAttribute(namedType));
+	if (attr == null) {
+	    removeAttribute(namedType);
+	} else {
+	    setAttribute(namedType, attr);
+	}
+
+	return attr;
+    }
+
+    /**
+     * Updates the attribute using the supplied operator.
+     *
+     * @param name
+     *            Attribute type name.
+     *
+     * @param type
+     *            Attribute type.
+     * @param operator
+     *            Operator to calculate the new attribute from the current one (null if absent).
+     * @return The updated attribute or null if it was removed.
+     *
+     * @see #updateAttribute(NamedAttributeType, UnaryOperator)
+     */
+    default <T> T updateAttribute(final String name, final AttributeType<T> type, final UnaryOperator<T> operator) {
+	return updateAttribute(new NamedAttributeType<>(name, type), operator);
+    }
 }
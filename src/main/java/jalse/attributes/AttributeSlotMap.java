@@ -0,0 +1,256 @@
+package jalse.attributes;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A map of attribute values indexed by {@link NamedAttributeType#getSlot()}. Keys and values are
+ * kept together in a single open-addressed (linear probing) table so looking up an attribute
+ * compares slots rather than hashing and comparing the named type. This is not thread-safe and
+ * views do not support removal.<br>
+ * <br>
+ * {@link #get(Object[], int)} can look up a value in a table read from {@link #table()} without
+ * locking: it never fails or loops forever when the table is changed during the lookup (the result
+ * must be validated).
+ *
+ * @author Elliot Ford
+ *
+ * @see DefaultAttributeContainer
+ *
+ * @param <V>
+ *            Value type.
+ */
+final class AttributeSlotMap<V> extends AbstractMap<NamedAttributeType<?>, V> {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private static final Object[] EMPTY_TABLE = {};
+
+    static Object get(final Object[] table, final int slot) {
+	if (table.length == 0) {
+	    return null;
+	}
+
+	final int capacity = table.length >> 1;
+	final int mask = capacity - 1;
+	int i = indexOf(slot, mask);
+	for (int probes = 0; probes < capacity; probes++, i = i + 1 & mask) {
+	    final Object key = table[i << 1];
+	    if (key == null) {
+		return null;
+	    } else if (((NamedAttributeType<?>) key).getSlot() == slot) {
+		return table[(i << 1) + 1];
+	    }
+	}
+	return null;
+    }
+
+    private static int indexOf(final int slot, final int mask) {
+	final int h = slot * 0x9E3779B9; // Spread sequential slots
+	return (h ^ h >>> 16) & mask;
+    }
+
+    private Object[] table; // Key then value
+    private int size;
+
+    AttributeSlotMap() {
+	table = EMPTY_TABLE; // Allocated on first put
+	size = 0;
+    }
+
+    @Override
+    public void clear() {
+	table = EMPTY_TABLE;
+	size = 0;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+	return find(key) >= 0;
+    }
+
+    @Override
+    public Set<Entry<NamedAttributeType<?>, V>> entrySet() {
+	return new AbstractSet<Entry<NamedAttributeType<?>, V>>() {
+
+	    @Override
+	    public Iterator<Entry<NamedAttributeType<?>, V>> iterator() {
+		return new Iterator<Entry<NamedAttributeType<?>, V>>() {
+
+		    private final Object[] entries = table;
+		    private int next = advance(0);
+
+		    private int advance(int i) {
+			while (i < entries.length && entries[i] == null) {
+			    i += 2;
+			}
+			return i;
+		    }
+
+		    @Override
+		    public boolean hasNext() {
+			return next < entries.length;
+		    }
+
+		    @SuppressWarnings("unchecked")
+		    @Override
+		    public Entry<NamedAttributeType<?>, V> next() {
+			if (next >= entries.length) {
+			    throw new NoSuchElementException();
+			}
+			final Entry<NamedAttributeType<?>, V> entry = new SimpleImmutableEntry<>(
+				(NamedAttributeType<?>) entries[next], (V) entries[next + 1]);
+			next = advance(next + 2);
+			return entry;
+		    }
+		};
+	    }
+
+	    @Override
+	    public int size() {
+		return size;
+	    }
+	};
+    }
+
+    private int find(final Object key) {
+	if (!(key instanceof NamedAttributeType<?>)) {
+	    return -1;
+	}
+
+	if (table.length == 0) {
+	    return -1;
+	}
+
+	final int slot = ((NamedAttributeType<?>) key).getSlot();
+	final int mask = (table.length >> 1) - 1;
+	for (int i = indexOf(slot, mask);; i = i + 1 & mask) {
+	    final Object k = table[i << 1];
+	    if (k == null) {
+		return -1;
+	    } else if (((NamedAttributeType<?>) k).getSlot() == slot) {
+		return i;
+	    }
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void forEach(final BiConsumer<? super NamedAttributeType<?>, ? super V> action) {
+	Objects.requireNonNull(action);
+
+	final Object[] entries = table;
+	for (int i = 0; i < entries.length; i += 2) {
+	    if (entries[i] != null) {
+		action.accept((NamedAttributeType<?>) entries[i], (V) entries[i + 1]);
+	    }
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(final Object key) {
+	final int i = find(key);
+	return i >= 0 ? (V) table[(i << 1) + 1] : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V put(final NamedAttributeType<?> key, final V value) {
+	Objects.requireNonNull(key);
+	Objects.requireNonNull(value);
+
+	if (table.length == 0) {
+	    table = new Object[DEFAULT_CAPACITY << 1];
+	}
+
+	final int slot = key.getSlot();
+	final int mask = (table.length >> 1) - 1;
+	int i = indexOf(slot, mask);
+	for (; table[i << 1] != null; i = i + 1 & mask) {
+	    if (((NamedAttributeType<?>) table[i << 1]).getSlot() == slot) {
+		final V prev = (V) table[(i << 1) + 1];
+		table[(i << 1) + 1] = value;
+		return prev;
+	    }
+	}
+
+	if (size + 1 > mask + 1 >> 1) {
+	    resize((mask + 1) << 1); // Keep at most half full
+	    return put(key, value);
+	}
+
+	table[(i << 1) + 1] = value;
+	table[i << 1] = key;
+	size++;
+	return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V remove(final Object key) {
+	int i = find(key);
+	if (i < 0) {
+	    return null;
+	}
+
+	final V prev = (V) table[(i << 1) + 1];
+	final int mask = (table.length >> 1) - 1;
+
+	// Shift back following entries so probing never stops early
+	for (int j = i + 1 & mask; table[j << 1] != null; j = j + 1 & mask) {
+	    final int home = indexOf(((NamedAttributeType<?>) table[j << 1]).getSlot(), mask);
+	    if ((j - home & mask) >= (j - i & mask)) {
+		table[i << 1] = table[j << 1];
+		table[(i << 1) + 1] = table[(j << 1) + 1];
+		i = j;
+	    }
+	}
+	table[i << 1] = null;
+	table[(i << 1) + 1] = null;
+	size--;
+
+	return prev;
+    }
+
+    private void resize(final int capacity) {
+	final Object[] old = table;
+	final Object[] resized = new Object[capacity << 1];
+
+	final int mask = capacity - 1;
+	for (int i = 0; i < old.length; i += 2) {
+	    if (old[i] != null) {
+		int j = indexOf(((NamedAttributeType<?>) old[i]).getSlot(), mask);
+		while (resized[j << 1] != null) {
+		    j = j + 1 & mask;
+		}
+		resized[j << 1] = old[i];
+		resized[(j << 1) + 1] = old[i + 1];
+	    }
+	}
+
+	table = resized; // Publish once filled
+    }
+
+    @Override
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Gets the current table (key then value for each entry).
+     */
+    Object[] table() {
+	return table;
+    }
+}
@@ -0,0 +1,395 @@
+package jalse.attributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import jalse.misc.ListenerSet;
+
+/**
+ * A BufferedAttributeContainer is a thread-safe double-buffered {@link AttributeContainer}. Reads
+ * see the values committed by the last {@link AttributeBuffer#swap()} (without locking) while sets
+ * and removals are held back until the next swap commits them. Attribute events are fired when the
+ * writes are committed.<br>
+ * <br>
+ * The value returned by a set or removal is the value it replaces when committed (the pending value
+ * if there is one, otherwise the committed value). Pending values can be read using
+ * {@link #getPendingAttribute(NamedAttributeType)} (atomic updates such as
+ * {@link #updateAttribute(NamedAttributeType, UnaryOperator)} are applied to the pending value).
+ *
+ * @author Elliot Ford
+ *
+ * @see AttributeBuffer
+ *
+ */
+public class BufferedAttributeContainer implements AttributeContainer {
+
+    private static final Object REMOVED = new Object();
+
+    private final AttributeBuffer buffer;
+    private final AttributeContainer delegateContainer;
+    private volatile Map<NamedAttributeType<?>, Object> committed;
+    private final Map<NamedAttributeType<?>, Object> pending;
+    private final Map<NamedAttributeType<?>, ListenerSet<?>> listeners;
+    private final Lock read;
+    private final Lock write;
+
+    /**
+     * Creates a new buffered attribute container bound to the supplied buffer with no delegate
+     * container (self).
+     *
+     * @param buffer
+     *            Buffer that commits writes.
+     */
+    public BufferedAttributeContainer(final AttributeBuffer buffer) {
+	this(buffer, null);
+    }
+
+    /**
+     * Creates a new buffered attribute container bound to the supplied buffer with a delegate
+     * container.
+     *
+     * @param buffer
+     *            Buffer that commits writes.
+     * @param delegateContainer
+     *            Delegate AttributeContainer for events.
+     */
+    public BufferedAttributeContainer(final AttributeBuffer buffer, final AttributeContainer delegateContainer) {
+	this.buffer = Objects.requireNonNull(buffer);
+	this.delegateContainer = delegateContainer != null ? delegateContainer : this;
+	committed = Collections.emptyMap();
+	pending = new HashMap<>();
+	listeners = new HashMap<>();
+	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+	read = rwLock.readLock();
+	write = rwLock.writeLock();
+    }
+
+    @Override
+    public <T> boolean addAttributeListener(final NamedAttributeType<T> namedType,
+	    final AttributeListener<T> listener) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(listener);
+
+	write.lock();
+	try {
+	    @SuppressWarnings({ "unchecked" })
+	    ListenerSet<AttributeListener<T>> lst = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+
+	    if (lst == null) {
+		// No existing listeners
+		lst = new ListenerSet<>(AttributeListener.class);
+		listeners.put(namedType, lst);
+	    }
+
+	    return lst.add(listener);
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    void commit() {
+	final List<Runnable> events = new ArrayList<>();
+
+	write.lock();
+	try {
+	    if (pending.isEmpty()) {
+		return;
+	    }
+
+	    final Map<NamedAttributeType<?>, Object> values = new HashMap<>(committed);
+	    for (final Entry<NamedAttributeType<?>, Object> entry : pending.entrySet()) {
+		final NamedAttributeType<Object> namedType = (NamedAttributeType<Object>) entry.getKey();
+		final ListenerSet<AttributeListener<Object>> ls = (ListenerSet<AttributeListener<Object>>) listeners
+			.get(namedType);
+
+		if (entry.getValue() == REMOVED) {
+		    final Object prev = values.remove(namedType);
+		    if (prev != null && ls != null) {
+			events.add(() -> ls.getProxy()
+				.attributeRemoved(new AttributeEvent<>(delegateContainer, namedType, prev)));
+		    }
+		} else {
+		    final Object value = entry.getValue();
+		    final Object prev = values.put(namedType, value);
+		    if (ls != null) {
+			events.add(() -> ls.getProxy()
+				.attributeAdded(new AttributeEvent<>(delegateContainer, namedType, value, prev)));
+		    }
+		}
+	    }
+	    pending.clear();
+
+	    committed = Collections.unmodifiableMap(values);
+	} finally {
+	    write.unlock();
+	}
+
+	events.forEach(Runnable::run);
+    }
+
+    @Override
+    public <T> boolean compareAndSetAttribute(final NamedAttributeType<T> namedType, final T expect,
+	    final T update) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(update);
+
+	write.lock();
+	try {
+	    if (!Objects.equals(valueOf(namedType, pending.get(namedType)), expect)) {
+		return false;
+	    }
+
+	    write(namedType, update); // Reentrant
+	    return true;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public <T> void fireAttributeChanged(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	read.lock();
+	try {
+	    final T current = getAttribute(namedType);
+	    if (current == null) {
+		return;
+	    }
+
+	    @SuppressWarnings("unchecked")
+	    final ListenerSet<AttributeListener<T>> ls = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+	    if (ls != null) {
+		ls.getProxy().attributeChanged(new AttributeEvent<>(delegateContainer, namedType, current));
+	    }
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T getAttribute(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+	return (T) committed.get(namedType);
+    }
+
+    @Override
+    public int getAttributeCount() {
+	return committed.size();
+    }
+
+    @Override
+    public <T> Set<? extends AttributeListener<T>> getAttributeListeners(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	read.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final Set<? extends AttributeListener<T>> ls = (Set<? extends AttributeListener<T>>) listeners
+		    .get(namedType);
+	    return ls != null ? new HashSet<>(ls) : Collections.emptySet();
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public Set<NamedAttributeType<?>> getAttributeListenerTypes() {
+	read.lock();
+	try {
+	    return new HashSet<>(listeners.keySet());
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public Set<NamedAttributeType<?>> getAttributeTypes() {
+	return new HashSet<>(committed.keySet());
+    }
+
+    /**
+     * Gets the buffer that commits writes.
+     *
+     * @return Attribute buffer.
+     */
+    public AttributeBuffer getBuffer() {
+	return buffer;
+    }
+
+    /**
+     * Gets the delegate container.
+     *
+     * @return Delegate event container.
+     */
+    public AttributeContainer getDelegateContainer() {
+	return delegateContainer;
+    }
+
+    /**
+     * Gets the value the attribute will have once committed.
+     *
+     * @param namedType
+     *            Attribute type.
+     * @return The pending value (or committed value if there is no pending write).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getPendingAttribute(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	read.lock();
+	try {
+	    return (T) valueOf(namedType, pending.get(namedType));
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    /**
+     * Checks whether there are writes waiting to be committed.
+     *
+     * @return Whether there are pending writes.
+     */
+    public boolean hasPendingWrites() {
+	read.lock();
+	try {
+	    return !pending.isEmpty();
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public <T> T removeAttribute(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+	return write(namedType, REMOVED);
+    }
+
+    @Override
+    public <T> boolean removeAttributeListener(final NamedAttributeType<T> namedType,
+	    final AttributeListener<T> listener) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(listener);
+
+	write.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final ListenerSet<AttributeListener<T>> lst = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+
+	    // Try and remove
+	    if (lst == null || !lst.remove(listener)) {
+		return false;
+	    }
+
+	    if (lst.isEmpty()) {
+		// No more listeners
+		listeners.remove(namedType);
+	    }
+
+	    return true;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public void removeAttributeListeners() {
+	write.lock();
+	try {
+	    listeners.clear();
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public <T> void removeAttributeListeners(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	write.lock();
+	try {
+	    listeners.remove(namedType);
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public void removeAttributes() {
+	write.lock();
+	try {
+	    final Set<NamedAttributeType<?>> types = new HashSet<>(committed.keySet());
+	    types.addAll(pending.keySet());
+	    types.forEach(this::removeAttribute);
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public <T> T setAttribute(final NamedAttributeType<T> namedType, final T attr) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(attr);
+	return write(namedType, attr);
+    }
+
+    @Override
+    public Stream<?> streamAttributes() {
+	return committed.values().stream();
+    }
+
+    @Override
+    public String toString() {
+	return "BufferedAttributeContainer [" + getAttributeTypes() + "]";
+    }
+
+    @Override
+    public <T> T updateAttribute(final NamedAttributeType<T> namedType, final UnaryOperator<T> operator) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(operator);
+
+	write.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T attr = operator.apply((T) valueOf(namedType, pending.get(namedType)));
+	    write(namedType, attr != null ? attr : REMOVED); // Reentrant
+	    return attr;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    private Object valueOf(final NamedAttributeType<?> namedType, final Object pendingValue) {
+	if (pendingValue == null) {
+	    return committed.get(namedType);
+	}
+	return pendingValue != REMOVED ? pendingValue : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T write(final NamedAttributeType<T> namedType, final Object value) {
+	write.lock();
+	try {
+	    if (pending.isEmpty()) {
+		buffer.addPending(this);
+	    }
+	    return (T) valueOf(namedType, pending.put(namedType, value));
+	} finally {
+	    write.unlock();
+	}
+    }
+}
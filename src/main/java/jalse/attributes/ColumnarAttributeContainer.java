@@ -0,0 +1,599 @@
+package jalse.attributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import jalse.attributes.PrimitiveCell.Kind;
+import jalse.misc.ListenerSet;
+
+/**
+ * A ColumnarAttributeContainer is a thread-safe {@link AttributeContainer} that stores its values
+ * within a row of a {@link ColumnarAttributeStore} (rather than its own map). Containers bound to
+ * the same store share the same dense column per {@link NamedAttributeType}.<br>
+ * <br>
+ * The container can be moved between stores ({@link #moveTo(ColumnarAttributeStore)}) or detached
+ * from its store ({@link #detach()}) keeping all of its values and listeners. Reads do not lock the
+ * container (they are retried if the container moves while reading). Writes, including
+ * {@link #updateAttribute(NamedAttributeType, UnaryOperator)},
+ * {@link #compareAndSetAttribute(NamedAttributeType, Object, Object)} and the {@code addAndGet}
+ * methods, are atomic and fire a single event.
+ *
+ * @author Elliot Ford
+ *
+ * @see ColumnarAttributeStore
+ *
+ */
+public class ColumnarAttributeContainer implements AttributeContainer {
+
+    /**
+     * Where the values currently live: a row of a store or (when detached) an immutable map.
+     */
+    private static final class Binding {
+
+	private final ColumnarAttributeStore store;
+	private final int row;
+	private final Map<NamedAttributeType<?>, Object> values;
+
+	private Binding(final ColumnarAttributeStore store, final int row) {
+	    this.store = store;
+	    this.row = row;
+	    values = null;
+	}
+
+	private Binding(final Map<NamedAttributeType<?>, Object> values) {
+	    store = null;
+	    row = -1;
+	    this.values = values;
+	}
+
+	private int count() {
+	    return store != null ? store.count(row) : values.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T get(final NamedAttributeType<T> namedType) {
+	    return store != null ? store.get(row, namedType) : (T) values.get(namedType);
+	}
+
+	private long getBits(final NamedAttributeType<?> namedType, final Kind kind) {
+	    if (store != null) {
+		return store.getBits(row, namedType, kind);
+	    }
+	    final Object value = values.get(namedType);
+	    return value != null ? PrimitiveCell.bitsOf(kind, value) : 0L;
+	}
+
+	private List<NamedAttributeType<?>> types() {
+	    return store != null ? store.types(row) : new ArrayList<>(values.keySet());
+	}
+
+	private List<Object> values() {
+	    return store != null ? store.values(row) : new ArrayList<>(values.values());
+	}
+    }
+
+    private final Map<NamedAttributeType<?>, ListenerSet<?>> listeners;
+    private final AttributeContainer delegateContainer;
+    private volatile Binding binding;
+    private final Lock read;
+    private final Lock write;
+
+    /**
+     * Creates a new columnar attribute container bound to the supplied store with no delegate
+     * container (self).
+     *
+     * @param store
+     *            Store to bind to.
+     */
+    public ColumnarAttributeContainer(final ColumnarAttributeStore store) {
+	this(store, null);
+    }
+
+    /**
+     * Creates a new columnar attribute container bound to the supplied store with a delegate
+     * container.
+     *
+     * @param store
+     *            Store to bind to.
+     * @param delegateContainer
+     *            Delegate AttributeContainer for events.
+     */
+    public ColumnarAttributeContainer(final ColumnarAttributeStore store, final AttributeContainer delegateContainer) {
+	Objects.requireNonNull(store);
+	this.delegateContainer = delegateContainer != null ? delegateContainer : this;
+	listeners = new HashMap<>();
+	binding = new Binding(store, store.bind(this));
+	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+	read = rwLock.readLock();
+	write = rwLock.writeLock();
+    }
+
+    @Override
+    public double addAndGetDouble(final NamedAttributeType<Double> namedType, final double delta) {
+	final long bits = Double.doubleToRawLongBits(delta);
+	final long prevBits = setBits(namedType, Kind.DOUBLE, bits, true);
+	return Double.longBitsToDouble(PrimitiveCell.add(Kind.DOUBLE, prevBits, bits));
+    }
+
+    @Override
+    public int addAndGetInt(final NamedAttributeType<Integer> namedType, final int delta) {
+	return (int) PrimitiveCell.add(Kind.INT, setBits(namedType, Kind.INT, delta, true), delta);
+    }
+
+    @Override
+    public long addAndGetLong(final NamedAttributeType<Long> namedType, final long delta) {
+	return PrimitiveCell.add(Kind.LONG, setBits(namedType, Kind.LONG, delta, true), delta);
+    }
+
+    @Override
+    public <T> boolean addAttributeListener(final NamedAttributeType<T> namedType,
+	    final AttributeListener<T> listener) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(listener);
+
+	write.lock();
+	try {
+	    @SuppressWarnings({ "unchecked" })
+	    ListenerSet<AttributeListener<T>> lst = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+
+	    if (lst == null) {
+		// No existing listeners
+		lst = new ListenerSet<>(AttributeListener.class);
+		listeners.put(namedType, lst);
+	    }
+
+	    return lst.add(listener);
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public <T> boolean compareAndSetAttribute(final NamedAttributeType<T> namedType, final T expect,
+	    final T update) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(update);
+
+	write.lock();
+	try {
+	    final T current = binding.get(namedType);
+	    if (!Objects.equals(current, expect)) {
+		return false;
+	    }
+	    write(namedType, update);
+
+	    @SuppressWarnings("unchecked")
+	    final ListenerSet<AttributeListener<T>> ls = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+	    if (ls != null) {
+		ls.getProxy().attributeAdded(new AttributeEvent<>(delegateContainer, namedType, update, current));
+	    }
+
+	    return true;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    /**
+     * Detaches this container from its store keeping all of its values (the row is freed). Any
+     * later write copies the detached values, so detached containers should only be short lived
+     * (see {@link #moveTo(ColumnarAttributeStore)}).
+     */
+    public void detach() {
+	write.lock();
+	try {
+	    final Binding b = binding;
+	    if (b.store != null) {
+		b.store.unbind(b.row); // Publishes the detached values
+	    }
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    <T> void fireAttributeAdded(final NamedAttributeType<T> namedType, final T value, final T prev) {
+	read.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final ListenerSet<AttributeListener<T>> ls = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+	    if (ls != null) {
+		ls.getProxy().attributeAdded(new AttributeEvent<>(delegateContainer, namedType, value, prev));
+	    }
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public <T> void fireAttributeChanged(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	read.lock();
+	try {
+	    final T current = binding.get(namedType);
+	    if (current == null) {
+		return;
+	    }
+
+	    @SuppressWarnings("unchecked")
+	    final ListenerSet<AttributeListener<T>> ls = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+	    if (ls != null) {
+		ls.getProxy().attributeChanged(new AttributeEvent<>(delegateContainer, namedType, current));
+	    }
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public <T> T getAttribute(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	for (;;) {
+	    final Binding b = binding;
+	    final T attr = b.get(namedType);
+	    if (b == binding) { // Not moved while reading
+		return attr;
+	    }
+	}
+    }
+
+    @Override
+    public int getAttributeCount() {
+	for (;;) {
+	    final Binding b = binding;
+	    final int count = b.count();
+	    if (b == binding) {
+		return count;
+	    }
+	}
+    }
+
+    @Override
+    public <T> Set<? extends AttributeListener<T>> getAttributeListeners(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	read.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final Set<? extends AttributeListener<T>> ls = (Set<? extends AttributeListener<T>>) listeners
+		    .get(namedType);
+	    return ls != null ? new HashSet<>(ls) : Collections.emptySet();
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public Set<NamedAttributeType<?>> getAttributeListenerTypes() {
+	read.lock();
+	try {
+	    return new HashSet<>(listeners.keySet());
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public Set<NamedAttributeType<?>> getAttributeTypes() {
+	for (;;) {
+	    final Binding b = binding;
+	    final List<NamedAttributeType<?>> types = b.types();
+	    if (b == binding) {
+		return new HashSet<>(types);
+	    }
+	}
+    }
+
+    private long getBits(final NamedAttributeType<?> namedType, final Kind kind) {
+	Objects.requireNonNull(namedType);
+
+	for (;;) {
+	    final Binding b = binding;
+	    final long bits = b.getBits(namedType, kind);
+	    if (b == binding) {
+		return bits;
+	    }
+	}
+    }
+
+    /**
+     * Gets the delegate container.
+     *
+     * @return Delegate event container.
+     */
+    public AttributeContainer getDelegateContainer() {
+	return delegateContainer;
+    }
+
+    @Override
+    public double getDouble(final NamedAttributeType<Double> namedType) {
+	return Double.longBitsToDouble(getBits(namedType, Kind.DOUBLE));
+    }
+
+    @Override
+    public int getInt(final NamedAttributeType<Integer> namedType) {
+	return (int) getBits(namedType, Kind.INT);
+    }
+
+    @Override
+    public long getLong(final NamedAttributeType<Long> namedType) {
+	return getBits(namedType, Kind.LONG);
+    }
+
+    /**
+     * Gets the store this container is currently bound to.
+     *
+     * @return Bound store (or null if detached).
+     */
+    public ColumnarAttributeStore getStore() {
+	return binding.store;
+    }
+
+    /**
+     * Moves all of the values from the current store into a new row of the supplied store.
+     *
+     * @param store
+     *            Store to bind to.
+     */
+    @SuppressWarnings("unchecked")
+    public void moveTo(final ColumnarAttributeStore store) {
+	Objects.requireNonNull(store);
+
+	write.lock();
+	try {
+	    final Binding b = binding;
+	    if (b.store == store) {
+		return;
+	    }
+
+	    // Unbinding publishes the detached values (readers never see an empty row)
+	    final Map<NamedAttributeType<?>, Object> values = b.store != null ? b.store.unbind(b.row) : b.values;
+	    final int row = store.bind(this);
+
+	    for (final Entry<NamedAttributeType<?>, Object> entry : values.entrySet()) {
+		store.set(row, (NamedAttributeType<Object>) entry.getKey(), entry.getValue());
+	    }
+
+	    binding = new Binding(store, row);
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public <T> T removeAttribute(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	write.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T prev = (T) write(namedType, null);
+
+	    if (prev != null) {
+		@SuppressWarnings("unchecked")
+		final ListenerSet<AttributeListener<T>> ls = (ListenerSet<AttributeListener<T>>) listeners
+			.get(namedType);
+		if (ls != null) {
+		    ls.getProxy().attributeRemoved(new AttributeEvent<>(delegateContainer, namedType, prev));
+		}
+	    }
+
+	    return prev;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public <T> boolean removeAttributeListener(final NamedAttributeType<T> namedType,
+	    final AttributeListener<T> listener) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(listener);
+
+	write.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final ListenerSet<AttributeListener<T>> lst = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+
+	    // Try and remove
+	    if (lst == null || !lst.remove(listener)) {
+		return false;
+	    }
+
+	    if (lst.isEmpty()) {
+		// No more listeners
+		listeners.remove(namedType);
+	    }
+
+	    return true;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public void removeAttributeListeners() {
+	write.lock();
+	try {
+	    listeners.clear();
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public <T> void removeAttributeListeners(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	write.lock();
+	try {
+	    listeners.remove(namedType);
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public void removeAttributes() {
+	write.lock();
+	try {
+	    binding.types().forEach(this::removeAttribute);
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public <T> T setAttribute(final NamedAttributeType<T> namedType, final T attr) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(attr);
+
+	write.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T prev = (T) write(namedType, attr);
+
+	    @SuppressWarnings("unchecked")
+	    final ListenerSet<AttributeListener<T>> ls = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+	    if (ls != null) {
+		ls.getProxy().attributeAdded(new AttributeEvent<>(delegateContainer, namedType, attr, prev));
+	    }
+
+	    return prev;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    /**
+     * Sets (or adds the supplied bits to) the primitive attribute and returns the previous bits.
+     */
+    @SuppressWarnings("unchecked")
+    private long setBits(final NamedAttributeType<?> namedType, final Kind kind, final long value,
+	    final boolean add) {
+	Objects.requireNonNull(namedType);
+
+	write.lock();
+	try {
+	    final Binding b = binding;
+	    final ListenerSet<AttributeListener<Object>> ls = (ListenerSet<AttributeListener<Object>>) listeners
+		    .get(namedType);
+
+	    final boolean present = ls != null && b.get(namedType) != null;
+	    final long prevBits;
+	    final long bits;
+	    if (b.store != null) {
+		prevBits = b.store.setBits(b.row, namedType, kind, value, add);
+		bits = add ? PrimitiveCell.add(kind, prevBits, value) : value;
+	    } else {
+		prevBits = b.getBits(namedType, kind);
+		bits = add ? PrimitiveCell.add(kind, prevBits, value) : value;
+		write(namedType, PrimitiveCell.box(kind, bits));
+	    }
+
+	    if (ls != null) {
+		final Object prev = present ? PrimitiveCell.box(kind, prevBits) : null;
+		ls.getProxy().attributeAdded(new AttributeEvent<>(delegateContainer,
+			(NamedAttributeType<Object>) namedType, PrimitiveCell.box(kind, bits), prev));
+	    }
+
+	    return prevBits;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    void setDetached(final Map<NamedAttributeType<?>, Object> values) {
+	binding = new Binding(values);
+    }
+
+    @Override
+    public double setDouble(final NamedAttributeType<Double> namedType, final double value) {
+	return Double.longBitsToDouble(setBits(namedType, Kind.DOUBLE, Double.doubleToRawLongBits(value), false));
+    }
+
+    @Override
+    public int setInt(final NamedAttributeType<Integer> namedType, final int value) {
+	return (int) setBits(namedType, Kind.INT, value, false);
+    }
+
+    @Override
+    public long setLong(final NamedAttributeType<Long> namedType, final long value) {
+	return setBits(namedType, Kind.LONG, value, false);
+    }
+
+    @Override
+    public Stream<?> streamAttributes() {
+	for (;;) {
+	    final Binding b = binding;
+	    final List<Object> values = b.values();
+	    if (b == binding) {
+		return values.stream();
+	    }
+	}
+    }
+
+    @Override
+    public String toString() {
+	return "ColumnarAttributeContainer [" + getAttributeTypes() + "]";
+    }
+
+    @Override
+    public <T> T updateAttribute(final NamedAttributeType<T> namedType, final UnaryOperator<T> operator) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(operator);
+
+	write.lock();
+	try {
+	    final T prev = binding.get(namedType);
+	    final T attr = operator.apply(prev);
+	    if (attr == null && prev == null) {
+		return null; // Still absent
+	    }
+	    write(namedType, attr);
+
+	    @SuppressWarnings("unchecked")
+	    final ListenerSet<AttributeListener<T>> ls = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+	    if (ls != null && attr != null) {
+		ls.getProxy().attributeAdded(new AttributeEvent<>(delegateContainer, namedType, attr, prev));
+	    } else if (ls != null) {
+		ls.getProxy().attributeRemoved(new AttributeEvent<>(delegateContainer, namedType, prev));
+	    }
+
+	    return attr;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    /**
+     * Sets (or removes when null) the value and returns the previous value (write lock held).
+     */
+    private Object write(final NamedAttributeType<?> namedType, final Object value) {
+	final Binding b = binding;
+	if (b.store != null) {
+	    @SuppressWarnings("unchecked")
+	    final NamedAttributeType<Object> type = (NamedAttributeType<Object>) namedType;
+	    return value != null ? b.store.set(b.row, type, value) : b.store.remove(b.row, type);
+	}
+
+	// Detached values are immutable (readers do not lock)
+	final Map<NamedAttributeType<?>, Object> values = new HashMap<>(b.values);
+	final Object prev = value != null ? values.put(namedType, value) : values.remove(namedType);
+	binding = new Binding(values);
+	return prev;
+    }
+}
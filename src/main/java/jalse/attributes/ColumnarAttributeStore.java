@@ -0,0 +1,604 @@
+package jalse.attributes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import jalse.attributes.PrimitiveCell.Kind;
+
+/**
+ * A ColumnarAttributeStore is a thread-safe struct-of-arrays store for attribute values. Every
+ * {@link NamedAttributeType} is backed by one dense column that is shared by all of the
+ * {@link ColumnarAttributeContainer} bound to the store (each container owns a single row).<br>
+ * <br>
+ * This allows a single attribute to be processed for every container without visiting each
+ * container in turn (see {@link #forEachInColumn(NamedAttributeType, BiConsumer)} and
+ * {@link #updateColumn(NamedAttributeType, UnaryOperator)}).<br>
+ * <br>
+ * Columns are found by {@link NamedAttributeType#getSlot()} and each column has its own
+ * {@link StampedLock}, so containers using different attributes never contend and reads only lock
+ * when a write to the same column overlaps. {@code int}, {@code long} and {@code double} columns
+ * ({@link Attributes#INTEGER_TYPE}, {@link Attributes#LONG_TYPE} and {@link Attributes#DOUBLE_TYPE})
+ * store their values unboxed.
+ *
+ * @author Elliot Ford
+ *
+ * @see ColumnarAttributeContainer
+ *
+ */
+public class ColumnarAttributeStore {
+
+    /**
+     * A column of values indexed by row. The raw methods ({@link #read(int)} and
+     * {@link #write(int, Object)}) are called with the column lock held (or optimistically for
+     * reads, so they must not fail when the column changes underneath them).
+     */
+    private abstract static class Column {
+
+	final StampedLock lock = new StampedLock();
+
+	/**
+	 * Gets a copy of the values of the first rows (null where absent).
+	 */
+	Object[] copy(final int limit) {
+	    final long stamp = lock.readLock();
+	    try {
+		final Object[] values = new Object[Math.min(length(), limit)];
+		for (int i = 0; i < values.length; i++) {
+		    values[i] = read(i);
+		}
+		return values;
+	    } finally {
+		lock.unlockRead(stamp);
+	    }
+	}
+
+	Object get(final int row) {
+	    final long stamp = lock.tryOptimisticRead();
+	    if (stamp != 0L) {
+		final Object value = read(row);
+		if (lock.validate(stamp)) {
+		    return value;
+		}
+	    }
+
+	    // A write overlapped
+	    final long readStamp = lock.readLock();
+	    try {
+		return read(row);
+	    } finally {
+		lock.unlockRead(readStamp);
+	    }
+	}
+
+	long getBits(final int row, final Kind kind) {
+	    final Object value = get(row);
+	    return value != null ? PrimitiveCell.bitsOf(kind, value) : 0L;
+	}
+
+	boolean has(final int row) {
+	    return get(row) != null;
+	}
+
+	abstract int length();
+
+	abstract Object read(int row);
+
+	Object set(final int row, final Object value) {
+	    final long stamp = lock.writeLock();
+	    try {
+		return write(row, value);
+	    } finally {
+		lock.unlockWrite(stamp);
+	    }
+	}
+
+	long setBits(final int row, final Kind kind, final long value, final boolean add) {
+	    final long stamp = lock.writeLock();
+	    try {
+		final Object prev = read(row);
+		final long prevBits = prev != null ? PrimitiveCell.bitsOf(kind, prev) : 0L;
+		write(row, PrimitiveCell.box(kind, add ? PrimitiveCell.add(kind, prevBits, value) : value));
+		return prevBits;
+	    } finally {
+		lock.unlockWrite(stamp);
+	    }
+	}
+
+	/**
+	 * Updates every present value of the first rows (recording each update).
+	 */
+	void update(final int limit, final UnaryOperator<Object> operator, final List<Integer> updated,
+		final List<Object> values, final List<Object> prevs) {
+	    final long stamp = lock.writeLock();
+	    try {
+		final int length = Math.min(length(), limit);
+		for (int i = 0; i < length; i++) {
+		    final Object prev = read(i);
+		    if (prev != null) {
+			final Object value = Objects.requireNonNull(operator.apply(prev));
+			write(i, value);
+			updated.add(i);
+			values.add(value);
+			prevs.add(prev);
+		    }
+		}
+	    } finally {
+		lock.unlockWrite(stamp);
+	    }
+	}
+
+	/**
+	 * Sets (or removes when null) the value of the row and returns the previous value.
+	 */
+	abstract Object write(int row, Object value);
+    }
+
+    private static final class ObjectColumn extends Column {
+
+	private Object[] values;
+
+	private ObjectColumn(final int capacity) {
+	    values = new Object[capacity];
+	}
+
+	@Override
+	int length() {
+	    return values.length;
+	}
+
+	@Override
+	Object read(final int row) {
+	    final Object[] values = this.values;
+	    return row < values.length ? values[row] : null;
+	}
+
+	@Override
+	Object write(final int row, final Object value) {
+	    if (row >= values.length) {
+		if (value == null) {
+		    return null;
+		}
+		values = Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+	    }
+
+	    final Object prev = values[row];
+	    values[row] = value;
+	    return prev;
+	}
+    }
+
+    private static final class PrimitiveColumn extends Column {
+
+	private final Kind kind;
+	private long[] bits;
+	private long[] present; // One bit per row
+
+	private PrimitiveColumn(final Kind kind, final int capacity) {
+	    this.kind = kind;
+	    bits = new long[capacity];
+	    present = new long[capacity + 63 >>> 6];
+	}
+
+	@Override
+	long getBits(final int row, final Kind kind) {
+	    if (kind != this.kind) {
+		return super.getBits(row, kind);
+	    }
+
+	    final long stamp = lock.tryOptimisticRead();
+	    if (stamp != 0L) {
+		final long[] bits = this.bits;
+		final long value = row < bits.length ? bits[row] : 0L;
+		if (lock.validate(stamp)) {
+		    return value;
+		}
+	    }
+
+	    // A write overlapped
+	    final long readStamp = lock.readLock();
+	    try {
+		return row < bits.length ? bits[row] : 0L;
+	    } finally {
+		lock.unlockRead(readStamp);
+	    }
+	}
+
+	private void grow(final int row) {
+	    final int capacity = Math.max(row + 1, bits.length * 2);
+	    bits = Arrays.copyOf(bits, capacity);
+	    present = Arrays.copyOf(present, capacity + 63 >>> 6);
+	}
+
+	@Override
+	int length() {
+	    return bits.length;
+	}
+
+	@Override
+	Object read(final int row) {
+	    final long[] bits = this.bits;
+	    final long[] present = this.present;
+	    if (row >= bits.length || row >>> 6 >= present.length || (present[row >>> 6] & 1L << row) == 0L) {
+		return null;
+	    }
+	    return PrimitiveCell.box(kind, bits[row]);
+	}
+
+	@Override
+	long setBits(final int row, final Kind kind, final long value, final boolean add) {
+	    if (kind != this.kind) {
+		return super.setBits(row, kind, value, add);
+	    }
+
+	    final long stamp = lock.writeLock();
+	    try {
+		if (row >= bits.length) {
+		    grow(row);
+		}
+
+		final long prevBits = bits[row]; // Absent rows are always zero
+		bits[row] = add ? PrimitiveCell.add(kind, prevBits, value) : value;
+		present[row >>> 6] |= 1L << row;
+		return prevBits;
+	    } finally {
+		lock.unlockWrite(stamp);
+	    }
+	}
+
+	@Override
+	Object write(final int row, final Object value) {
+	    if (row >= bits.length) {
+		if (value == null) {
+		    return null;
+		}
+		grow(row);
+	    }
+
+	    final Object prev = read(row);
+	    if (value != null) {
+		bits[row] = PrimitiveCell.bitsOf(kind, value);
+		present[row >>> 6] |= 1L << row;
+	    } else {
+		bits[row] = 0L;
+		present[row >>> 6] &= ~(1L << row);
+	    }
+	    return prev;
+	}
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static Kind kindOf(final NamedAttributeType<?> namedType) {
+	final AttributeType<?> type = namedType.getType();
+	if (Attributes.INTEGER_TYPE.equals(type)) {
+	    return Kind.INT;
+	} else if (Attributes.DOUBLE_TYPE.equals(type)) {
+	    return Kind.DOUBLE;
+	} else if (Attributes.LONG_TYPE.equals(type)) {
+	    return Kind.LONG;
+	}
+	return null;
+    }
+
+    private volatile AttributeSlotMap<Column> columns; // Copied on write
+    private ColumnarAttributeContainer[] rows;
+    private int[] freeRows;
+    private int freeCount;
+    private int rowLimit;
+    private final Lock read; // Guards rows (not values)
+    private final Lock write;
+
+    /**
+     * Creates a new columnar attribute store with the default capacity.
+     */
+    public ColumnarAttributeStore() {
+	this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new columnar attribute store with the supplied starting row capacity.
+     *
+     * @param capacity
+     *            Starting row capacity.
+     */
+    public ColumnarAttributeStore(final int capacity) {
+	if (capacity <= 0) {
+	    throw new IllegalArgumentException();
+	}
+	columns = new AttributeSlotMap<>();
+	rows = new ColumnarAttributeContainer[capacity];
+	freeRows = new int[0];
+	freeCount = 0;
+	rowLimit = 0;
+	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+	read = rwLock.readLock();
+	write = rwLock.writeLock();
+    }
+
+    int bind(final ColumnarAttributeContainer container) {
+	write.lock();
+	try {
+	    final int row;
+	    if (freeCount > 0) {
+		row = freeRows[--freeCount];
+	    } else {
+		if (rowLimit == rows.length) {
+		    rows = Arrays.copyOf(rows, rows.length * 2);
+		}
+		row = rowLimit++;
+	    }
+	    rows[row] = container;
+	    return row;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    int count(final int row) {
+	int count = 0;
+	for (final Column column : columns.values()) {
+	    if (column.has(row)) {
+		count++;
+	    }
+	}
+	return count;
+    }
+
+    /**
+     * Performs the action for every value within the column (in row order). The column is copied
+     * before the action is performed so the action may safely update this store.
+     *
+     * @param namedType
+     *            Named attribute type of the column.
+     * @param action
+     *            Action to perform with the owning container and value.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void forEachInColumn(final NamedAttributeType<T> namedType,
+	    final BiConsumer<? super AttributeContainer, ? super T> action) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(action);
+
+	final Column column = columns.get(namedType);
+	if (column == null) {
+	    return;
+	}
+
+	final Object[] values;
+	final ColumnarAttributeContainer[] owners;
+
+	read.lock();
+	try {
+	    values = column.copy(rowLimit);
+	    owners = Arrays.copyOf(rows, values.length);
+	} finally {
+	    read.unlock();
+	}
+
+	for (int i = 0; i < values.length; i++) {
+	    if (values[i] != null) {
+		action.accept(owners[i].getDelegateContainer(), (T) values[i]);
+	    }
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(final int row, final NamedAttributeType<T> namedType) {
+	final Column column = columns.get(namedType);
+	return column != null ? (T) column.get(row) : null;
+    }
+
+    long getBits(final int row, final NamedAttributeType<?> namedType, final Kind kind) {
+	final Column column = columns.get(namedType);
+	return column != null ? column.getBits(row, kind) : 0L;
+    }
+
+    /**
+     * Gets the named attribute types that currently have a column.
+     *
+     * @return Column types.
+     */
+    public Set<NamedAttributeType<?>> getColumnTypes() {
+	return new HashSet<>(columns.keySet());
+    }
+
+    /**
+     * Gets the number of containers bound to this store.
+     *
+     * @return Bound row count.
+     */
+    public int getRowCount() {
+	read.lock();
+	try {
+	    return rowLimit - freeCount;
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    boolean has(final int row, final NamedAttributeType<?> namedType) {
+	final Column column = columns.get(namedType);
+	return column != null && column.has(row);
+    }
+
+    private Column newColumnIfAbsent(final NamedAttributeType<?> namedType) {
+	Column column = columns.get(namedType);
+	if (column != null) {
+	    return column;
+	}
+
+	write.lock();
+	try {
+	    column = columns.get(namedType);
+	    if (column == null) {
+		final Kind kind = kindOf(namedType);
+		column = kind != null ? new PrimitiveColumn(kind, rows.length) : new ObjectColumn(rows.length);
+
+		final AttributeSlotMap<Column> added = new AttributeSlotMap<>();
+		added.putAll(columns);
+		added.put(namedType, column);
+		columns = added; // Publish once filled
+	    }
+	    return column;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T remove(final int row, final NamedAttributeType<T> namedType) {
+	final Column column = columns.get(namedType);
+	return column != null ? (T) column.set(row, null) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T set(final int row, final NamedAttributeType<T> namedType, final T value) {
+	return (T) newColumnIfAbsent(namedType).set(row, value);
+    }
+
+    long setBits(final int row, final NamedAttributeType<?> namedType, final Kind kind, final long value,
+	    final boolean add) {
+	return newColumnIfAbsent(namedType).setBits(row, kind, value, add);
+    }
+
+    /**
+     * Streams the values within the column (in row order). The stream is backed by a copy of the
+     * column.
+     *
+     * @param namedType
+     *            Named attribute type of the column.
+     * @return Stream of the column values.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Stream<T> streamColumn(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	final Column column = columns.get(namedType);
+	if (column == null) {
+	    return Stream.empty();
+	}
+
+	final Object[] values;
+
+	read.lock();
+	try {
+	    values = column.copy(rowLimit);
+	} finally {
+	    read.unlock();
+	}
+
+	return (Stream<T>) Arrays.stream(values).filter(Objects::nonNull);
+    }
+
+    @Override
+    public String toString() {
+	return "ColumnarAttributeStore [rows=" + getRowCount() + ", columns=" + getColumnTypes() + "]";
+    }
+
+    List<NamedAttributeType<?>> types(final int row) {
+	final List<NamedAttributeType<?>> types = new ArrayList<>();
+	columns.forEach((namedType, column) -> {
+	    if (column.has(row)) {
+		types.add(namedType);
+	    }
+	});
+	return types;
+    }
+
+    /**
+     * Removes the values of the row and frees it for reuse. The owning container is detached with
+     * its values before they are removed (so it never sees the row empty or reused).
+     */
+    Map<NamedAttributeType<?>, Object> unbind(final int row) {
+	write.lock();
+	try {
+	    final AttributeSlotMap<Column> columns = this.columns;
+	    final Map<NamedAttributeType<?>, Object> values = new HashMap<>();
+	    columns.forEach((namedType, column) -> {
+		final Object value = column.get(row);
+		if (value != null) {
+		    values.put(namedType, value);
+		}
+	    });
+
+	    rows[row].setDetached(values);
+	    columns.values().forEach(column -> column.set(row, null));
+
+	    rows[row] = null;
+	    if (freeCount == freeRows.length) {
+		freeRows = Arrays.copyOf(freeRows, Math.max(DEFAULT_CAPACITY, freeRows.length * 2));
+	    }
+	    freeRows[freeCount++] = row;
+
+	    return values;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    /**
+     * Updates every value within the column using the supplied operator. The whole column is
+     * updated within a single lock acquisition and then {@link AttributeListener#attributeAdded}
+     * is fired for each updated value. The operator is applied while holding the column lock so it
+     * must not access this store.
+     *
+     * @param namedType
+     *            Named attribute type of the column.
+     * @param operator
+     *            Operator to calculate the new value (must not return null).
+     * @return Number of values updated.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> int updateColumn(final NamedAttributeType<T> namedType, final UnaryOperator<T> operator) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(operator);
+
+	final Column column = columns.get(namedType);
+	if (column == null) {
+	    return 0;
+	}
+
+	final List<Integer> updated = new ArrayList<>();
+	final List<Object> values = new ArrayList<>();
+	final List<Object> prevs = new ArrayList<>();
+	final List<ColumnarAttributeContainer> owners = new ArrayList<>();
+
+	read.lock(); // Rows cannot be bound or unbound
+	try {
+	    column.update(rowLimit, (UnaryOperator<Object>) operator, updated, values, prevs);
+	    updated.forEach(row -> owners.add(rows[row]));
+	} finally {
+	    read.unlock();
+	}
+
+	for (int i = 0; i < owners.size(); i++) {
+	    owners.get(i).fireAttributeAdded(namedType, (T) values.get(i), (T) prevs.get(i));
+	}
+
+	return owners.size();
+    }
+
+    List<Object> values(final int row) {
+	final List<Object> values = new ArrayList<>();
+	for (final Column column : columns.values()) {
+	    final Object value = column.get(row);
+	    if (value != null) {
+		values.add(value);
+	    }
+	}
+	return values;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
@@ -11,9 +12,13 @@ import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
+import jalse.attributes.PrimitiveCell.Kind;
 import jalse.misc.ListenerSet;
+import jalse.misc.SnapshotMap;
 
 /**
  * An DefaultAttributeContainer is a thread-safe implementation of {@link AttributeContainer}.<br>
@@ -21,7 +26,31 @@ import jalse.misc.ListenerSet;
  *
  * DefaultAttributeContainer can take a delegate AttributeContainer to supply to
  * {@link AttributeEvent}. Attribute updates will trigger these events using
- * {@link AttributeListener}.
+ * {@link AttributeListener}.<br>
+ * <br>
+ *
+ * A persistent DefaultAttributeContainer stores its attributes within a {@link SnapshotMap}. Its
+ * attributes can then be read without locking (so readers are never blocked by updates or their
+ * events) and {@link #snapshot()} is a constant time immutable copy.<br>
+ * <br>
+ *
+ * Otherwise {@code int}, {@code long} and {@code double} attributes ({@link Attributes#INTEGER_TYPE}
+ * , {@link Attributes#LONG_TYPE} and {@link Attributes#DOUBLE_TYPE}) set using
+ * {@link #setInt(NamedAttributeType, int)} (and its equivalents) are stored unboxed. Updating them
+ * using these methods does not allocate (unless there are listeners to create events for).
+ * Attributes are indexed by their {@link NamedAttributeType#getSlot()} so lookups do not hash or
+ * compare attribute types.<br>
+ * <br>
+ *
+ * {@link #updateAttribute(NamedAttributeType, UnaryOperator)},
+ * {@link #compareAndSetAttribute(NamedAttributeType, Object, Object)} and
+ * {@link #addAndGetInt(NamedAttributeType, int)} (and its equivalents) read and update an attribute
+ * within a single write lock (firing a single event).<br>
+ * <br>
+ *
+ * A container that is reused ({@link #reset(AttributeContainer)}) can be handed out as a
+ * {@link Lease} ({@link #lease(AttributeContainer)}). A lease expires when the container is next
+ * reset, so a stale reference can never read or update the values of the container's next user.
  *
  * @author Elliot Ford
  *
@@ -39,6 +68,7 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	private final Map<NamedAttributeType<?>, Object> builderAttributes;
 	private final Map<NamedAttributeType<?>, Set<AttributeListener<?>>> builderListeners;
 	private AttributeContainer builderDelegateContainer;
+	private boolean builderPersistent;
 
 	/**
 	 * Creates a new builder.
@@ -47,6 +77,7 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	    builderAttributes = new HashMap<>();
 	    builderListeners = new HashMap<>();
 	    builderDelegateContainer = null;
+	    builderPersistent = false;
 	}
 
 	/**
@@ -96,7 +127,7 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	 */
 	public DefaultAttributeContainer build() {
 	    final DefaultAttributeContainer container = new DefaultAttributeContainer(builderAttributes,
-		    builderListeners);
+		    builderListeners, builderPersistent);
 	    if (builderDelegateContainer != null) {
 		container.setDelegateContainer(builderDelegateContainer);
 	    }
@@ -147,11 +178,267 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	    this.builderDelegateContainer = Objects.requireNonNull(builderDelegateContainer);
 	    return this;
 	}
+
+	/**
+	 * Sets the container to store its attributes in a persistent map.
+	 *
+	 * @return This builder.
+	 *
+	 * @see DefaultAttributeContainer#isPersistent()
+	 */
+	public Builder setPersistent() {
+	    builderPersistent = true;
+	    return this;
+	}
+    }
+
+    /**
+     * A lease of a reused container. Once the container is reset the lease has expired: updates
+     * throw {@link UnsupportedOperationException} and reads find no attributes or listeners (like
+     * {@link Attributes#EMPTY_ATTRIBUTECONTAINER}).
+     *
+     * @author Elliot Ford
+     *
+     * @see DefaultAttributeContainer#lease(AttributeContainer)
+     *
+     */
+    public final class Lease implements AttributeContainer {
+
+	private final int leaseGeneration;
+
+	private Lease(final int leaseGeneration) {
+	    this.leaseGeneration = leaseGeneration;
+	}
+
+	@Override
+	public double addAndGetDouble(final NamedAttributeType<Double> namedType, final double delta) {
+	    write.lock();
+	    try {
+		return target().addAndGetDouble(namedType, delta);
+	    } finally {
+		write.unlock();
+	    }
+	}
+
+	@Override
+	public int addAndGetInt(final NamedAttributeType<Integer> namedType, final int delta) {
+	    write.lock();
+	    try {
+		return target().addAndGetInt(namedType, delta);
+	    } finally {
+		write.unlock();
+	    }
+	}
+
+	@Override
+	public long addAndGetLong(final NamedAttributeType<Long> namedType, final long delta) {
+	    write.lock();
+	    try {
+		return target().addAndGetLong(namedType, delta);
+	    } finally {
+		write.unlock();
+	    }
+	}
+
+	@Override
+	public <T> boolean addAttributeListener(final NamedAttributeType<T> namedType,
+		final AttributeListener<T> listener) {
+	    return write(c -> c.addAttributeListener(namedType, listener));
+	}
+
+	@Override
+	public <T> boolean compareAndSetAttribute(final NamedAttributeType<T> namedType, final T expect,
+		final T update) {
+	    return write(c -> c.compareAndSetAttribute(namedType, expect, update));
+	}
+
+	@Override
+	public <T> void fireAttributeChanged(final NamedAttributeType<T> namedType) {
+	    write(c -> {
+		c.fireAttributeChanged(namedType);
+		return null;
+	    });
+	}
+
+	@Override
+	public <T> T getAttribute(final NamedAttributeType<T> namedType) {
+	    return read(c -> c.getAttribute(namedType));
+	}
+
+	@Override
+	public int getAttributeCount() {
+	    final int count = DefaultAttributeContainer.this.getAttributeCount();
+	    return isExpired() ? 0 : count;
+	}
+
+	@Override
+	public <T> Set<? extends AttributeListener<T>> getAttributeListeners(final NamedAttributeType<T> namedType) {
+	    return read(c -> c.getAttributeListeners(namedType));
+	}
+
+	@Override
+	public Set<NamedAttributeType<?>> getAttributeListenerTypes() {
+	    return read(AttributeContainer::getAttributeListenerTypes);
+	}
+
+	@Override
+	public Set<NamedAttributeType<?>> getAttributeTypes() {
+	    return read(AttributeContainer::getAttributeTypes);
+	}
+
+	/**
+	 * Gets the leased container.
+	 *
+	 * @return Leased container.
+	 */
+	public DefaultAttributeContainer getContainer() {
+	    return DefaultAttributeContainer.this;
+	}
+
+	@Override
+	public double getDouble(final NamedAttributeType<Double> namedType) {
+	    final double value = DefaultAttributeContainer.this.getDouble(namedType);
+	    return isExpired() ? 0.0 : value;
+	}
+
+	@Override
+	public int getInt(final NamedAttributeType<Integer> namedType) {
+	    final int value = DefaultAttributeContainer.this.getInt(namedType);
+	    return isExpired() ? 0 : value;
+	}
+
+	@Override
+	public long getLong(final NamedAttributeType<Long> namedType) {
+	    final long value = DefaultAttributeContainer.this.getLong(namedType);
+	    return isExpired() ? 0L : value;
+	}
+
+	/**
+	 * Whether the container has been reset since this lease was taken.
+	 *
+	 * @return Whether the lease has expired.
+	 */
+	public boolean isExpired() {
+	    return generation != leaseGeneration;
+	}
+
+	private <R> R read(final Function<AttributeContainer, R> action) {
+	    final R result = action.apply(DefaultAttributeContainer.this);
+	    // Read again if reset while reading (could be the next user's values)
+	    return isExpired() ? action.apply(Attributes.EMPTY_ATTRIBUTECONTAINER) : result;
+	}
+
+	@Override
+	public <T> T removeAttribute(final NamedAttributeType<T> namedType) {
+	    return write(c -> c.removeAttribute(namedType));
+	}
+
+	@Override
+	public <T> boolean removeAttributeListener(final NamedAttributeType<T> namedType,
+		final AttributeListener<T> listener) {
+	    return write(c -> c.removeAttributeListener(namedType, listener));
+	}
+
+	@Override
+	public void removeAttributeListeners() {
+	    write(c -> {
+		c.removeAttributeListeners();
+		return null;
+	    });
+	}
+
+	@Override
+	public <T> void removeAttributeListeners(final NamedAttributeType<T> namedType) {
+	    write(c -> {
+		c.removeAttributeListeners(namedType);
+		return null;
+	    });
+	}
+
+	@Override
+	public void removeAttributes() {
+	    write(c -> {
+		c.removeAttributes();
+		return null;
+	    });
+	}
+
+	@Override
+	public <T> T setAttribute(final NamedAttributeType<T> namedType, final T attr) {
+	    return write(c -> c.setAttribute(namedType, attr));
+	}
+
+	@Override
+	public double setDouble(final NamedAttributeType<Double> namedType, final double value) {
+	    write.lock();
+	    try {
+		return target().setDouble(namedType, value);
+	    } finally {
+		write.unlock();
+	    }
+	}
+
+	@Override
+	public int setInt(final NamedAttributeType<Integer> namedType, final int value) {
+	    write.lock();
+	    try {
+		return target().setInt(namedType, value);
+	    } finally {
+		write.unlock();
+	    }
+	}
+
+	@Override
+	public long setLong(final NamedAttributeType<Long> namedType, final long value) {
+	    write.lock();
+	    try {
+		return target().setLong(namedType, value);
+	    } finally {
+		write.unlock();
+	    }
+	}
+
+	@Override
+	public Stream<?> streamAttributes() {
+	    return read(AttributeContainer::streamAttributes);
+	}
+
+	/**
+	 * Gets the container to update (write lock held so it cannot be reset while updating).
+	 */
+	private AttributeContainer target() {
+	    return isExpired() ? Attributes.EMPTY_ATTRIBUTECONTAINER : DefaultAttributeContainer.this;
+	}
+
+	@Override
+	public String toString() {
+	    return "Lease [expired=" + isExpired() + ", container=" + DefaultAttributeContainer.this + "]";
+	}
+
+	@Override
+	public <T> T updateAttribute(final NamedAttributeType<T> namedType, final UnaryOperator<T> operator) {
+	    return write(c -> c.updateAttribute(namedType, operator));
+	}
+
+	private <R> R write(final Function<AttributeContainer, R> action) {
+	    write.lock();
+	    try {
+		return action.apply(target());
+	    } finally {
+		write.unlock();
+	    }
+	}
+    }
+
+    private static Object unwrap(final Object value) {
+	return value instanceof PrimitiveCell ? ((PrimitiveCell) value).box() : value;
     }
 
     private final Map<NamedAttributeType<?>, ListenerSet<?>> listeners;
     private final Map<NamedAttributeType<?>, Object> attributes;
+    private final SnapshotMap<NamedAttributeType<?>, Object> snapshots;
     private AttributeContainer delegateContainer;
+    private volatile int generation; // Incremented by reset (expires leases)
     private final Lock read;
     private final Lock write;
 
@@ -159,7 +446,7 @@ public class DefaultAttributeContainer implements AttributeContainer {
      * Creates a new instance of DefaultAttributeContainer with no delegate container (self).
      */
     public DefaultAttributeContainer() {
-	this(null, null);
+	this(null, null, false);
     }
 
     /**
@@ -169,15 +456,28 @@ public class DefaultAttributeContainer implements AttributeContainer {
      *            Delegate AttributeContainer for events.
      */
     public DefaultAttributeContainer(final AttributeContainer delegateContainer) {
-	this(null, null);
+	this(delegateContainer, false);
+    }
+
+    /**
+     * Creates a new instance of DefaultAttributeContainer with a delegate container.
+     *
+     * @param delegateContainer
+     *            Delegate AttributeContainer for events.
+     * @param persistent
+     *            Whether to store attributes in a persistent map.
+     */
+    public DefaultAttributeContainer(final AttributeContainer delegateContainer, final boolean persistent) {
+	this(null, null, persistent);
 	setDelegateContainer(delegateContainer);
     }
 
     private DefaultAttributeContainer(final Map<NamedAttributeType<?>, Object> attributes,
-	    final Map<NamedAttributeType<?>, Set<AttributeListener<?>>> listeners) {
+	    final Map<NamedAttributeType<?>, Set<AttributeListener<?>>> listeners, final boolean persistent) {
 	delegateContainer = this;
-	this.attributes = new HashMap<>();
-	this.listeners = new HashMap<>();
+	snapshots = persistent ? new SnapshotMap<>() : null;
+	this.attributes = persistent ? snapshots : new AttributeSlotMap<>();
+	this.listeners = new AttributeSlotMap<>();
 
 	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
 	read = rwLock.readLock();
@@ -194,6 +494,23 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	}
     }
 
+    @Override
+    public double addAndGetDouble(final NamedAttributeType<Double> namedType, final double delta) {
+	final long bits = Double.doubleToRawLongBits(delta);
+	return Double.longBitsToDouble(
+		PrimitiveCell.add(Kind.DOUBLE, setBits(namedType, Kind.DOUBLE, bits, true), bits));
+    }
+
+    @Override
+    public int addAndGetInt(final NamedAttributeType<Integer> namedType, final int delta) {
+	return (int) PrimitiveCell.add(Kind.INT, setBits(namedType, Kind.INT, delta, true), delta);
+    }
+
+    @Override
+    public long addAndGetLong(final NamedAttributeType<Long> namedType, final long delta) {
+	return PrimitiveCell.add(Kind.LONG, setBits(namedType, Kind.LONG, delta, true), delta);
+    }
+
     @Override
     public <T> boolean addAttributeListener(final NamedAttributeType<T> namedType,
 	    final AttributeListener<T> listener) {
@@ -217,6 +534,25 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	}
     }
 
+    @Override
+    public <T> boolean compareAndSetAttribute(final NamedAttributeType<T> namedType, final T expect,
+	    final T update) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(update);
+
+	write.lock();
+	try {
+	    if (!Objects.equals(unwrap(attributes.get(namedType)), expect)) {
+		return false;
+	    }
+
+	    setAttribute(namedType, update); // Reentrant
+	    return true;
+	} finally {
+	    write.unlock();
+	}
+    }
+
     @Override
     public boolean equals(final Object obj) {
 	if (obj == this) {
@@ -228,7 +564,7 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	}
 
 	final DefaultAttributeContainer other = (DefaultAttributeContainer) obj;
-	return attributes.equals(other.attributes) && listeners.equals(other.listeners);
+	return snapshot().equals(other.snapshot()) && listeners.equals(other.listeners);
     }
 
     @Override
@@ -238,7 +574,7 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	read.lock();
 	try {
 	    @SuppressWarnings("unchecked")
-	    final T current = (T) attributes.get(namedType);
+	    final T current = (T) unwrap(attributes.get(namedType));
 	    if (current == null) {
 		return;
 	    }
@@ -258,9 +594,13 @@ public class DefaultAttributeContainer implements AttributeContainer {
     public <T> T getAttribute(final NamedAttributeType<T> namedType) {
 	Objects.requireNonNull(namedType);
 
+	if (snapshots != null) {
+	    return (T) snapshots.get(namedType); // Lock-free
+	}
+
 	read.lock();
 	try {
-	    return (T) attributes.get(namedType);
+	    return (T) unwrap(attributes.get(namedType));
 	} finally {
 	    read.unlock();
 	}
@@ -268,6 +608,10 @@ public class DefaultAttributeContainer implements AttributeContainer {
 
     @Override
     public int getAttributeCount() {
+	if (snapshots != null) {
+	    return snapshots.size();
+	}
+
 	read.lock();
 	try {
 	    return attributes.size();
@@ -303,6 +647,10 @@ public class DefaultAttributeContainer implements AttributeContainer {
 
     @Override
     public Set<NamedAttributeType<?>> getAttributeTypes() {
+	if (snapshots != null) {
+	    return new HashSet<>(snapshots.snapshot().keySet());
+	}
+
 	read.lock();
 	try {
 	    return new HashSet<>(attributes.keySet());
@@ -311,6 +659,26 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	}
     }
 
+    private long getBits(final NamedAttributeType<?> namedType, final Kind kind) {
+	Objects.requireNonNull(namedType);
+
+	if (snapshots != null) {
+	    final Object value = snapshots.get(namedType); // Lock-free
+	    return value != null ? PrimitiveCell.bitsOf(kind, value) : 0L;
+	}
+
+	read.lock();
+	try {
+	    final Object value = attributes.get(namedType);
+	    if (value instanceof PrimitiveCell) {
+		return ((PrimitiveCell) value).bits;
+	    }
+	    return value != null ? PrimitiveCell.bitsOf(kind, value) : 0L;
+	} finally {
+	    read.unlock();
+	}
+    }
+
     /**
      * Gets the delegate container.
      *
@@ -320,15 +688,40 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	return delegateContainer;
     }
 
+    @Override
+    public double getDouble(final NamedAttributeType<Double> namedType) {
+	return Double.longBitsToDouble(getBits(namedType, Kind.DOUBLE));
+    }
+
+    @Override
+    public int getInt(final NamedAttributeType<Integer> namedType) {
+	return (int) getBits(namedType, Kind.INT);
+    }
+
+    @Override
+    public long getLong(final NamedAttributeType<Long> namedType) {
+	return getBits(namedType, Kind.LONG);
+    }
+
     @Override
     public int hashCode() {
 	final int prime = 31;
 	int result = 1;
-	result = prime * result + attributes.hashCode();
+	result = prime * result + snapshot().hashCode();
 	result = prime * result + listeners.hashCode();
 	return result;
     }
 
+    /**
+     * Whether attributes are stored in a persistent map (lock-free reads and constant time
+     * snapshots).
+     *
+     * @return Whether this container is persistent.
+     */
+    public boolean isPersistent() {
+	return snapshots != null;
+    }
+
     @Override
     public <T> T removeAttribute(final NamedAttributeType<T> namedType) {
 	Objects.requireNonNull(namedType);
@@ -336,7 +729,7 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	write.lock();
 	try {
 	    @SuppressWarnings("unchecked")
-	    final T prev = (T) attributes.remove(namedType);
+	    final T prev = (T) unwrap(attributes.remove(namedType));
 
 	    if (prev != null) {
 		@SuppressWarnings("unchecked")
@@ -412,6 +805,44 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	}
     }
 
+    /**
+     * Resets this container (see {@link #reset(AttributeContainer)}) and leases it out. The lease
+     * expires when this container is next reset.
+     *
+     * @param delegateContainer
+     *            Delegate AttributeContainer for events (null for self).
+     * @return Lease of this container.
+     */
+    public Lease lease(final AttributeContainer delegateContainer) {
+	write.lock();
+	try {
+	    reset(delegateContainer); // Reentrant
+	    return new Lease(generation);
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    /**
+     * Removes all attributes and listeners (without firing any events) and sets a new delegate
+     * container. This allows a container to be reused (any {@link Lease} expires).
+     *
+     * @param delegateContainer
+     *            Delegate AttributeContainer for events (null for self).
+     */
+    public void reset(final AttributeContainer delegateContainer) {
+	write.lock();
+	try {
+	    generation++;
+	    attributes.clear();
+	    listeners.clear();
+	    this.delegateContainer = delegateContainer != null ? delegateContainer : this;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @SuppressWarnings("unchecked")
     @Override
     public <T> T setAttribute(final NamedAttributeType<T> namedType, final T attr) {
 	Objects.requireNonNull(namedType);
@@ -419,8 +850,16 @@ public class DefaultAttributeContainer implements AttributeContainer {
 
 	write.lock();
 	try {
-	    @SuppressWarnings("unchecked")
-	    final T prev = (T) attributes.put(namedType, attr);
+	    final Object current = attributes.get(namedType);
+	    final T prev;
+	    if (current instanceof PrimitiveCell) {
+		// Update in place
+		final PrimitiveCell cell = (PrimitiveCell) current;
+		prev = (T) cell.box();
+		cell.bits = PrimitiveCell.bitsOf(cell.kind, attr);
+	    } else {
+		prev = (T) attributes.put(namedType, attr);
+	    }
 
 	    @SuppressWarnings("unchecked")
 	    final ListenerSet<AttributeListener<T>> ls = (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
@@ -434,15 +873,100 @@ public class DefaultAttributeContainer implements AttributeContainer {
 	}
     }
 
+    /**
+     * Sets (or adds the supplied bits to) the primitive attribute and returns the previous bits.
+     */
+    @SuppressWarnings("unchecked")
+    private long setBits(final NamedAttributeType<?> namedType, final Kind kind, final long value,
+	    final boolean add) {
+	Objects.requireNonNull(namedType);
+
+	write.lock();
+	try {
+	    final Object current = attributes.get(namedType);
+	    final long prevBits;
+	    final long bits;
+	    if (current instanceof PrimitiveCell) {
+		// Update in place
+		final PrimitiveCell cell = (PrimitiveCell) current;
+		prevBits = cell.bits;
+		bits = add ? PrimitiveCell.add(kind, prevBits, value) : value;
+		cell.bits = bits;
+	    } else {
+		prevBits = current != null ? PrimitiveCell.bitsOf(kind, current) : 0L;
+		bits = add ? PrimitiveCell.add(kind, prevBits, value) : value;
+		// Persistent maps must not be mutated in place
+		attributes.put(namedType,
+			snapshots != null ? PrimitiveCell.box(kind, bits) : new PrimitiveCell(kind, bits));
+	    }
+
+	    final ListenerSet<AttributeListener<Object>> ls = (ListenerSet<AttributeListener<Object>>) listeners
+		    .get(namedType);
+	    if (ls != null) {
+		final Object prev = current != null ? PrimitiveCell.box(kind, prevBits) : null;
+		ls.getProxy().attributeAdded(new AttributeEvent<>(delegateContainer,
+			(NamedAttributeType<Object>) namedType, PrimitiveCell.box(kind, bits), prev));
+	    }
+
+	    return prevBits;
+	} finally {
+	    write.unlock();
+	}
+    }
+
     private void setDelegateContainer(final AttributeContainer delegateContainer) {
 	this.delegateContainer = Objects.requireNonNull(delegateContainer);
     }
 
+    @Override
+    public double setDouble(final NamedAttributeType<Double> namedType, final double value) {
+	return Double.longBitsToDouble(setBits(namedType, Kind.DOUBLE, Double.doubleToRawLongBits(value), false));
+    }
+
+    @Override
+    public int setInt(final NamedAttributeType<Integer> namedType, final int value) {
+	return (int) setBits(namedType, Kind.INT, value, false);
+    }
+
+    @Override
+    public long setLong(final NamedAttributeType<Long> namedType, final long value) {
+	return setBits(namedType, Kind.LONG, value, false);
+    }
+
+    /**
+     * Gets an immutable snapshot of the current attributes. This is constant time when persistent
+     * (otherwise the attributes are copied).
+     *
+     * @return Attribute snapshot.
+     *
+     * @see #isPersistent()
+     */
+    public Map<NamedAttributeType<?>, Object> snapshot() {
+	if (snapshots != null) {
+	    return snapshots.snapshot();
+	}
+
+	read.lock();
+	try {
+	    final Map<NamedAttributeType<?>, Object> copy = new HashMap<>();
+	    attributes.forEach((k, v) -> copy.put(k, unwrap(v)));
+	    return Collections.unmodifiableMap(copy);
+	} finally {
+	    read.unlock();
+	}
+    }
+
     @Override
     public Stream<?> streamAttributes() {
+	if (snapshots != null) {
+	    return snapshots.snapshot().values().stream();
+	}
+
 	read.lock();
 	try {
-	    return new ArrayList<>(attributes.values()).stream();
+	    final List<Object> values = new ArrayList<>(attributes.size());
+	    attributes.values().forEach(v -> values.add(unwrap(v)));
+	    return values.stream();
 	} finally {
 	    read.unlock();
 	}
@@ -452,4 +976,27 @@ public class DefaultAttributeContainer implements AttributeContainer {
     public String toString() {
 	return "DefaultAttributeContainer [" + getAttributeTypes() + "]";
     }
+
+    @Override
+    public <T> T updateAttribute(final NamedAttributeType<T> namedType, final UnaryOperator<T> operator) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(operator);
+
+	write.lock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T attr = operator.apply((T) unwrap(attributes.get(namedType)));
+
+	    // Reentrant
+	    if (attr == null) {
+		removeAttribute(namedType);
+	    } else {
+		setAttribute(namedType, attr);
+	    }
+
+	    return attr;
+	} finally {
+	    write.unlock();
+	}
+    }
 }
@@ -2,11 +2,25 @@ package jalse.attributes;
 
 import static jalse.attributes.Attributes.requireNotEmpty;
 
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A named {@link AttributeType} for defining name-type combinations. Attribute type names must be
- * non-empty.
+ * non-empty.<br>
+ * <br>
+ * Every name-type combination is given a small unique slot (see {@link #getSlot()}) from a global
+ * registry when first created, equal named types always have the same slot. This makes
+ * {@link #equals(Object)} a single comparison and lets containers index attributes by slot rather
+ * than hashing the (possibly parameterised) type. Slots are never released so there will be one for
+ * every distinct combination created.<br>
+ * <br>
+ * Finding the slot of a combination that already has one does not allocate and only hashes the
+ * name, so creating named types on every call (as the name based {@link AttributeContainer}
+ * methods do) is cheap.
  *
  * @author Elliot Ford
  *
@@ -17,8 +31,65 @@ import java.util.Objects;
  */
 public final class NamedAttributeType<T> {
 
+    private static class Slot {
+
+	private final AttributeType<?> type;
+	private final int slot;
+
+	private Slot(final AttributeType<?> type, final int slot) {
+	    this.type = type;
+	    this.slot = slot;
+	}
+    }
+
+    private static final ConcurrentMap<String, Slot[]> slots = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger slotCount = new AtomicInteger();
+
+    private static int find(final Slot[] named, final AttributeType<?> type) {
+	if (named != null) {
+	    for (final Slot s : named) {
+		if (s.type == type || s.type.equals(type)) {
+		    return s.slot;
+		}
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * Gets the number of slots given out so far (slots are all less than this).
+     *
+     * @return Slot count.
+     */
+    public static int getSlotCount() {
+	return slotCount.get();
+    }
+
+    private static int slotOf(final String name, final AttributeType<?> type) {
+	final int slot = find(slots.get(name), type); // Types are usually constants
+	if (slot >= 0) {
+	    return slot;
+	}
+
+	synchronized (slots) {
+	    final Slot[] named = slots.get(name);
+	    final int existing = find(named, type);
+	    if (existing >= 0) {
+		return existing;
+	    }
+
+	    final Slot created = new Slot(type, slotCount.getAndIncrement());
+	    final Slot[] added = named != null ? Arrays.copyOf(named, named.length + 1) : new Slot[1];
+	    added[added.length - 1] = created;
+	    slots.put(name, added); // Copy on write
+	    return created.slot;
+	}
+    }
+
     private final String name;
     private final AttributeType<T> type;
+    private final int slot;
 
     /**
      * Creates a new named attribute type.
@@ -31,6 +102,7 @@ public final class NamedAttributeType<T> {
     public NamedAttributeType(final String name, final AttributeType<T> type) {
 	this.name = requireNotEmpty(name);
 	this.type = Objects.requireNonNull(type);
+	slot = slotOf(name, type);
     }
 
     @Override
@@ -43,8 +115,7 @@ public final class NamedAttributeType<T> {
 	    return false;
 	}
 
-	final NamedAttributeType<?> other = (NamedAttributeType<?>) obj;
-	return name.equals(other.name) && type.equals(other.type);
+	return slot == ((NamedAttributeType<?>) obj).slot;
     }
 
     /**
@@ -56,6 +127,15 @@ public final class NamedAttributeType<T> {
 	return name;
     }
 
+    /**
+     * Gets the unique slot of this name-type combination.
+     *
+     * @return Slot (dense from zero).
+     */
+    public int getSlot() {
+	return slot;
+    }
+
     /**
      * Gets the attribute type.
      *
@@ -67,11 +147,7 @@ public final class NamedAttributeType<T> {
 
     @Override
     public int hashCode() {
-	final int prime = 31;
-	int result = 1;
-	result = prime * result + name.hashCode();
-	result = prime * result + type.hashCode();
-	return result;
+	return slot; // Unique like equals
     }
 
     @Override
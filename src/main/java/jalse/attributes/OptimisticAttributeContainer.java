@@ -0,0 +1,443 @@
+package jalse.attributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import jalse.misc.ListenerSet;
+
+/**
+ * An OptimisticAttributeContainer is a thread-safe {@link AttributeContainer} that serves
+ * {@link #getAttribute(NamedAttributeType)} (and so {@link #hasAttribute(NamedAttributeType)}) and
+ * {@link #getAttributeCount()} through optimistic {@link StampedLock} reads. Reads only take the
+ * read lock when a write overlaps them, so many threads can read the same container without
+ * contending.<br>
+ * <br>
+ * Attribute events are queued in the order the writes were applied and delivered one at a time after
+ * the write lock is released (so listeners may read or update this container). Only one thread
+ * delivers queued events at a time, so an event may be delivered by another writer's thread and may
+ * not have been delivered yet when the write that caused it returns.<br>
+ * <br>
+ * {@link #updateAttribute(NamedAttributeType, UnaryOperator)} applies the operator while holding the
+ * (non-reentrant) write lock, so the operator must not use this container: doing so throws an
+ * {@link IllegalStateException} rather than deadlocking.
+ *
+ * @author Elliot Ford
+ *
+ * @see DefaultAttributeContainer
+ *
+ */
+public class OptimisticAttributeContainer implements AttributeContainer {
+
+    private final AttributeContainer delegateContainer;
+    private final AttributeSlotMap<Object> attributes;
+    private final AttributeSlotMap<ListenerSet<?>> listeners; // Copied on write
+    private final StampedLock lock;
+    private final Queue<Runnable> events;
+    private final AtomicBoolean delivering;
+    private volatile Thread updater;
+
+    /**
+     * Creates a new optimistic attribute container with no delegate container (self).
+     */
+    public OptimisticAttributeContainer() {
+	this(null);
+    }
+
+    /**
+     * Creates a new optimistic attribute container with a delegate container.
+     *
+     * @param delegateContainer
+     *            Delegate AttributeContainer for events.
+     */
+    public OptimisticAttributeContainer(final AttributeContainer delegateContainer) {
+	this.delegateContainer = delegateContainer != null ? delegateContainer : this;
+	attributes = new AttributeSlotMap<>();
+	listeners = new AttributeSlotMap<>();
+	lock = new StampedLock();
+	events = new ConcurrentLinkedQueue<>();
+	delivering = new AtomicBoolean();
+	updater = null;
+    }
+
+    @Override
+    public <T> boolean addAttributeListener(final NamedAttributeType<T> namedType,
+	    final AttributeListener<T> listener) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(listener);
+
+	final long stamp = writeLock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final Set<AttributeListener<T>> lst = (Set<AttributeListener<T>>) listeners.get(namedType);
+	    if (lst != null && lst.contains(listener)) {
+		return false;
+	    }
+
+	    final ListenerSet<AttributeListener<T>> added = new ListenerSet<>(AttributeListener.class, lst);
+	    added.add(listener);
+	    listeners.put(namedType, added);
+
+	    return true;
+	} finally {
+	    lock.unlockWrite(stamp);
+	}
+    }
+
+    private void checkNotUpdating() {
+	if (updater == Thread.currentThread()) {
+	    throw new IllegalStateException("Container used within its own update operator");
+	}
+    }
+
+    @Override
+    public <T> boolean compareAndSetAttribute(final NamedAttributeType<T> namedType, final T expect,
+	    final T update) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(update);
+
+	final long stamp = writeLock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T current = (T) attributes.get(namedType);
+	    if (!Objects.equals(current, expect)) {
+		return false;
+	    }
+	    attributes.put(namedType, update);
+
+	    final ListenerSet<AttributeListener<T>> ls = getListeners0(namedType);
+	    if (ls != null) {
+		final AttributeEvent<T> event = new AttributeEvent<>(delegateContainer, namedType, update, current);
+		events.add(() -> ls.getProxy().attributeAdded(event));
+	    }
+	} finally {
+	    lock.unlockWrite(stamp);
+	}
+
+	deliverEvents();
+	return true;
+    }
+
+    /**
+     * Delivers queued events in order unless another thread is already delivering them (it will
+     * deliver these too).
+     */
+    private void deliverEvents() {
+	// Checked again after delivering as events may be queued after the last poll
+	while (!events.isEmpty() && delivering.compareAndSet(false, true)) {
+	    try {
+		Runnable event;
+		while ((event = events.poll()) != null) {
+		    event.run();
+		}
+	    } finally {
+		delivering.set(false);
+	    }
+	}
+    }
+
+    @Override
+    public <T> void fireAttributeChanged(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	final long stamp = readLock(); // Queued between writes
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T current = (T) attributes.get(namedType);
+	    final ListenerSet<AttributeListener<T>> ls = getListeners0(namedType);
+	    if (current == null || ls == null) {
+		return;
+	    }
+
+	    final AttributeEvent<T> event = new AttributeEvent<>(delegateContainer, namedType, current);
+	    events.add(() -> ls.getProxy().attributeChanged(event));
+	} finally {
+	    lock.unlockRead(stamp);
+	}
+
+	deliverEvents();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T getAttribute(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	final long stamp = lock.tryOptimisticRead();
+	if (stamp != 0L) {
+	    final Object value = AttributeSlotMap.get(attributes.table(), namedType.getSlot());
+	    if (lock.validate(stamp)) {
+		return (T) value;
+	    }
+	}
+
+	// A write overlapped
+	final long readStamp = readLock();
+	try {
+	    return (T) attributes.get(namedType);
+	} finally {
+	    lock.unlockRead(readStamp);
+	}
+    }
+
+    @Override
+    public int getAttributeCount() {
+	final long stamp = lock.tryOptimisticRead();
+	if (stamp != 0L) {
+	    final int count = attributes.size();
+	    if (lock.validate(stamp)) {
+		return count;
+	    }
+	}
+
+	// A write overlapped
+	final long readStamp = readLock();
+	try {
+	    return attributes.size();
+	} finally {
+	    lock.unlockRead(readStamp);
+	}
+    }
+
+    @Override
+    public <T> Set<? extends AttributeListener<T>> getAttributeListeners(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	final Set<? extends AttributeListener<T>> ls = getListeners(namedType);
+	return ls != null ? new HashSet<>(ls) : Collections.emptySet();
+    }
+
+    @Override
+    public Set<NamedAttributeType<?>> getAttributeListenerTypes() {
+	final long stamp = readLock();
+	try {
+	    return new HashSet<>(listeners.keySet());
+	} finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    @Override
+    public Set<NamedAttributeType<?>> getAttributeTypes() {
+	final long stamp = readLock();
+	try {
+	    return new HashSet<>(attributes.keySet());
+	} finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Gets the delegate container.
+     *
+     * @return Delegate event container.
+     */
+    public AttributeContainer getDelegateContainer() {
+	return delegateContainer;
+    }
+
+    private <T> ListenerSet<AttributeListener<T>> getListeners(final NamedAttributeType<T> namedType) {
+	final long stamp = readLock();
+	try {
+	    return getListeners0(namedType);
+	} finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ListenerSet<AttributeListener<T>> getListeners0(final NamedAttributeType<T> namedType) {
+	return (ListenerSet<AttributeListener<T>>) listeners.get(namedType);
+    }
+
+    private long readLock() {
+	checkNotUpdating();
+	return lock.readLock();
+    }
+
+    @Override
+    public <T> T removeAttribute(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	final T prev;
+
+	final long stamp = writeLock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T removed = (T) attributes.remove(namedType);
+	    if (removed == null) {
+		return null;
+	    }
+	    prev = removed;
+
+	    final ListenerSet<AttributeListener<T>> ls = getListeners0(namedType);
+	    if (ls != null) {
+		final AttributeEvent<T> event = new AttributeEvent<>(delegateContainer, namedType, prev);
+		events.add(() -> ls.getProxy().attributeRemoved(event));
+	    }
+	} finally {
+	    lock.unlockWrite(stamp);
+	}
+
+	deliverEvents();
+	return prev;
+    }
+
+    @Override
+    public <T> boolean removeAttributeListener(final NamedAttributeType<T> namedType,
+	    final AttributeListener<T> listener) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(listener);
+
+	final long stamp = writeLock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final Set<AttributeListener<T>> lst = (Set<AttributeListener<T>>) listeners.get(namedType);
+	    if (lst == null || !lst.contains(listener)) {
+		return false;
+	    }
+
+	    if (lst.size() == 1) {
+		// No more listeners
+		listeners.remove(namedType);
+	    } else {
+		final ListenerSet<AttributeListener<T>> removed = new ListenerSet<>(AttributeListener.class, lst);
+		removed.remove(listener);
+		listeners.put(namedType, removed);
+	    }
+
+	    return true;
+	} finally {
+	    lock.unlockWrite(stamp);
+	}
+    }
+
+    @Override
+    public void removeAttributeListeners() {
+	final long stamp = writeLock();
+	try {
+	    listeners.clear();
+	} finally {
+	    lock.unlockWrite(stamp);
+	}
+    }
+
+    @Override
+    public <T> void removeAttributeListeners(final NamedAttributeType<T> namedType) {
+	Objects.requireNonNull(namedType);
+
+	final long stamp = writeLock();
+	try {
+	    listeners.remove(namedType);
+	} finally {
+	    lock.unlockWrite(stamp);
+	}
+    }
+
+    @Override
+    public void removeAttributes() {
+	getAttributeTypes().forEach(this::removeAttribute);
+    }
+
+    @Override
+    public <T> T setAttribute(final NamedAttributeType<T> namedType, final T attr) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(attr);
+
+	final T prev;
+
+	final long stamp = writeLock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T replaced = (T) attributes.put(namedType, attr);
+	    prev = replaced;
+
+	    final ListenerSet<AttributeListener<T>> ls = getListeners0(namedType);
+	    if (ls != null) {
+		final AttributeEvent<T> event = new AttributeEvent<>(delegateContainer, namedType, attr, prev);
+		events.add(() -> ls.getProxy().attributeAdded(event));
+	    }
+	} finally {
+	    lock.unlockWrite(stamp);
+	}
+
+	deliverEvents();
+	return prev;
+    }
+
+    @Override
+    public Stream<?> streamAttributes() {
+	final List<Object> values;
+
+	final long stamp = readLock();
+	try {
+	    values = new ArrayList<>(attributes.values());
+	} finally {
+	    lock.unlockRead(stamp);
+	}
+
+	return values.stream();
+    }
+
+    @Override
+    public String toString() {
+	return "OptimisticAttributeContainer [" + getAttributeTypes() + "]";
+    }
+
+    @Override
+    public <T> T updateAttribute(final NamedAttributeType<T> namedType, final UnaryOperator<T> operator) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(operator);
+
+	final T attr;
+
+	final long stamp = writeLock();
+	try {
+	    @SuppressWarnings("unchecked")
+	    final T prev = (T) attributes.get(namedType);
+
+	    updater = Thread.currentThread(); // Operator must not use this container
+	    try {
+		attr = operator.apply(prev);
+	    } finally {
+		updater = null;
+	    }
+
+	    if (attr != null) {
+		attributes.put(namedType, attr);
+	    } else if (prev != null) {
+		attributes.remove(namedType);
+	    } else {
+		return null; // Still absent
+	    }
+
+	    final ListenerSet<AttributeListener<T>> ls = getListeners0(namedType);
+	    if (ls != null && attr != null) {
+		final AttributeEvent<T> event = new AttributeEvent<>(delegateContainer, namedType, attr, prev);
+		events.add(() -> ls.getProxy().attributeAdded(event));
+	    } else if (ls != null) {
+		final AttributeEvent<T> event = new AttributeEvent<>(delegateContainer, namedType, prev);
+		events.add(() -> ls.getProxy().attributeRemoved(event));
+	    }
+	} finally {
+	    lock.unlockWrite(stamp);
+	}
+
+	deliverEvents();
+	return attr;
+    }
+
+    private long writeLock() {
+	checkNotUpdating();
+	return lock.writeLock();
+    }
+}
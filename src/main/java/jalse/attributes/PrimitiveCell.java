@@ -0,0 +1,92 @@
+package jalse.attributes;
+
+/**
+ * A mutable unboxed {@code int}, {@code long} or {@code double} attribute value. The value is kept
+ * as raw {@code long} bits so updating it does not allocate. Cells are equal when they are of the
+ * same kind and have the same bits.
+ *
+ * @author Elliot Ford
+ *
+ * @see DefaultAttributeContainer
+ *
+ */
+final class PrimitiveCell {
+
+    enum Kind {
+
+	DOUBLE, INT, LONG
+    }
+
+    /**
+     * Adds the bits of two values of the same kind ({@code int} addition overflows as an
+     * {@code int}).
+     */
+    static long add(final Kind kind, final long bits, final long delta) {
+	switch (kind) {
+	case DOUBLE:
+	    return Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + Double.longBitsToDouble(delta));
+	case INT:
+	    return (int) bits + (int) delta;
+	default:
+	    return bits + delta;
+	}
+    }
+
+    static long bitsOf(final Kind kind, final Object value) {
+	switch (kind) {
+	case DOUBLE:
+	    return Double.doubleToRawLongBits((Double) value);
+	case INT:
+	    return (Integer) value;
+	default:
+	    return (Long) value;
+	}
+    }
+
+    static Object box(final Kind kind, final long bits) {
+	switch (kind) {
+	case DOUBLE:
+	    return Double.longBitsToDouble(bits);
+	case INT:
+	    return (int) bits;
+	default:
+	    return bits;
+	}
+    }
+
+    final Kind kind;
+    long bits;
+
+    PrimitiveCell(final Kind kind, final long bits) {
+	this.kind = kind;
+	this.bits = bits;
+    }
+
+    Object box() {
+	return box(kind, bits);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+	if (obj == this) {
+	    return true;
+	}
+
+	if (!(obj instanceof PrimitiveCell)) {
+	    return false;
+	}
+
+	final PrimitiveCell other = (PrimitiveCell) obj;
+	return kind == other.kind && bits == other.bits;
+    }
+
+    @Override
+    public int hashCode() {
+	return box().hashCode(); // Same as the boxed value
+    }
+
+    @Override
+    public String toString() {
+	return String.valueOf(box());
+    }
+}
@@ -0,0 +1,227 @@
+package jalse.entities;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import jalse.attributes.AttributeContainer;
+import jalse.attributes.AttributeEvent;
+import jalse.attributes.AttributeListener;
+import jalse.attributes.NamedAttributeType;
+
+/**
+ * A thread-safe index of entities by the value of an attribute. This listens to the attribute of
+ * every entity within a container so the entities with a value (or range of values when sorted)
+ * can be found without reading the attributes of every entity.<br>
+ * <br>
+ * Indexed values are expected to be immutable: a value changed in place ({@link #attributeChanged})
+ * is re-indexed by searching for the entity.<br>
+ * <br>
+ * Entities are added by listening to the attribute and then reading its value. The value read is
+ * ignored if an event for the entity is handled in between (the event is as new or newer). Events
+ * for entities no longer indexed (such as through a stale reference to a killed entity) are
+ * ignored.
+ *
+ * @author Elliot Ford
+ *
+ * @param <T>
+ *            Attribute type.
+ *
+ * @see DefaultEntityContainer#addAttributeIndex(NamedAttributeType)
+ * @see DefaultEntityContainer#addSortedAttributeIndex(NamedAttributeType)
+ */
+class AttributeValueIndex<T> implements AttributeListener<T> {
+
+    private final NamedAttributeType<T> namedType;
+    private final Map<T, Set<Entity>> entities;
+    private final Map<Entity, T> values;
+    private final Set<Entity> tracked; // Listening
+    private final Set<Entity> adding; // Listening but not yet read
+    private final Lock read;
+    private final Lock write;
+
+    AttributeValueIndex(final NamedAttributeType<T> namedType, final boolean sorted) {
+	this.namedType = Objects.requireNonNull(namedType);
+	entities = sorted ? new TreeMap<>() : new HashMap<>();
+	values = new HashMap<>();
+	tracked = new HashSet<>();
+	adding = new HashSet<>();
+	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+	read = rwLock.readLock();
+	write = rwLock.writeLock();
+    }
+
+    /**
+     * Starts indexing the entity (by its current value).
+     */
+    void add(final Entity e) {
+	write.lock();
+	try {
+	    tracked.add(e);
+	    adding.add(e);
+	} finally {
+	    write.unlock();
+	}
+
+	e.addAttributeListener(namedType, this); // Listen first so no update is missed
+	final T value = e.getAttribute(namedType);
+
+	write.lock();
+	try {
+	    if (adding.remove(e) && value != null) { // Otherwise an event was handled
+		index(e, value);
+	    }
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public void attributeAdded(final AttributeEvent<T> event) {
+	final AttributeContainer container = event.getContainer();
+	if (container instanceof Entity) {
+	    update((Entity) container, event.getValue());
+	}
+    }
+
+    @Override
+    public void attributeChanged(final AttributeEvent<T> event) {
+	final AttributeContainer container = event.getContainer();
+	if (container instanceof Entity) {
+	    update((Entity) container, event.getValue()); // Searches if changed in place
+	}
+    }
+
+    @Override
+    public void attributeRemoved(final AttributeEvent<T> event) {
+	final AttributeContainer container = event.getContainer();
+	if (container instanceof Entity) {
+	    update((Entity) container, null);
+	}
+    }
+
+    /**
+     * Gets the entities with the value.
+     */
+    Set<Entity> find(final T value) {
+	read.lock();
+	try {
+	    final Set<Entity> found = entities.get(value);
+	    return found != null ? new HashSet<>(found) : new HashSet<>();
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    /**
+     * Gets the entities with a value from (inclusive) to (exclusive) where null is unbounded (must
+     * be sorted).
+     */
+    Set<Entity> findInRange(final T from, final T to) {
+	read.lock();
+	try {
+	    NavigableMap<T, Set<Entity>> range = (NavigableMap<T, Set<Entity>>) entities;
+	    if (from != null) {
+		range = range.tailMap(from, true);
+	    }
+	    if (to != null) {
+		range = range.headMap(to, false);
+	    }
+
+	    final Set<Entity> found = new HashSet<>();
+	    range.values().forEach(found::addAll);
+	    return found;
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    NamedAttributeType<T> getNamedType() {
+	return namedType;
+    }
+
+    private void index(final Entity e, final T value) {
+	unindex(e);
+	values.put(e, value);
+	entities.computeIfAbsent(value, k -> new HashSet<>()).add(e);
+    }
+
+    boolean isSorted() {
+	return entities instanceof NavigableMap;
+    }
+
+    /**
+     * Stops indexing the entity.
+     */
+    void remove(final Entity e) {
+	write.lock();
+	try {
+	    tracked.remove(e); // Ignore any later events
+	    adding.remove(e);
+	    unindex(e);
+	} finally {
+	    write.unlock();
+	}
+
+	if (e.hasAttributeListener(namedType, this)) { // Killed entities may have released their attributes
+	    e.removeAttributeListener(namedType, this);
+	}
+    }
+
+    private void unindex(final Entity e) {
+	final T prev = values.remove(e);
+	if (prev == null) {
+	    return;
+	}
+
+	final Set<Entity> found = entities.get(prev);
+	if (found != null && found.remove(e)) {
+	    if (found.isEmpty()) {
+		entities.remove(prev);
+	    }
+	    return;
+	}
+
+	// Value changed in place so search
+	final Iterator<Set<Entity>> it = entities.values().iterator();
+	while (it.hasNext()) {
+	    final Collection<Entity> es = it.next();
+	    if (es.remove(e)) {
+		if (es.isEmpty()) {
+		    it.remove();
+		}
+		return;
+	    }
+	}
+    }
+
+    /**
+     * Re-indexes the entity from an event (null value to unindex).
+     */
+    private void update(final Entity e, final T value) {
+	write.lock();
+	try {
+	    if (!tracked.contains(e)) {
+		return;
+	    }
+
+	    adding.remove(e); // Newer than any value being added
+	    if (value != null) {
+		index(e, value);
+	    } else {
+		unindex(e);
+	    }
+	} finally {
+	    write.unlock();
+	}
+    }
+}
@@ -2,15 +2,17 @@ package jalse.entities;
 
 import static jalse.entities.Entities.getTypeAncestry;
 import static jalse.entities.Entities.isSubtype;
-import static jalse.tags.Tags.getRootContainer;
 import static jalse.tags.Tags.getTreeDepth;
 import static jalse.tags.Tags.getTreeMember;
 import static jalse.tags.Tags.setCreated;
 import static jalse.tags.Tags.setOriginContainer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
@@ -19,18 +21,26 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import jalse.actions.Action;
 import jalse.actions.ActionContext;
 import jalse.actions.ActionEngine;
 import jalse.actions.DefaultActionScheduler;
+import jalse.actions.ForkJoinActionEngine;
 import jalse.actions.SchedulableActionContext;
 import jalse.attributes.AttributeContainer;
 import jalse.attributes.AttributeListener;
+import jalse.attributes.Attributes;
 import jalse.attributes.DefaultAttributeContainer;
 import jalse.attributes.NamedAttributeType;
+import jalse.entities.EntityVisitor.EntityVisitResult;
+import jalse.entities.EntityVisitor.WalkOrder;
 import jalse.misc.AbstractIdentifiable;
+import jalse.misc.Identifiable;
 import jalse.misc.ListenerSet;
 import jalse.tags.Created;
 import jalse.tags.OriginContainer;
@@ -43,7 +53,11 @@ import jalse.tags.TreeMember;
 /**
  * A simple yet fully featured {@link Entity} implementation.<br>
  * <br>
- * This entity can be marked as alive ({@link #markAsAlive()}) or dead ({@link #markAsDead()}).
+ * This entity can be marked as alive ({@link #markAsAlive()}) or dead ({@link #markAsDead()}).<br>
+ * <br>
+ * The child entity container, action scheduler, type listeners and marked types are only created
+ * when they are first needed (so leaf entities without listeners or scheduled actions stay small).
+ * Until then {@link #entities} and {@link #scheduler} are null.
  *
  * @author Elliot Ford
  *
@@ -62,27 +76,45 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
     protected EntityContainer container;
 
     /**
-     * Child entities.
+     * Child entities (created on first use).
+     */
+    protected volatile DefaultEntityContainer entities;
+
+    /**
+     * Associated attributes (empty once released).
      */
-    protected final DefaultEntityContainer entities;
+    protected volatile AttributeContainer attributes;
 
     /**
-     * Associated attributes.
+     * Self action scheduler (created on first use).
      */
-    protected final DefaultAttributeContainer attributes;
+    protected volatile DefaultActionScheduler<Entity> scheduler;
 
     /**
-     * Self action scheduler.
+     * Current state information (null once released).
      */
-    protected final DefaultActionScheduler<Entity> scheduler;
+    protected volatile TagTypeSet tags;
 
     /**
-     * Current state information.
+     * Container currently holding this entity (guarded by this for tree counts).
      */
-    protected final TagTypeSet tags;
+    DefaultEntityContainer owner;
 
-    private final ListenerSet<EntityTypeListener> listeners;
-    private final Set<Class<? extends Entity>> types;
+    /**
+     * Cached root container (this if there is no container).
+     */
+    private volatile EntityContainer root;
+
+    /**
+     * Cached tree depth (see {@link TreeDepth}).
+     */
+    private volatile int depth;
+
+    private final EntityFactory factory;
+    private volatile ActionEngine engine;
+    private ListenerSet<EntityTypeListener> listeners;
+    private Set<Class<? extends Entity>> types;
+    private EntityTypeListener typeIndex;
     private final AtomicBoolean alive;
     private final Lock read;
     private final Lock write;
@@ -98,18 +130,59 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
      *            Parent entity container.
      */
     protected DefaultEntity(final UUID id, final EntityFactory factory, final EntityContainer container) {
+	this(id, factory, container, DefaultAttributeContainer::new);
+    }
+
+    /**
+     * Creates a new default entity instance using the supplied attribute container supplier.
+     *
+     * @param id
+     *            Entity ID.
+     * @param factory
+     *            Entity factory for creating/killing child entities.
+     * @param container
+     *            Parent entity container.
+     * @param attributesSupplier
+     *            Creates the associated attribute container (supplied with this entity as the
+     *            delegate container).
+     */
+    protected DefaultEntity(final UUID id, final EntityFactory factory, final EntityContainer container,
+	    final Function<? super DefaultEntity, ? extends AttributeContainer> attributesSupplier) {
 	super(id);
+	this.factory = Objects.requireNonNull(factory);
 	this.container = container;
-	entities = new DefaultEntityContainer(factory, this);
-	attributes = new DefaultAttributeContainer(this);
+	entities = null;
+	attributes = Objects.requireNonNull(attributesSupplier.apply(this));
 	tags = new TagTypeSet();
-	scheduler = new DefaultActionScheduler<>(this);
-	listeners = new ListenerSet<>(EntityTypeListener.class);
-	types = new HashSet<>();
+	scheduler = null;
+	engine = ForkJoinActionEngine.commonPoolEngine(); // Defaults use common engine
+	listeners = null;
+	types = null;
 	alive = new AtomicBoolean();
 	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
 	read = rwLock.readLock();
 	write = rwLock.writeLock();
+	updatePosition();
+    }
+
+    @Override
+    public double addAndGetDouble(final NamedAttributeType<Double> namedType, final double delta) {
+	return attributes.addAndGetDouble(namedType, delta);
+    }
+
+    @Override
+    public int addAndGetInt(final NamedAttributeType<Integer> namedType, final int delta) {
+	return attributes.addAndGetInt(namedType, delta);
+    }
+
+    @Override
+    public long addAndGetLong(final NamedAttributeType<Long> namedType, final long delta) {
+	return attributes.addAndGetLong(namedType, delta);
+    }
+
+    @Override
+    public <T> boolean addAttributeIndex(final NamedAttributeType<T> namedType) {
+	return getOrNewEntities().addAttributeIndex(namedType);
     }
 
     @Override
@@ -126,18 +199,18 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
      */
     protected void addContainerTags() {
 	// Only add root if we aren't it
-	final RootContainer rc = getRootContainer(container);
-	if (rc != null) {
-	    tags.add(rc);
+	final UUID rootID = Identifiable.getID(root);
+	if (rootID != null) {
+	    tags.add(new RootContainer(rootID));
 	}
 
-	final TreeDepth parentDepth = getTreeDepth(container);
-	tags.add(parentDepth != null ? parentDepth.increment() : TreeDepth.ROOT);
+	final int depth = this.depth;
+	tags.add(depth > 0 ? new TreeDepth(depth) : TreeDepth.ROOT);
     }
 
     @Override
     public boolean addEntityListener(final EntityListener listener) {
-	return entities.addEntityListener(listener);
+	return getOrNewEntities().addEntityListener(listener);
     }
 
     @Override
@@ -146,12 +219,20 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 
 	write.lock();
 	try {
+	    if (listeners == null) {
+		listeners = new ListenerSet<>(EntityTypeListener.class);
+	    }
 	    return listeners.add(listener);
 	} finally {
 	    write.unlock();
 	}
     }
 
+    @Override
+    public <T extends Comparable<? super T>> boolean addSortedAttributeIndex(final NamedAttributeType<T> namedType) {
+	return getOrNewEntities().addSortedAttributeIndex(namedType);
+    }
+
     /**
      * Adds the default tags.
      *
@@ -170,12 +251,35 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 	 * Ensure this is called before read: If this was added after creating an entity the
 	 * listener could try and read this tag and it might not be up to date.
 	 */
-	tags.add(getTreeMember(this));
+	final TagTypeSet tags = this.tags;
+	if (tags != null) {
+	    tags.add(getTreeMember(this));
+	}
+    }
+
+    /**
+     * Binds the parent container's type index (notified of type changes).
+     *
+     * @param index
+     *            Type index listener.
+     * @return Current marked types.
+     */
+    Set<Class<? extends Entity>> bindTypeIndex(final EntityTypeListener index) {
+	write.lock();
+	try {
+	    typeIndex = index;
+	    return types != null ? new HashSet<>(types) : Collections.emptySet();
+	} finally {
+	    write.unlock();
+	}
     }
 
     @Override
     public void cancelAllScheduledForActor() {
-	scheduler.cancelAllScheduledForActor();
+	final DefaultActionScheduler<Entity> scheduler = this.scheduler;
+	if (scheduler != null) {
+	    scheduler.cancelAllScheduledForActor();
+	}
     }
 
     private void checkAlive() {
@@ -184,6 +288,28 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 	}
     }
 
+    @Override
+    public <T> boolean compareAndSetAttribute(final NamedAttributeType<T> namedType, final T expect,
+	    final T update) {
+	return attributes.compareAndSetAttribute(namedType, expect, update);
+    }
+
+    @Override
+    public <T> Set<Entity> findEntities(final NamedAttributeType<T> namedType, final T value) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(value);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.findEntities(namedType, value) : Collections.emptySet();
+    }
+
+    @Override
+    public <T extends Comparable<? super T>> Set<Entity> findEntitiesInRange(final NamedAttributeType<T> namedType,
+	    final T from, final T to) {
+	Objects.requireNonNull(namedType);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.findEntitiesInRange(namedType, from, to) : Collections.emptySet();
+    }
+
     @Override
     public <T> void fireAttributeChanged(final NamedAttributeType<T> namedType) {
 	attributes.fireAttributeChanged(namedType);
@@ -219,6 +345,22 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 	return isAlive() ? container : null;
     }
 
+    /**
+     * Gets the cached tree depth.
+     *
+     * @return Tree depth.
+     *
+     * @see TreeDepth
+     */
+    int getDepth() {
+	return depth;
+    }
+
+    @Override
+    public double getDouble(final NamedAttributeType<Double> namedType) {
+	return attributes.getDouble(namedType);
+    }
+
     /**
      * Gets the associated action engine.
      *
@@ -226,45 +368,146 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
      *         associated.
      */
     protected ActionEngine getEngine() {
-	return scheduler.getEngine();
+	return engine;
     }
 
     @Override
     public Entity getEntity(final UUID id) {
-	return entities.getEntity(id);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.getEntity(id) : null;
     }
 
     @Override
     public int getEntityCount() {
-	return entities.getEntityCount();
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.getEntityCount() : 0;
     }
 
     @Override
     public Set<UUID> getEntityIDs() {
-	return entities.getEntityIDs();
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.getEntityIDs() : Collections.emptySet();
     }
 
     @Override
     public Set<? extends EntityListener> getEntityListeners() {
-	return entities.getEntityListeners();
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.getEntityListeners() : Collections.emptySet();
     }
 
     @Override
     public Set<? extends EntityTypeListener> getEntityTypeListeners() {
 	read.lock();
 	try {
-	    return new HashSet<>(listeners);
+	    return listeners != null ? new HashSet<>(listeners) : Collections.emptySet();
 	} finally {
 	    read.unlock();
 	}
     }
 
+    /**
+     * Gets the factory that created this entity.
+     *
+     * @return Entity factory.
+     */
+    EntityFactory getFactory() {
+	return factory;
+    }
+
+    @Override
+    public int getInt(final NamedAttributeType<Integer> namedType) {
+	return attributes.getInt(namedType);
+    }
+
+    @Override
+    public long getLong(final NamedAttributeType<Long> namedType) {
+	return attributes.getLong(namedType);
+    }
+
+    /**
+     * Gets the child entity container (creating it if there is none).
+     *
+     * @return Child entities.
+     */
+    protected DefaultEntityContainer getOrNewEntities() {
+	DefaultEntityContainer entities = this.entities;
+	if (entities == null) {
+	    write.lock();
+	    try {
+		entities = this.entities;
+		if (entities == null) {
+		    final boolean persistent = factory instanceof DefaultEntityFactory
+			    && ((DefaultEntityFactory) factory).isPersistentMaps();
+		    entities = this.entities = new DefaultEntityContainer(factory, this, persistent);
+		}
+	    } finally {
+		write.unlock();
+	    }
+	}
+	return entities;
+    }
+
+    /**
+     * Gets the action scheduler (creating it if there is none).
+     *
+     * @return Self action scheduler.
+     */
+    protected DefaultActionScheduler<Entity> getOrNewScheduler() {
+	DefaultActionScheduler<Entity> scheduler = this.scheduler;
+	if (scheduler == null) {
+	    write.lock();
+	    try {
+		scheduler = this.scheduler;
+		if (scheduler == null) {
+		    scheduler = new DefaultActionScheduler<>(this);
+		    scheduler.setEngine(engine);
+		    this.scheduler = scheduler;
+		}
+	    } finally {
+		write.unlock();
+	    }
+	}
+	return scheduler;
+    }
+
     @Override
     public <T extends Tag> Set<T> getTagsOfType(final Class<T> type) {
+	final TagTypeSet tags = this.tags;
+	if (tags == null) {
+	    return Collections.emptySet();
+	}
 	addTreeMember();
 	return tags.getOfType(type);
     }
 
+    /**
+     * Gets the cached root container (kept up to date as this or any ancestor moves).
+     *
+     * @return Root container (or this if there is no container).
+     */
+    EntityContainer getRoot() {
+	return root;
+    }
+
+    int getTreeCount() {
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.getTreeCount() : 0;
+    }
+
+    @Override
+    public boolean hasAttributeIndex(final NamedAttributeType<?> namedType) {
+	Objects.requireNonNull(namedType);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null && entities.hasAttributeIndex(namedType);
+    }
+
+    @Override
+    public boolean hasSortedAttributeIndex(final NamedAttributeType<?> namedType) {
+	Objects.requireNonNull(namedType);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null && entities.hasSortedAttributeIndex(namedType);
+    }
+
     @Override
     public boolean isAlive() {
 	return alive.get();
@@ -274,7 +517,7 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
     public boolean isMarkedAsType(final Class<? extends Entity> type) {
 	read.lock();
 	try {
-	    return types.contains(type);
+	    return types != null && types.contains(type);
 	} finally {
 	    read.unlock();
 	}
@@ -287,12 +530,24 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 
     @Override
     public void killEntities() {
-	entities.killEntities();
+	final DefaultEntityContainer entities = this.entities;
+	if (entities != null) {
+	    entities.killEntities();
+	}
+    }
+
+    @Override
+    public int killEntities(final Predicate<? super Entity> filter) {
+	Objects.requireNonNull(filter);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.killEntities(filter) : 0;
     }
 
     @Override
     public boolean killEntity(final UUID id) {
-	return entities.killEntity(id);
+	Objects.requireNonNull(id);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null && entities.killEntity(id);
     }
 
     /**
@@ -321,9 +576,27 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
     @Override
     public boolean markAsType(final Class<? extends Entity> type) {
 	Objects.requireNonNull(type);
+	return markAsType(type, getTypeAncestry(type));
+    }
 
+    /**
+     * Marks the entity as the type using the already resolved type ancestry.
+     *
+     * @param type
+     *            Entity type.
+     * @param ancestry
+     *            Type ancestry of the entity type.
+     * @return Whether the entity was not already marked as the type.
+     *
+     * @see Entities#getTypeAncestry(Class)
+     */
+    boolean markAsType(final Class<? extends Entity> type, final Set<Class<? extends Entity>> ancestry) {
 	write.lock();
 	try {
+	    if (types == null) {
+		types = new HashSet<>();
+	    }
+
 	    // Add target type
 	    if (!types.add(type)) {
 		return false;
@@ -331,7 +604,7 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 
 	    // Add missing ancestors
 	    final Set<Class<? extends Entity>> addedAncestors = new HashSet<>();
-	    for (final Class<? extends Entity> at : getTypeAncestry(type)) {
+	    for (final Class<? extends Entity> at : ancestry) {
 		if (types.add(at)) {
 		    // Missing ancestor
 		    addedAncestors.add(at);
@@ -339,7 +612,13 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 	    }
 
 	    // Trigger change
-	    listeners.getProxy().entityMarkedAsType(new EntityTypeEvent(this, type, addedAncestors));
+	    final EntityTypeEvent event = new EntityTypeEvent(this, type, addedAncestors);
+	    if (listeners != null) {
+		listeners.getProxy().entityMarkedAsType(event);
+	    }
+	    if (typeIndex != null) {
+		typeIndex.entityMarkedAsType(event);
+	    }
 
 	    return true;
 	} finally {
@@ -350,25 +629,64 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
     @Override
     public SchedulableActionContext<Entity> newContextForActor(final Action<Entity> action) {
 	checkAlive();
-	return scheduler.newContextForActor(action);
+	return getOrNewScheduler().newContextForActor(action);
+    }
+
+    @Override
+    public List<Entity> newEntities(final int count, final AttributeContainer sourceContainer) {
+	checkAlive();
+	return getOrNewEntities().newEntities(count, sourceContainer);
+    }
+
+    @Override
+    public <T extends Entity> List<T> newEntities(final int count, final Class<T> type,
+	    final AttributeContainer sourceContainer) {
+	checkAlive();
+	return getOrNewEntities().newEntities(count, type, sourceContainer);
+    }
+
+    @Override
+    public Entity newEntity(final AttributeContainer sourceContainer) {
+	checkAlive();
+	return getOrNewEntities().newEntity(sourceContainer);
+    }
+
+    @Override
+    public <T extends Entity> T newEntity(final Class<T> type, final AttributeContainer sourceContainer) {
+	checkAlive();
+	return getOrNewEntities().newEntity(type, sourceContainer);
     }
 
     @Override
     public Entity newEntity(final UUID id, final AttributeContainer sourceContainer) {
 	checkAlive();
-	return entities.newEntity(id, sourceContainer);
+	return getOrNewEntities().newEntity(id, sourceContainer);
     }
 
     @Override
     public <T extends Entity> T newEntity(final UUID id, final Class<T> type,
 	    final AttributeContainer sourceContainer) {
 	checkAlive();
-	return entities.newEntity(id, type, sourceContainer);
+	return getOrNewEntities().newEntity(id, type, sourceContainer);
     }
 
     @Override
     public boolean receiveEntity(final Entity e) {
-	return entities.receiveEntity(e);
+	return getOrNewEntities().receiveEntity(e);
+    }
+
+    /**
+     * Releases the attribute container and tag set of this dead entity so the attribute container
+     * can be reused. The entity will have no attributes (they can no longer be set) and no tags.
+     *
+     * @see Attributes#EMPTY_ATTRIBUTECONTAINER
+     */
+    protected void releaseParts() {
+	if (isAlive()) {
+	    throw new IllegalStateException(String.format("Entity %s is still alive", id));
+	}
+	attributes = Attributes.EMPTY_ATTRIBUTECONTAINER;
+	tags = null;
     }
 
     @Override
@@ -382,6 +700,13 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 	return attributes.removeAttributeListener(namedType, listener);
     }
 
+    @Override
+    public boolean removeAttributeIndex(final NamedAttributeType<?> namedType) {
+	Objects.requireNonNull(namedType);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null && entities.removeAttributeIndex(namedType);
+    }
+
     @Override
     public void removeAttributeListeners() {
 	attributes.removeAttributeListeners();
@@ -412,12 +737,17 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 
     @Override
     public boolean removeEntityListener(final EntityListener listener) {
-	return entities.removeEntityListener(listener);
+	Objects.requireNonNull(listener);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null && entities.removeEntityListener(listener);
     }
 
     @Override
     public void removeEntityListeners() {
-	entities.removeEntityListeners();
+	final DefaultEntityContainer entities = this.entities;
+	if (entities != null) {
+	    entities.removeEntityListeners();
+	}
     }
 
     @Override
@@ -426,7 +756,7 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 
 	write.lock();
 	try {
-	    return listeners.remove(listener);
+	    return listeners != null && listeners.remove(listener);
 	} finally {
 	    write.unlock();
 	}
@@ -436,7 +766,7 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
     public void removeEntityTypeListeners() {
 	write.lock();
 	try {
-	    listeners.clear();
+	    listeners = null;
 	} finally {
 	    write.unlock();
 	}
@@ -446,7 +776,7 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
     public ActionContext<Entity> scheduleForActor(final Action<Entity> action, final long initialDelay,
 	    final long period, final TimeUnit unit) {
 	checkAlive();
-	return scheduler.scheduleForActor(action, initialDelay, period, unit);
+	return getOrNewScheduler().scheduleForActor(action, initialDelay, period, unit);
     }
 
     @Override
@@ -463,15 +793,7 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
     protected void setContainer(final EntityContainer container) {
 	if (!Objects.equals(this.container, container)) {
 	    this.container = container;
-	    if (!isAlive()) {
-		return;
-	    }
-	    // Fix container based tags
-	    if (container == null) {
-		removeContainerTags();
-	    } else {
-		addContainerTags();
-	    }
+	    updateTreePosition(); // Fixes container based tags
 	}
     }
 
@@ -482,7 +804,42 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
      *            Engine to set.
      */
     protected void setEngine(final ActionEngine engine) {
-	scheduler.setEngine(engine);
+	write.lock();
+	try {
+	    this.engine = engine;
+	    if (scheduler != null) {
+		scheduler.setEngine(engine);
+	    }
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public double setDouble(final NamedAttributeType<Double> namedType, final double value) {
+	return attributes.setDouble(namedType, value);
+    }
+
+    @Override
+    public int setInt(final NamedAttributeType<Integer> namedType, final int value) {
+	return attributes.setInt(namedType, value);
+    }
+
+    @Override
+    public long setLong(final NamedAttributeType<Long> namedType, final long value) {
+	return attributes.setLong(namedType, value);
+    }
+
+    /**
+     * Gets an immutable snapshot of the child entities (by ID).
+     *
+     * @return Child entity snapshot.
+     *
+     * @see DefaultEntityContainer#snapshot()
+     */
+    public Map<UUID, Entity> snapshotEntities() {
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.snapshot() : Collections.emptyMap();
     }
 
     @Override
@@ -492,14 +849,28 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 
     @Override
     public Stream<Entity> streamEntities() {
-	return entities.streamEntities();
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.streamEntities() : Stream.empty();
+    }
+
+    @Override
+    public <T extends Entity> Stream<T> streamEntitiesOfType(final Class<T> type) {
+	Objects.requireNonNull(type);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.streamEntitiesOfType(type) : Stream.empty();
+    }
+
+    @Override
+    public Stream<UUID> streamEntityIDs() {
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.streamEntityIDs() : Stream.empty();
     }
 
     @Override
     public Stream<Class<? extends Entity>> streamMarkedAsTypes() {
 	read.lock();
 	try {
-	    return new ArrayList<>(types).stream();
+	    return types != null ? new ArrayList<>(types).stream() : Stream.empty();
 	} finally {
 	    read.unlock();
 	}
@@ -507,6 +878,10 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 
     @Override
     public Stream<Tag> streamTags() {
+	final TagTypeSet tags = this.tags;
+	if (tags == null) {
+	    return Stream.empty();
+	}
 	addTreeMember();
 	return tags.stream();
     }
@@ -516,21 +891,114 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 	return container.transferEntity(id, destination);
     }
 
+    @Override
+    public Set<UUID> transferEntities(final Set<UUID> entityIDs, final EntityContainer destination) {
+	Objects.requireNonNull(entityIDs);
+	Objects.requireNonNull(destination);
+	final DefaultEntityContainer entities = this.entities;
+	return entities != null ? entities.transferEntities(entityIDs, destination) : new HashSet<>(entityIDs);
+    }
+
     @Override
     public boolean transferEntity(final UUID id, final EntityContainer destination) {
-	return entities.transferEntity(id, destination);
+	return getOrNewEntities().transferEntity(id, destination);
+    }
+
+    /**
+     * Unbinds the type index (if it is still bound).
+     *
+     * @param index
+     *            Type index listener.
+     * @return Current marked types.
+     */
+    Set<Class<? extends Entity>> unbindTypeIndex(final EntityTypeListener index) {
+	write.lock();
+	try {
+	    if (typeIndex == index) {
+		typeIndex = null;
+	    }
+	    return types != null ? new HashSet<>(types) : Collections.emptySet();
+	} finally {
+	    write.unlock();
+	}
     }
 
     @Override
     public void unmarkAsAllTypes() {
 	write.lock();
 	try {
-	    new ArrayList<>(types).forEach(this::unmarkAsType);
+	    if (types != null) {
+		new ArrayList<>(types).forEach(this::unmarkAsType);
+	    }
 	} finally {
 	    write.unlock();
 	}
     }
 
+    /**
+     * Recalculates the cached root and depth from the container (fixing container based tags).
+     *
+     * @return Whether the position changed.
+     */
+    private boolean updatePosition() {
+	final EntityContainer container = this.container;
+
+	final EntityContainer root;
+	final int depth;
+	if (container == null) {
+	    root = this;
+	    depth = 0;
+	} else if (container instanceof DefaultEntity) {
+	    final DefaultEntity parent = (DefaultEntity) container;
+	    root = parent.root;
+	    depth = parent.depth + 1;
+	} else if (container instanceof Entity) {
+	    root = Entities.getRootContainer(container);
+	    final TreeDepth parentDepth = getTreeDepth(container);
+	    depth = parentDepth != null ? parentDepth.getValue() + 1 : 0;
+	} else {
+	    root = container;
+	    depth = container instanceof Identifiable ? 1 : 0;
+	}
+
+	if (root == this.root && depth == this.depth) {
+	    return false;
+	}
+
+	this.root = root;
+	this.depth = depth;
+
+	if (isAlive()) {
+	    if (container == null) {
+		removeContainerTags();
+	    } else {
+		addContainerTags();
+	    }
+	}
+
+	return true;
+    }
+
+    /**
+     * Recalculates the cached root and depth of this entity and then (if changed) of all
+     * descendants. Descendants are visited parents first so each entity only needs its container.
+     * This is also called once an entity is held by a container so a move of an ancestor that
+     * raced with the entity being added is not lost.
+     */
+    void updateTreePosition() {
+	if (!updatePosition()) {
+	    return;
+	}
+
+	Entities.walkEntityTree(this, Integer.MAX_VALUE, WalkOrder.DEPTH_FIRST, e -> {
+	    if (!(e instanceof DefaultEntity)) {
+		return EntityVisitResult.IGNORE_CHILDREN; // Unknown (walks up)
+	    }
+	    return ((DefaultEntity) e).updatePosition() ? EntityVisitResult.CONTINUE
+		    : EntityVisitResult.IGNORE_CHILDREN;
+	});
+    }
+
     @Override
     public boolean unmarkAsType(final Class<? extends Entity> type) {
 	Objects.requireNonNull(type);
@@ -538,7 +1006,7 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 	write.lock();
 	try {
 	    // Remove target type
-	    if (!types.remove(type)) {
+	    if (types == null || !types.remove(type)) {
 		return false;
 	    }
 
@@ -555,11 +1023,22 @@ public class DefaultEntity extends AbstractIdentifiable implements Entity {
 	    }
 
 	    // Trigger change
-	    listeners.getProxy().entityUnmarkedAsType(new EntityTypeEvent(this, type, removedDescendants));
+	    final EntityTypeEvent event = new EntityTypeEvent(this, type, removedDescendants);
+	    if (listeners != null) {
+		listeners.getProxy().entityUnmarkedAsType(event);
+	    }
+	    if (typeIndex != null) {
+		typeIndex.entityUnmarkedAsType(event);
+	    }
 
 	    return true;
 	} finally {
 	    write.unlock();
 	}
     }
+
+    @Override
+    public <T> T updateAttribute(final NamedAttributeType<T> namedType, final UnaryOperator<T> operator) {
+	return attributes.updateAttribute(namedType, operator);
+    }
 }
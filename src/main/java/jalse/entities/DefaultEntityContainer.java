@@ -2,27 +2,63 @@ package jalse.entities;
 
 import static jalse.attributes.Attributes.EMPTY_ATTRIBUTECONTAINER;
 import static jalse.entities.Entities.asType;
+import static jalse.entities.Entities.getProxyFactory;
+import static jalse.entities.Entities.getTypeAncestry;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import jalse.DefaultJALSE;
 import jalse.attributes.AttributeContainer;
+import jalse.attributes.NamedAttributeType;
 import jalse.misc.ListenerSet;
+import jalse.misc.SnapshotMap;
 
 /**
  * An DefaultEntityContainer is a thread-safe implementation of {@link EntityContainer}. <br>
  * <br>
  *
+ * Entities are stored within a {@link ConcurrentMap} so lookups and streams do not block (or get
+ * blocked by) updates. Streams are weakly consistent: they reflect the state of the container at
+ * some point at or since their creation. A persistent DefaultEntityContainer stores its entities
+ * within a {@link SnapshotMap} instead so {@link #snapshot()} is a constant time immutable copy
+ * (streams are then backed by the snapshot taken when they were created).<br>
+ * <br>
+ *
+ * DefaultEntityContainer keeps an index of the entities marked with each type so
+ * {@link #streamEntitiesOfType(Class)} only visits the matching entities (this is kept up to date
+ * using the type changes of {@link DefaultEntity}).<br>
+ * <br>
+ *
+ * DefaultEntityContainer keeps a count of the entities within its tree (see {@link #getTreeCount()})
+ * which is updated as entities are created, killed and transferred within it or any of its
+ * descendants.<br>
+ * <br>
+ *
+ * Transfers between two DefaultEntityContainer (or {@link DefaultEntity}) lock both containers in a
+ * fixed global order, so opposing transfers cannot deadlock.
+ * {@link #transferEntities(Set, EntityContainer)} moves the whole batch within a single acquisition
+ * of both locks and fires a single batch event.<br>
+ * <br>
+ *
  * DefaultEntityContainer can take a delegate container to supply to {@link EntityEvent}. Entity
  * updates will trigger these events using {@link EntityListener}.<br>
  * <br>
@@ -62,6 +98,7 @@ public class DefaultEntityContainer implements EntityContainer {
 	private final List<EntityStub> builderEntities;
 	private EntityFactory builderFactory;
 	private EntityContainer builderDelegateContainer;
+	private boolean builderPersistent;
 
 	/**
 	 * Creates a new Builder instance.
@@ -71,6 +108,7 @@ public class DefaultEntityContainer implements EntityContainer {
 	    builderEntities = new ArrayList<>();
 	    builderFactory = null;
 	    builderDelegateContainer = null;
+	    builderPersistent = false;
 	}
 
 	/**
@@ -93,7 +131,7 @@ public class DefaultEntityContainer implements EntityContainer {
 	public DefaultEntityContainer build() {
 	    final EntityFactory factory = builderFactory != null ? builderFactory : new DefaultEntityFactory();
 	    final DefaultEntityContainer container = new DefaultEntityContainer(factory, builderDelegateContainer,
-		    builderListeners);
+		    builderListeners, builderPersistent);
 	    builderEntities.forEach(e -> container.newEntity0(e.id, e.type, e.sourceContainer));
 	    return container;
 	}
@@ -179,14 +217,65 @@ public class DefaultEntityContainer implements EntityContainer {
 	    builderFactory = Objects.requireNonNull(factory);
 	    return this;
 	}
+
+	/**
+	 * Sets the container to store its entities in a persistent map.
+	 *
+	 * @return This builder.
+	 *
+	 * @see DefaultEntityContainer#isPersistent()
+	 */
+	public Builder setPersistent() {
+	    builderPersistent = true;
+	    return this;
+	}
+    }
+
+    private class TypeIndex implements EntityTypeListener {
+
+	@Override
+	public void entityMarkedAsType(final EntityTypeEvent event) {
+	    final UUID id = event.getEntity().getID();
+	    addTypeMember(event.getTypeChange(), id);
+	    event.getTypeChangeDependants().forEach(t -> addTypeMember(t, id));
+	}
+
+	@Override
+	public void entityUnmarkedAsType(final EntityTypeEvent event) {
+	    final UUID id = event.getEntity().getID();
+	    removeTypeMember(event.getTypeChange(), id);
+	    event.getTypeChangeDependants().forEach(t -> removeTypeMember(t, id));
+	}
+    }
+
+    private static final AtomicLong lockOrders = new AtomicLong();
+
+    private static DefaultEntityContainer containerOf(final EntityContainer container) {
+	if (container instanceof DefaultEntityContainer) {
+	    return (DefaultEntityContainer) container;
+	} else if (container instanceof DefaultJALSE) {
+	    return ((DefaultJALSE) container).getEntityContainer();
+	} else if (container instanceof Entity) {
+	    final Entity e = getProxyFactory().entityOfProxy((Entity) container); // Typed entities are proxies
+	    if (e instanceof DefaultEntity) {
+		return ((DefaultEntity) e).getOrNewEntities();
+	    }
+	}
+	return null;
     }
 
-    private final Map<UUID, Entity> entities;
+    private final ConcurrentMap<UUID, Entity> entities;
+    private final ConcurrentMap<Class<? extends Entity>, Set<UUID>> typeMembers;
+    private final TypeIndex typeIndex;
+    private final ConcurrentMap<NamedAttributeType<?>, AttributeValueIndex<?>> attributeIndexes;
+    private final AtomicInteger unindexedCount;
+    private final AtomicInteger treeCount;
     private final ListenerSet<EntityListener> listeners;
     private final EntityFactory factory;
     private final EntityContainer delegateContainer;
     private final Lock read;
     private final Lock write;
+    private final long lockOrder;
 
     /**
      * Creates an entity container with the default entity factory and no delegate container.
@@ -203,7 +292,7 @@ public class DefaultEntityContainer implements EntityContainer {
      *            Entity creation/death factory.
      */
     public DefaultEntityContainer(final EntityFactory factory) {
-	this(factory, null, null);
+	this(factory, null, null, false);
     }
 
     /**
@@ -215,14 +304,34 @@ public class DefaultEntityContainer implements EntityContainer {
      *            Delegate container for events and entity creation.
      */
     public DefaultEntityContainer(final EntityFactory factory, final EntityContainer delegateContainer) {
-	this(factory, Objects.requireNonNull(delegateContainer), null);
+	this(factory, delegateContainer, false);
+    }
+
+    /**
+     * Creates an entity container with the supplied factory and delegate container.
+     *
+     * @param factory
+     *            Entity creation/death factory.
+     * @param delegateContainer
+     *            Delegate container for events and entity creation.
+     * @param persistent
+     *            Whether to store entities in a persistent map.
+     */
+    public DefaultEntityContainer(final EntityFactory factory, final EntityContainer delegateContainer,
+	    final boolean persistent) {
+	this(factory, Objects.requireNonNull(delegateContainer), null, persistent);
     }
 
     private DefaultEntityContainer(final EntityFactory factory, final EntityContainer delegateContainer,
-	    final Set<EntityListener> listeners) {
+	    final Set<EntityListener> listeners, final boolean persistent) {
 	this.factory = Objects.requireNonNull(factory);
 	this.delegateContainer = delegateContainer != null ? delegateContainer : this;
-	entities = new HashMap<>();
+	entities = persistent ? new SnapshotMap<>() : new ConcurrentHashMap<>();
+	typeMembers = new ConcurrentHashMap<>();
+	typeIndex = new TypeIndex();
+	attributeIndexes = new ConcurrentHashMap<>();
+	unindexedCount = new AtomicInteger();
+	treeCount = new AtomicInteger();
 	this.listeners = new ListenerSet<>(EntityListener.class);
 	if (listeners != null) {
 	    this.listeners.addAll(listeners);
@@ -230,6 +339,31 @@ public class DefaultEntityContainer implements EntityContainer {
 	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
 	read = rwLock.readLock();
 	write = rwLock.writeLock();
+	lockOrder = lockOrders.incrementAndGet();
+    }
+
+    @Override
+    public <T> boolean addAttributeIndex(final NamedAttributeType<T> namedType) {
+	return addAttributeIndex(namedType, false);
+    }
+
+    private <T> boolean addAttributeIndex(final NamedAttributeType<T> namedType, final boolean sorted) {
+	Objects.requireNonNull(namedType);
+
+	write.lock(); // Entities cannot come or go
+	try {
+	    if (attributeIndexes.containsKey(namedType)) {
+		return false;
+	    }
+
+	    final AttributeValueIndex<T> index = new AttributeValueIndex<>(namedType, sorted);
+	    entities.values().forEach(index::add);
+	    attributeIndexes.put(namedType, index);
+
+	    return true;
+	} finally {
+	    write.unlock();
+	}
     }
 
     @Override
@@ -244,6 +378,40 @@ public class DefaultEntityContainer implements EntityContainer {
 	}
     }
 
+    @Override
+    public <T extends Comparable<? super T>> boolean addSortedAttributeIndex(final NamedAttributeType<T> namedType) {
+	return addAttributeIndex(namedType, true);
+    }
+
+    private void addTreeCount(final int delta) {
+	if (delta == 0) {
+	    return;
+	}
+
+	// Propagates up through each owning container
+	DefaultEntityContainer container = this;
+	while (container != null) {
+	    final EntityContainer delegate = container.delegateContainer;
+	    if (!(delegate instanceof DefaultEntity)) {
+		container.treeCount.addAndGet(delta);
+		break;
+	    }
+
+	    synchronized (delegate) { // Atomic with the owner changing
+		container.treeCount.addAndGet(delta);
+		container = ((DefaultEntity) delegate).owner;
+	    }
+	}
+    }
+
+    private void addTypeMember(final Class<? extends Entity> type, final UUID id) {
+	typeMembers.computeIfAbsent(type, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    Iterator<Entity> entityIterator() {
+	return entities.values().iterator();
+    }
+
     @Override
     public boolean equals(final Object obj) {
 	if (obj == this) {
@@ -258,6 +426,26 @@ public class DefaultEntityContainer implements EntityContainer {
 	return entities.equals(other.entities) && listeners.equals(other.listeners);
     }
 
+    @Override
+    public <T> Set<Entity> findEntities(final NamedAttributeType<T> namedType, final T value) {
+	final AttributeValueIndex<T> index = getAttributeIndex(namedType);
+	return index != null ? index.find(Objects.requireNonNull(value))
+		: EntityContainer.super.findEntities(namedType, value);
+    }
+
+    @Override
+    public <T extends Comparable<? super T>> Set<Entity> findEntitiesInRange(final NamedAttributeType<T> namedType,
+	    final T from, final T to) {
+	final AttributeValueIndex<T> index = getAttributeIndex(namedType);
+	return index != null && index.isSorted() ? index.findInRange(from, to)
+		: EntityContainer.super.findEntitiesInRange(namedType, from, to);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> AttributeValueIndex<T> getAttributeIndex(final NamedAttributeType<T> namedType) {
+	return (AttributeValueIndex<T>) attributeIndexes.get(Objects.requireNonNull(namedType));
+    }
+
     /**
      * Gets the delegate container for events and entity creation.
      *
@@ -269,34 +457,17 @@ public class DefaultEntityContainer implements EntityContainer {
 
     @Override
     public Entity getEntity(final UUID id) {
-	Objects.requireNonNull(id);
-
-	read.lock();
-	try {
-	    return entities.get(id);
-	} finally {
-	    read.unlock();
-	}
+	return entities.get(Objects.requireNonNull(id));
     }
 
     @Override
     public int getEntityCount() {
-	read.lock();
-	try {
-	    return entities.size();
-	} finally {
-	    read.unlock();
-	}
+	return entities.size();
     }
 
     @Override
     public Set<UUID> getEntityIDs() {
-	read.lock();
-	try {
-	    return new HashSet<>(entities.keySet());
-	} finally {
-	    read.unlock();
-	}
+	return new HashSet<>(entities.keySet());
     }
 
     @Override
@@ -318,6 +489,30 @@ public class DefaultEntityContainer implements EntityContainer {
 	return factory;
     }
 
+    /**
+     * Gets the number of entities within this container's tree (this container's entities and all
+     * of their descendants). This is kept up to date as entities change so does not walk the
+     * tree, but it only includes the descendants of {@link DefaultEntity}.
+     *
+     * @return Entity count (recursive).
+     *
+     * @see Entities#getEntityCountRecursively(EntityContainer)
+     */
+    public int getTreeCount() {
+	return treeCount.get();
+    }
+
+    @Override
+    public boolean hasAttributeIndex(final NamedAttributeType<?> namedType) {
+	return attributeIndexes.containsKey(Objects.requireNonNull(namedType));
+    }
+
+    @Override
+    public boolean hasSortedAttributeIndex(final NamedAttributeType<?> namedType) {
+	final AttributeValueIndex<?> index = attributeIndexes.get(Objects.requireNonNull(namedType));
+	return index != null && index.isSorted();
+    }
+
     @Override
     public int hashCode() {
 	final int prime = 31;
@@ -327,11 +522,73 @@ public class DefaultEntityContainer implements EntityContainer {
 	return result;
     }
 
+    private int index(final Entity e) {
+	attributeIndexes.values().forEach(i -> i.add(e));
+
+	if (!(e instanceof DefaultEntity)) {
+	    unindexedCount.incrementAndGet(); // Type changes are not known
+	    return 1;
+	}
+
+	final DefaultEntity de = (DefaultEntity) e;
+	final UUID id = de.getID();
+	de.bindTypeIndex(typeIndex).forEach(t -> addTypeMember(t, id));
+	de.updateTreePosition(); // Catches ancestor moves while being added
+
+	synchronized (de) { // Atomic with tree count updates
+	    de.owner = this;
+	    return de.getTreeCount() + 1;
+	}
+    }
+
+    /**
+     * Whether entities are stored in a persistent map (constant time snapshots).
+     *
+     * @return Whether this container is persistent.
+     */
+    public boolean isPersistent() {
+	return entities instanceof SnapshotMap;
+    }
+
     @Override
     public void killEntities() {
+	killEntities(e -> true);
+    }
+
+    @Override
+    public int killEntities(final Predicate<? super Entity> filter) {
+	Objects.requireNonNull(filter);
+
 	write.lock();
 	try {
-	    new ArrayList<>(entities.keySet()).forEach(this::killEntity);
+	    final List<Entity> toKill = new ArrayList<>();
+	    for (final Entity e : entities.values()) {
+		if (filter.test(e)) {
+		    toKill.add(e);
+		}
+	    }
+
+	    if (toKill.isEmpty()) {
+		return 0;
+	    }
+
+	    // Kills together (subtrees are killed per container)
+	    final List<? extends Entity> killed = factory.tryKillEntities(toKill);
+	    final List<EntityEvent> events = new ArrayList<>(killed.size());
+
+	    int removed = 0;
+	    for (final Entity e : killed) {
+		entities.remove(e.getID());
+		removed += unindex(e);
+		events.add(new EntityEvent(delegateContainer, e));
+	    }
+	    addTreeCount(-removed);
+
+	    if (!events.isEmpty()) {
+		listeners.getProxy().entitiesKilled(events);
+	    }
+
+	    return killed.size();
 	} finally {
 	    write.unlock();
 	}
@@ -349,6 +606,7 @@ public class DefaultEntityContainer implements EntityContainer {
 	    }
 
 	    entities.remove(id);
+	    addTreeCount(-unindex(e));
 	    listeners.getProxy().entityKilled(new EntityEvent(delegateContainer, e));
 
 	    return true;
@@ -357,6 +615,102 @@ public class DefaultEntityContainer implements EntityContainer {
 	}
     }
 
+    private void lockWith(final DefaultEntityContainer other) {
+	if (other == null || other == this) {
+	    write.lock();
+	} else if (lockOrder < other.lockOrder) {
+	    write.lock();
+	    other.write.lock();
+	} else {
+	    other.write.lock();
+	    write.lock();
+	}
+    }
+
+    @Override
+    public List<Entity> newEntities(final int count, final AttributeContainer sourceContainer) {
+	return newEntities0(count, null, sourceContainer);
+    }
+
+    @Override
+    public <T extends Entity> List<T> newEntities(final int count, final Class<T> type,
+	    final AttributeContainer sourceContainer) {
+	Objects.requireNonNull(type);
+
+	final List<Entity> created = newEntities0(count, type, sourceContainer);
+	final List<T> wrapped = new ArrayList<>(created.size());
+	for (final Entity e : created) {
+	    wrapped.add(asType(e, type));
+	}
+	return wrapped;
+    }
+
+    private List<Entity> newEntities0(final int count, final Class<? extends Entity> type,
+	    final AttributeContainer sourceContainer) {
+	if (count < 0) {
+	    throw new IllegalArgumentException(String.format("Cannot create %d entities", count));
+	}
+	Objects.requireNonNull(sourceContainer);
+
+	// Resolve once for the whole batch
+	final Set<Class<? extends Entity>> ancestry = type != null ? getTypeAncestry(type) : null;
+
+	write.lock();
+	try {
+	    final List<UUID> ids = new ArrayList<>(count);
+	    for (int i = 0; i < count; i++) {
+		final UUID id = factory.newEntityID();
+		if (entities.containsKey(id)) {
+		    throw new IllegalArgumentException(String.format("Entity %s is already associated", id));
+		}
+		ids.add(id);
+	    }
+
+	    // Reserves IDs and limit together
+	    final List<Entity> created = new ArrayList<>(factory.newEntities(ids, delegateContainer));
+	    final List<EntityEvent> events = new ArrayList<>(created.size());
+
+	    int added = 0;
+	    for (final Entity e : created) {
+		entities.put(e.getID(), e);
+		added += index(e);
+
+		if (type != null) {
+		    if (e instanceof DefaultEntity) {
+			((DefaultEntity) e).markAsType(type, ancestry);
+		    } else {
+			e.markAsType(type);
+		    }
+		}
+
+		e.addAll(sourceContainer);
+
+		events.add(new EntityEvent(delegateContainer, e));
+	    }
+
+	    addTreeCount(added);
+
+	    if (!events.isEmpty()) {
+		listeners.getProxy().entitiesCreated(events);
+	    }
+
+	    return created;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    @Override
+    public Entity newEntity(final AttributeContainer sourceContainer) {
+	return newEntity0(factory.newEntityID(), null, sourceContainer);
+    }
+
+    @Override
+    public <T extends Entity> T newEntity(final Class<T> type, final AttributeContainer sourceContainer) {
+	Objects.requireNonNull(type);
+	return asType(newEntity0(factory.newEntityID(), type, sourceContainer), type);
+    }
+
     @Override
     public Entity newEntity(final UUID id, final AttributeContainer sourceContainer) {
 	return newEntity0(id, null, sourceContainer);
@@ -383,6 +737,7 @@ public class DefaultEntityContainer implements EntityContainer {
 
 	    e = factory.newEntity(id, delegateContainer);
 	    entities.put(id, e);
+	    addTreeCount(index(e));
 
 	    if (type != null) {
 		e.markAsType(type);
@@ -406,25 +761,61 @@ public class DefaultEntityContainer implements EntityContainer {
 
 	write.lock();
 	try {
-
-	    final UUID id = e.getID();
-	    if (entities.containsKey(id)) {
+	    final List<EntityEvent> received = new ArrayList<>(1);
+	    final List<EntityEvent> movedIn = new ArrayList<>(1);
+	    if (!receiveEntity0(e, received, movedIn)) {
 		return false;
 	    }
 
-	    boolean imported = false;
-	    if (!factory.tryTakeFromTree(e, delegateContainer)) {
-		if (!factory.tryImportEntity(e, delegateContainer)) {
-		    return false;
-		}
-		imported = true;
+	    if (!received.isEmpty()) { // Otherwise transfer is triggered.
+		listeners.getProxy().entityReceived(received.get(0));
+	    } else {
+		listeners.getProxy().entityMovedIn(movedIn.get(0));
 	    }
 
-	    entities.put(id, e);
-	    if (imported) { // Otherwise transfer is triggered.
-		listeners.getProxy().entityReceived(new EntityEvent(delegateContainer, e));
+	    return true;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    private boolean receiveEntity0(final Entity e, final List<EntityEvent> received,
+	    final List<EntityEvent> movedIn) {
+	final UUID id = e.getID();
+	if (entities.containsKey(id)) {
+	    return false;
+	}
+
+	boolean imported = false;
+	if (!factory.tryTakeFromTree(e, delegateContainer)) {
+	    if (!factory.tryImportEntity(e, delegateContainer)) {
+		return false;
 	    }
+	    imported = true;
+	}
+
+	entities.put(id, e);
+	addTreeCount(index(e));
+	if (imported) {
+	    received.add(new EntityEvent(delegateContainer, e));
+	} else {
+	    movedIn.add(new EntityEvent(delegateContainer, e));
+	}
+
+	return true;
+    }
+
+    @Override
+    public boolean removeAttributeIndex(final NamedAttributeType<?> namedType) {
+	Objects.requireNonNull(namedType);
 
+	write.lock();
+	try {
+	    final AttributeValueIndex<?> index = attributeIndexes.remove(namedType);
+	    if (index == null) {
+		return false;
+	    }
+	    entities.values().forEach(index::remove);
 	    return true;
 	} finally {
 	    write.unlock();
@@ -451,16 +842,78 @@ public class DefaultEntityContainer implements EntityContainer {
 	}
     }
 
-    @Override
-    public Stream<Entity> streamEntities() {
+    private void removeTypeMember(final Class<? extends Entity> type, final UUID id) {
+	final Set<UUID> members = typeMembers.get(type);
+	if (members != null) {
+	    members.remove(id);
+	}
+    }
+
+    /**
+     * Gets an immutable snapshot of the current entities (by ID). This is constant time when
+     * persistent (otherwise the entities are copied).
+     *
+     * @return Entity snapshot.
+     *
+     * @see #isPersistent()
+     */
+    public Map<UUID, Entity> snapshot() {
+	if (entities instanceof SnapshotMap) {
+	    return ((SnapshotMap<UUID, Entity>) entities).snapshot();
+	}
+
 	read.lock();
 	try {
-	    return new ArrayList<>(entities.values()).stream();
+	    return Collections.unmodifiableMap(new HashMap<>(entities));
 	} finally {
 	    read.unlock();
 	}
     }
 
+    /**
+     * Gets a spliterator over the entities (backed by the entity map so it is not a copy).
+     *
+     * @return Entity spliterator.
+     */
+    Spliterator<Entity> spliterateEntities() {
+	return entities.values().spliterator();
+    }
+
+    @Override
+    public Stream<Entity> streamEntities() {
+	return entities.values().stream();
+    }
+
+    /**
+     * Gets a stream of entities marked with the specified type. This uses the type index (only
+     * visiting matching entities) unless the container holds entities that are not
+     * {@link DefaultEntity} (which are then filtered).
+     *
+     * @param type
+     *            Entity type to check for.
+     * @return Stream of entities marked with the type.
+     */
+    @Override
+    public <T extends Entity> Stream<T> streamEntitiesOfType(final Class<T> type) {
+	Objects.requireNonNull(type);
+
+	if (unindexedCount.get() > 0) {
+	    return EntityContainer.super.streamEntitiesOfType(type);
+	}
+
+	final Set<UUID> members = typeMembers.get(type);
+	if (members == null) {
+	    return Stream.empty();
+	}
+
+	return members.stream().map(entities::get).filter(Objects::nonNull).map(e -> asType(e, type));
+    }
+
+    @Override
+    public Stream<UUID> streamEntityIDs() {
+	return entities.keySet().stream();
+    }
+
     @Override
     public String toString() {
 	return "DefaultEntityContainer [" + getEntityIDs() + "]";
@@ -474,7 +927,9 @@ public class DefaultEntityContainer implements EntityContainer {
 	    throw new IllegalArgumentException(String.format("Cannot transfer %s to the same container", id));
 	}
 
-	write.lock();
+	final DefaultEntityContainer target = containerOf(destination);
+
+	lockWith(target);
 	try {
 	    final Entity e = entities.get(id);
 	    if (e == null) {
@@ -499,11 +954,128 @@ public class DefaultEntityContainer implements EntityContainer {
 	    }
 
 	    entities.remove(id);
+	    addTreeCount(-unindex(e));
 	    listeners.getProxy().entityTransferred(new EntityEvent(delegateContainer, e, destination));
 
 	    return true;
 	} finally {
-	    write.unlock();
+	    unlockWith(target);
+	}
+    }
+
+    /**
+     * Transfers a number of entities. When the destination is a {@link DefaultEntityContainer} (or
+     * {@link DefaultEntity}) both containers are locked once (in a global order) for the whole
+     * batch, the tree check is only performed once and a single
+     * {@link EntityListener#entitiesTransferred(List)} (and a single
+     * {@link EntityListener#entitiesReceived(List)} for entities imported from another tree or
+     * {@link EntityListener#entitiesMovedIn(List)} for the destination otherwise) is triggered.
+     * Otherwise each entity is transferred in turn. If an entity fails part way the events are still
+     * triggered for the entities already moved.
+     *
+     * @param entityIDs
+     *            Entities to transfer.
+     * @param destination
+     *            Destination to transfer to.
+     * @return Entities that could not be transferred.
+     */
+    @Override
+    public Set<UUID> transferEntities(final Set<UUID> entityIDs, final EntityContainer destination) {
+	Objects.requireNonNull(entityIDs);
+
+	if (Objects.equals(delegateContainer, Objects.requireNonNull(destination))) {
+	    throw new IllegalArgumentException("Cannot transfer to the same container");
+	}
+
+	final DefaultEntityContainer target = containerOf(destination);
+	if (target == null || target == this) {
+	    return EntityContainer.super.transferEntities(entityIDs, destination);
+	}
+
+	final Set<UUID> notTransferred = new HashSet<>();
+	final List<EntityEvent> transferred = new ArrayList<>(entityIDs.size());
+	final List<EntityEvent> received = new ArrayList<>();
+	final List<EntityEvent> movedIn = new ArrayList<>();
+
+	lockWith(target);
+	try {
+	    for (final UUID id : entityIDs) {
+		if (Objects.equals(entities.get(id), destination)) {
+		    throw new IllegalArgumentException(String.format("Cannot transfer %s to itself", id));
+		}
+	    }
+
+	    final boolean withinSameTree = factory.withinSameTree(delegateContainer, destination);
+
+	    try {
+		for (final UUID id : entityIDs) {
+		    final Entity e = entities.get(id);
+		    if (e == null || target.entities.containsKey(id)) {
+			notTransferred.add(id);
+			continue;
+		    }
+
+		    if (!withinSameTree) {
+			factory.exportEntity(e);
+		    }
+
+		    if (!target.receiveEntity0(e, received, movedIn)) {
+			if (!withinSameTree) {
+			    throw new IllegalStateException(
+				    String.format("Entity %s exported but not transferred", id));
+			}
+			notTransferred.add(id);
+			continue;
+		    }
+
+		    entities.remove(id);
+		    addTreeCount(-unindex(e));
+		    transferred.add(new EntityEvent(delegateContainer, e, destination));
+		}
+	    } finally { // Entities already moved are still reported
+		if (!received.isEmpty()) {
+		    target.listeners.getProxy().entitiesReceived(received);
+		}
+
+		if (!movedIn.isEmpty()) {
+		    target.listeners.getProxy().entitiesMovedIn(movedIn);
+		}
+
+		if (!transferred.isEmpty()) {
+		    listeners.getProxy().entitiesTransferred(transferred);
+		}
+	    }
+
+	    return notTransferred;
+	} finally {
+	    unlockWith(target);
+	}
+    }
+
+    private int unindex(final Entity e) {
+	attributeIndexes.values().forEach(i -> i.remove(e));
+
+	if (!(e instanceof DefaultEntity)) {
+	    unindexedCount.decrementAndGet();
+	    return 1;
+	}
+
+	final DefaultEntity de = (DefaultEntity) e;
+	final UUID id = de.getID();
+	de.unbindTypeIndex(typeIndex).forEach(t -> removeTypeMember(t, id));
+
+	synchronized (de) { // Atomic with tree count updates
+	    if (de.owner == this) {
+		de.owner = null;
+	    }
+	    return de.getTreeCount() + 1;
+	}
+    }
+
+    private void unlockWith(final DefaultEntityContainer other) {
+	write.unlock();
+	if (other != null && other != this) {
+	    other.write.unlock();
 	}
     }
 }
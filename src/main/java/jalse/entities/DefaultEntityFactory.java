@@ -2,18 +2,30 @@ package jalse.entities;
 
 import static jalse.actions.Actions.requireNotStopped;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import jalse.actions.ActionEngine;
 import jalse.actions.Actions;
 import jalse.actions.ForkJoinActionEngine;
+import jalse.attributes.AttributeBuffer;
+import jalse.attributes.AttributeContainer;
+import jalse.attributes.BufferedAttributeContainer;
+import jalse.attributes.ColumnarAttributeContainer;
+import jalse.attributes.ColumnarAttributeStore;
+import jalse.attributes.DefaultAttributeContainer;
+import jalse.attributes.OptimisticAttributeContainer;
 
 /**
  * A {@link EntityFactory} implementation that creates/kills {@link DefaultEntity}. Default entity
@@ -23,21 +35,130 @@ import jalse.actions.ForkJoinActionEngine;
  * This factory assumes all source containers (and when importing target containers) are genuine.
  * <br>
  * <br>
+ * There is no factory-wide lock: entity IDs are registered in independently locked stripes and the
+ * total entity limit is reserved atomically (so it is still enforced exactly). This allows
+ * unrelated subtrees to create and kill entities in parallel.<br>
+ * <br>
  * If no {@link ActionEngine} is supplied {@link ForkJoinActionEngine#commonPoolEngine()} will be
- * used.
+ * used.<br>
+ * <br>
+ * By default each entity stores its own attributes ({@link AttributeStorage#DEFAULT}). When using
+ * {@link AttributeStorage#COLUMNAR} the attributes of sibling entities are stored together in a
+ * {@link ColumnarAttributeStore} (see {@link #getAttributeColumns(EntityContainer)}). When using
+ * {@link AttributeStorage#BUFFERED} attribute writes are held back until the factory's
+ * {@link AttributeBuffer} is swapped (see {@link #getAttributeBuffer()}). When using
+ * {@link AttributeStorage#OPTIMISTIC} attribute reads are served by optimistic reads (rather than
+ * read locking).<br>
+ * <br>
+ * Entities created without an ID are given a sequential ID by default
+ * ({@link EntityIDMode#SEQUENTIAL}). These IDs are taken from a counter within this factory's
+ * namespace (see {@link #getIDNamespace()}) and are tracked as primitive longs rather than
+ * {@link UUID} instances. Each thread reserves a block of the counter at a time so creating
+ * entities in parallel does not contend. {@link EntityIDMode#RANDOM} or a custom ID supplier can be
+ * used instead.<br>
+ * <br>
+ * When a pool limit is set ({@link #setPoolLimit(int)}) the attribute containers of killed entities
+ * are reset and reused by new entities (rather than allocating new ones). Killed entities are never
+ * reused themselves so stale references stay dead (they will have no attributes or tags). Pooled
+ * attribute containers are leased ({@link DefaultAttributeContainer.Lease}) so an update through a
+ * stale reference can never reach the container's next entity. Tag sets are not pooled as a stale
+ * reference could still be reading or adding to them.<br>
+ * <br>
+ * When persistent maps are set ({@link #setPersistentMaps(boolean)}) created entities store their
+ * children and {@link DefaultAttributeContainer} attributes in persistent maps so they can be
+ * snapshot in constant time (see {@link DefaultEntity#snapshotEntities()} and
+ * {@link DefaultAttributeContainer#snapshot()}).
  *
  * @author Elliot Ford
  *
  */
 public class DefaultEntityFactory implements EntityFactory {
 
+    /**
+     * How the attributes of created entities are stored.
+     *
+     * @author Elliot Ford
+     *
+     */
+    public enum AttributeStorage {
+
+	/**
+	 * Each entity has its own {@link BufferedAttributeContainer} bound to the factory's
+	 * {@link AttributeBuffer} (reads see the last swap).
+	 */
+	BUFFERED,
+
+	/**
+	 * Each entity has its own {@link DefaultAttributeContainer}.
+	 */
+	DEFAULT,
+
+	/**
+	 * Sibling entities share a {@link ColumnarAttributeStore} (one column per attribute type).
+	 */
+	COLUMNAR,
+
+	/**
+	 * Each entity has its own {@link OptimisticAttributeContainer} (reads only lock when a write
+	 * overlaps).
+	 */
+	OPTIMISTIC
+    }
+
+    /**
+     * How the IDs of entities created without an ID are generated.
+     *
+     * @author Elliot Ford
+     *
+     */
+    public enum EntityIDMode {
+
+	/**
+	 * IDs are random.
+	 *
+	 * @see UUID#randomUUID()
+	 */
+	RANDOM,
+
+	/**
+	 * IDs are sequential within the factory namespace (most significant bits are the namespace
+	 * and least significant bits are the sequence). Each thread takes the sequence in blocks so
+	 * IDs are only in creation order per thread.
+	 */
+	SEQUENTIAL
+    }
+
+    private class BlockSequenceIDSupplier implements Supplier<UUID> {
+
+	private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[2]);
+
+	@Override
+	public UUID get() {
+	    final long[] block = blocks.get(); // Next and end
+	    if (block[0] == block[1]) {
+		block[1] = idSequence.addAndGet(ID_BLOCK_SIZE) + 1;
+		block[0] = block[1] - ID_BLOCK_SIZE;
+	    }
+	    return new UUID(idNamespace, block[0]++);
+	}
+    }
+
+    private static final int ID_BLOCK_SIZE = 1024;
+
     private static final Logger logger = Logger.getLogger(DefaultEntityFactory.class.getName());
 
     private final int entityLimit;
-    private final Set<UUID> entityIDs;
-    private ActionEngine engine;
-    private final Lock read;
-    private final Lock write;
+    private final AttributeStorage attributeStorage;
+    private final AttributeBuffer attributeBuffer;
+    private final Supplier<UUID> idSupplier;
+    private final long idNamespace;
+    private final AtomicLong idSequence;
+    private final EntityRegistry registry;
+    private final Map<EntityContainer, ColumnarAttributeStore> columns;
+    private final Deque<DefaultAttributeContainer> attributesPool;
+    private volatile int poolLimit;
+    private volatile boolean persistentMaps;
+    private volatile ActionEngine engine;
 
     /**
      * Creates a default entity factory with no entity limit.
@@ -53,44 +174,143 @@ public class DefaultEntityFactory implements EntityFactory {
      *            Maximum entity limit.
      */
     public DefaultEntityFactory(final int entityLimit) {
+	this(entityLimit, AttributeStorage.DEFAULT);
+    }
+
+    /**
+     * Creates a default entity factory with the supplied entity limit and attribute storage.
+     *
+     * @param entityLimit
+     *            Maximum entity limit.
+     * @param attributeStorage
+     *            How entity attributes are stored.
+     */
+    public DefaultEntityFactory(final int entityLimit, final AttributeStorage attributeStorage) {
+	this(entityLimit, attributeStorage, EntityIDMode.SEQUENTIAL);
+    }
+
+    /**
+     * Creates a default entity factory with the supplied entity limit, attribute storage and ID
+     * mode.
+     *
+     * @param entityLimit
+     *            Maximum entity limit.
+     * @param attributeStorage
+     *            How entity attributes are stored.
+     * @param idMode
+     *            How entity IDs are generated.
+     */
+    public DefaultEntityFactory(final int entityLimit, final AttributeStorage attributeStorage,
+	    final EntityIDMode idMode) {
+	this(entityLimit, attributeStorage, Objects.requireNonNull(idMode), null);
+    }
+
+    private DefaultEntityFactory(final int entityLimit, final AttributeStorage attributeStorage,
+	    final EntityIDMode idMode, final Supplier<UUID> idSupplier) {
 	if (entityLimit <= 0) {
 	    throw new IllegalArgumentException();
 	}
 	this.entityLimit = entityLimit;
-	entityIDs = new HashSet<>();
+	this.attributeStorage = Objects.requireNonNull(attributeStorage);
+	attributeBuffer = attributeStorage == AttributeStorage.BUFFERED ? new AttributeBuffer() : null;
+	idNamespace = ThreadLocalRandom.current().nextLong();
+	idSequence = new AtomicLong();
+	if (idSupplier != null) {
+	    this.idSupplier = idSupplier;
+	} else {
+	    this.idSupplier = idMode == EntityIDMode.RANDOM ? UUID::randomUUID : new BlockSequenceIDSupplier();
+	}
+	registry = new EntityRegistry(idNamespace, entityLimit);
+	columns = Collections.synchronizedMap(new IdentityHashMap<>());
+	attributesPool = new ArrayDeque<>();
+	poolLimit = 0;
+	persistentMaps = false;
 	engine = ForkJoinActionEngine.commonPoolEngine(); // Defaults use common engine
-	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
-	read = rwLock.readLock();
-	write = rwLock.writeLock();
+    }
+
+    /**
+     * Creates a default entity factory with the supplied entity limit, attribute storage and ID
+     * supplier.
+     *
+     * @param entityLimit
+     *            Maximum entity limit.
+     * @param attributeStorage
+     *            How entity attributes are stored.
+     * @param idSupplier
+     *            Supplier of IDs for entities created without one.
+     */
+    public DefaultEntityFactory(final int entityLimit, final AttributeStorage attributeStorage,
+	    final Supplier<UUID> idSupplier) {
+	this(entityLimit, attributeStorage, null, Objects.requireNonNull(idSupplier));
+    }
+
+    private void detachColumns(final DefaultEntity e) {
+	if (e.attributes instanceof ColumnarAttributeContainer) {
+	    ((ColumnarAttributeContainer) e.attributes).detach();
+	}
+	columns.remove(e);
     }
 
     @Override
     public void exportEntity(final Entity e) {
 	final UUID eID = e.getID();
 
-	write.lock();
-	try {
-	    if (!entityIDs.remove(eID)) {
-		throw new IllegalArgumentException(String.format("Does not know of entity %s", eID));
-	    }
+	if (!registry.remove(eID)) {
+	    throw new IllegalArgumentException(String.format("Does not know of entity %s", eID));
+	}
 
-	    final ActionEngine emptyEngine = Actions.emptyActionEngine();
+	final ActionEngine emptyEngine = Actions.emptyActionEngine();
 
-	    final DefaultEntity de = (DefaultEntity) e;
-	    de.cancelAllScheduledForActor();
-	    de.setEngine(emptyEngine);
-	    de.setContainer(null); // Remove parent reference.
-
-	    Entities.walkEntities(e).map(DefaultEntity.class::cast).forEach(ce -> {
-		entityIDs.remove(ce.getID());
-		ce.cancelAllScheduledForActor();
-		ce.setEngine(emptyEngine);
-	    });
-
-	    logger.fine(String.format("Entity %s exported", eID));
-	} finally {
-	    write.unlock();
-	}
+	final DefaultEntity de = (DefaultEntity) e;
+	de.cancelAllScheduledForActor();
+	de.setEngine(emptyEngine);
+	de.setContainer(null); // Remove parent reference.
+	detachColumns(de);
+
+	Entities.walkEntities(e).map(DefaultEntity.class::cast).forEach(ce -> {
+	    registry.remove(ce.getID());
+	    ce.cancelAllScheduledForActor();
+	    ce.setEngine(emptyEngine);
+	    columns.remove(ce); // Keeps its own columns
+	});
+
+	logger.fine(String.format("Entity %s exported", eID));
+    }
+
+    /**
+     * Gets the buffer that commits the attribute writes of created entities.
+     *
+     * @return The attribute buffer or null if not using buffered attributes.
+     *
+     * @see AttributeStorage#BUFFERED
+     */
+    public AttributeBuffer getAttributeBuffer() {
+	return attributeBuffer;
+    }
+
+    /**
+     * Gets the columnar attribute store shared by the children of the supplied parent container.
+     * This must be the parent itself (not a proxy of it).
+     *
+     * @param parent
+     *            Parent container.
+     * @return The shared attribute store or null if there is none.
+     *
+     * @see AttributeStorage#COLUMNAR
+     */
+    public ColumnarAttributeStore getAttributeColumns(final EntityContainer parent) {
+	Objects.requireNonNull(parent);
+
+	return columns.get(parent);
+    }
+
+    /**
+     * Gets how entity attributes are stored.
+     *
+     * @return Attribute storage.
+     */
+    public AttributeStorage getAttributeStorage() {
+	return attributeStorage;
     }
 
     /**
@@ -99,12 +319,24 @@ public class DefaultEntityFactory implements EntityFactory {
      * @return Action engine.
      */
     public ActionEngine getEngine() {
-	read.lock();
-	try {
-	    return engine;
-	} finally {
-	    read.unlock();
-	}
+	return engine;
+    }
+
+    /**
+     * Gets the entity with the specified ID from anywhere within the trees this factory manages.
+     * This is a constant time lookup (entities are indexed by ID as they are created, imported,
+     * exported and killed). The parent of the entity is its container.
+     *
+     * @param id
+     *            Entity ID.
+     * @return The entity or null if this factory does not know of it.
+     *
+     * @see Entity#getContainer()
+     */
+    public Entity getEntity(final UUID id) {
+	Objects.requireNonNull(id);
+
+	return registry.get(id);
     }
 
     /**
@@ -113,12 +345,7 @@ public class DefaultEntityFactory implements EntityFactory {
      * @return Entity count.
      */
     public int getEntityCount() {
-	read.lock();
-	try {
-	    return entityIDs.size();
-	} finally {
-	    read.unlock();
-	}
+	return registry.size();
     }
 
     /**
@@ -130,10 +357,62 @@ public class DefaultEntityFactory implements EntityFactory {
 	return entityLimit;
     }
 
+    /**
+     * Gets the namespace (most significant bits) of sequential entity IDs.
+     *
+     * @return ID namespace.
+     *
+     * @see EntityIDMode#SEQUENTIAL
+     */
+    public long getIDNamespace() {
+	return idNamespace;
+    }
+
+    /**
+     * Gets the supplier of IDs for entities created without one.
+     *
+     * @return ID supplier.
+     */
+    public Supplier<UUID> getIDSupplier() {
+	return idSupplier;
+    }
+
+    /**
+     * Gets the maximum number of killed entity parts kept for reuse.
+     *
+     * @return Pool limit (0 if not pooling).
+     */
+    public int getPoolLimit() {
+	return poolLimit;
+    }
+
+    /**
+     * Whether created entities store their children and attributes in persistent maps.
+     *
+     * @return Whether using persistent maps.
+     */
+    public boolean isPersistentMaps() {
+	return persistentMaps;
+    }
+
+    private void moveColumns(final DefaultEntity e, final EntityContainer target) {
+	if (attributeStorage == AttributeStorage.COLUMNAR && e.attributes instanceof ColumnarAttributeContainer) {
+	    ((ColumnarAttributeContainer) e.attributes).moveTo(newColumnsIfAbsent(target));
+	}
+    }
+
+    private ColumnarAttributeStore newColumnsIfAbsent(final EntityContainer target) {
+	return columns.computeIfAbsent(target, k -> new ColumnarAttributeStore());
+    }
+
     /**
      * This is a hook for extending this factory to allow this factory to maintain subclasses of
      * {@link DefaultEntity}. The code for this is equivalent to:
-     * {@code new DefaultEntity(id, this, target)}.
+     * {@code new DefaultEntity(id, this, target)} (unless using {@link AttributeStorage#COLUMNAR}
+     * where the entity's attributes are bound to the target's shared store,
+     * {@link AttributeStorage#BUFFERED} where they are bound to this factory's buffer,
+     * {@link AttributeStorage#OPTIMISTIC} where they are optimistically read, or pooling
+     * where the attribute container may be reused).
      *
      * @param id
      *            ID of the entity.
@@ -142,34 +421,113 @@ public class DefaultEntityFactory implements EntityFactory {
      * @return Newly created default entity.
      */
     protected DefaultEntity newDefaultEntity(final UUID id, final EntityContainer target) {
-	return new DefaultEntity(id, this, target);
+	if (attributeStorage == AttributeStorage.COLUMNAR) {
+	    final ColumnarAttributeStore store = newColumnsIfAbsent(target);
+	    return new DefaultEntity(id, this, target, e -> new ColumnarAttributeContainer(store, e));
+	} else if (attributeStorage == AttributeStorage.BUFFERED) {
+	    return new DefaultEntity(id, this, target, e -> new BufferedAttributeContainer(attributeBuffer, e));
+	} else if (attributeStorage == AttributeStorage.OPTIMISTIC) {
+	    return new DefaultEntity(id, this, target, OptimisticAttributeContainer::new);
+	}
+	return new DefaultEntity(id, this, target, this::pollAttributes);
     }
 
     @Override
-    public DefaultEntity newEntity(final UUID id, final EntityContainer target) {
-	Objects.requireNonNull(id);
+    public List<DefaultEntity> newEntities(final List<UUID> ids, final EntityContainer target) {
+	Objects.requireNonNull(ids);
 	Objects.requireNonNull(target);
 
-	write.lock();
-	try {
-	    if (entityIDs.size() >= entityLimit) {
-		throw new IllegalStateException(String.format("Entity limit of %d has been reached", entityLimit));
-	    }
+	if (!registry.tryReserve(ids.size())) {
+	    throw new IllegalStateException(String.format("Entity limit of %d would be exceeded", entityLimit));
+	}
 
-	    // Unique only
-	    if (!entityIDs.add(id)) {
+	// Register all (unique only)
+	for (int i = 0; i < ids.size(); i++) {
+	    final UUID id = ids.get(i);
+	    if (id == null || !registry.addReserved(id)) {
+		for (int j = 0; j < i; j++) {
+		    registry.remove(ids.get(j));
+		}
+		registry.release(ids.size() - i);
+		Objects.requireNonNull(id);
 		throw new IllegalArgumentException(String.format("Entity %s is already associated", id));
 	    }
+	}
 
+	final List<DefaultEntity> entities = new ArrayList<>(ids.size());
+	for (final UUID id : ids) {
 	    final DefaultEntity e = newDefaultEntity(id, target);
+	    registry.set(e);
 	    e.setEngine(engine);
 	    e.markAsAlive();
+	    entities.add(e);
+	}
+
+	logger.fine(String.format("%d entities created", entities.size()));
+
+	return entities;
+    }
+
+    @Override
+    public DefaultEntity newEntity(final UUID id, final EntityContainer target) {
+	Objects.requireNonNull(id);
+	Objects.requireNonNull(target);
+
+	if (!registry.tryReserve(1)) {
+	    throw new IllegalStateException(String.format("Entity limit of %d has been reached", entityLimit));
+	}
+
+	// Unique only
+	if (!registry.addReserved(id)) {
+	    registry.release(1);
+	    throw new IllegalArgumentException(String.format("Entity %s is already associated", id));
+	}
+
+	final DefaultEntity e = newDefaultEntity(id, target);
+	registry.set(e);
+	e.setEngine(engine);
+	e.markAsAlive();
+
+	logger.fine(String.format("Entity %s created", id));
+
+	return e;
+    }
+
+    @Override
+    public UUID newEntityID() {
+	return Objects.requireNonNull(idSupplier.get());
+    }
+
+    private AttributeContainer pollAttributes(final DefaultEntity e) {
+	if (poolLimit == 0) {
+	    return new DefaultAttributeContainer(e, persistentMaps);
+	}
+
+	DefaultAttributeContainer attributes;
+	synchronized (attributesPool) {
+	    attributes = attributesPool.poll();
+	}
+	if (attributes == null || attributes.isPersistent() != persistentMaps) {
+	    attributes = new DefaultAttributeContainer(e, persistentMaps);
+	}
+	return attributes.lease(e); // Expires when recycled
+    }
+
+    private void recycle(final DefaultEntity e) {
+	synchronized (attributesPool) {
+	    if (attributesPool.size() >= poolLimit) {
+		return;
+	    }
 
-	    logger.fine(String.format("Entity %s created", id));
+	    final AttributeContainer attributes = e.attributes;
+	    e.releaseParts();
 
-	    return e;
-	} finally {
-	    write.unlock();
+	    if (attributes instanceof DefaultAttributeContainer.Lease) {
+		final DefaultAttributeContainer container = ((DefaultAttributeContainer.Lease) attributes)
+			.getContainer();
+		container.reset(null); // Expires the lease (stale references cannot reach the container)
+		attributesPool.push(container);
+	    }
 	}
     }
 
@@ -177,91 +535,132 @@ public class DefaultEntityFactory implements EntityFactory {
     public void setEngine(final ActionEngine engine) {
 	Objects.requireNonNull(engine);
 
-	write.lock();
-	try {
-	    logger.fine(String.format("Switching engine type %s to %s", this.engine.getClass(), engine.getClass()));
-	    this.engine = requireNotStopped(engine);
-	} finally {
-	    write.unlock();
+	logger.fine(String.format("Switching engine type %s to %s", this.engine.getClass(), engine.getClass()));
+	this.engine = requireNotStopped(engine);
+    }
+
+    /**
+     * Sets whether entities created from now on store their children (and attributes when using
+     * {@link AttributeStorage#DEFAULT}) in persistent maps.
+     *
+     * @param persistentMaps
+     *            Whether to use persistent maps.
+     *
+     * @see DefaultEntityContainer#isPersistent()
+     * @see DefaultAttributeContainer#isPersistent()
+     */
+    public void setPersistentMaps(final boolean persistentMaps) {
+	this.persistentMaps = persistentMaps;
+    }
+
+    /**
+     * Sets the maximum number of killed entity attribute containers kept for reuse.<br>
+     * <br>
+     * Killed entities have no attributes or tags once they have been recycled (this includes when
+     * {@link EntityListener#entityKilled(EntityEvent)} is fired).
+     *
+     * @param poolLimit
+     *            Pool limit (0 to stop pooling).
+     */
+    public void setPoolLimit(final int poolLimit) {
+	if (poolLimit < 0) {
+	    throw new IllegalArgumentException();
+	}
+
+	synchronized (attributesPool) {
+	    this.poolLimit = poolLimit;
+	    while (attributesPool.size() > poolLimit) {
+		attributesPool.pop();
+	    }
 	}
     }
 
     @Override
     public String toString() {
-	return "DefaultEntityFactory [entityLimit=" + entityLimit + ", entityCount=" + getEntityCount() + "]";
+	return "DefaultEntityFactory [entityLimit=" + entityLimit + ", entityCount=" + getEntityCount()
+		+ ", attributeStorage=" + attributeStorage + "]";
     }
 
     @Override
     public boolean tryImportEntity(final Entity e, final EntityContainer target) {
 	final UUID eID = e.getID();
 
-	write.lock();
-	try {
-	    if (!entityIDs.add(eID)) {
-		return false;
-	    }
+	if (!registry.add(e)) {
+	    return false;
+	}
 
-	    final DefaultEntity de = (DefaultEntity) e;
-	    de.setEngine(engine);
-	    de.setContainer(target);
+	final DefaultEntity de = (DefaultEntity) e;
+	de.setEngine(engine);
+	de.setContainer(target);
+	moveColumns(de, target);
 
-	    Entities.walkEntities(de).map(DefaultEntity.class::cast).forEach(ve -> {
-		entityIDs.add(eID);
-		ve.setEngine(engine);
-	    });
+	Entities.walkEntities(de).map(DefaultEntity.class::cast).forEach(ve -> {
+	    registry.add(ve);
+	    ve.setEngine(engine);
+	    moveColumns(ve, ve.getContainer());
+	});
 
-	    logger.fine(String.format("Entity %s imported", eID));
+	logger.fine(String.format("Entity %s imported", eID));
 
-	    return true;
-	} finally {
-	    write.unlock();
-	}
+	return true;
     }
 
     @Override
-    public boolean tryKillEntity(final Entity e) {
-	final UUID eID = e.getID();
+    public List<DefaultEntity> tryKillEntities(final List<? extends Entity> entities) {
+	Objects.requireNonNull(entities);
 
-	write.lock();
-	try {
+	// Unregister all first
+	final List<DefaultEntity> killed = new ArrayList<>(entities.size());
+	for (final Entity e : entities) {
 	    final DefaultEntity de = (DefaultEntity) e;
-
-	    if (!entityIDs.remove(eID) || !de.isAlive()) { // Kill only those in need
-		return false;
+	    if (registry.remove(de.getID()) && de.isAlive()) { // Kill only those in need
+		de.markAsDead();
+		killed.add(de);
 	    }
+	}
 
-	    de.markAsDead();
+	// Nothing more can be scheduled now they are dead
+	for (final DefaultEntity de : killed) {
 	    de.cancelAllScheduledForActor();
 	    de.setEngine(null);
+	}
 
+	for (final DefaultEntity de : killed) {
 	    de.killEntities(); // Kill tree
+	    detachColumns(de);
+	    recycle(de);
+	}
 
-	    logger.fine(String.format("Entity %s killed", eID));
-
-	    return true;
-	} finally {
-	    write.unlock();
+	if (killed.size() == 1) {
+	    logger.fine(String.format("Entity %s killed", killed.get(0).getID()));
+	} else if (!killed.isEmpty()) {
+	    logger.fine(String.format("%d entities killed", killed.size()));
 	}
+
+	return killed;
+    }
+
+    @Override
+    public boolean tryKillEntity(final Entity e) {
+	Objects.requireNonNull(e);
+	return !tryKillEntities(Collections.singletonList(e)).isEmpty();
     }
 
     @Override
     public boolean tryTakeFromTree(final Entity e, final EntityContainer target) {
 	final UUID eID = e.getID();
 
-	write.lock();
-	try {
-	    if (!entityIDs.contains(eID)) {
-		return false;
-	    }
+	if (!registry.contains(eID)) {
+	    return false;
+	}
 
-	    ((DefaultEntity) e).setContainer(target);
+	final DefaultEntity de = (DefaultEntity) e;
+	de.setContainer(target);
+	moveColumns(de, target);
 
-	    logger.fine(String.format("Entity %s taken from tree", eID));
+	logger.fine(String.format("Entity %s taken from tree", eID));
 
-	    return true;
-	} finally {
-	    write.unlock();
-	}
+	return true;
     }
 
     @Override
@@ -269,11 +668,6 @@ public class DefaultEntityFactory implements EntityFactory {
 	Objects.requireNonNull(source);
 	Objects.requireNonNull(target);
 
-	read.lock();
-	try {
-	    return Entities.withinSameTree(source, target);
-	} finally {
-	    read.unlock();
-	}
+	return Entities.withinSameTree(source, target);
     }
 }
\ No newline at end of file
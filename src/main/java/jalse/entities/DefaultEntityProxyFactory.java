@@ -237,6 +237,11 @@ public class DefaultEntityProxyFactory implements EntityProxyFactory {
 	resolver.addMethodFunction(new ScheduleForActorFunction());
     }
 
+    @Override
+    public Entity entityOfProxy(final Entity e) {
+	return isProxyEntity(e) ? ((EntityProxyHandler) Proxy.getInvocationHandler(e)).getEntity() : e;
+    }
+
     @Override
     public boolean isProxyEntity(final Entity e) {
 	return Proxy.isProxyClass(e.getClass()) && Proxy.getInvocationHandler(e) instanceof EntityProxyHandler;
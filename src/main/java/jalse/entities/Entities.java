@@ -1,15 +1,11 @@
 package jalse.entities;
 
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
@@ -20,6 +16,7 @@ import java.util.stream.StreamSupport;
 import jalse.attributes.AttributeListener;
 import jalse.attributes.NamedAttributeType;
 import jalse.entities.EntityVisitor.EntityVisitResult;
+import jalse.entities.EntityVisitor.WalkOrder;
 
 /**
  * A utility for {@link Entity} related functionality (specifically around entity types).<br>
@@ -111,6 +108,16 @@ public final class Entities {
 	return getProxyFactory().proxyOfEntity(entity, type);
     }
 
+    private static DefaultEntityFactory defaultFactoryOf(final EntityContainer container) {
+	EntityFactory factory = null;
+	if (container instanceof DefaultEntityContainer) {
+	    factory = ((DefaultEntityContainer) container).getFactory();
+	} else if (container instanceof DefaultEntity) {
+	    factory = ((DefaultEntity) container).getFactory();
+	}
+	return factory instanceof DefaultEntityFactory ? (DefaultEntityFactory) factory : null;
+    }
+
     /**
      * Creates an immutable empty entity container.
      *
@@ -130,7 +137,7 @@ public final class Entities {
     }
 
     /**
-     * Walks through the entity tree looking for an entity.
+     * Looks for an entity anywhere within the container's tree.
      *
      * @param container
      *            Entity container.
@@ -138,25 +145,17 @@ public final class Entities {
      *            Entity ID to look for.
      * @return Whether the entity was found.
      *
+     * @see #getEntityRecursively(EntityContainer, UUID)
      * @see #walkEntityTree(EntityContainer, EntityVisitor)
      */
     public static boolean findEntityRecursively(final EntityContainer container, final UUID id) {
-	final AtomicBoolean found = new AtomicBoolean();
-
-	walkEntityTree(container, e -> {
-	    if (id.equals(e.getID())) {
-		found.set(true);
-		return EntityVisitResult.EXIT;
-	    } else {
-		return EntityVisitResult.CONTINUE;
-	    }
-	});
-
-	return found.get();
+	return getEntityRecursively(container, id) != null;
     }
 
     /**
-     * Gets the total entity count (recursive).
+     * Gets the total entity count (recursive). When the container is a
+     * {@link DefaultEntityContainer} or {@link DefaultEntity} using {@link DefaultEntityFactory}
+     * this uses the count kept by the container, otherwise the tree is walked.
      *
      * @param container
      *            Entity container.
@@ -164,8 +163,14 @@ public final class Entities {
      * @return Total entity count.
      *
      * @see #walkEntityTree(EntityContainer, EntityVisitor)
+     * @see DefaultEntityContainer#getTreeCount()
      */
     public static int getEntityCountRecursively(final EntityContainer container) {
+	if (defaultFactoryOf(container) != null) {
+	    return container instanceof DefaultEntity ? ((DefaultEntity) container).getTreeCount()
+		    : ((DefaultEntityContainer) container).getTreeCount();
+	}
+
 	final AtomicInteger result = new AtomicInteger();
 
 	walkEntityTree(container, e -> {
@@ -187,7 +192,9 @@ public final class Entities {
      * @see #walkEntityTree(EntityContainer, EntityVisitor)
      */
     public static Set<UUID> getEntityIDsRecursively(final EntityContainer container) {
-	final Set<UUID> result = new HashSet<>();
+	// Sized using the kept count (if there is one)
+	final int expected = defaultFactoryOf(container) != null ? getEntityCountRecursively(container) : 0;
+	final Set<UUID> result = new HashSet<>(Math.max(16, expected * 4 / 3 + 1));
 
 	walkEntityTree(container,
 		e -> result.add(e.getID()) ? EntityVisitResult.CONTINUE : EntityVisitResult.IGNORE_CHILDREN);
@@ -195,6 +202,46 @@ public final class Entities {
 	return result;
     }
 
+    /**
+     * Gets the entity with the specified ID from anywhere within the container's tree. When the
+     * container is a {@link DefaultEntityContainer} or {@link DefaultEntity} using
+     * {@link DefaultEntityFactory} this uses the factory's index (only walking up from the entity to
+     * the container), otherwise the tree is walked.
+     *
+     * @param container
+     *            Entity container.
+     * @param id
+     *            Entity ID to look for.
+     * @return The entity or null if it was not found.
+     *
+     * @see DefaultEntityFactory#getEntity(UUID)
+     */
+    public static Entity getEntityRecursively(final EntityContainer container, final UUID id) {
+	Objects.requireNonNull(container);
+	Objects.requireNonNull(id);
+
+	final DefaultEntityFactory factory = defaultFactoryOf(container);
+	if (factory != null) {
+	    final EntityContainer ancestor = container instanceof DefaultEntityContainer
+		    ? ((DefaultEntityContainer) container).getDelegateContainer() : container;
+	    final Entity e = factory.getEntity(id);
+	    return e != null && isWithin(e, ancestor) ? e : null;
+	}
+
+	final AtomicReference<Entity> found = new AtomicReference<>();
+
+	walkEntityTree(container, e -> {
+	    if (id.equals(e.getID())) {
+		found.set(e);
+		return EntityVisitResult.EXIT;
+	    } else {
+		return EntityVisitResult.CONTINUE;
+	    }
+	});
+
+	return found.get();
+    }
+
     public static EntityProxyFactory getProxyFactory() {
 	return proxyFactory.get();
     }
@@ -209,6 +256,11 @@ public final class Entities {
     public static EntityContainer getRootContainer(final EntityContainer container) {
 	Objects.requireNonNull(container);
 
+	if (container instanceof DefaultEntity) {
+	    final DefaultEntity e = (DefaultEntity) container;
+	    return e.isAlive() ? e.getRoot() : e; // Cached
+	}
+
 	if (container instanceof Entity) {
 	    final EntityContainer parent = ((Entity) container).getContainer();
 	    if (parent != null) {
@@ -298,6 +350,17 @@ public final class Entities {
 	return !ancestor.equals(descendant) && ancestor.isAssignableFrom(descendant);
     }
 
+    private static boolean isWithin(final Entity e, final EntityContainer ancestor) {
+	EntityContainer parent = e.getContainer();
+	while (parent != null) {
+	    if (parent == ancestor) {
+		return true;
+	    }
+	    parent = parent instanceof Entity ? ((Entity) parent).getContainer() : null;
+	}
+	return false;
+    }
+
     /**
      * Creates an recursive entity listener for named attribute type and the supplied attribute
      * listener supplier with Integer.MAX_VALUE recursion limit.
@@ -444,8 +507,12 @@ public final class Entities {
     }
 
     /**
-     * A lazy-walked stream of entities (recursive and breadth-first). The entire stream will not be
-     * loaded until it is iterated through.
+     * A lazy-walked stream of entities (recursive and depth-first). The entire stream will not be
+     * loaded until it is iterated through. The stream splits by subtree so can be processed in
+     * parallel. Sibling order is not defined and, unlike
+     * {@link #walkEntityTree(EntityContainer, EntityVisitor)}, the walk is not breadth-first (use
+     * {@link WalkOrder#BREADTH_FIRST} with {@link #walkEntityTree(EntityContainer, int, WalkOrder, EntityVisitor)}
+     * where breadth-first order is needed).
      *
      * This is equivalent to {@code walkEntities(container, Integer.MAX_VALUE)}
      *
@@ -458,8 +525,10 @@ public final class Entities {
     }
 
     /**
-     * A lazy-walked stream of entities (recursive and breadth-first). The entire stream will not be
-     * loaded until it is iterated through.
+     * A lazy-walked stream of entities (recursive and depth-first). The entire stream will not be
+     * loaded until it is iterated through. The stream splits by subtree so can be processed in
+     * parallel. Sibling order is not defined and the walk is not breadth-first (see
+     * {@link #walkEntities(EntityContainer)}).
      *
      * @param container
      *            Entity container.
@@ -468,22 +537,7 @@ public final class Entities {
      * @return Lazy-walked recursive stream of entities.
      */
     public static Stream<Entity> walkEntities(final EntityContainer container, final int maxDepth) {
-	final EntityTreeWalker walker = new EntityTreeWalker(container, maxDepth, e -> EntityVisitResult.CONTINUE);
-	final Iterator<Entity> iterator = new Iterator<Entity>() {
-
-	    @Override
-	    public boolean hasNext() {
-		return walker.isWalking();
-	    }
-
-	    @Override
-	    public Entity next() {
-		return walker.walk();
-	    }
-	};
-
-	final int characteristics = Spliterator.CONCURRENT | Spliterator.NONNULL | Spliterator.DISTINCT;
-	return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, characteristics), false);
+	return StreamSupport.stream(new EntityTreeSpliterator(container, maxDepth), false);
     }
 
     /**
@@ -518,10 +572,27 @@ public final class Entities {
      */
     public static void walkEntityTree(final EntityContainer container, final int maxDepth,
 	    final EntityVisitor visitor) {
-	final EntityTreeWalker walker = new EntityTreeWalker(container, maxDepth, visitor);
-	while (walker.isWalking()) {
-	    walker.walk();
-	}
+	walkEntityTree(container, maxDepth, WalkOrder.BREADTH_FIRST, visitor);
+    }
+
+    /**
+     * Walks through all entities (recursive) in the supplied order. Walking can be stopped or
+     * filtered based on the visit result returned. Visitors may start other walks.
+     *
+     * @param container
+     *            Entity container.
+     * @param maxDepth
+     *            Maximum depth of the walk.
+     * @param order
+     *            Walk order.
+     * @param visitor
+     *            Entity visitor.
+     *
+     * @see EntityVisitor
+     */
+    public static void walkEntityTree(final EntityContainer container, final int maxDepth, final WalkOrder order,
+	    final EntityVisitor visitor) {
+	EntityTreeWalker.walk(container, maxDepth, order, visitor);
     }
 
     /**
@@ -3,7 +3,9 @@ package jalse.entities;
 import static jalse.attributes.Attributes.EMPTY_ATTRIBUTECONTAINER;
 import static jalse.entities.Entities.asType;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -13,6 +15,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import jalse.attributes.AttributeContainer;
+import jalse.attributes.NamedAttributeType;
 import jalse.misc.ListenerSet;
 
 /**
@@ -29,6 +32,21 @@ import jalse.misc.ListenerSet;
  */
 public interface EntityContainer {
 
+    /**
+     * Adds an index of the entities by the value of the attribute (by equality). This is kept up to
+     * date as attributes are set or removed and as entities come and go. By default indexes are not
+     * supported (nothing is indexed).
+     *
+     * @param namedType
+     *            Attribute type to index.
+     * @return Whether the attribute was not already indexed (false if indexes are not supported).
+     *
+     * @see #findEntities(NamedAttributeType, Object)
+     */
+    default <T> boolean addAttributeIndex(final NamedAttributeType<T> namedType) {
+	return false;
+    }
+
     /**
      * Adds a listener for entities.
      *
@@ -44,6 +62,63 @@ public interface EntityContainer {
      */
     boolean addEntityListener(EntityListener listener);
 
+    /**
+     * Adds a sorted index of the entities by the value of the attribute (by natural ordering). This
+     * supports range queries as well as equality and is kept up to date as attributes are set or
+     * removed and as entities come and go. By default indexes are not supported (nothing is
+     * indexed).
+     *
+     * @param namedType
+     *            Attribute type to index.
+     * @return Whether the attribute was not already indexed (false if indexes are not supported).
+     *
+     * @see #findEntitiesInRange(NamedAttributeType, Comparable, Comparable)
+     */
+    default <T extends Comparable<? super T>> boolean addSortedAttributeIndex(final NamedAttributeType<T> namedType) {
+	return false;
+    }
+
+    /**
+     * Finds all the entities with the attribute value. By default this checks every entity.
+     *
+     * @param namedType
+     *            Attribute type to check.
+     * @param value
+     *            Value to find.
+     * @return Entities with the value.
+     *
+     * @see #addAttributeIndex(NamedAttributeType)
+     */
+    default <T> Set<Entity> findEntities(final NamedAttributeType<T> namedType, final T value) {
+	Objects.requireNonNull(namedType);
+	Objects.requireNonNull(value);
+	return streamEntities().filter(e -> value.equals(e.getAttribute(namedType))).collect(Collectors.toSet());
+    }
+
+    /**
+     * Finds all the entities with an attribute value within the range. By default this checks every
+     * entity.
+     *
+     * @param namedType
+     *            Attribute type to check.
+     * @param from
+     *            Lowest value (inclusive) or null if unbounded.
+     * @param to
+     *            Highest value (exclusive) or null if unbounded.
+     * @return Entities with a value within the range.
+     *
+     * @see #addSortedAttributeIndex(NamedAttributeType)
+     */
+    default <T extends Comparable<? super T>> Set<Entity> findEntitiesInRange(final NamedAttributeType<T> namedType,
+	    final T from, final T to) {
+	Objects.requireNonNull(namedType);
+	return streamEntities().filter(e -> {
+	    final T value = e.getAttribute(namedType);
+	    return value != null && (from == null || value.compareTo(from) >= 0)
+		    && (to == null || value.compareTo(to) < 0);
+	}).collect(Collectors.toSet());
+    }
+
     /**
      * Gets all the entities within the containers.
      *
@@ -159,6 +234,17 @@ public interface EntityContainer {
 	return getOptEntity(id).map(e -> asType(e, type));
     }
 
+    /**
+     * Checks whether the attribute is indexed.
+     *
+     * @param namedType
+     *            Attribute type to check.
+     * @return Whether there is an index for the attribute.
+     */
+    default boolean hasAttributeIndex(final NamedAttributeType<?> namedType) {
+	return false;
+    }
+
     /**
      * Checks whether the container has any entities.
      *
@@ -190,11 +276,44 @@ public interface EntityContainer {
 	return getEntityListeners().contains(listener);
     }
 
+    /**
+     * Checks whether the attribute has a sorted index (so ranges can be found using it).
+     *
+     * @param namedType
+     *            Attribute type to check.
+     * @return Whether there is a sorted index for the attribute.
+     *
+     * @see #addSortedAttributeIndex(NamedAttributeType)
+     */
+    default boolean hasSortedAttributeIndex(final NamedAttributeType<?> namedType) {
+	return false;
+    }
+
     /**
      * Kills all entities.
      */
     void killEntities();
 
+    /**
+     * Kills all entities that match the filter. Implementations may kill the entities together and
+     * fire {@link EntityListener#entitiesKilled(List)} once (by default they are killed one by one).
+     *
+     * @param filter
+     *            Entity filter.
+     * @return Number of entities killed.
+     */
+    default int killEntities(final Predicate<? super Entity> filter) {
+	Objects.requireNonNull(filter);
+
+	int killed = 0;
+	for (final UUID id : streamEntities().filter(filter).map(Entity::getID).collect(Collectors.toList())) {
+	    if (killEntity(id)) {
+		killed++;
+	    }
+	}
+	return killed;
+    }
+
     /**
      * Kills the specified entity.
      *
@@ -205,7 +324,103 @@ public interface EntityContainer {
     boolean killEntity(UUID id);
 
     /**
-     * Creates a new entity with a random ID.
+     * Creates new entities with generated IDs (see {@link #newEntity()}).
+     *
+     * @param count
+     *            Number of entities to create.
+     * @return The newly created entities.
+     * @throws IllegalStateException
+     *             If the entity limit would be reached.
+     *
+     * @see #newEntity()
+     */
+    default List<Entity> newEntities(final int count) {
+	return newEntities(count, EMPTY_ATTRIBUTECONTAINER);
+    }
+
+    /**
+     * Creates new entities with generated IDs (see {@link #newEntity()}). Each entity will have the
+     * attributes of the source container. Implementations may create the entities together and fire
+     * {@link EntityListener#entitiesCreated(List)} once (by default they are created one by one).
+     *
+     * @param count
+     *            Number of entities to create.
+     * @param sourceContainer
+     *            Source attribute container.
+     * @return The newly created entities.
+     * @throws IllegalStateException
+     *             If the entity limit would be reached.
+     *
+     * @see #newEntity(AttributeContainer)
+     */
+    default List<Entity> newEntities(final int count, final AttributeContainer sourceContainer) {
+	if (count < 0) {
+	    throw new IllegalArgumentException(String.format("Cannot create %d entities", count));
+	}
+	Objects.requireNonNull(sourceContainer);
+
+	final List<Entity> entities = new ArrayList<>(count);
+	for (int i = 0; i < count; i++) {
+	    entities.add(newEntity(sourceContainer));
+	}
+	return entities;
+    }
+
+    /**
+     * Creates new entities with generated IDs (see {@link #newEntity()}). These entities are marked
+     * as the specified entity type and then wrapped to it.
+     *
+     * @param count
+     *            Number of entities to create.
+     * @param type
+     *            Entity type.
+     * @return The newly created entities.
+     * @throws IllegalStateException
+     *             If the entity limit would be reached.
+     *
+     * @see #newEntity(Class)
+     */
+    default <T extends Entity> List<T> newEntities(final int count, final Class<T> type) {
+	return newEntities(count, type, EMPTY_ATTRIBUTECONTAINER);
+    }
+
+    /**
+     * Creates new entities with generated IDs (see {@link #newEntity()}). These entities are marked
+     * as the specified entity type and then wrapped to it. Each entity will have the attributes of
+     * the source container. Implementations may create the entities together and fire
+     * {@link EntityListener#entitiesCreated(List)} once (by default they are created one by one).
+     *
+     * @param count
+     *            Number of entities to create.
+     * @param type
+     *            Entity type.
+     * @param sourceContainer
+     *            Source attribute container.
+     * @return The newly created entities.
+     * @throws IllegalStateException
+     *             If the entity limit would be reached.
+     *
+     * @see #newEntity(Class, AttributeContainer)
+     */
+    default <T extends Entity> List<T> newEntities(final int count, final Class<T> type,
+	    final AttributeContainer sourceContainer) {
+	if (count < 0) {
+	    throw new IllegalArgumentException(String.format("Cannot create %d entities", count));
+	}
+	Objects.requireNonNull(type);
+	Objects.requireNonNull(sourceContainer);
+
+	final List<T> entities = new ArrayList<>(count);
+	for (int i = 0; i < count; i++) {
+	    entities.add(newEntity(type, sourceContainer));
+	}
+	return entities;
+    }
+
+    /**
+     * Creates a new entity with a generated ID. By default this is a random ID but implementations
+     * may generate their own ({@link DefaultEntityContainer} uses its {@link EntityFactory}, which
+     * generates sequential IDs by default).
      *
      * @return The newly created entity's ID.
      * @throws IllegalStateException
@@ -218,7 +433,7 @@ public interface EntityContainer {
     }
 
     /**
-     * Creates a new entity with a random ID.
+     * Creates a new entity with a generated ID (see {@link #newEntity()}).
      *
      * @param sourceContainer
      *            Source attribute container.
@@ -234,8 +449,8 @@ public interface EntityContainer {
     }
 
     /**
-     * Creates a new entity with a random ID. This entity is marked as the specified entity type and
-     * then wrapped to it.
+     * Creates a new entity with a generated ID (see {@link #newEntity()}). This entity is marked as
+     * the specified entity type and then wrapped to it.
      *
      * @param type
      *            Entity type.
@@ -252,8 +467,8 @@ public interface EntityContainer {
     }
 
     /**
-     * Creates a new entity with a random ID. This entity is marked as the specified entity type and
-     * then wrapped to it.
+     * Creates a new entity with a generated ID (see {@link #newEntity()}). This entity is marked as
+     * the specified entity type and then wrapped to it.
      *
      * @param type
      *            Entity type.
@@ -357,6 +572,17 @@ public interface EntityContainer {
      */
     boolean receiveEntity(Entity e);
 
+    /**
+     * Removes the index of the attribute.
+     *
+     * @param namedType
+     *            Attribute type to stop indexing.
+     * @return Whether the attribute was indexed.
+     */
+    default boolean removeAttributeIndex(final NamedAttributeType<?> namedType) {
+	return false;
+    }
+
     /**
      * Removes a entity listener.
      *
@@ -1,5 +1,7 @@
 package jalse.entities;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import jalse.actions.ActionEngine;
@@ -29,6 +31,25 @@ public interface EntityFactory {
      */
     void exportEntity(Entity e);
 
+    /**
+     * Creates new entities with the specified IDs and parent container. Implementations may check
+     * the IDs and entity limit for all of the entities before creating any (by default they are
+     * created one by one).
+     *
+     * @param ids
+     *            Entity IDs.
+     * @param target
+     *            Parent container.
+     * @return Newly created entities (in ID order).
+     */
+    default List<? extends Entity> newEntities(final List<UUID> ids, final EntityContainer target) {
+	final List<Entity> entities = new ArrayList<>(ids.size());
+	for (final UUID id : ids) {
+	    entities.add(newEntity(id, target));
+	}
+	return entities;
+    }
+
     /**
      * Creates a new entity with the specified ID and parent container.
      *
@@ -40,6 +61,17 @@ public interface EntityFactory {
      */
     Entity newEntity(UUID id, EntityContainer target);
 
+    /**
+     * Generates a new ID for an entity created without one (by default this is random).
+     *
+     * @return New entity ID.
+     *
+     * @see UUID#randomUUID()
+     */
+    default UUID newEntityID() {
+	return UUID.randomUUID();
+    }
+
     /**
      * Sets the engine to supply to new entities.
      *
@@ -68,6 +100,24 @@ public interface EntityFactory {
      */
     boolean tryKillEntity(Entity e);
 
+    /**
+     * Kills the specified entities. Implementations may kill all of the entities together (by
+     * default they are killed one by one).
+     *
+     * @param entities
+     *            Entities to kill.
+     * @return Entities that were killed.
+     */
+    default List<? extends Entity> tryKillEntities(final List<? extends Entity> entities) {
+	final List<Entity> killed = new ArrayList<>();
+	for (final Entity e : entities) {
+	    if (tryKillEntity(e)) {
+		killed.add(e);
+	    }
+	}
+	return killed;
+    }
+
     /**
      * Tries to take the entity from within the tree if possible.
      *
@@ -0,0 +1,182 @@
+package jalse.entities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A compact map of entity IDs to values. IDs within the namespace (matching most significant bits)
+ * are stored as primitive longs within an open-addressed table, all other IDs are stored as
+ * {@link UUID}.<br>
+ * <br>
+ * This is not thread-safe.
+ *
+ * @author Elliot Ford
+ *
+ * @param <V>
+ *            Value type.
+ */
+class EntityIDMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final long EMPTY = 0L;
+
+    private static int indexOf(final long key, final int mask) {
+	final long h = key * 0x9E3779B97F4A7C15L;
+	return (int) (h ^ h >>> 32) & mask;
+    }
+
+    private final long namespace;
+    private long[] keys;
+    private Object[] values;
+    private int keyCount;
+    private final Map<UUID, V> others;
+
+    EntityIDMap(final long namespace) {
+	this.namespace = namespace;
+	keys = new long[DEFAULT_CAPACITY];
+	values = new Object[DEFAULT_CAPACITY];
+	keyCount = 0;
+	others = new HashMap<>();
+    }
+
+    /**
+     * Adds the ID with the value (if the ID is not already present).
+     */
+    boolean add(final UUID id, final V value) {
+	final long key = id.getLeastSignificantBits();
+	if (!inNamespace(id, key)) {
+	    if (others.containsKey(id)) {
+		return false;
+	    }
+	    others.put(id, value);
+	    return true;
+	}
+
+	if ((keyCount + 1) * 4 > keys.length * 3) {
+	    resize(keys.length * 2);
+	}
+
+	return insert(keys, values, key, value);
+    }
+
+    boolean contains(final UUID id) {
+	final long key = id.getLeastSignificantBits();
+	if (!inNamespace(id, key)) {
+	    return others.containsKey(id);
+	}
+
+	return slotOf(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(final UUID id) {
+	final long key = id.getLeastSignificantBits();
+	if (!inNamespace(id, key)) {
+	    return others.get(id);
+	}
+
+	final int i = slotOf(key);
+	return i >= 0 ? (V) values[i] : null;
+    }
+
+    private boolean inNamespace(final UUID id, final long key) {
+	return id.getMostSignificantBits() == namespace && key != EMPTY;
+    }
+
+    private boolean insert(final long[] table, final Object[] tableValues, final long key, final Object value) {
+	final int mask = table.length - 1;
+	for (int i = indexOf(key, mask);; i = i + 1 & mask) {
+	    if (table[i] == EMPTY) {
+		table[i] = key;
+		tableValues[i] = value;
+		keyCount++;
+		return true;
+	    } else if (table[i] == key) {
+		return false;
+	    }
+	}
+    }
+
+    /**
+     * Replaces the value of an ID already present.
+     */
+    boolean replace(final UUID id, final V value) {
+	final long key = id.getLeastSignificantBits();
+	if (!inNamespace(id, key)) {
+	    if (!others.containsKey(id)) {
+		return false;
+	    }
+	    others.put(id, value);
+	    return true;
+	}
+
+	final int i = slotOf(key);
+	if (i < 0) {
+	    return false;
+	}
+	values[i] = value;
+	return true;
+    }
+
+    boolean remove(final UUID id) {
+	final long key = id.getLeastSignificantBits();
+	if (!inNamespace(id, key)) {
+	    if (!others.containsKey(id)) {
+		return false;
+	    }
+	    others.remove(id);
+	    return true;
+	}
+
+	int i = slotOf(key);
+	if (i < 0) {
+	    return false;
+	}
+
+	// Backward shift deletion (keeps probe sequences intact)
+	final int mask = keys.length - 1;
+	for (int j = i + 1 & mask; keys[j] != EMPTY; j = j + 1 & mask) {
+	    final int home = indexOf(keys[j], mask);
+	    if ((j - home & mask) >= (j - i & mask)) {
+		keys[i] = keys[j];
+		values[i] = values[j];
+		i = j;
+	    }
+	}
+	keys[i] = EMPTY;
+	values[i] = null;
+	keyCount--;
+
+	return true;
+    }
+
+    private void resize(final int capacity) {
+	final long[] oldKeys = keys;
+	final Object[] oldValues = values;
+	keys = new long[capacity];
+	values = new Object[capacity];
+	keyCount = 0;
+	for (int i = 0; i < oldKeys.length; i++) {
+	    if (oldKeys[i] != EMPTY) {
+		insert(keys, values, oldKeys[i], oldValues[i]);
+	    }
+	}
+    }
+
+    int size() {
+	return keyCount + others.size();
+    }
+
+    private int slotOf(final long key) {
+	final int mask = keys.length - 1;
+	for (int i = indexOf(key, mask);; i = i + 1 & mask) {
+	    if (keys[i] == EMPTY) {
+		return -1;
+	    } else if (keys[i] == key) {
+		return i;
+	    }
+	}
+    }
+}
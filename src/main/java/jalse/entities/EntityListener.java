@@ -1,5 +1,7 @@
 package jalse.entities;
 
+import java.util.List;
+
 /**
  * Listener for {@link Entity} creation and death. Unique {@link EntityEvent} will be supplied for
  * each trigger.
@@ -11,6 +13,71 @@ package jalse.entities;
  */
 public interface EntityListener {
 
+    /**
+     * Triggered on the creation of a batch of entities. By default this triggers
+     * {@link #entityCreated(EntityEvent)} for each event.
+     *
+     * @param events
+     *            The entity events for this trigger (in creation order).
+     *
+     * @see EntityContainer#newEntities(int, jalse.attributes.AttributeContainer)
+     */
+    default void entitiesCreated(final List<EntityEvent> events) {
+	events.forEach(this::entityCreated);
+    }
+
+    /**
+     * Triggered on the death of a batch of entities. By default this triggers
+     * {@link #entityKilled(EntityEvent)} for each event.
+     *
+     * @param events
+     *            The entity events for this trigger.
+     *
+     * @see EntityContainer#killEntities(java.util.function.Predicate)
+     */
+    default void entitiesKilled(final List<EntityEvent> events) {
+	events.forEach(this::entityKilled);
+    }
+
+    /**
+     * Triggered on a batch of entities being moved in from within the same tree. By default this
+     * triggers {@link #entityMovedIn(EntityEvent)} for each event.
+     *
+     * @param events
+     *            The entity events for this trigger.
+     *
+     * @see EntityContainer#transferEntities(java.util.Set, EntityContainer)
+     */
+    default void entitiesMovedIn(final List<EntityEvent> events) {
+	events.forEach(this::entityMovedIn);
+    }
+
+    /**
+     * Triggered on a batch of entities being received. By default this triggers
+     * {@link #entityReceived(EntityEvent)} for each event.
+     *
+     * @param events
+     *            The entity events for this trigger.
+     *
+     * @see EntityContainer#transferEntities(java.util.Set, EntityContainer)
+     */
+    default void entitiesReceived(final List<EntityEvent> events) {
+	events.forEach(this::entityReceived);
+    }
+
+    /**
+     * Triggered on the transfer of a batch of entities. By default this triggers
+     * {@link #entityTransferred(EntityEvent)} for each event.
+     *
+     * @param events
+     *            The entity events for this trigger.
+     *
+     * @see EntityContainer#transferEntities(java.util.Set, EntityContainer)
+     */
+    default void entitiesTransferred(final List<EntityEvent> events) {
+	events.forEach(this::entityTransferred);
+    }
+
     /**
      * Triggered on entity creation.
      *
@@ -27,6 +94,15 @@ public interface EntityListener {
      */
     default void entityKilled(final EntityEvent event) {}
 
+    /**
+     * Triggered on entity being moved in from another container within the same tree (the source
+     * container triggers transfer and entities from another tree trigger received instead).
+     *
+     * @param event
+     *            The entity event for this trigger.
+     */
+    default void entityMovedIn(final EntityEvent event) {}
+
     /**
      * Triggered on entity being received.
      *
@@ -17,6 +17,17 @@ import jalse.entities.functions.EntityFunctionResolver;
  */
 public interface EntityProxyFactory {
 
+    /**
+     * Gets the entity the proxy was created for.
+     *
+     * @param e
+     *            Entity to check.
+     * @return The proxied entity (or the supplied entity if it was not a proxy).
+     */
+    default Entity entityOfProxy(final Entity e) {
+	return e;
+    }
+
     /**
      * Checks whether the supplied entity is a proxy.
      *
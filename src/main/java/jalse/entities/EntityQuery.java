@@ -0,0 +1,442 @@
+package jalse.entities;
+
+import static jalse.entities.Entities.getProxyFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jalse.attributes.NamedAttributeType;
+import jalse.tags.Tag;
+
+/**
+ * An EntityQuery finds the entities within a container (or subtree) that match a number of
+ * conditions: entity types ({@link Entity#isMarkedAsType(Class)}), attribute values, tags and any
+ * other filter. Queries are built once using {@link Builder} and can be run against any container.
+ * <br>
+ * <br>
+ * For each container within scope the query plans where its candidates come from before checking
+ * every condition. In order of preference these are an attribute index for an attribute value (
+ * {@link EntityContainer#addAttributeIndex(NamedAttributeType)}), a sorted attribute index for an
+ * attribute range ({@link EntityContainer#addSortedAttributeIndex(NamedAttributeType)}), the type
+ * membership of the container ({@link EntityContainer#streamEntitiesOfType(Class)}) and finally
+ * all entities. Large inputs are processed in parallel (see
+ * {@link Builder#setParallelThreshold(int)}).
+ *
+ * @author Elliot Ford
+ *
+ * @see EntityContainer#findEntities(NamedAttributeType, Object)
+ * @see Entities#walkEntities(EntityContainer, int)
+ *
+ */
+public final class EntityQuery {
+
+    /**
+     * A builder for {@link EntityQuery}. All conditions must match for an entity to be found. By
+     * default only the direct entities of a container are within scope.
+     *
+     * @author Elliot Ford
+     *
+     */
+    public static final class Builder {
+
+	private final List<Class<? extends Entity>> types;
+	private final List<AttributeValue<?>> values;
+	private final List<AttributeRange<?>> ranges;
+	private final List<Predicate<? super Entity>> filters;
+	private int maxDepth;
+	private int parallelThreshold;
+
+	/**
+	 * Creates a new Builder instance.
+	 */
+	public Builder() {
+	    types = new ArrayList<>();
+	    values = new ArrayList<>();
+	    ranges = new ArrayList<>();
+	    filters = new ArrayList<>();
+	    maxDepth = 1;
+	    parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	}
+
+	/**
+	 * Adds an attribute value condition (indexable).
+	 *
+	 * @param namedType
+	 *            Attribute type.
+	 * @param value
+	 *            Value the attribute must equal.
+	 * @return This builder.
+	 */
+	public <T> Builder addAttribute(final NamedAttributeType<T> namedType, final T value) {
+	    values.add(new AttributeValue<>(namedType, value));
+	    return this;
+	}
+
+	/**
+	 * Adds an attribute condition (never indexed).
+	 *
+	 * @param namedType
+	 *            Attribute type.
+	 * @param predicate
+	 *            Predicate the attribute must match (only supplied present values).
+	 * @return This builder.
+	 */
+	public <T> Builder addAttributeFilter(final NamedAttributeType<T> namedType,
+		final Predicate<? super T> predicate) {
+	    Objects.requireNonNull(namedType);
+	    Objects.requireNonNull(predicate);
+	    filters.add(e -> {
+		final T value = e.getAttribute(namedType);
+		return value != null && predicate.test(value);
+	    });
+	    return this;
+	}
+
+	/**
+	 * Adds an attribute range condition (indexable when sorted).
+	 *
+	 * @param namedType
+	 *            Attribute type.
+	 * @param from
+	 *            Lowest value (inclusive) or null if unbounded.
+	 * @param to
+	 *            Highest value (exclusive) or null if unbounded.
+	 * @return This builder.
+	 */
+	public <T extends Comparable<? super T>> Builder addAttributeRange(final NamedAttributeType<T> namedType,
+		final T from, final T to) {
+	    ranges.add(new AttributeRange<>(namedType, from, to));
+	    return this;
+	}
+
+	/**
+	 * Adds an entity condition (never indexed).
+	 *
+	 * @param filter
+	 *            Predicate the entity must match.
+	 * @return This builder.
+	 */
+	public Builder addFilter(final Predicate<? super Entity> filter) {
+	    filters.add(Objects.requireNonNull(filter));
+	    return this;
+	}
+
+	/**
+	 * Adds a tag condition (never indexed). An entity matches if any of its tags of the type
+	 * match.
+	 *
+	 * @param type
+	 *            Tag type.
+	 * @param predicate
+	 *            Predicate a tag must match.
+	 * @return This builder.
+	 */
+	public <T extends Tag> Builder addTagFilter(final Class<T> type, final Predicate<? super T> predicate) {
+	    Objects.requireNonNull(type);
+	    Objects.requireNonNull(predicate);
+	    filters.add(e -> e.getTagsOfType(type).stream().anyMatch(predicate));
+	    return this;
+	}
+
+	/**
+	 * Adds an entity type condition (indexable).
+	 *
+	 * @param type
+	 *            Type the entity must be marked as.
+	 * @return This builder.
+	 */
+	public Builder addType(final Class<? extends Entity> type) {
+	    types.add(Objects.requireNonNull(type));
+	    return this;
+	}
+
+	/**
+	 * Builds a query with the supplied conditions.
+	 *
+	 * @return Newly created query.
+	 */
+	public EntityQuery build() {
+	    return new EntityQuery(this);
+	}
+
+	/**
+	 * Sets the depth of the subtree within scope (1 is the direct entities).
+	 *
+	 * @param maxDepth
+	 *            Maximum depth.
+	 * @return This builder.
+	 */
+	public Builder setMaxDepth(final int maxDepth) {
+	    if (maxDepth <= 0) {
+		throw new IllegalArgumentException();
+	    }
+	    this.maxDepth = maxDepth;
+	    return this;
+	}
+
+	/**
+	 * Sets the number of entities within scope from which the query is run in parallel.
+	 *
+	 * @param parallelThreshold
+	 *            Parallel threshold.
+	 * @return This builder.
+	 *
+	 * @see #DEFAULT_PARALLEL_THRESHOLD
+	 */
+	public Builder setParallelThreshold(final int parallelThreshold) {
+	    if (parallelThreshold < 0) {
+		throw new IllegalArgumentException();
+	    }
+	    this.parallelThreshold = parallelThreshold;
+	    return this;
+	}
+
+	/**
+	 * Sets the whole subtree to be within scope.
+	 *
+	 * @return This builder.
+	 */
+	public Builder setWholeSubtree() {
+	    return setMaxDepth(Integer.MAX_VALUE);
+	}
+    }
+
+    private static class AttributeRange<T extends Comparable<? super T>> implements Predicate<Entity> {
+
+	private final NamedAttributeType<T> namedType;
+	private final T from;
+	private final T to;
+
+	private AttributeRange(final NamedAttributeType<T> namedType, final T from, final T to) {
+	    this.namedType = Objects.requireNonNull(namedType);
+	    this.from = from;
+	    this.to = to;
+	}
+
+	private Set<Entity> find(final EntityContainer container) {
+	    return container.findEntitiesInRange(namedType, from, to);
+	}
+
+	@Override
+	public boolean test(final Entity e) {
+	    final T value = e.getAttribute(namedType);
+	    return value != null && (from == null || value.compareTo(from) >= 0)
+		    && (to == null || value.compareTo(to) < 0);
+	}
+    }
+
+    private static class AttributeValue<T> implements Predicate<Entity> {
+
+	private final NamedAttributeType<T> namedType;
+	private final T value;
+
+	private AttributeValue(final NamedAttributeType<T> namedType, final T value) {
+	    this.namedType = Objects.requireNonNull(namedType);
+	    this.value = Objects.requireNonNull(value);
+	}
+
+	private Set<Entity> find(final EntityContainer container) {
+	    return container.findEntities(namedType, value);
+	}
+
+	@Override
+	public boolean test(final Entity e) {
+	    return value.equals(e.getAttribute(namedType));
+	}
+    }
+
+    /**
+     * Where the candidates of a container come from.
+     */
+    enum Source {
+
+	ATTRIBUTE_INDEX, RANGE_INDEX, TYPE_INDEX, SCAN
+    }
+
+    /**
+     * Default number of entities within scope from which a query is run in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+
+    private final List<Class<? extends Entity>> types;
+    private final List<AttributeValue<?>> values;
+    private final List<AttributeRange<?>> ranges;
+    private final Predicate<Entity> matcher;
+    private final int maxDepth;
+    private final int parallelThreshold;
+
+    private EntityQuery(final Builder builder) {
+	types = Collections.unmodifiableList(new ArrayList<>(builder.types));
+	values = Collections.unmodifiableList(new ArrayList<>(builder.values));
+	ranges = Collections.unmodifiableList(new ArrayList<>(builder.ranges));
+	maxDepth = builder.maxDepth;
+	parallelThreshold = builder.parallelThreshold;
+
+	// Cheapest checks first
+	final List<Predicate<? super Entity>> conditions = new ArrayList<>();
+	types.forEach(t -> conditions.add(e -> e.isMarkedAsType(t)));
+	conditions.addAll(values);
+	conditions.addAll(ranges);
+	conditions.addAll(builder.filters);
+	matcher = e -> {
+	    for (final Predicate<? super Entity> c : conditions) {
+		if (!c.test(e)) {
+		    return false;
+		}
+	    }
+	    return true;
+	};
+    }
+
+    private Stream<Entity> candidatesOf(final EntityContainer container) {
+	switch (planOf(container)) {
+	case ATTRIBUTE_INDEX:
+	    for (final AttributeValue<?> v : values) {
+		if (container.hasAttributeIndex(v.namedType)) {
+		    return v.find(container).stream();
+		}
+	    }
+	    break;
+	case RANGE_INDEX:
+	    for (final AttributeRange<?> r : ranges) {
+		if (container.hasSortedAttributeIndex(r.namedType)) {
+		    return r.find(container).stream();
+		}
+	    }
+	    break;
+	case TYPE_INDEX:
+	    return container.streamEntitiesOfType(types.get(0)).map(getProxyFactory()::entityOfProxy); // Unproxied
+	default:
+	    break;
+	}
+	return container.streamEntities(); // Index since removed
+    }
+
+    /**
+     * Counts the matching entities within the container (or subtree).
+     *
+     * @param container
+     *            Container to search.
+     * @return Number of matching entities.
+     */
+    public long count(final EntityContainer container) {
+	return stream(container).count();
+    }
+
+    /**
+     * Estimates the number of entities within scope (counting stops once the query would run in
+     * parallel).
+     */
+    long estimateOf(final EntityContainer container) {
+	if (maxDepth == 1) {
+	    return container.getEntityCount();
+	}
+
+	if (container instanceof DefaultEntity || container instanceof DefaultEntityContainer) {
+	    final int total = Entities.getEntityCountRecursively(container); // Kept count
+	    if (maxDepth == Integer.MAX_VALUE || total < parallelThreshold) {
+		return total;
+	    }
+	}
+
+	// Level by level down to the maximum depth
+	long count = 0;
+	List<EntityContainer> level = Collections.singletonList(container);
+	for (int depth = 1; depth <= maxDepth && !level.isEmpty() && count < parallelThreshold; depth++) {
+	    final List<EntityContainer> next = new ArrayList<>();
+	    for (final EntityContainer c : level) {
+		count += c.getEntityCount();
+		if (depth < maxDepth) {
+		    c.streamEntities().filter(Entity::hasEntities).forEach(next::add);
+		}
+	    }
+	    level = next;
+	}
+	return count;
+    }
+
+    /**
+     * Finds the matching entities within the container (or subtree).
+     *
+     * @param container
+     *            Container to search.
+     * @return Matching entities.
+     */
+    public Set<Entity> find(final EntityContainer container) {
+	return stream(container).collect(Collectors.toSet());
+    }
+
+    /**
+     * Gets the depth of the subtree within scope.
+     *
+     * @return Maximum depth.
+     */
+    public int getMaxDepth() {
+	return maxDepth;
+    }
+
+    /**
+     * Gets the number of entities within scope from which the query is run in parallel.
+     *
+     * @return Parallel threshold.
+     */
+    public int getParallelThreshold() {
+	return parallelThreshold;
+    }
+
+    /**
+     * Plans where the candidates of the container come from (the first available index).
+     */
+    Source planOf(final EntityContainer container) {
+	for (final AttributeValue<?> v : values) {
+	    if (container.hasAttributeIndex(v.namedType)) {
+		return Source.ATTRIBUTE_INDEX;
+	    }
+	}
+	for (final AttributeRange<?> r : ranges) {
+	    if (container.hasSortedAttributeIndex(r.namedType)) {
+		return Source.RANGE_INDEX;
+	    }
+	}
+	return types.isEmpty() ? Source.SCAN : Source.TYPE_INDEX;
+    }
+
+    /**
+     * Streams the matching entities within the container (or subtree). This is a parallel stream
+     * if there are enough entities within scope.
+     *
+     * @param container
+     *            Container to search.
+     * @return Stream of matching entities.
+     */
+    public Stream<Entity> stream(final EntityContainer container) {
+	Objects.requireNonNull(container);
+
+	final boolean parallel = estimateOf(container) >= parallelThreshold;
+
+	if (maxDepth == 1) {
+	    final Stream<Entity> candidates = candidatesOf(container);
+	    return (parallel ? candidates.parallel() : candidates).filter(matcher);
+	}
+
+	// Every container within scope (parallel over the subtree)
+	Stream<EntityContainer> containers = Stream.concat(Stream.of(container),
+		Entities.walkEntities(container, maxDepth - 1).filter(Entity::hasEntities));
+	if (parallel) {
+	    containers = containers.parallel();
+	}
+	return containers.flatMap(this::candidatesOf).filter(matcher);
+    }
+
+    @Override
+    public String toString() {
+	return "EntityQuery [types=" + types + ", values=" + values.size() + ", ranges=" + ranges.size()
+		+ ", maxDepth=" + maxDepth + "]";
+    }
+}
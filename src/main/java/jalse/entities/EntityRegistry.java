@@ -0,0 +1,125 @@
+package jalse.entities;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe registry of entities (by ID) with an exact entity limit. IDs are spread over a
+ * number of independently locked {@link EntityIDMap} stripes (by ID hash) so unrelated IDs can be
+ * added, removed and looked up in parallel. The entity count is kept separately so the limit can
+ * be reserved without locking any stripe.
+ *
+ * @author Elliot Ford
+ *
+ */
+class EntityRegistry {
+
+    private static final int STRIPES = 64;
+
+    private final EntityIDMap<Entity>[] stripes;
+    private final AtomicInteger count;
+    private final int limit;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    EntityRegistry(final long namespace, final int limit) {
+	stripes = new EntityIDMap[STRIPES];
+	for (int i = 0; i < STRIPES; i++) {
+	    stripes[i] = new EntityIDMap<>(namespace);
+	}
+	count = new AtomicInteger();
+	this.limit = limit;
+    }
+
+    /**
+     * Adds the entity (ignoring the limit).
+     */
+    boolean add(final Entity e) {
+	final UUID id = e.getID();
+	final EntityIDMap<Entity> stripe = stripeOf(id);
+	final boolean added;
+	synchronized (stripe) {
+	    added = stripe.add(id, e);
+	}
+	if (added) {
+	    count.incrementAndGet();
+	}
+	return added;
+    }
+
+    /**
+     * Adds the ID using space already reserved ({@link #tryReserve(int)}). The entity is supplied
+     * once it has been created ({@link #set(Entity)}).
+     */
+    boolean addReserved(final UUID id) {
+	final EntityIDMap<Entity> stripe = stripeOf(id);
+	synchronized (stripe) {
+	    return stripe.add(id, null);
+	}
+    }
+
+    boolean contains(final UUID id) {
+	final EntityIDMap<Entity> stripe = stripeOf(id);
+	synchronized (stripe) {
+	    return stripe.contains(id);
+	}
+    }
+
+    Entity get(final UUID id) {
+	final EntityIDMap<Entity> stripe = stripeOf(id);
+	synchronized (stripe) {
+	    return stripe.get(id);
+	}
+    }
+
+    void release(final int n) {
+	count.addAndGet(-n);
+    }
+
+    boolean remove(final UUID id) {
+	final EntityIDMap<Entity> stripe = stripeOf(id);
+	final boolean removed;
+	synchronized (stripe) {
+	    removed = stripe.remove(id);
+	}
+	if (removed) {
+	    count.decrementAndGet();
+	}
+	return removed;
+    }
+
+    /**
+     * Sets the entity of an ID already added.
+     */
+    void set(final Entity e) {
+	final UUID id = e.getID();
+	final EntityIDMap<Entity> stripe = stripeOf(id);
+	synchronized (stripe) {
+	    stripe.replace(id, e);
+	}
+    }
+
+    int size() {
+	return count.get();
+    }
+
+    private EntityIDMap<Entity> stripeOf(final UUID id) {
+	final long h = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+	final int i = (int) (h ^ h >>> 32);
+	return stripes[(i ^ i >>> 16) & STRIPES - 1];
+    }
+
+    /**
+     * Reserves space for the supplied number of IDs (if it would not exceed the limit).
+     */
+    boolean tryReserve(final int n) {
+	for (;;) {
+	    final int current = count.get();
+	    if (n > limit - current) {
+		return false;
+	    }
+	    if (count.compareAndSet(current, current + n)) {
+		return true;
+	    }
+	}
+    }
+}
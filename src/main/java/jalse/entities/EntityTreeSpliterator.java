@@ -0,0 +1,159 @@
+package jalse.entities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over an entity tree (excluding the root container). This visits entities
+ * depth first (with no defined order) keeping a stack of child spliterators (one per depth). Children
+ * are iterated straight from their container (they are not copied). It splits by handing off part
+ * of the remaining entities at the shallowest depth (with their subtrees) so large forests can be
+ * processed in parallel.<br>
+ * <br>
+ * The size estimate uses the kept tree count of the root (see
+ * {@link DefaultEntityContainer#getTreeCount()}) when the walk is not depth limited, otherwise the
+ * size is unknown. Estimates are halved on each split.
+ *
+ * @author Elliot Ford
+ *
+ * @see Entities#walkEntities(EntityContainer, int)
+ *
+ */
+class EntityTreeSpliterator implements Spliterator<Entity> {
+
+    private static class Frame {
+
+	private final Spliterator<Entity> entities;
+	private final int depth;
+
+	private Frame(final Spliterator<Entity> entities, final int depth) {
+	    this.entities = entities;
+	    this.depth = depth;
+	}
+    }
+
+    private static final int CHARACTERISTICS = Spliterator.CONCURRENT | Spliterator.NONNULL
+	    | Spliterator.DISTINCT;
+
+    private static Spliterator<Entity> childrenOf(final EntityContainer container) {
+	if (container instanceof DefaultEntity) {
+	    final DefaultEntityContainer entities = ((DefaultEntity) container).entities;
+	    return entities != null ? entities.spliterateEntities() : Spliterators.emptySpliterator();
+	} else if (container instanceof DefaultEntityContainer) {
+	    return ((DefaultEntityContainer) container).spliterateEntities();
+	}
+	return container.streamEntities().spliterator();
+    }
+
+    private static long estimateOf(final EntityContainer container, final int maxDepth) {
+	if (maxDepth != Integer.MAX_VALUE) {
+	    return Long.MAX_VALUE; // Counts include all depths
+	} else if (container instanceof DefaultEntityContainer) {
+	    return ((DefaultEntityContainer) container).getTreeCount();
+	} else if (container instanceof DefaultEntity
+		&& ((DefaultEntity) container).getFactory() instanceof DefaultEntityFactory) {
+	    return ((DefaultEntity) container).getTreeCount();
+	}
+	return Long.MAX_VALUE;
+    }
+
+    private final List<Frame> frames; // Bottom is shallowest
+    private final Consumer<Entity> advanced;
+    private Entity next;
+    private long estimate;
+
+    EntityTreeSpliterator(final EntityContainer container, final int maxDepth) {
+	Objects.requireNonNull(container);
+
+	if (maxDepth <= 0) {
+	    throw new IllegalArgumentException();
+	}
+
+	frames = new ArrayList<>();
+	frames.add(new Frame(childrenOf(container), maxDepth));
+	advanced = e -> next = e;
+	estimate = estimateOf(container, maxDepth);
+    }
+
+    private EntityTreeSpliterator(final Frame frame, final long estimate) {
+	frames = new ArrayList<>();
+	frames.add(frame);
+	advanced = e -> next = e;
+	this.estimate = estimate;
+    }
+
+    @Override
+    public int characteristics() {
+	return CHARACTERISTICS;
+    }
+
+    @Override
+    public long estimateSize() {
+	return estimate;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super Entity> action) {
+	Objects.requireNonNull(action);
+
+	while (tryAdvance(action)) {
+	    // Continue
+	}
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Entity> action) {
+	Objects.requireNonNull(action);
+
+	// Drop fully visited frames
+	Frame top = null;
+	while (!frames.isEmpty()) {
+	    top = frames.get(frames.size() - 1);
+	    if (top.entities.tryAdvance(advanced)) {
+		break;
+	    }
+	    frames.remove(frames.size() - 1);
+	    top = null;
+	}
+
+	if (top == null) {
+	    estimate = 0L;
+	    return false;
+	}
+
+	final Entity e = next;
+	next = null;
+	if (top.depth > 1 && e.hasEntities()) {
+	    frames.add(new Frame(childrenOf(e), top.depth - 1));
+	}
+
+	if (estimate != Long.MAX_VALUE && estimate > 0L) {
+	    estimate--;
+	}
+
+	action.accept(e);
+	return true;
+    }
+
+    @Override
+    public Spliterator<Entity> trySplit() {
+	// Split the shallowest frame with enough entities
+	for (final Frame frame : frames) {
+	    if (frame.entities.estimateSize() < 2L) {
+		continue;
+	    }
+
+	    final Spliterator<Entity> split = frame.entities.trySplit();
+	    if (split != null) {
+		final long splitEstimate = estimate == Long.MAX_VALUE ? estimate : (estimate >>>= 1);
+		return new EntityTreeSpliterator(new Frame(split, frame.depth), splitEstimate);
+	    }
+	}
+
+	return null;
+    }
+}
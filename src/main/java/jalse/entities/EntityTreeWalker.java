@@ -1,115 +1,186 @@
 package jalse.entities;
 
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Objects;
-import java.util.Queue;
 
 import jalse.entities.EntityVisitor.EntityVisitResult;
-
+import jalse.entities.EntityVisitor.WalkOrder;
+
+/**
+ * An iterative entity tree walker. Depth-first walks keep a stack of child iterators and
+ * breadth-first walks keep a queue of containers still to be visited, both within arrays that are
+ * reused between walks (walkers are kept per thread). Children are iterated in place (no
+ * snapshots are taken).
+ *
+ * @author Elliot Ford
+ *
+ * @see Entities#walkEntityTree(EntityContainer, int, WalkOrder, EntityVisitor)
+ *
+ */
 class EntityTreeWalker {
 
-    private final EntityContainer container;
-    private final int maxDepth;
-    private final EntityVisitor visitor;
-    private final Queue<EntityTreeWalker> walkers;
-    private final Iterator<Entity> iterator;
-    private boolean ignoreSiblings;
-    private boolean exited;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final ThreadLocal<EntityTreeWalker> walkers = ThreadLocal.withInitial(EntityTreeWalker::new);
+
+    private static Iterator<Entity> iteratorOf(final EntityContainer container) {
+	if (container instanceof DefaultEntity) {
+	    final DefaultEntityContainer entities = ((DefaultEntity) container).entities;
+	    return entities != null ? entities.entityIterator() : Collections.emptyIterator();
+	} else if (container instanceof DefaultEntityContainer) {
+	    return ((DefaultEntityContainer) container).entityIterator();
+	}
+	return container.streamEntities().iterator();
+    }
 
-    EntityTreeWalker(final EntityContainer container, final int maxDepth, final EntityVisitor visitor) {
-	this.container = Objects.requireNonNull(container);
-	this.visitor = Objects.requireNonNull(visitor);
+    static void walk(final EntityContainer container, final int maxDepth, final WalkOrder order,
+	    final EntityVisitor visitor) {
+	Objects.requireNonNull(container);
+	Objects.requireNonNull(order);
+	Objects.requireNonNull(visitor);
 
 	if (maxDepth <= 0) {
 	    throw new IllegalArgumentException();
 	}
-	this.maxDepth = maxDepth;
 
-	walkers = new LinkedList<>();
-	iterator = container.streamEntities().iterator(); // Lazy
-	exited = false;
+	EntityTreeWalker walker = walkers.get();
+	if (walker.walking) {
+	    walker = new EntityTreeWalker(); // Walking within a walk
+	}
+
+	walker.walking = true;
+	try {
+	    if (order == WalkOrder.DEPTH_FIRST) {
+		walker.walkDepthFirst(container, maxDepth, visitor);
+	    } else {
+		walker.walkBreadthFirst(container, maxDepth, visitor);
+	    }
+	} finally {
+	    walker.clear();
+	    walker.walking = false;
+	}
     }
 
-    private boolean canAddChild() {
-	return !ignoreSiblings && iterator.hasNext();
+    private Object[] elements;
+    private int[] depths;
+    private int head;
+    private int size;
+    private boolean walking;
+
+    private EntityTreeWalker() {
+	elements = new Object[DEFAULT_CAPACITY];
+	depths = new int[DEFAULT_CAPACITY];
+	head = 0;
+	size = 0;
+	walking = false;
     }
 
-    private boolean canWalkChild() {
-	return !walkers.isEmpty();
+    private void add(final Object element, final int depth) {
+	if (size == elements.length) {
+	    grow();
+	}
+	final int i = head + size & elements.length - 1;
+	elements[i] = element;
+	depths[i] = depth;
+	size++;
     }
 
-    public EntityContainer getContainer() {
-	return container;
+    private void clear() {
+	while (size > 0) {
+	    removeFirst(); // Release references
+	}
+	head = 0;
     }
 
-    public int getMaxDepth() {
-	return maxDepth;
+    private void grow() {
+	final Object[] oldElements = elements;
+	final int[] oldDepths = depths;
+	elements = new Object[oldElements.length * 2];
+	depths = new int[oldDepths.length * 2];
+	for (int i = 0; i < size; i++) {
+	    final int j = head + i & oldElements.length - 1;
+	    elements[i] = oldElements[j];
+	    depths[i] = oldDepths[j];
+	}
+	head = 0;
     }
 
-    public EntityVisitor getVisitor() {
-	return visitor;
+    private int last() {
+	return head + size - 1 & elements.length - 1;
     }
 
-    private boolean hasExited() {
-	return exited;
+    private void removeFirst() {
+	elements[head] = null;
+	head = head + 1 & elements.length - 1;
+	size--;
     }
 
-    public boolean isWalking() {
-	return !hasExited() && (canAddChild() || canWalkChild());
+    private void removeLast() {
+	elements[last()] = null;
+	size--;
     }
 
-    public Entity walk() {
-	if (!isWalking()) {
-	    throw new IllegalStateException();
+    private void walkBreadthFirst(final EntityContainer container, final int maxDepth, final EntityVisitor visitor) {
+	add(container, 1);
+
+	while (size > 0) {
+	    final EntityContainer parent = (EntityContainer) elements[head];
+	    final int depth = depths[head];
+	    removeFirst();
+
+	    final int mark = size; // Siblings children are added after
+	    final Iterator<Entity> iterator = iteratorOf(parent);
+	    while (iterator.hasNext()) {
+		final Entity e = iterator.next();
+		final EntityVisitResult result = visitor.visit(e);
+		if (result == EntityVisitResult.EXIT) {
+		    return;
+		}
+
+		if (result == EntityVisitResult.IGNORE_SIBLINGS) {
+		    while (size > mark) {
+			removeLast();
+		    }
+		}
+
+		if (result != EntityVisitResult.IGNORE_CHILDREN && depth < maxDepth && e.hasEntities()) {
+		    add(e, depth + 1);
+		}
+
+		if (result == EntityVisitResult.IGNORE_SIBLINGS) {
+		    break;
+		}
+	    }
 	}
+    }
+
+    @SuppressWarnings("unchecked")
+    private void walkDepthFirst(final EntityContainer container, final int maxDepth, final EntityVisitor visitor) {
+	add(iteratorOf(container), 1);
+
+	while (size > 0) {
+	    final int top = last();
+	    final Iterator<Entity> iterator = (Iterator<Entity>) elements[top];
+	    final int depth = depths[top];
+	    if (!iterator.hasNext()) {
+		removeLast();
+		continue;
+	    }
 
-	/*
-	 * Visit direct children.
-	 */
-	if (canAddChild()) {
 	    final Entity e = iterator.next();
 	    final EntityVisitResult result = visitor.visit(e);
 	    if (result == EntityVisitResult.EXIT) {
-
-		exited = true;
-		return e;
+		return;
 	    }
 
-	    /*
-	     * Remove other children.
-	     */
 	    if (result == EntityVisitResult.IGNORE_SIBLINGS) {
-		ignoreSiblings = true;
-		walkers.clear();
+		removeLast();
 	    }
 
-	    /*
-	     * Do not walk through child descendants.
-	     */
-	    if (maxDepth > 1 && result != EntityVisitResult.IGNORE_CHILDREN) {
-		final EntityTreeWalker child = new EntityTreeWalker(e, maxDepth - 1, visitor);
-		if (child.isWalking()) {
-		    walkers.add(child);
-		}
+	    if (result != EntityVisitResult.IGNORE_CHILDREN && depth < maxDepth && e.hasEntities()) {
+		add(iteratorOf(e), depth + 1);
 	    }
-
-	    return e;
 	}
-
-	/*
-	 * Walk already visited child.
-	 */
-	final EntityTreeWalker child = walkers.element();
-	final Entity e = child.walk();
-
-	/*
-	 * Child has been fully traversed.
-	 */
-	if (!child.isWalking()) {
-	    walkers.remove();
-	}
-
-	return e;
     }
 }
@@ -2,8 +2,8 @@ package jalse.entities;
 
 /**
  * EntityVisitor allows {@link Entity} within an {@link EntityContainer} to be walked through one by
- * one recursively. These are walked through breadth-first and their walking can be filtered by
- * suppling different {@link EntityVisitResult}.<br>
+ * one recursively. These are walked through breadth-first (unless another {@link WalkOrder} is
+ * supplied) and their walking can be filtered by suppling different {@link EntityVisitResult}.<br>
  * <br>
  * 1. {@link EntityVisitResult#CONTINUE} the walker will continue as normal. <br>
  * 2. {@link EntityVisitResult#IGNORE_CHILDREN} the walker will not walk through any children of
@@ -14,7 +14,8 @@ package jalse.entities;
  * <br>
  *
  * Entities can be walked through using
- * {@link Entities#walkEntityTree(EntityContainer, int, EntityVisitor)}.
+ * {@link Entities#walkEntityTree(EntityContainer, int, EntityVisitor)} or
+ * {@link Entities#walkEntityTree(EntityContainer, int, WalkOrder, EntityVisitor)}.
  *
  * @author Elliot Ford
  *
@@ -54,6 +55,25 @@ public interface EntityVisitor {
 	IGNORE_SIBLINGS
     }
 
+    /**
+     * Order in which the entity tree is walked.
+     *
+     * @author Elliot Ford
+     *
+     */
+    public enum WalkOrder {
+
+	/**
+	 * Visit all entities at one depth before the next depth.
+	 */
+	BREADTH_FIRST,
+
+	/**
+	 * Visit all of an entity's descendants before its next sibling.
+	 */
+	DEPTH_FIRST
+    }
+
     /**
      * The walker visiting this entity.
      *
@@ -6,6 +6,7 @@ import java.util.UUID;
 import java.util.stream.Stream;
 
 import jalse.attributes.AttributeContainer;
+import jalse.attributes.NamedAttributeType;
 
 class UnmodifiableDelegateEntityContainer implements EntityContainer {
 
@@ -15,11 +16,32 @@ class UnmodifiableDelegateEntityContainer implements EntityContainer {
 	this.delegate = delegate;
     }
 
+    @Override
+    public <T> boolean addAttributeIndex(final NamedAttributeType<T> namedType) {
+	throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean addEntityListener(final EntityListener listener) {
 	throw new UnsupportedOperationException();
     }
 
+    @Override
+    public <T extends Comparable<? super T>> boolean addSortedAttributeIndex(final NamedAttributeType<T> namedType) {
+	throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> Set<Entity> findEntities(final NamedAttributeType<T> namedType, final T value) {
+	return delegate != null ? delegate.findEntities(namedType, value) : Collections.emptySet();
+    }
+
+    @Override
+    public <T extends Comparable<? super T>> Set<Entity> findEntitiesInRange(final NamedAttributeType<T> namedType,
+	    final T from, final T to) {
+	return delegate != null ? delegate.findEntitiesInRange(namedType, from, to) : Collections.emptySet();
+    }
+
     @Override
     public Entity getEntity(final UUID id) {
 	return delegate != null ? delegate.getEntity(id) : null;
@@ -40,6 +62,16 @@ class UnmodifiableDelegateEntityContainer implements EntityContainer {
 	return delegate != null ? delegate.getEntityListeners() : Collections.emptySet();
     }
 
+    @Override
+    public boolean hasAttributeIndex(final NamedAttributeType<?> namedType) {
+	return delegate != null && delegate.hasAttributeIndex(namedType);
+    }
+
+    @Override
+    public boolean hasSortedAttributeIndex(final NamedAttributeType<?> namedType) {
+	return delegate != null && delegate.hasSortedAttributeIndex(namedType);
+    }
+
     @Override
     public void killEntities() {
 	throw new UnsupportedOperationException();
@@ -65,6 +97,11 @@ class UnmodifiableDelegateEntityContainer implements EntityContainer {
 	throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean removeAttributeIndex(final NamedAttributeType<?> namedType) {
+	throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean removeEntityListener(final EntityListener listener) {
 	throw new UnsupportedOperationException();
@@ -1,5 +1,6 @@
 package jalse.entities;
 
+import java.util.List;
 import java.util.UUID;
 
 import jalse.actions.ActionEngine;
@@ -17,11 +18,21 @@ class UnmodifiableDelegateEntityFactory implements EntityFactory {
 	throw new UnsupportedOperationException();
     }
 
+    @Override
+    public List<? extends Entity> newEntities(final List<UUID> ids, final EntityContainer target) {
+	throw new UnsupportedOperationException();
+    }
+
     @Override
     public Entity newEntity(final UUID id, final EntityContainer target) {
 	throw new UnsupportedOperationException();
     }
 
+    @Override
+    public UUID newEntityID() {
+	throw new UnsupportedOperationException();
+    }
+
     @Override
     public void setEngine(final ActionEngine engine) {
 	throw new UnsupportedOperationException();
@@ -32,6 +43,11 @@ class UnmodifiableDelegateEntityFactory implements EntityFactory {
 	throw new UnsupportedOperationException();
     }
 
+    @Override
+    public List<? extends Entity> tryKillEntities(final List<? extends Entity> entities) {
+	throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean tryKillEntity(final Entity e) {
 	throw new UnsupportedOperationException();
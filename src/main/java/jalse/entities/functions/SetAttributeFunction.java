@@ -114,6 +114,8 @@ public class SetAttributeFunction implements EntityMethodFunction {
 		    throw new IllegalArgumentException("Optional is not required for primitive types");
 		}
 		returnAttrType = firstGenericTypeArg(returnAttrType);
+	    } else if (primitive && isPrimitive(returnAttrType)) {
+		returnAttrType = wrap(toClass(returnAttrType));
 	    }
 
 	    // Check types match
@@ -3,7 +3,9 @@ package jalse.entities.methods;
 import static jalse.entities.functions.Functions.defaultValue;
 import static jalse.entities.functions.Functions.toClass;
 
+import java.lang.reflect.Type;
 import java.util.Objects;
+import java.util.function.Function;
 
 import jalse.attributes.AttributeContainer;
 import jalse.attributes.AttributeType;
@@ -17,6 +19,8 @@ import jalse.entities.functions.GetAttributeFunction;
  * <ul>
  * <li>{@link AttributeContainer#getOptAttribute(String, AttributeType)}</li>
  * <li>{@link AttributeContainer#getAttribute(String, AttributeType)}</li>
+ * <li>{@link AttributeContainer#getInt(NamedAttributeType)} (and the {@code long} and {@code double}
+ * equivalents) for primitive return types</li>
  * </ul>
  *
  * @author Elliot Ford
@@ -27,10 +31,27 @@ import jalse.entities.functions.GetAttributeFunction;
  */
 public class GetAttributeMethod implements EntityMethod {
 
+    @SuppressWarnings("unchecked")
+    private static Function<Entity, Object> unboxedGetterOf(final NamedAttributeType<?> namedType) {
+	final Type valueType = namedType.getType().getValueType();
+	if (Integer.class.equals(valueType)) {
+	    final NamedAttributeType<Integer> intType = (NamedAttributeType<Integer>) namedType;
+	    return e -> e.getInt(intType);
+	} else if (Double.class.equals(valueType)) {
+	    final NamedAttributeType<Double> doubleType = (NamedAttributeType<Double>) namedType;
+	    return e -> e.getDouble(doubleType);
+	} else if (Long.class.equals(valueType)) {
+	    final NamedAttributeType<Long> longType = (NamedAttributeType<Long>) namedType;
+	    return e -> e.getLong(longType);
+	}
+	return null;
+    }
+
     private final NamedAttributeType<Object> namedType;
     private final boolean primitive;
     private final boolean optional;
     private final Object defaultValue;
+    private final Function<Entity, Object> unboxedGetter;
 
     /**
      * Creates a new get attribute method.
@@ -46,6 +67,7 @@ public class GetAttributeMethod implements EntityMethod {
 	this.primitive = primitive;
 	this.optional = optional;
 	defaultValue = primitive ? defaultValue(toClass(namedType.getType().getValueType())) : null;
+	unboxedGetter = primitive ? unboxedGetterOf(namedType) : null;
     }
 
     /**
@@ -83,6 +105,8 @@ public class GetAttributeMethod implements EntityMethod {
 	}
 	if (optional) {
 	    return entity.getOptAttribute(namedType);
+	} else if (unboxedGetter != null) {
+	    return unboxedGetter.apply(entity); // Read unboxed (int, long and double)
 	} else {
 	    Object result = entity.getAttribute(namedType);
 	    if (result == null && primitive) {
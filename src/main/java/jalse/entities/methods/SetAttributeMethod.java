@@ -3,7 +3,9 @@ package jalse.entities.methods;
 import static jalse.entities.functions.Functions.defaultValue;
 import static jalse.entities.functions.Functions.toClass;
 
+import java.lang.reflect.Type;
 import java.util.Objects;
+import java.util.function.BiFunction;
 
 import jalse.attributes.AttributeContainer;
 import jalse.attributes.AttributeType;
@@ -17,6 +19,8 @@ import jalse.entities.functions.SetAttributeFunction;
  * <ul>
  * <li>{@link AttributeContainer#setOptAttribute(String, AttributeType, Object)}</li>
  * <li>{@link AttributeContainer#setAttribute(String, AttributeType, Object)}</li>
+ * <li>{@link AttributeContainer#setInt(NamedAttributeType, int)} (and the {@code long} and
+ * {@code double} equivalents) for primitive parameter types</li>
  * <li>{@link AttributeContainer#removeOptAttribute(String, AttributeType)}</li>
  * <li>{@link AttributeContainer#removeAttribute(String, AttributeType)}</li>
  * </ul>
@@ -29,10 +33,27 @@ import jalse.entities.functions.SetAttributeFunction;
  */
 public class SetAttributeMethod implements EntityMethod {
 
+    @SuppressWarnings("unchecked")
+    private static BiFunction<Entity, Object, Object> unboxedSetterOf(final NamedAttributeType<?> namedType) {
+	final Type valueType = namedType.getType().getValueType();
+	if (Integer.class.equals(valueType)) {
+	    final NamedAttributeType<Integer> intType = (NamedAttributeType<Integer>) namedType;
+	    return (e, v) -> e.setInt(intType, (Integer) v);
+	} else if (Double.class.equals(valueType)) {
+	    final NamedAttributeType<Double> doubleType = (NamedAttributeType<Double>) namedType;
+	    return (e, v) -> e.setDouble(doubleType, (Double) v);
+	} else if (Long.class.equals(valueType)) {
+	    final NamedAttributeType<Long> longType = (NamedAttributeType<Long>) namedType;
+	    return (e, v) -> e.setLong(longType, (Long) v);
+	}
+	return null;
+    }
+
     private final NamedAttributeType<Object> namedType;
     private final boolean primitive;
     private final boolean optional;
     private final Object defaultValue;
+    private final BiFunction<Entity, Object, Object> unboxedSetter;
 
     /**
      * Creates a new set method
@@ -50,6 +71,7 @@ public class SetAttributeMethod implements EntityMethod {
 	this.primitive = primitive;
 	this.optional = optional;
 	defaultValue = primitive ? defaultValue(toClass(namedType.getType().getValueType())) : null;
+	unboxedSetter = primitive ? unboxedSetterOf(namedType) : null;
     }
 
     /**
@@ -87,6 +109,8 @@ public class SetAttributeMethod implements EntityMethod {
 	}
 	if (optional) {
 	    return entity.setOptAttribute(namedType, args[0]);
+	} else if (unboxedSetter != null) {
+	    return unboxedSetter.apply(entity, args[0]); // Stored unboxed (int, long and double)
 	} else {
 	    Object result = entity.setAttribute(namedType, args[0]);
 	    if (result == null && primitive) {
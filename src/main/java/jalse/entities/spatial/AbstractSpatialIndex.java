@@ -0,0 +1,283 @@
+package jalse.entities.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import jalse.entities.Entity;
+
+/**
+ * Thread-safe base for {@link SpatialIndex} implementations. This keeps the point of each entity
+ * and performs the exact (distance or box) checks, the implementation only has to supply the
+ * candidates for a region and the nearest entries.
+ *
+ * @author Elliot Ford
+ *
+ * @param <E>
+ *            Entry type.
+ */
+abstract class AbstractSpatialIndex<E extends AbstractSpatialIndex.Entry> implements SpatialIndex {
+
+    static class Entry {
+
+	final Entity entity;
+	final double[] point;
+
+	Entry(final Entity entity, final double[] point) {
+	    this.entity = entity;
+	    this.point = point;
+	}
+
+	double distanceSquared(final double[] other) {
+	    double sum = 0.;
+	    for (int i = 0; i < point.length; i++) {
+		final double d = point[i] - other[i];
+		sum += d * d;
+	    }
+	    return sum;
+	}
+    }
+
+    static boolean withinBox(final double[] point, final double[] min, final double[] max) {
+	for (int i = 0; i < point.length; i++) {
+	    if (point[i] < min[i] || point[i] > max[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    private final int dimensions;
+    private final Map<Entity, E> entries;
+    private final Lock read;
+    private final Lock write;
+
+    AbstractSpatialIndex(final int dimensions) {
+	if (dimensions <= 0) {
+	    throw new IllegalArgumentException();
+	}
+	this.dimensions = dimensions;
+	entries = new HashMap<>();
+	final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+	read = rwLock.readLock();
+	write = rwLock.writeLock();
+    }
+
+    /**
+     * Adds an entry to the structure (the entry has already been added to the index).
+     */
+    abstract void addEntry(E e);
+
+    private void checkPoint(final double[] point) {
+	if (point.length != dimensions) {
+	    throw new IllegalArgumentException(
+		    String.format("Point has %d dimensions (expected %d)", point.length, dimensions));
+	}
+	for (final double d : point) {
+	    if (Double.isNaN(d) || Double.isInfinite(d)) {
+		throw new IllegalArgumentException(String.format("Point %s is not finite", Arrays.toString(point)));
+	    }
+	}
+    }
+
+    @Override
+    public void clear() {
+	write.lock();
+	try {
+	    entries.clear();
+	    clearEntries();
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    /**
+     * Removes all entries from the structure.
+     */
+    abstract void clearEntries();
+
+    @Override
+    public boolean contains(final Entity e) {
+	read.lock();
+	try {
+	    return entries.containsKey(e);
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    /**
+     * Performs the action for every entry that could be within the box (may include more).
+     */
+    abstract void forEachInBox(double[] min, double[] max, Consumer<? super E> action);
+
+    @Override
+    public int getDimensions() {
+	return dimensions;
+    }
+
+    @Override
+    public List<Entity> getNearest(final double[] point, final int k) {
+	checkPoint(point);
+	if (k < 0) {
+	    throw new IllegalArgumentException();
+	}
+
+	read.lock();
+	try {
+	    final List<Entity> nearest = new ArrayList<>();
+	    if (k > 0 && !entries.isEmpty()) {
+		nearest(point, Math.min(k, entries.size())).forEach(e -> nearest.add(e.entity));
+	    }
+	    return nearest;
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public double[] getPosition(final Entity e) {
+	read.lock();
+	try {
+	    final E entry = entries.get(e);
+	    return entry != null ? entry.point.clone() : null;
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public Set<Entity> getWithinBox(final double[] min, final double[] max) {
+	checkPoint(min);
+	checkPoint(max);
+	for (int i = 0; i < dimensions; i++) {
+	    if (min[i] > max[i]) {
+		throw new IllegalArgumentException(
+			String.format("Box %s to %s is inverted", Arrays.toString(min), Arrays.toString(max)));
+	    }
+	}
+
+	read.lock();
+	try {
+	    final Set<Entity> within = new HashSet<>();
+	    forEachInBox(min, max, e -> {
+		if (withinBox(e.point, min, max)) {
+		    within.add(e.entity);
+		}
+	    });
+	    return within;
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public Set<Entity> getWithinRadius(final double[] centre, final double radius) {
+	checkPoint(centre);
+	if (!(radius >= 0.) || Double.isInfinite(radius)) {
+	    throw new IllegalArgumentException();
+	}
+
+	final double[] min = new double[dimensions];
+	final double[] max = new double[dimensions];
+	for (int i = 0; i < dimensions; i++) {
+	    min[i] = centre[i] - radius;
+	    max[i] = centre[i] + radius;
+	}
+	final double radiusSquared = radius * radius;
+
+	read.lock();
+	try {
+	    final Set<Entity> within = new HashSet<>();
+	    forEachInBox(min, max, e -> {
+		if (e.distanceSquared(centre) <= radiusSquared) {
+		    within.add(e.entity);
+		}
+	    });
+	    return within;
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    /**
+     * Moves an entry within the structure (this must update the entry point).
+     */
+    abstract void moveEntry(E e, double[] point);
+
+    /**
+     * Gets the k nearest entries in distance order (there are at least k entries).
+     */
+    abstract List<E> nearest(double[] point, int k);
+
+    /**
+     * Creates a new entry.
+     */
+    abstract E newEntry(Entity e, double[] point);
+
+    @Override
+    public boolean remove(final Entity e) {
+	write.lock();
+	try {
+	    final E entry = entries.remove(e);
+	    if (entry == null) {
+		return false;
+	    }
+	    removeEntry(entry);
+	    return true;
+	} finally {
+	    write.unlock();
+	}
+    }
+
+    /**
+     * Removes an entry from the structure (the entry has already been removed from the index).
+     */
+    abstract void removeEntry(E e);
+
+    @Override
+    public int size() {
+	read.lock();
+	try {
+	    return entries.size();
+	} finally {
+	    read.unlock();
+	}
+    }
+
+    @Override
+    public String toString() {
+	return getClass().getSimpleName() + " [dimensions=" + dimensions + ", size=" + size() + "]";
+    }
+
+    @Override
+    public boolean update(final Entity e, final double[] point) {
+	Objects.requireNonNull(e);
+	checkPoint(point);
+
+	write.lock();
+	try {
+	    final E entry = entries.get(e);
+	    if (entry != null) {
+		moveEntry(entry, point);
+		return false;
+	    }
+
+	    final E added = newEntry(e, point.clone());
+	    entries.put(e, added);
+	    addEntry(added);
+	    return true;
+	} finally {
+	    write.unlock();
+	}
+    }
+}
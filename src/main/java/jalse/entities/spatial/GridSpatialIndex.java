@@ -0,0 +1,204 @@
+package jalse.entities.spatial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import jalse.entities.Entity;
+
+/**
+ * A {@link SpatialIndex} backed by a uniform grid of cubic cells (only occupied cells are kept).
+ * Updates are constant time and queries only visit the cells overlapping the searched region so
+ * this works best when the cell size is close to the usual query radius.<br>
+ * <br>
+ * For clustered or very sparse positions {@link TreeSpatialIndex} adapts better.
+ *
+ * @author Elliot Ford
+ *
+ */
+public class GridSpatialIndex extends AbstractSpatialIndex<GridSpatialIndex.GridEntry> {
+
+    static class GridEntry extends AbstractSpatialIndex.Entry {
+
+	long cell;
+	int slot;
+
+	GridEntry(final Entity entity, final double[] point) {
+	    super(entity, point);
+	}
+    }
+
+    private static final long CELL_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final double cellSize;
+    private final Map<Long, List<GridEntry>> cells;
+
+    /**
+     * Creates a new grid spatial index.
+     *
+     * @param dimensions
+     *            Point dimensions.
+     * @param cellSize
+     *            Length of each side of a cell.
+     */
+    public GridSpatialIndex(final int dimensions, final double cellSize) {
+	super(dimensions);
+	if (!(cellSize > 0.) || Double.isInfinite(cellSize)) {
+	    throw new IllegalArgumentException();
+	}
+	this.cellSize = cellSize;
+	cells = new HashMap<>();
+    }
+
+    @Override
+    void addEntry(final GridEntry e) {
+	e.cell = cellOf(e.point);
+	final List<GridEntry> cell = cells.computeIfAbsent(e.cell, k -> new ArrayList<>());
+	e.slot = cell.size();
+	cell.add(e);
+    }
+
+    private long cellCount(final long[] lo, final long[] hi) {
+	long count = 1L;
+	for (int i = 0; i < lo.length; i++) {
+	    final long span = hi[i] - lo[i] + 1L;
+	    if (span <= 0L || count > Long.MAX_VALUE / span) {
+		return Long.MAX_VALUE; // Overflow
+	    }
+	    count *= span;
+	}
+	return count;
+    }
+
+    private long cellOf(final double[] point) {
+	long key = 0L;
+	for (final double d : point) {
+	    key = key * CELL_MULTIPLIER + coordinateOf(d);
+	}
+	return key;
+    }
+
+    @Override
+    void clearEntries() {
+	cells.clear();
+    }
+
+    private long coordinateOf(final double d) {
+	return (long) Math.floor(d / cellSize);
+    }
+
+    @Override
+    void forEachInBox(final double[] min, final double[] max, final Consumer<? super GridEntry> action) {
+	final int dimensions = min.length;
+	final long[] lo = new long[dimensions];
+	final long[] hi = new long[dimensions];
+	for (int i = 0; i < dimensions; i++) {
+	    lo[i] = coordinateOf(min[i]);
+	    hi[i] = coordinateOf(max[i]);
+	}
+
+	// Cheaper to visit every occupied cell
+	if (cellCount(lo, hi) >= cells.size()) {
+	    cells.values().forEach(c -> c.forEach(action));
+	    return;
+	}
+
+	// Keys can collide so a cell may be visited more than once
+	final Set<List<GridEntry>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+	final long[] current = lo.clone();
+	for (;;) {
+	    long key = 0L;
+	    for (final long c : current) {
+		key = key * CELL_MULTIPLIER + c;
+	    }
+	    final List<GridEntry> cell = cells.get(key);
+	    if (cell != null && visited.add(cell)) {
+		cell.forEach(action);
+	    }
+
+	    // Next cell
+	    int i = 0;
+	    while (i < dimensions && current[i] == hi[i]) {
+		current[i] = lo[i];
+		i++;
+	    }
+	    if (i == dimensions) {
+		return;
+	    }
+	    current[i]++;
+	}
+    }
+
+    /**
+     * Gets the length of each side of a cell.
+     *
+     * @return Cell size.
+     */
+    public double getCellSize() {
+	return cellSize;
+    }
+
+    @Override
+    void moveEntry(final GridEntry e, final double[] point) {
+	if (cellOf(point) == e.cell) {
+	    System.arraycopy(point, 0, e.point, 0, point.length);
+	    return;
+	}
+
+	removeEntry(e);
+	System.arraycopy(point, 0, e.point, 0, point.length);
+	addEntry(e);
+    }
+
+    @Override
+    List<GridEntry> nearest(final double[] point, final int k) {
+	final int dimensions = point.length;
+	final double[] min = new double[dimensions];
+	final double[] max = new double[dimensions];
+
+	// Grow the search radius until there are enough within it
+	for (double radius = cellSize;; radius *= 2.) {
+	    final double radiusSquared = radius * radius;
+	    for (int i = 0; i < dimensions; i++) {
+		min[i] = point[i] - radius;
+		max[i] = point[i] + radius;
+	    }
+
+	    final List<GridEntry> found = new ArrayList<>();
+	    forEachInBox(min, max, e -> {
+		if (e.distanceSquared(point) <= radiusSquared) {
+		    found.add(e);
+		}
+	    });
+
+	    if (found.size() >= k) {
+		found.sort(Comparator.comparingDouble(e -> e.distanceSquared(point)));
+		return found.subList(0, k);
+	    }
+	}
+    }
+
+    @Override
+    GridEntry newEntry(final Entity e, final double[] point) {
+	return new GridEntry(e, point);
+    }
+
+    @Override
+    void removeEntry(final GridEntry e) {
+	final List<GridEntry> cell = cells.get(e.cell);
+	final GridEntry last = cell.remove(cell.size() - 1);
+	if (last != e) {
+	    cell.set(e.slot, last);
+	    last.slot = e.slot;
+	}
+	if (cell.isEmpty()) {
+	    cells.remove(e.cell);
+	}
+    }
+}
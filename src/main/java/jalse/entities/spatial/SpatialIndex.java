@@ -0,0 +1,114 @@
+package jalse.entities.spatial;
+
+import java.util.List;
+import java.util.Set;
+
+import jalse.entities.Entity;
+
+/**
+ * A SpatialIndex keeps the position of entities (as points with a fixed number of dimensions) so
+ * neighbourhood queries do not have to filter every entity. Points are copied when updated and all
+ * queries are exact (distances are Euclidean).<br>
+ * <br>
+ * An index can be kept up to date with the entities of a container using
+ * {@link SpatialIndexes#bindIndex(jalse.entities.EntityContainer, jalse.attributes.NamedAttributeType, java.util.function.Function, SpatialIndex)}
+ * .
+ *
+ * @author Elliot Ford
+ *
+ * @see GridSpatialIndex
+ * @see TreeSpatialIndex
+ *
+ */
+public interface SpatialIndex {
+
+    /**
+     * Removes all entities from the index.
+     */
+    void clear();
+
+    /**
+     * Checks whether the entity is within the index.
+     *
+     * @param e
+     *            Entity to check.
+     * @return Whether the entity has a position.
+     */
+    boolean contains(Entity e);
+
+    /**
+     * Gets the number of dimensions of each point.
+     *
+     * @return Point dimensions.
+     */
+    int getDimensions();
+
+    /**
+     * Gets the nearest entities to the point (closest first).
+     *
+     * @param point
+     *            Point to search from.
+     * @param k
+     *            Maximum number of entities to get.
+     * @return Up to k nearest entities.
+     */
+    List<Entity> getNearest(double[] point, int k);
+
+    /**
+     * Gets the position of the entity.
+     *
+     * @param e
+     *            Entity to get position for.
+     * @return Copy of the point or null if the entity is not within the index.
+     */
+    double[] getPosition(Entity e);
+
+    /**
+     * Gets the entities within the box (inclusive).
+     *
+     * @param min
+     *            Lowest corner of the box.
+     * @param max
+     *            Highest corner of the box.
+     * @return Entities within the box.
+     */
+    Set<Entity> getWithinBox(double[] min, double[] max);
+
+    /**
+     * Gets the entities within the radius of the point (inclusive).
+     *
+     * @param centre
+     *            Centre point.
+     * @param radius
+     *            Search radius.
+     * @return Entities within the radius.
+     */
+    Set<Entity> getWithinRadius(double[] centre, double radius);
+
+    /**
+     * Removes the entity from the index.
+     *
+     * @param e
+     *            Entity to remove.
+     * @return Whether the entity was within the index.
+     */
+    boolean remove(Entity e);
+
+    /**
+     * Gets the number of entities within the index.
+     *
+     * @return Entity count.
+     */
+    int size();
+
+    /**
+     * Adds or moves the entity to the point.
+     *
+     * @param e
+     *            Entity to update.
+     * @param point
+     *            Position of the entity.
+     * @return Whether the entity was not already within the index.
+     */
+    boolean update(Entity e, double[] point);
+}
@@ -0,0 +1,201 @@
+package jalse.entities.spatial;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import jalse.attributes.AttributeContainer;
+import jalse.attributes.AttributeEvent;
+import jalse.attributes.AttributeListener;
+import jalse.attributes.NamedAttributeType;
+import jalse.entities.Entity;
+import jalse.entities.EntityContainer;
+import jalse.entities.EntityEvent;
+import jalse.entities.EntityListener;
+
+/**
+ * Keeps a {@link SpatialIndex} up to date with the position attribute of the entities directly
+ * within a container. Entities are added as they are created, received or moved in from within the
+ * same tree (and removed as they are killed or transferred) and their position is updated from the
+ * attribute events. Entities are added by listening to the position and then reading it (the
+ * position read is ignored if an event for the entity is handled in between). Events for entities
+ * no longer tracked (such as through a stale reference to a killed entity) are ignored.
+ *
+ * @author Elliot Ford
+ *
+ * @param <T>
+ *            Position attribute type.
+ *
+ * @see SpatialIndexes#bindIndex(EntityContainer, NamedAttributeType, Function, SpatialIndex)
+ *
+ */
+public class SpatialIndexBinding<T> implements EntityListener, AttributeListener<T> {
+
+    private final EntityContainer container;
+    private final NamedAttributeType<T> namedType;
+    private final Function<? super T, double[]> pointFunction;
+    private final SpatialIndex index;
+    private final Set<Entity> tracked; // Listening (guards index updates)
+    private final Set<Entity> adding; // Listening but not yet read
+    private final AtomicBoolean bound;
+
+    SpatialIndexBinding(final EntityContainer container, final NamedAttributeType<T> namedType,
+	    final Function<? super T, double[]> pointFunction, final SpatialIndex index) {
+	this.container = Objects.requireNonNull(container);
+	this.namedType = Objects.requireNonNull(namedType);
+	this.pointFunction = Objects.requireNonNull(pointFunction);
+	this.index = Objects.requireNonNull(index);
+	tracked = new HashSet<>();
+	adding = new HashSet<>();
+	bound = new AtomicBoolean();
+    }
+
+    @Override
+    public void attributeAdded(final AttributeEvent<T> event) {
+	update(event.getContainer(), event.getValue());
+    }
+
+    @Override
+    public void attributeChanged(final AttributeEvent<T> event) {
+	update(event.getContainer(), event.getValue());
+    }
+
+    @Override
+    public void attributeRemoved(final AttributeEvent<T> event) {
+	final AttributeContainer ac = event.getContainer();
+	if (ac instanceof Entity) {
+	    synchronized (tracked) {
+		if (tracked.contains(ac)) {
+		    adding.remove(ac);
+		    index.remove((Entity) ac);
+		}
+	    }
+	}
+    }
+
+    void bind() {
+	if (!bound.getAndSet(true)) {
+	    container.addEntityListener(this);
+	    container.streamEntities().forEach(this::track);
+	}
+    }
+
+    @Override
+    public void entityCreated(final EntityEvent event) {
+	track(event.getEntity());
+    }
+
+    @Override
+    public void entityKilled(final EntityEvent event) {
+	untrack(event.getEntity());
+    }
+
+    @Override
+    public void entityMovedIn(final EntityEvent event) {
+	track(event.getEntity());
+    }
+
+    @Override
+    public void entityReceived(final EntityEvent event) {
+	track(event.getEntity());
+    }
+
+    @Override
+    public void entityTransferred(final EntityEvent event) {
+	untrack(event.getEntity());
+    }
+
+    /**
+     * Gets the container whose entities are indexed.
+     *
+     * @return Bound container.
+     */
+    public EntityContainer getContainer() {
+	return container;
+    }
+
+    /**
+     * Gets the index being kept up to date.
+     *
+     * @return Spatial index.
+     */
+    public SpatialIndex getIndex() {
+	return index;
+    }
+
+    /**
+     * Gets the position attribute type.
+     *
+     * @return Position attribute type.
+     */
+    public NamedAttributeType<T> getNamedType() {
+	return namedType;
+    }
+
+    /**
+     * Checks whether the index is still being kept up to date.
+     *
+     * @return Whether bound.
+     */
+    public boolean isBound() {
+	return bound.get();
+    }
+
+    private void track(final Entity e) {
+	synchronized (tracked) {
+	    tracked.add(e);
+	    adding.add(e);
+	}
+
+	// Listen first so no update is missed
+	e.addAttributeListener(namedType, this);
+	final T position = e.getAttribute(namedType);
+
+	synchronized (tracked) {
+	    if (adding.remove(e) && position != null) { // Otherwise an event was handled
+		index.update(e, pointFunction.apply(position));
+	    }
+	}
+    }
+
+    /**
+     * Stops keeping the index up to date and clears it.
+     */
+    public void unbind() {
+	if (bound.getAndSet(false)) {
+	    container.removeEntityListener(this);
+	    container.streamEntities().forEach(e -> e.removeAttributeListener(namedType, this));
+	    synchronized (tracked) {
+		tracked.clear();
+		adding.clear();
+		index.clear();
+	    }
+	}
+    }
+
+    private void untrack(final Entity e) {
+	synchronized (tracked) {
+	    tracked.remove(e); // Ignore any later events
+	    adding.remove(e);
+	    index.remove(e);
+	}
+
+	if (e.hasAttributeListener(namedType, this)) { // Killed entities may have released their attributes
+	    e.removeAttributeListener(namedType, this);
+	}
+    }
+
+    private void update(final AttributeContainer ac, final T position) {
+	if (ac instanceof Entity && position != null) {
+	    synchronized (tracked) {
+		if (!tracked.contains(ac)) {
+		    return;
+		}
+		adding.remove(ac); // Newer than any position being added
+		index.update((Entity) ac, pointFunction.apply(position));
+	    }
+	}
+    }
+}
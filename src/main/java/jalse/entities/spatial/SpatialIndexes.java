@@ -0,0 +1,50 @@
+package jalse.entities.spatial;
+
+import java.util.function.Function;
+
+import jalse.attributes.NamedAttributeType;
+import jalse.entities.EntityContainer;
+
+/**
+ * A utility for {@link SpatialIndex} related functionality.<br>
+ * <br>
+ * Neighbourhood queries (such as all entities within a radius) would otherwise stream and filter
+ * every entity within a container. A spatial index bound to the position attribute of the
+ * entities answers these by only visiting the nearby entities.
+ *
+ * @author Elliot Ford
+ *
+ * @see GridSpatialIndex
+ * @see TreeSpatialIndex
+ *
+ */
+public final class SpatialIndexes {
+
+    /**
+     * Binds the spatial index to the position attribute of the entities within the container. The
+     * index is filled with the current entities and is then kept up to date until unbound.
+     *
+     * @param container
+     *            Container whose (direct) entities to index.
+     * @param namedType
+     *            Position attribute type.
+     * @param pointFunction
+     *            Converts a position to a point (with the index dimensions).
+     * @param index
+     *            Index to keep up to date.
+     * @return The binding (for unbinding).
+     *
+     * @see SpatialIndexBinding#unbind()
+     */
+    public static <T> SpatialIndexBinding<T> bindIndex(final EntityContainer container,
+	    final NamedAttributeType<T> namedType, final Function<? super T, double[]> pointFunction,
+	    final SpatialIndex index) {
+	final SpatialIndexBinding<T> binding = new SpatialIndexBinding<>(container, namedType, pointFunction, index);
+	binding.bind();
+	return binding;
+    }
+
+    private SpatialIndexes() {
+	throw new UnsupportedOperationException();
+    }
+}
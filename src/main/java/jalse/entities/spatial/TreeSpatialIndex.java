@@ -0,0 +1,368 @@
+package jalse.entities.spatial;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import jalse.entities.Entity;
+
+/**
+ * A {@link SpatialIndex} backed by a region tree: a quadtree for 2 dimensions or an octree for 3
+ * dimensions (a binary tree for 1 dimension). Each node is a cube split into equal halves on every
+ * axis once it holds more than the node capacity. The root grows to cover new points so positions
+ * do not need to be bounded and nodes are merged again as entities leave.<br>
+ * <br>
+ * Unlike {@link GridSpatialIndex} this adapts to clustered positions and needs no tuning.
+ *
+ * @author Elliot Ford
+ *
+ */
+public class TreeSpatialIndex extends AbstractSpatialIndex<TreeSpatialIndex.TreeEntry> {
+
+    private static class Candidate implements Comparable<Candidate> {
+
+	private final double distanceSquared;
+	private final Node node;
+	private final TreeEntry entry;
+
+	private Candidate(final double distanceSquared, final Node node, final TreeEntry entry) {
+	    this.distanceSquared = distanceSquared;
+	    this.node = node;
+	    this.entry = entry;
+	}
+
+	@Override
+	public int compareTo(final Candidate o) {
+	    return Double.compare(distanceSquared, o.distanceSquared);
+	}
+    }
+
+    private static class Node {
+
+	private final double[] min;
+	private final double size;
+	private Node parent;
+	private Node[] children;
+	private List<TreeEntry> entries;
+	private int count;
+
+	private Node(final double[] min, final double size) {
+	    this.min = min;
+	    this.size = size;
+	    entries = new ArrayList<>();
+	}
+
+	private boolean contains(final double[] point) {
+	    for (int i = 0; i < min.length; i++) {
+		if (point[i] < min[i] || point[i] >= min[i] + size) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+
+	private int childIndexOf(final double[] point) {
+	    final double half = size / 2.;
+	    int index = 0;
+	    for (int i = 0; i < min.length; i++) {
+		if (point[i] >= min[i] + half) {
+		    index |= 1 << i;
+		}
+	    }
+	    return index;
+	}
+
+	private Node childOf(final int index) {
+	    Node child = children[index];
+	    if (child == null) {
+		final double half = size / 2.;
+		final double[] childMin = min.clone();
+		for (int i = 0; i < min.length; i++) {
+		    if ((index & 1 << i) != 0) {
+			childMin[i] += half;
+		    }
+		}
+		child = new Node(childMin, half);
+		child.parent = this;
+		children[index] = child;
+	    }
+	    return child;
+	}
+
+	private double distanceSquared(final double[] point) {
+	    double sum = 0.;
+	    for (int i = 0; i < min.length; i++) {
+		final double d;
+		if (point[i] < min[i]) {
+		    d = min[i] - point[i];
+		} else if (point[i] > min[i] + size) {
+		    d = point[i] - (min[i] + size);
+		} else {
+		    continue;
+		}
+		sum += d * d;
+	    }
+	    return sum;
+	}
+
+	private boolean intersects(final double[] boxMin, final double[] boxMax) {
+	    for (int i = 0; i < min.length; i++) {
+		if (boxMax[i] < min[i] || boxMin[i] > min[i] + size) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+
+	private boolean isSplittable() {
+	    final double half = size / 2.;
+	    for (final double d : min) {
+		if (d + half == d || d + half == d + size) {
+		    return false; // Out of precision
+		}
+	    }
+
+	    // Equal points cannot be separated
+	    final double[] first = entries.get(0).point;
+	    for (final TreeEntry e : entries) {
+		if (e.distanceSquared(first) != 0.) {
+		    return true;
+		}
+	    }
+	    return false;
+	}
+    }
+
+    static class TreeEntry extends AbstractSpatialIndex.Entry {
+
+	private Node node;
+
+	TreeEntry(final Entity entity, final double[] point) {
+	    super(entity, point);
+	}
+    }
+
+    /**
+     * Default number of entities a node holds before being split.
+     */
+    public static final int DEFAULT_NODE_CAPACITY = 8;
+
+    private static final int MAX_DIMENSIONS = 3;
+
+    private final int nodeCapacity;
+    private Node root;
+
+    /**
+     * Creates a new tree spatial index with the default node capacity.
+     *
+     * @param dimensions
+     *            Point dimensions (up to 3).
+     *
+     * @see #DEFAULT_NODE_CAPACITY
+     */
+    public TreeSpatialIndex(final int dimensions) {
+	this(dimensions, DEFAULT_NODE_CAPACITY);
+    }
+
+    /**
+     * Creates a new tree spatial index.
+     *
+     * @param dimensions
+     *            Point dimensions (up to 3).
+     * @param nodeCapacity
+     *            Number of entities a node holds before being split.
+     */
+    public TreeSpatialIndex(final int dimensions, final int nodeCapacity) {
+	super(dimensions);
+	if (dimensions > MAX_DIMENSIONS || nodeCapacity <= 0) {
+	    throw new IllegalArgumentException();
+	}
+	this.nodeCapacity = nodeCapacity;
+	root = null;
+    }
+
+    @Override
+    void addEntry(final TreeEntry e) {
+	final double[] point = e.point;
+
+	if (root == null) {
+	    final double[] min = new double[point.length];
+	    for (int i = 0; i < point.length; i++) {
+		min[i] = Math.floor(point[i]);
+	    }
+	    root = new Node(min, 1.);
+	}
+
+	// Grow towards the point
+	while (!root.contains(point)) {
+	    final double[] min = root.min.clone();
+	    for (int i = 0; i < point.length; i++) {
+		if (point[i] < min[i]) {
+		    min[i] -= root.size;
+		}
+	    }
+	    final Node grown = new Node(min, root.size * 2.);
+	    grown.entries = null;
+	    grown.children = new Node[1 << point.length];
+	    grown.count = root.count;
+	    if (root.count > 0) {
+		grown.children[grown.childIndexOf(root.min)] = root;
+		root.parent = grown;
+	    }
+	    root = grown;
+	}
+
+	insert(root, e);
+    }
+
+    @Override
+    void clearEntries() {
+	root = null;
+    }
+
+    private void collapse(final Node node) {
+	final List<TreeEntry> entries = new ArrayList<>(node.count);
+	forEachInBox(node, null, null, entries::add);
+	entries.forEach(e -> e.node = node);
+	node.children = null;
+	node.entries = entries;
+    }
+
+    @Override
+    void forEachInBox(final double[] min, final double[] max, final Consumer<? super TreeEntry> action) {
+	if (root != null) {
+	    forEachInBox(root, min, max, action);
+	}
+    }
+
+    private void forEachInBox(final Node from, final double[] min, final double[] max,
+	    final Consumer<? super TreeEntry> action) {
+	final Deque<Node> nodes = new ArrayDeque<>();
+	nodes.push(from);
+	while (!nodes.isEmpty()) {
+	    final Node node = nodes.pop();
+	    if (min != null && !node.intersects(min, max)) {
+		continue;
+	    }
+	    if (node.children == null) {
+		node.entries.forEach(action);
+		continue;
+	    }
+	    for (final Node child : node.children) {
+		if (child != null) {
+		    nodes.push(child);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Gets the number of entities a node holds before being split.
+     *
+     * @return Node capacity.
+     */
+    public int getNodeCapacity() {
+	return nodeCapacity;
+    }
+
+    private void insert(final Node from, final TreeEntry e) {
+	Node node = from;
+	for (;;) {
+	    node.count++;
+	    if (node.children == null) {
+		break;
+	    }
+	    node = node.childOf(node.childIndexOf(e.point));
+	}
+
+	node.entries.add(e);
+	e.node = node;
+
+	if (node.entries.size() > nodeCapacity && node.isSplittable()) {
+	    split(node);
+	}
+    }
+
+    @Override
+    void moveEntry(final TreeEntry e, final double[] point) {
+	if (e.node.contains(point)) {
+	    System.arraycopy(point, 0, e.point, 0, point.length);
+	    return;
+	}
+
+	removeEntry(e);
+	System.arraycopy(point, 0, e.point, 0, point.length);
+	addEntry(e);
+    }
+
+    @Override
+    List<TreeEntry> nearest(final double[] point, final int k) {
+	final List<TreeEntry> nearest = new ArrayList<>(k);
+
+	// Best first (nodes are never further than their entries)
+	final PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+	candidates.add(new Candidate(root.distanceSquared(point), root, null));
+	while (nearest.size() < k) {
+	    final Candidate c = candidates.poll();
+	    if (c.entry != null) {
+		nearest.add(c.entry);
+		continue;
+	    }
+
+	    final Node node = c.node;
+	    if (node.children == null) {
+		node.entries.forEach(e -> candidates.add(new Candidate(e.distanceSquared(point), null, e)));
+		continue;
+	    }
+	    for (final Node child : node.children) {
+		if (child != null) {
+		    candidates.add(new Candidate(child.distanceSquared(point), child, null));
+		}
+	    }
+	}
+
+	return nearest;
+    }
+
+    @Override
+    TreeEntry newEntry(final Entity e, final double[] point) {
+	return new TreeEntry(e, point);
+    }
+
+    @Override
+    void removeEntry(final TreeEntry e) {
+	final Node node = e.node;
+	node.entries.remove(e);
+	e.node = null;
+
+	// Merge the highest ancestor that fits within a node
+	Node merge = null;
+	for (Node n = node; n != null; n = n.parent) {
+	    n.count--;
+	    if (n.children != null && n.count <= nodeCapacity) {
+		merge = n;
+	    }
+	}
+
+	if (root.count == 0) {
+	    root = null;
+	} else if (merge != null) {
+	    collapse(merge);
+	} else if (node.count == 0) {
+	    // Drop the empty leaf
+	    final Node[] siblings = node.parent.children;
+	    siblings[node.parent.childIndexOf(node.min)] = null;
+	}
+    }
+
+    private void split(final Node node) {
+	final List<TreeEntry> entries = node.entries;
+	node.entries = null;
+	node.children = new Node[1 << node.min.length];
+	node.count -= entries.size();
+	entries.forEach(e -> insert(node, e));
+    }
+}
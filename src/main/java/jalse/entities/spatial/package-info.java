@@ -0,0 +1,9 @@
+/**
+ * This package provides {@link jalse.entities.spatial.SpatialIndex} implementations for
+ * neighbourhood queries (radius, box and nearest) over the position attribute of entities. An
+ * index can be bound to a {@link jalse.entities.EntityContainer} so it is kept up to date using
+ * {@link jalse.attributes.AttributeListener} events.
+ *
+ * @see jalse.entities.spatial.SpatialIndexes
+ */
+package jalse.entities.spatial;
@@ -0,0 +1,402 @@
+package jalse.misc;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable hash array mapped trie (HAMT). Updates ({@link #plus(Object, Object)} and
+ * {@link #minus(Object)}) return a new map that shares all of the unchanged structure with this
+ * one, so each update only copies the nodes on the path to the changed key (at most seven nodes of
+ * up to 32 slots). Any instance is therefore a consistent snapshot that can be kept and read
+ * without locking.<br>
+ * <br>
+ * Keys with the same full hash are kept together in a collision node. Null keys and values are not
+ * supported. The {@link Map} mutators throw {@link UnsupportedOperationException}.
+ *
+ * @author Elliot Ford
+ *
+ * @see SnapshotMap
+ *
+ * @param <K>
+ *            Key type.
+ * @param <V>
+ *            Value type.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final class Collision {
+
+	private final int hash;
+	private final Leaf<?, ?>[] leaves;
+
+	private Collision(final int hash, final Leaf<?, ?>[] leaves) {
+	    this.hash = hash;
+	    this.leaves = leaves;
+	}
+    }
+
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+
+	private final Deque<Object> slots;
+	private Leaf<K, V> next;
+
+	private EntryIterator() {
+	    slots = new ArrayDeque<>();
+	    slots.push(root);
+	    next = advance();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Leaf<K, V> advance() {
+	    while (!slots.isEmpty()) {
+		final Object slot = slots.pop();
+		if (slot instanceof Leaf) {
+		    return (Leaf<K, V>) slot;
+		} else if (slot instanceof Node) {
+		    for (final Object child : ((Node) slot).slots) {
+			slots.push(child);
+		    }
+		} else {
+		    for (final Leaf<?, ?> leaf : ((Collision) slot).leaves) {
+			slots.push(leaf);
+		    }
+		}
+	    }
+	    return null;
+	}
+
+	@Override
+	public boolean hasNext() {
+	    return next != null;
+	}
+
+	@Override
+	public Entry<K, V> next() {
+	    if (next == null) {
+		throw new NoSuchElementException();
+	    }
+	    final Leaf<K, V> current = next;
+	    next = advance();
+	    return current;
+	}
+    }
+
+    private static final class Leaf<K, V> extends SimpleImmutableEntry<K, V> {
+
+	private static final long serialVersionUID = -3403283581424519498L;
+
+	private final int hash;
+
+	private Leaf(final int hash, final K key, final V value) {
+	    super(key, value);
+	    this.hash = hash;
+	}
+    }
+
+    private static final class Node {
+
+	private final int bitmap;
+	private final Object[] slots; // Leaf, Node or Collision (in bit order)
+
+	private Node(final int bitmap, final Object[] slots) {
+	    this.bitmap = bitmap;
+	    this.slots = slots;
+	}
+    }
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(new Node(0, new Object[0]), 0);
+
+    private static int bitOf(final int hash, final int shift) {
+	return 1 << (hash >>> shift & MASK);
+    }
+
+    /**
+     * Gets the empty map.
+     *
+     * @return Empty persistent map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+	return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    private static int hashOf(final Object key) {
+	final int h = key.hashCode();
+	return h ^ h >>> 16;
+    }
+
+    private static int hashOfSlot(final Object slot) {
+	return slot instanceof Leaf ? ((Leaf<?, ?>) slot).hash : ((Collision) slot).hash;
+    }
+
+    private static int indexOf(final int bitmap, final int bit) {
+	return Integer.bitCount(bitmap & bit - 1);
+    }
+
+    private static Object[] insert(final Object[] slots, final int index, final Object slot) {
+	final Object[] copy = new Object[slots.length + 1];
+	System.arraycopy(slots, 0, copy, 0, index);
+	copy[index] = slot;
+	System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+	return copy;
+    }
+
+    private static Object merge(final Leaf<?, ?> a, final Leaf<?, ?> b, final int shift) {
+	final int ia = a.hash >>> shift & MASK;
+	final int ib = b.hash >>> shift & MASK;
+	if (ia == ib) {
+	    return new Node(1 << ia, new Object[] { merge(a, b, shift + BITS) });
+	}
+	return new Node(1 << ia | 1 << ib, ia < ib ? new Object[] { a, b } : new Object[] { b, a });
+    }
+
+    private static Object put(final Object slot, final int shift, final Leaf<?, ?> leaf, final boolean[] added) {
+	if (slot instanceof Node) {
+	    final Node node = (Node) slot;
+	    final int bit = bitOf(leaf.hash, shift);
+	    final int index = indexOf(node.bitmap, bit);
+	    if ((node.bitmap & bit) == 0) {
+		added[0] = true;
+		return new Node(node.bitmap | bit, insert(node.slots, index, leaf));
+	    }
+
+	    final Object child = node.slots[index];
+	    final Object newChild = put(child, shift + BITS, leaf, added);
+	    return newChild == child ? node : new Node(node.bitmap, replace(node.slots, index, newChild));
+	} else if (slot instanceof Leaf) {
+	    final Leaf<?, ?> current = (Leaf<?, ?>) slot;
+	    if (current.hash != leaf.hash) {
+		added[0] = true;
+		return merge(current, leaf, shift);
+	    } else if (current.getKey().equals(leaf.getKey())) {
+		return current.getValue() == leaf.getValue() ? current : leaf;
+	    }
+	    added[0] = true;
+	    return new Collision(leaf.hash, new Leaf<?, ?>[] { current, leaf });
+	}
+
+	final Collision collision = (Collision) slot;
+	if (collision.hash != leaf.hash) {
+	    // Push the collision down a level
+	    final Node node = new Node(bitOf(collision.hash, shift), new Object[] { collision });
+	    return put(node, shift, leaf, added);
+	}
+
+	final Leaf<?, ?>[] leaves = collision.leaves;
+	for (int i = 0; i < leaves.length; i++) {
+	    if (leaves[i].getKey().equals(leaf.getKey())) {
+		if (leaves[i].getValue() == leaf.getValue()) {
+		    return collision;
+		}
+		final Leaf<?, ?>[] copy = leaves.clone();
+		copy[i] = leaf;
+		return new Collision(leaf.hash, copy);
+	    }
+	}
+	added[0] = true;
+	final Leaf<?, ?>[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+	copy[leaves.length] = leaf;
+	return new Collision(leaf.hash, copy);
+    }
+
+    private static Object remove(final Object slot, final int shift, final int hash, final Object key) {
+	if (slot instanceof Node) {
+	    final Node node = (Node) slot;
+	    final int bit = bitOf(hash, shift);
+	    if ((node.bitmap & bit) == 0) {
+		return node;
+	    }
+
+	    final int index = indexOf(node.bitmap, bit);
+	    final Object child = node.slots[index];
+	    final Object newChild = remove(child, shift + BITS, hash, key);
+	    if (newChild == child) {
+		return node;
+	    } else if (newChild == null) {
+		if (node.slots.length == 1) {
+		    return null;
+		} else if (node.slots.length == 2 && !(node.slots[1 - index] instanceof Node)) {
+		    return node.slots[1 - index]; // Pull the remaining entry up
+		}
+		return new Node(node.bitmap ^ bit, without(node.slots, index));
+	    } else if (node.slots.length == 1 && !(newChild instanceof Node)) {
+		return newChild;
+	    }
+	    return new Node(node.bitmap, replace(node.slots, index, newChild));
+	} else if (slot instanceof Leaf) {
+	    final Leaf<?, ?> leaf = (Leaf<?, ?>) slot;
+	    return leaf.hash == hash && leaf.getKey().equals(key) ? null : leaf;
+	}
+
+	final Collision collision = (Collision) slot;
+	if (collision.hash != hash) {
+	    return collision;
+	}
+
+	final Leaf<?, ?>[] leaves = collision.leaves;
+	for (int i = 0; i < leaves.length; i++) {
+	    if (leaves[i].getKey().equals(key)) {
+		return leaves.length == 2 ? leaves[1 - i] : new Collision(hash, without(leaves, i));
+	    }
+	}
+	return collision;
+    }
+
+    private static Object[] replace(final Object[] slots, final int index, final Object slot) {
+	final Object[] copy = slots.clone();
+	copy[index] = slot;
+	return copy;
+    }
+
+    private static <T> T[] without(final T[] slots, final int index) {
+	final T[] copy = Arrays.copyOf(slots, slots.length - 1);
+	System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+	return copy;
+    }
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(final Node root, final int size) {
+	this.root = root;
+	this.size = size;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+	return find(key) != null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+	return new AbstractSet<Entry<K, V>>() {
+
+	    @Override
+	    public boolean contains(final Object o) {
+		if (!(o instanceof Entry)) {
+		    return false;
+		}
+		final Entry<?, ?> entry = (Entry<?, ?>) o;
+		final Leaf<K, V> leaf = find(entry.getKey());
+		return leaf != null && leaf.equals(entry);
+	    }
+
+	    @Override
+	    public Iterator<Entry<K, V>> iterator() {
+		return new EntryIterator();
+	    }
+
+	    @Override
+	    public int size() {
+		return size;
+	    }
+	};
+    }
+
+    @SuppressWarnings("unchecked")
+    private Leaf<K, V> find(final Object key) {
+	if (key == null) {
+	    return null;
+	}
+
+	final int hash = hashOf(key);
+	Object slot = root;
+	int shift = 0;
+	while (slot instanceof Node) {
+	    final Node node = (Node) slot;
+	    final int bit = bitOf(hash, shift);
+	    if ((node.bitmap & bit) == 0) {
+		return null;
+	    }
+	    slot = node.slots[indexOf(node.bitmap, bit)];
+	    shift += BITS;
+	}
+
+	if (slot instanceof Leaf) {
+	    final Leaf<K, V> leaf = (Leaf<K, V>) slot;
+	    return leaf.hash == hash && leaf.getKey().equals(key) ? leaf : null;
+	}
+
+	final Collision collision = (Collision) slot;
+	if (collision.hash == hash) {
+	    for (final Leaf<?, ?> leaf : collision.leaves) {
+		if (leaf.getKey().equals(key)) {
+		    return (Leaf<K, V>) leaf;
+		}
+	    }
+	}
+	return null;
+    }
+
+    @Override
+    public V get(final Object key) {
+	final Leaf<K, V> leaf = find(key);
+	return leaf != null ? leaf.getValue() : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    /**
+     * Gets a map without the supplied key.
+     *
+     * @param key
+     *            Key to remove.
+     * @return The updated map (or this map if there was no such key).
+     */
+    public PersistentHashMap<K, V> minus(final Object key) {
+	if (key == null) {
+	    return this;
+	}
+
+	final int hash = hashOf(key);
+	final Object newRoot = remove(root, 0, hash, key);
+	if (newRoot == root) {
+	    return this;
+	} else if (newRoot == null) {
+	    return empty();
+	} else if (!(newRoot instanceof Node)) {
+	    // The root must stay a node
+	    return new PersistentHashMap<>(new Node(bitOf(hashOfSlot(newRoot), 0), new Object[] { newRoot }),
+		    size - 1);
+	}
+	return new PersistentHashMap<>((Node) newRoot, size - 1);
+    }
+
+    /**
+     * Gets a map with the supplied key set to the supplied value.
+     *
+     * @param key
+     *            Key to set.
+     * @param value
+     *            Value to set.
+     * @return The updated map (or this map if the key already had the value).
+     */
+    public PersistentHashMap<K, V> plus(final K key, final V value) {
+	Objects.requireNonNull(key);
+	Objects.requireNonNull(value);
+
+	final boolean[] added = new boolean[1];
+	final Node newRoot = (Node) put(root, 0, new Leaf<>(hashOf(key), key, value), added);
+	return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    @Override
+    public int size() {
+	return size;
+    }
+}
@@ -0,0 +1,261 @@
+package jalse.misc;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A thread-safe {@link ConcurrentMap} backed by a {@link PersistentHashMap}. Every update swaps in
+ * a new version of the map (with compare-and-set), so reads never lock and {@link #snapshot()} is a
+ * constant time immutable view of the whole map.<br>
+ * <br>
+ * Iterators and streams of the views are backed by the snapshot taken when they were created (they
+ * never change and are never invalid). Iterator removal removes the entry from this map (if it is
+ * still mapped to the same value).
+ *
+ * @author Elliot Ford
+ *
+ * @see PersistentHashMap
+ *
+ * @param <K>
+ *            Key type.
+ * @param <V>
+ *            Value type.
+ */
+public class SnapshotMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private final AtomicReference<PersistentHashMap<K, V>> current;
+
+    /**
+     * Creates a new empty snapshot map.
+     */
+    public SnapshotMap() {
+	current = new AtomicReference<>(PersistentHashMap.empty());
+    }
+
+    @Override
+    public void clear() {
+	current.set(PersistentHashMap.empty());
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+	return current.get().containsKey(key);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+	return new AbstractSet<Entry<K, V>>() {
+
+	    @Override
+	    public boolean contains(final Object o) {
+		return snapshot().entrySet().contains(o);
+	    }
+
+	    @Override
+	    public Iterator<Entry<K, V>> iterator() {
+		return iteratorOf(Function.identity());
+	    }
+
+	    @Override
+	    public int size() {
+		return SnapshotMap.this.size();
+	    }
+
+	    @Override
+	    public Spliterator<Entry<K, V>> spliterator() {
+		return snapshot().entrySet().spliterator();
+	    }
+	};
+    }
+
+    @Override
+    public V get(final Object key) {
+	return current.get().get(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+	return current.get().isEmpty();
+    }
+
+    private <T> Iterator<T> iteratorOf(final Function<Entry<K, V>, T> mapper) {
+	final Iterator<Entry<K, V>> it = snapshot().entrySet().iterator();
+	return new Iterator<T>() {
+
+	    private Entry<K, V> last;
+
+	    @Override
+	    public boolean hasNext() {
+		return it.hasNext();
+	    }
+
+	    @Override
+	    public T next() {
+		last = it.next();
+		return mapper.apply(last);
+	    }
+
+	    @Override
+	    public void remove() {
+		if (last == null) {
+		    throw new IllegalStateException();
+		}
+		SnapshotMap.this.remove(last.getKey(), last.getValue());
+		last = null;
+	    }
+	};
+    }
+
+    @Override
+    public Set<K> keySet() {
+	return new AbstractSet<K>() {
+
+	    @Override
+	    public boolean contains(final Object o) {
+		return containsKey(o);
+	    }
+
+	    @Override
+	    public Iterator<K> iterator() {
+		return iteratorOf(Entry::getKey);
+	    }
+
+	    @Override
+	    public int size() {
+		return SnapshotMap.this.size();
+	    }
+
+	    @Override
+	    public Spliterator<K> spliterator() {
+		return snapshot().keySet().spliterator();
+	    }
+	};
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+	Objects.requireNonNull(key);
+	Objects.requireNonNull(value);
+
+	for (;;) {
+	    final PersistentHashMap<K, V> map = current.get();
+	    final PersistentHashMap<K, V> updated = map.plus(key, value);
+	    if (updated == map || current.compareAndSet(map, updated)) {
+		return map.get(key);
+	    }
+	}
+    }
+
+    @Override
+    public V putIfAbsent(final K key, final V value) {
+	Objects.requireNonNull(key);
+	Objects.requireNonNull(value);
+
+	for (;;) {
+	    final PersistentHashMap<K, V> map = current.get();
+	    final V prev = map.get(key);
+	    if (prev != null || current.compareAndSet(map, map.plus(key, value))) {
+		return prev;
+	    }
+	}
+    }
+
+    @Override
+    public V remove(final Object key) {
+	for (;;) {
+	    final PersistentHashMap<K, V> map = current.get();
+	    final V prev = map.get(key);
+	    if (prev == null || current.compareAndSet(map, map.minus(key))) {
+		return prev;
+	    }
+	}
+    }
+
+    @Override
+    public boolean remove(final Object key, final Object value) {
+	for (;;) {
+	    final PersistentHashMap<K, V> map = current.get();
+	    final V prev = map.get(key);
+	    if (prev == null || !prev.equals(value)) {
+		return false;
+	    } else if (current.compareAndSet(map, map.minus(key))) {
+		return true;
+	    }
+	}
+    }
+
+    @Override
+    public V replace(final K key, final V value) {
+	Objects.requireNonNull(key);
+	Objects.requireNonNull(value);
+
+	for (;;) {
+	    final PersistentHashMap<K, V> map = current.get();
+	    final V prev = map.get(key);
+	    if (prev == null || current.compareAndSet(map, map.plus(key, value))) {
+		return prev;
+	    }
+	}
+    }
+
+    @Override
+    public boolean replace(final K key, final V oldValue, final V newValue) {
+	Objects.requireNonNull(key);
+	Objects.requireNonNull(oldValue);
+	Objects.requireNonNull(newValue);
+
+	for (;;) {
+	    final PersistentHashMap<K, V> map = current.get();
+	    final V prev = map.get(key);
+	    if (prev == null || !prev.equals(oldValue)) {
+		return false;
+	    } else if (current.compareAndSet(map, map.plus(key, newValue))) {
+		return true;
+	    }
+	}
+    }
+
+    @Override
+    public int size() {
+	return current.get().size();
+    }
+
+    /**
+     * Gets an immutable snapshot of the current state of this map (in constant time).
+     *
+     * @return Map snapshot.
+     */
+    public PersistentHashMap<K, V> snapshot() {
+	return current.get();
+    }
+
+    @Override
+    public Collection<V> values() {
+	return new AbstractCollection<V>() {
+
+	    @Override
+	    public Iterator<V> iterator() {
+		return iteratorOf(Entry::getValue);
+	    }
+
+	    @Override
+	    public int size() {
+		return SnapshotMap.this.size();
+	    }
+
+	    @Override
+	    public Spliterator<V> spliterator() {
+		return snapshot().values().spliterator();
+	    }
+	};
+    }
+}
@@ -132,6 +132,14 @@ public class DefaultJALSETest {
 	    jalse = builder.build();
 	    Assert.assertNotNull(jalse);
 	}
+
+	@Test
+	public void buildTest16() {
+	    final DefaultJALSE.Builder builder = new DefaultJALSE.Builder()
+		    .setEntityIDSupplier(() -> new UUID(0, 1));
+	    jalse = builder.build();
+	    Assert.assertEquals(new UUID(0, 1), jalse.newEntity().getID());
+	}
     }
 
     private class TestAction implements Action<JALSE> {
@@ -219,6 +227,28 @@ public class DefaultJALSETest {
 	Assert.assertTrue(jalse.getEntityListeners().isEmpty());
     }
 
+    @Test
+    public void getEntityInTreeTest() {
+	jalse = new DefaultJALSE(new UUID(0, 0), ForkJoinActionEngine.commonPoolEngine(), new DefaultEntityFactory());
+	final DefaultJALSE otherJALSE = new DefaultJALSE(new UUID(0, 1), ForkJoinActionEngine.commonPoolEngine(),
+		new DefaultEntityFactory());
+
+	final Entity parent = jalse.newEntity();
+	final Entity child = parent.newEntity();
+	final Entity grandchild = child.newEntity();
+
+	Assert.assertEquals(parent, jalse.getEntityInTree(parent.getID()));
+	Assert.assertEquals(grandchild, jalse.getEntityInTree(grandchild.getID()));
+	Assert.assertEquals(child, grandchild.getContainer());
+	Assert.assertNull(jalse.getEntityInTree(new UUID(0, 2)));
+
+	final Entity sibling = parent.newEntity();
+	jalse.transferEntity(parent.getID(), otherJALSE);
+	Assert.assertNull(jalse.getEntityInTree(grandchild.getID()));
+	Assert.assertEquals(grandchild, otherJALSE.getEntityInTree(grandchild.getID()));
+	Assert.assertEquals(sibling, otherJALSE.getEntityInTree(sibling.getID()));
+    }
+
     @Test
     public void killEntityTest() {
 	jalse = new DefaultJALSE(new UUID(0, 0), ForkJoinActionEngine.commonPoolEngine(), new DefaultEntityFactory());
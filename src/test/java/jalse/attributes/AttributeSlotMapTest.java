@@ -0,0 +1,77 @@
+package jalse.attributes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AttributeSlotMapTest {
+
+    AttributeSlotMap<Integer> map;
+
+    @After
+    public void after() {
+	map = null;
+    }
+
+    @Test
+    public void emptyTest() {
+	map = new AttributeSlotMap<>();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	// Nothing allocated until the first put
+	Assert.assertEquals(0, map.table().length);
+	Assert.assertNull(map.get(namedType));
+	Assert.assertNull(AttributeSlotMap.get(map.table(), namedType.getSlot()));
+	Assert.assertFalse(map.containsKey(namedType));
+	Assert.assertNull(map.remove(namedType));
+	Assert.assertFalse(map.entrySet().iterator().hasNext());
+
+	map.put(namedType, 1);
+	Assert.assertEquals(1, AttributeSlotMap.get(map.table(), namedType.getSlot()));
+	map.clear();
+	Assert.assertEquals(0, map.table().length);
+    }
+
+    @Test
+    public void randomTest() {
+	final Random random = new Random(7);
+	final Map<NamedAttributeType<?>, Integer> expected = new HashMap<>();
+	map = new AttributeSlotMap<>();
+
+	for (int i = 0; i < 20000; i++) {
+	    final NamedAttributeType<Integer> key = Attributes.newNamedIntegerType("random" + random.nextInt(100));
+	    if (random.nextInt(3) > 0) {
+		Assert.assertEquals(expected.put(key, i), map.put(key, i));
+	    } else {
+		Assert.assertEquals(expected.remove(key), map.remove(key));
+	    }
+	    Assert.assertEquals(expected.size(), map.size());
+	}
+
+	Assert.assertEquals(expected, map);
+	expected.forEach((k, v) -> Assert.assertEquals(v, map.get(k)));
+    }
+
+    @Test
+    public void updateTest() {
+	map = new AttributeSlotMap<>();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	Assert.assertNull(map.put(namedType, 1));
+	Assert.assertEquals((Integer) 1, map.put(Attributes.newNamedIntegerType("test"), 2));
+	Assert.assertTrue(map.containsKey(namedType));
+	Assert.assertFalse(map.containsKey(Attributes.newNamedLongType("test")));
+	Assert.assertNull(map.get("test"));
+
+	Assert.assertEquals((Integer) 2, map.remove(namedType));
+	Assert.assertTrue(map.isEmpty());
+
+	map.put(namedType, 3);
+	map.clear();
+	Assert.assertNull(map.get(namedType));
+    }
+}
@@ -72,6 +72,16 @@ public class AttributesTest {
 		Attributes.newNamedUnknownType("test", Entity.class));
     }
 
+    @Test
+    public void namedAttributeTypeSlotTest() {
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("slot");
+	Assert.assertEquals(namedType.getSlot(), Attributes.newNamedIntegerType("slot").getSlot());
+	Assert.assertEquals(namedType.getSlot(), Attributes.newNamedUnknownType("slot", Integer.class).getSlot());
+	Assert.assertNotEquals(namedType.getSlot(), Attributes.newNamedLongType("slot").getSlot());
+	Assert.assertNotEquals(namedType.getSlot(), Attributes.newNamedIntegerType("slot2").getSlot());
+	Assert.assertTrue(namedType.getSlot() < NamedAttributeType.getSlotCount());
+    }
+
     @Test
     public void notEmptyStringTest() {
 	Assert.assertEquals("test", Attributes.requireNotEmpty("test"));
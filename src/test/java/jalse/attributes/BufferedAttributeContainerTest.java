@@ -0,0 +1,128 @@
+package jalse.attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BufferedAttributeContainerTest {
+
+    private static class TestAttributeListener implements AttributeListener<Integer> {
+
+	public int added;
+	public int removed;
+
+	@Override
+	public void attributeAdded(final AttributeEvent<Integer> event) {
+	    added++;
+	}
+
+	@Override
+	public void attributeRemoved(final AttributeEvent<Integer> event) {
+	    removed++;
+	}
+    }
+
+    AttributeBuffer buffer;
+
+    @After
+    public void after() {
+	buffer = null;
+    }
+
+    @Test
+    public void deterministicSwapTest() {
+	buffer = new AttributeBuffer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final List<BufferedAttributeContainer> containers = new ArrayList<>();
+	for (int i = 0; i < 100; i++) {
+	    final BufferedAttributeContainer container = new BufferedAttributeContainer(buffer);
+	    container.setAttribute(namedType, i);
+	    containers.add(container);
+	}
+	buffer.swap();
+
+	// Every container takes its neighbours previous value (order must not matter)
+	IntStream.range(0, containers.size()).parallel().forEach(i -> {
+	    final int next = containers.get((i + 1) % containers.size()).getAttribute(namedType);
+	    containers.get(i).setAttribute(namedType, next);
+	});
+	Assert.assertEquals(100, buffer.swap());
+
+	for (int i = 0; i < containers.size(); i++) {
+	    Assert.assertEquals((Integer) ((i + 1) % containers.size()), containers.get(i).getAttribute(namedType));
+	}
+	Assert.assertEquals(2L, buffer.getSwapCount());
+    }
+
+    @Test
+    public void removeTest() {
+	buffer = new AttributeBuffer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final BufferedAttributeContainer container = new BufferedAttributeContainer(buffer);
+	final TestAttributeListener listener = new TestAttributeListener();
+	container.addAttributeListener(namedType, listener);
+
+	container.setAttribute(namedType, 1);
+	buffer.swap();
+
+	Assert.assertEquals((Integer) 1, container.removeAttribute(namedType));
+	Assert.assertNull(container.getPendingAttribute(namedType));
+	Assert.assertEquals((Integer) 1, container.getAttribute(namedType));
+
+	buffer.swap();
+	Assert.assertNull(container.getAttribute(namedType));
+	Assert.assertFalse(container.hasAttributes());
+	Assert.assertEquals(1, listener.added);
+	Assert.assertEquals(1, listener.removed);
+    }
+
+    @Test
+    public void setTest() {
+	buffer = new AttributeBuffer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final BufferedAttributeContainer container = new BufferedAttributeContainer(buffer);
+	final TestAttributeListener listener = new TestAttributeListener();
+	container.addAttributeListener(namedType, listener);
+
+	Assert.assertNull(container.setAttribute(namedType, 1));
+	Assert.assertEquals((Integer) 1, container.setAttribute(namedType, 2));
+	Assert.assertNull(container.getAttribute(namedType));
+	Assert.assertEquals((Integer) 2, container.getPendingAttribute(namedType));
+	Assert.assertTrue(container.hasPendingWrites());
+	Assert.assertEquals(1, buffer.getPendingCount());
+	Assert.assertEquals(0, listener.added);
+
+	Assert.assertEquals(1, buffer.swap());
+	Assert.assertEquals((Integer) 2, container.getAttribute(namedType));
+	Assert.assertFalse(container.hasPendingWrites());
+	Assert.assertEquals(0, buffer.getPendingCount());
+	Assert.assertEquals(1, listener.added);
+
+	Assert.assertEquals(0, buffer.swap());
+    }
+
+    @Test
+    public void updateTest() {
+	buffer = new AttributeBuffer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final BufferedAttributeContainer container = new BufferedAttributeContainer(buffer);
+
+	// Updates build on pending values
+	Assert.assertEquals(1, container.addAndGetInt(namedType, 1));
+	Assert.assertEquals(2, container.addAndGetInt(namedType, 1));
+	Assert.assertNull(container.getAttribute(namedType));
+	Assert.assertTrue(container.compareAndSetAttribute(namedType, 2, 5));
+
+	buffer.swap();
+	Assert.assertEquals((Integer) 5, container.getAttribute(namedType));
+	Assert.assertNull(container.updateAttribute(namedType, v -> null));
+
+	buffer.swap();
+	Assert.assertFalse(container.hasAttributes());
+    }
+}
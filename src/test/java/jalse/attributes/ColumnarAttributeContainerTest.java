@@ -0,0 +1,227 @@
+package jalse.attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnarAttributeContainerTest {
+
+    private static class TestAttributeListener implements AttributeListener<Integer> {
+
+	public int added;
+
+	@Override
+	public void attributeAdded(final AttributeEvent<Integer> event) {
+	    added++;
+	}
+    }
+
+    ColumnarAttributeStore store;
+
+    @After
+    public void after() {
+	store = null;
+    }
+
+    @Test
+    public void atomicUpdateTest() throws InterruptedException {
+	store = new ColumnarAttributeStore();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final NamedAttributeType<Long> longType = Attributes.newNamedLongType("long");
+	final NamedAttributeType<Double> doubleType = Attributes.newNamedDoubleType("double");
+
+	final ColumnarAttributeContainer container = new ColumnarAttributeContainer(store);
+	final TestAttributeListener listener = new TestAttributeListener();
+	container.addAttributeListener(namedType, listener);
+
+	final List<Thread> threads = new ArrayList<>();
+	for (int i = 0; i < 8; i++) {
+	    threads.add(new Thread(() -> {
+		for (int j = 0; j < 1000; j++) {
+		    container.addAndGetInt(namedType, 1);
+		    container.addAndGetLong(longType, 2L);
+		    container.updateAttribute(doubleType, v -> (v != null ? v : 0.) + 0.5);
+		}
+	    }));
+	}
+	threads.forEach(Thread::start);
+	for (final Thread t : threads) {
+	    t.join();
+	}
+
+	Assert.assertEquals(8000, container.getInt(namedType));
+	Assert.assertEquals(16000L, container.getLong(longType));
+	Assert.assertEquals(4000., container.getDouble(doubleType), 0.);
+	Assert.assertEquals(8000, listener.added); // One event each
+
+	Assert.assertEquals(8001, container.addAndGetInt(namedType, 1));
+	Assert.assertEquals(4001., container.addAndGetDouble(doubleType, 1.), 0.);
+	Assert.assertFalse(container.compareAndSetAttribute(namedType, 0, 1));
+	Assert.assertTrue(container.compareAndSetAttribute(namedType, 8001, 1));
+	Assert.assertEquals(8002, listener.added);
+
+	// Detached
+	container.detach();
+	Assert.assertEquals(2, container.addAndGetInt(namedType, 1));
+	Assert.assertNull(container.updateAttribute(namedType, v -> null));
+	Assert.assertFalse(container.hasAttribute(namedType));
+	Assert.assertEquals(8003, listener.added);
+    }
+
+    @Test
+    public void detachTest() {
+	store = new ColumnarAttributeStore();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final NamedAttributeType<String> nameType = Attributes.newNamedStringType("name");
+
+	final ColumnarAttributeContainer container = new ColumnarAttributeContainer(store);
+	container.setAttribute(namedType, 1);
+	container.setAttribute(nameType, "a");
+	container.detach();
+
+	Assert.assertNull(container.getStore());
+	Assert.assertEquals(0, store.getRowCount());
+	Assert.assertEquals(0, store.streamColumn(namedType).count());
+	Assert.assertEquals((Integer) 1, container.getAttribute(namedType));
+	Assert.assertEquals(2, container.getAttributeCount());
+
+	// Detached writes
+	Assert.assertEquals(1, container.setInt(namedType, 2));
+	Assert.assertEquals("a", container.removeAttribute(nameType));
+	Assert.assertEquals(1, container.getAttributeCount());
+
+	container.moveTo(store);
+	Assert.assertEquals(store, container.getStore());
+	Assert.assertEquals(1, store.getRowCount());
+	Assert.assertEquals(2, container.getInt(namedType));
+    }
+
+    @Test
+    public void forEachInColumnTest() {
+	store = new ColumnarAttributeStore();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final ColumnarAttributeContainer container1 = new ColumnarAttributeContainer(store);
+	final ColumnarAttributeContainer container2 = new ColumnarAttributeContainer(store);
+	container1.setAttribute(namedType, 1);
+	container2.setAttribute(namedType, 2);
+
+	final List<AttributeContainer> owners = new ArrayList<>();
+	store.forEachInColumn(namedType, (c, v) -> owners.add(c));
+
+	Assert.assertEquals(2, owners.size());
+	Assert.assertTrue(owners.contains(container1));
+	Assert.assertTrue(owners.contains(container2));
+    }
+
+    @Test
+    public void moveToTest() {
+	store = new ColumnarAttributeStore();
+	final ColumnarAttributeStore other = new ColumnarAttributeStore();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final ColumnarAttributeContainer container = new ColumnarAttributeContainer(store);
+	container.setAttribute(namedType, 10);
+	container.moveTo(other);
+
+	Assert.assertEquals(other, container.getStore());
+	Assert.assertEquals(0, store.getRowCount());
+	Assert.assertEquals(1, other.getRowCount());
+	Assert.assertEquals((Integer) 10, container.getAttribute(namedType));
+	Assert.assertEquals(0, store.streamColumn(namedType).count());
+    }
+
+    @Test
+    public void primitiveColumnTest() {
+	store = new ColumnarAttributeStore(1);
+	final NamedAttributeType<Integer> intType = Attributes.newNamedIntegerType("int");
+	final NamedAttributeType<Double> doubleType = Attributes.newNamedDoubleType("double");
+	final TestAttributeListener listener = new TestAttributeListener();
+
+	final ColumnarAttributeContainer container1 = new ColumnarAttributeContainer(store);
+	final ColumnarAttributeContainer container2 = new ColumnarAttributeContainer(store);
+	container2.addAttributeListener(intType, listener);
+
+	Assert.assertEquals(0, container1.getInt(intType));
+	Assert.assertEquals(0, container1.setInt(intType, 5));
+	Assert.assertEquals(0, container2.setInt(intType, 7));
+	Assert.assertEquals(7, container2.setInt(intType, 8));
+	Assert.assertEquals(0.0, container1.setDouble(doubleType, 1.5), 0.0);
+	Assert.assertEquals(2, listener.added);
+
+	Assert.assertEquals((Integer) 5, container1.getAttribute(intType));
+	Assert.assertEquals(8, container2.getInt(intType));
+	Assert.assertEquals(1.5, container1.getDouble(doubleType), 0.0);
+	Assert.assertFalse(container2.hasAttribute(doubleType));
+	Assert.assertEquals(13, store.streamColumn(intType).mapToInt(Integer::intValue).sum());
+
+	Assert.assertEquals((Integer) 5, container1.removeAttribute(intType));
+	Assert.assertFalse(container1.hasAttribute(intType));
+	Assert.assertEquals(0, container1.getInt(intType));
+    }
+
+    @Test
+    public void reuseRowTest() {
+	store = new ColumnarAttributeStore(1);
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final ColumnarAttributeContainer container1 = new ColumnarAttributeContainer(store);
+	container1.setAttribute(namedType, 1);
+	container1.moveTo(new ColumnarAttributeStore());
+
+	final ColumnarAttributeContainer container2 = new ColumnarAttributeContainer(store);
+	Assert.assertNull(container2.getAttribute(namedType));
+	Assert.assertEquals(1, store.getRowCount());
+    }
+
+    @Test
+    public void setAndRemoveTest() {
+	store = new ColumnarAttributeStore();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final ColumnarAttributeContainer container = new ColumnarAttributeContainer(store);
+
+	Assert.assertNull(container.setAttribute(namedType, 1));
+	Assert.assertEquals((Integer) 1, container.setAttribute(namedType, 2));
+	Assert.assertEquals(1, container.getAttributeCount());
+	Assert.assertTrue(container.getAttributeTypes().contains(namedType));
+
+	Assert.assertEquals((Integer) 2, container.removeAttribute(namedType));
+	Assert.assertFalse(container.hasAttributes());
+    }
+
+    @Test
+    public void streamColumnTest() {
+	store = new ColumnarAttributeStore(2);
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	for (int i = 0; i < 10; i++) {
+	    new ColumnarAttributeContainer(store).setAttribute(namedType, i);
+	}
+
+	final List<Integer> values = store.streamColumn(namedType).collect(Collectors.toList());
+	Assert.assertEquals(10, values.size());
+	Assert.assertEquals(45, values.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    public void updateColumnTest() {
+	store = new ColumnarAttributeStore();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final TestAttributeListener listener = new TestAttributeListener();
+
+	final ColumnarAttributeContainer container1 = new ColumnarAttributeContainer(store);
+	final ColumnarAttributeContainer container2 = new ColumnarAttributeContainer(store);
+	container1.setAttribute(namedType, 1);
+	container2.setAttribute(namedType, 2);
+	container1.addAttributeListener(namedType, listener);
+
+	Assert.assertEquals(2, store.updateColumn(namedType, v -> v * 10));
+	Assert.assertEquals((Integer) 10, container1.getAttribute(namedType));
+	Assert.assertEquals((Integer) 20, container2.getAttribute(namedType));
+	Assert.assertEquals(1, listener.added);
+    }
+}
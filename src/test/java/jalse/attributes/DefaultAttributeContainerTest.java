@@ -1,5 +1,10 @@
 package jalse.attributes;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
@@ -51,6 +56,22 @@ public class DefaultAttributeContainerTest {
 	}
     }
 
+    private static class CountingAttributeListener implements AttributeListener<Integer> {
+
+	public final AtomicInteger added = new AtomicInteger();
+	public final AtomicInteger removed = new AtomicInteger();
+
+	@Override
+	public void attributeAdded(final AttributeEvent<Integer> event) {
+	    added.incrementAndGet();
+	}
+
+	@Override
+	public void attributeRemoved(final AttributeEvent<Integer> event) {
+	    removed.incrementAndGet();
+	}
+    }
+
     private static class TestAttributeListener implements AttributeListener<Integer> {
 
 	public boolean added;
@@ -80,6 +101,50 @@ public class DefaultAttributeContainerTest {
 	container = null;
     }
 
+    @Test
+    public void atomicUpdateTest() throws InterruptedException {
+	for (final boolean persistent : new boolean[] { false, true }) {
+	    container = persistent ? new DefaultAttributeContainer.Builder().setPersistent().build()
+		    : new DefaultAttributeContainer();
+	    final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	    final CountingAttributeListener listener = new CountingAttributeListener();
+	    container.addAttributeListener(namedType, listener);
+
+	    final List<Thread> threads = new ArrayList<>();
+	    for (int i = 0; i < 8; i++) {
+		threads.add(new Thread(() -> {
+		    for (int j = 0; j < 1000; j++) {
+			container.addAndGetInt(namedType, 1);
+		    }
+		}));
+	    }
+	    threads.forEach(Thread::start);
+	    for (final Thread t : threads) {
+		t.join();
+	    }
+
+	    // No lost updates and one event each
+	    Assert.assertEquals(8000, container.getInt(namedType));
+	    Assert.assertEquals(8000, listener.added.get());
+
+	    Assert.assertEquals((Integer) 8001, container.updateAttribute(namedType, v -> v + 1));
+	    Assert.assertFalse(container.compareAndSetAttribute(namedType, 0, 1));
+	    Assert.assertTrue(container.compareAndSetAttribute(namedType, 8001, 1));
+	    Assert.assertEquals(8002, listener.added.get());
+
+	    Assert.assertNull(container.updateAttribute(namedType, v -> null));
+	    Assert.assertFalse(container.hasAttribute(namedType));
+	    Assert.assertEquals(1, listener.removed.get());
+	    Assert.assertTrue(container.compareAndSetAttribute(namedType, null, 2));
+
+	    Assert.assertEquals(2.5, container.addAndGetDouble("double", 2.5), 0.0);
+	    Assert.assertEquals(5.0, container.addAndGetDouble("double", 2.5), 0.0);
+	    Assert.assertEquals(5L, container.addAndGetLong("long", 5L));
+	    container.setInt("int", Integer.MAX_VALUE);
+	    Assert.assertEquals(Integer.MIN_VALUE, container.addAndGetInt("int", 1)); // Overflows as an int
+	}
+    }
+
     @Test
     public void attributeListenerTest() {
 	final TestAttributeListener attributeListener = new TestAttributeListener();
@@ -200,4 +265,59 @@ public class DefaultAttributeContainerTest {
 	otherContainer.addAttributeListener("test", Attributes.INTEGER_TYPE, attributeListener);
 	Assert.assertEquals(container.hashCode(), otherContainer.hashCode());
     }
+
+    @Test
+    public void persistentTest() {
+	container = new DefaultAttributeContainer.Builder().setPersistent().build();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	Assert.assertTrue(container.isPersistent());
+	container.setAttribute(namedType, 1);
+	final Map<NamedAttributeType<?>, Object> snapshot = container.snapshot();
+
+	container.setAttribute(namedType, 2);
+	Assert.assertEquals((Integer) 2, container.getAttribute(namedType));
+	Assert.assertEquals(1, snapshot.get(namedType));
+	Assert.assertSame(container.snapshot(), container.snapshot());
+
+	container.setInt(namedType, 3); // Still immutable
+	Assert.assertEquals(3, container.getInt(namedType));
+	Assert.assertEquals(1, snapshot.get(namedType));
+
+	container.removeAttributes();
+	Assert.assertFalse(container.hasAttributes());
+	Assert.assertEquals(1, snapshot.size());
+    }
+
+    @Test
+    public void primitiveTest() {
+	container = new DefaultAttributeContainer();
+	final NamedAttributeType<Integer> intType = Attributes.newNamedIntegerType("int");
+	final NamedAttributeType<Long> longType = Attributes.newNamedLongType("long");
+	final NamedAttributeType<Double> doubleType = Attributes.newNamedDoubleType("double");
+	final TestAttributeListener attributeListener = new TestAttributeListener();
+	container.addAttributeListener(intType, attributeListener);
+
+	Assert.assertEquals(0, container.getInt(intType));
+	Assert.assertEquals(0, container.setInt(intType, 5));
+	Assert.assertTrue(attributeListener.added);
+	Assert.assertEquals(5, container.setInt(intType, 6));
+	Assert.assertEquals((Integer) 6, container.getAttribute(intType));
+
+	// Boxed and unboxed access are interchangeable
+	Assert.assertEquals((Integer) 6, container.setAttribute(intType, 7));
+	Assert.assertEquals(7, container.getInt("int"));
+	Assert.assertEquals(0L, container.setLong(longType, Long.MAX_VALUE));
+	Assert.assertEquals(Long.MAX_VALUE, container.getLong(longType));
+	Assert.assertEquals(0.0, container.setDouble("double", -2.5), 0.0);
+	Assert.assertEquals((Double) (-2.5), container.getAttribute(doubleType));
+
+	Assert.assertEquals(3, container.getAttributeCount());
+	Assert.assertEquals(new DefaultAttributeContainer.Builder().setAttribute(intType, 7)
+		.setAttribute(longType, Long.MAX_VALUE).setAttribute(doubleType, -2.5).build().snapshot(),
+		container.snapshot());
+
+	Assert.assertEquals((Integer) 7, container.removeAttribute(intType));
+	Assert.assertEquals(0, container.getInt(intType));
+    }
 }
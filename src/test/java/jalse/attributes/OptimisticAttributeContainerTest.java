@@ -0,0 +1,221 @@
+package jalse.attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OptimisticAttributeContainerTest {
+
+    private class ReadingAttributeListener implements AttributeListener<Integer> {
+
+	public Integer read;
+	public int removed;
+
+	@Override
+	public void attributeAdded(final AttributeEvent<Integer> event) {
+	    read = container.getAttribute(event.getNamedType());
+	}
+
+	@Override
+	public void attributeRemoved(final AttributeEvent<Integer> event) {
+	    removed++;
+	}
+    }
+
+    private static final int TYPES = 64;
+
+    OptimisticAttributeContainer container;
+
+    @After
+    public void after() {
+	container = null;
+    }
+
+    /**
+     * Reads every attribute from the supplied number of threads while another thread sets and
+     * removes them (values are always a multiple of the type index plus the index so mismatched
+     * reads can be detected).
+     */
+    private long contendedReads(final int readers) throws InterruptedException {
+	container = new OptimisticAttributeContainer();
+	final List<NamedAttributeType<Integer>> namedTypes = new ArrayList<>();
+	for (int i = 0; i < TYPES; i++) {
+	    namedTypes.add(Attributes.newNamedIntegerType("contended" + i));
+	}
+
+	final AtomicInteger mismatches = new AtomicInteger();
+	final AtomicLong reads = new AtomicLong();
+	final CountDownLatch start = new CountDownLatch(1);
+	final List<Thread> threads = new ArrayList<>();
+
+	for (int r = 0; r < readers; r++) {
+	    threads.add(new Thread(() -> {
+		try {
+		    start.await();
+		} catch (final InterruptedException e) {
+		    return;
+		}
+		for (int n = 0; n < 200; n++) {
+		    for (int i = 0; i < TYPES; i++) {
+			final Integer value = container.getAttribute(namedTypes.get(i));
+			if (value != null && value % TYPES != i) {
+			    mismatches.incrementAndGet();
+			}
+		    }
+		    reads.addAndGet(TYPES);
+		}
+	    }));
+	}
+
+	threads.add(new Thread(() -> {
+	    try {
+		start.await();
+	    } catch (final InterruptedException e) {
+		return;
+	    }
+	    for (int n = 0; n < 100; n++) {
+		for (int i = 0; i < TYPES; i++) {
+		    container.setAttribute(namedTypes.get(i), n * TYPES + i);
+		}
+		for (int i = 0; i < TYPES; i += 2) {
+		    container.removeAttribute(namedTypes.get(i));
+		}
+	    }
+	}));
+
+	threads.forEach(Thread::start);
+	start.countDown();
+	for (final Thread t : threads) {
+	    t.join();
+	}
+
+	Assert.assertEquals(0, mismatches.get());
+	return reads.get();
+    }
+
+    @Test
+    public void contentionTest() throws InterruptedException {
+	for (final int readers : new int[] { 1, 8, 32 }) {
+	    Assert.assertEquals(readers * 200L * TYPES, contendedReads(readers));
+	    Assert.assertEquals(TYPES / 2, container.getAttributeCount());
+	}
+    }
+
+    @Test
+    public void listenerTest() {
+	container = new OptimisticAttributeContainer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final ReadingAttributeListener listener = new ReadingAttributeListener();
+
+	Assert.assertTrue(container.addAttributeListener(namedType, listener));
+	Assert.assertFalse(container.addAttributeListener(namedType, listener));
+
+	container.setAttribute(namedType, 1);
+	Assert.assertEquals((Integer) 1, listener.read);
+
+	container.removeAttributes();
+	Assert.assertEquals(1, listener.removed);
+
+	Assert.assertTrue(container.removeAttributeListener(namedType, listener));
+	Assert.assertFalse(container.hasAttributeListeners(namedType));
+    }
+
+    @Test
+    public void orderTest() throws InterruptedException {
+	container = new OptimisticAttributeContainer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final AtomicInteger last = new AtomicInteger();
+	container.addAttributeListener(namedType, new AttributeListener<Integer>() {
+
+	    @Override
+	    public void attributeAdded(final AttributeEvent<Integer> event) {
+		last.set(event.getValue()); // Last event wins
+	    }
+	});
+
+	final List<Thread> threads = new ArrayList<>();
+	for (int i = 0; i < 8; i++) {
+	    final int offset = i * 1000;
+	    threads.add(new Thread(() -> {
+		for (int j = 0; j < 1000; j++) {
+		    container.setAttribute(namedType, offset + j);
+		}
+	    }));
+	}
+	threads.forEach(Thread::start);
+	for (final Thread t : threads) {
+	    t.join();
+	}
+
+	Assert.assertEquals(container.getInt(namedType), last.get());
+    }
+
+    @Test
+    public void setAndRemoveTest() {
+	container = new OptimisticAttributeContainer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	Assert.assertNull(container.setAttribute(namedType, 1));
+	Assert.assertEquals((Integer) 1, container.setAttribute(namedType, 2));
+	Assert.assertTrue(container.hasAttribute(namedType));
+	Assert.assertEquals(1, container.getAttributeCount());
+	Assert.assertTrue(container.getAttributeTypes().contains(namedType));
+
+	Assert.assertEquals((Integer) 2, container.removeAttribute(namedType));
+	Assert.assertNull(container.removeAttribute(namedType));
+	Assert.assertFalse(container.hasAttributes());
+    }
+
+    @Test
+    public void updateOperatorTest() {
+	container = new OptimisticAttributeContainer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	container.setAttribute(namedType, 1);
+
+	try {
+	    container.updateAttribute(namedType, v -> container.getInt(namedType) + v);
+	    Assert.fail();
+	} catch (final IllegalStateException e) {}
+
+	// Still usable
+	Assert.assertEquals((Integer) 2, container.updateAttribute(namedType, v -> v + 1));
+	Assert.assertEquals(2, container.getInt(namedType));
+    }
+
+    @Test
+    public void updateTest() throws InterruptedException {
+	container = new OptimisticAttributeContainer();
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final ReadingAttributeListener listener = new ReadingAttributeListener();
+	container.addAttributeListener(namedType, listener);
+
+	final List<Thread> threads = new ArrayList<>();
+	for (int i = 0; i < 8; i++) {
+	    threads.add(new Thread(() -> {
+		for (int j = 0; j < 1000; j++) {
+		    container.addAndGetInt(namedType, 1);
+		}
+	    }));
+	}
+	threads.forEach(Thread::start);
+	for (final Thread t : threads) {
+	    t.join();
+	}
+	Assert.assertEquals(8000, container.getInt(namedType));
+
+	Assert.assertFalse(container.compareAndSetAttribute(namedType, 0, 1));
+	Assert.assertTrue(container.compareAndSetAttribute(namedType, 8000, 1));
+	Assert.assertEquals((Integer) 1, listener.read);
+
+	Assert.assertNull(container.updateAttribute(namedType, v -> null));
+	Assert.assertEquals(1, listener.removed);
+	Assert.assertNull(container.updateAttribute(namedType, v -> null));
+	Assert.assertEquals(1, listener.removed);
+    }
+}
@@ -0,0 +1,65 @@
+package jalse.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import jalse.attributes.AttributeContainer;
+import jalse.attributes.Attributes;
+import jalse.attributes.DefaultAttributeContainer;
+import jalse.attributes.NamedAttributeType;
+import jalse.attributes.OptimisticAttributeContainer;
+
+/**
+ * Compares attribute read throughput with 1, 8 and 32 readers (and one writer) for
+ * {@link DefaultAttributeContainer} and {@link OptimisticAttributeContainer}.
+ *
+ * @author Elliot Ford
+ *
+ */
+public class AttributeReadBenchmark {
+
+    private static final int TYPES = 64;
+
+    private static final int READS_PER_THREAD = 200000;
+
+    private static final List<NamedAttributeType<Integer>> NAMED_TYPES = new ArrayList<>();
+
+    static {
+	for (int i = 0; i < TYPES; i++) {
+	    NAMED_TYPES.add(Attributes.newNamedIntegerType("read" + i));
+	}
+    }
+
+    public static void main(final String[] args) {
+	for (final int readers : new int[] { 1, 8, 32 }) {
+	    measure("read default", readers, DefaultAttributeContainer::new);
+	    measure("read optimistic", readers, OptimisticAttributeContainer::new);
+	}
+    }
+
+    /**
+     * Thread 0 keeps setting attributes until every reader has finished.
+     */
+    private static void measure(final String name, final int readers, final Supplier<AttributeContainer> supplier) {
+	Benchmarks.measure(name + " (+1 writer)", readers + 1, (long) readers * READS_PER_THREAD, () -> {
+	    final AttributeContainer container = supplier.get();
+	    NAMED_TYPES.forEach(t -> container.setAttribute(t, 0));
+	    final AtomicInteger finished = new AtomicInteger();
+	    return i -> {
+		if (i == 0) {
+		    for (int n = 0; finished.get() < readers; n++) {
+			container.setAttribute(NAMED_TYPES.get(n % TYPES), n);
+		    }
+		    return;
+		}
+
+		for (int n = 0; n < READS_PER_THREAD; n++) {
+		    container.getAttribute(NAMED_TYPES.get(n % TYPES));
+		}
+		finished.incrementAndGet();
+	    };
+	});
+    }
+}
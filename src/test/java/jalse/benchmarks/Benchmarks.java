@@ -0,0 +1,83 @@
+package jalse.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Timing helpers for the benchmark harnesses. Harnesses are plain classes with a {@code main}
+ * method (so they are not run as tests) and are run with
+ * {@code gradle benchmark -Pharness=<class name>}.<br>
+ * <br>
+ * Each measurement is run for a number of warm up rounds and then the best of the measured rounds
+ * is reported (as operations per second across all threads).
+ *
+ * @author Elliot Ford
+ *
+ */
+final class Benchmarks {
+
+    static final int WARMUP_ROUNDS = 3;
+
+    static final int ROUNDS = 5;
+
+    /**
+     * Measures the task and prints the throughput.
+     *
+     * @param name
+     *            Measurement name.
+     * @param threads
+     *            Number of threads to run the task with.
+     * @param ops
+     *            Total operations performed by one round (across all threads).
+     * @param setup
+     *            Creates the state for a round and returns the task (given the thread index).
+     */
+    static void measure(final String name, final int threads, final long ops, final Supplier<IntConsumer> setup) {
+	long best = Long.MAX_VALUE;
+	for (int i = 0; i < WARMUP_ROUNDS + ROUNDS; i++) {
+	    final long time = time(threads, setup.get());
+	    if (i >= WARMUP_ROUNDS) {
+		best = Math.min(best, time);
+	    }
+	}
+	System.out.printf("%-40s %3d threads %,15.0f ops/s%n", name, threads, ops * 1e9 / best);
+    }
+
+    /**
+     * Runs the task on each thread (starting together) and returns the elapsed nanoseconds.
+     */
+    static long time(final int threads, final IntConsumer task) {
+	final CountDownLatch start = new CountDownLatch(1);
+	final CountDownLatch done = new CountDownLatch(threads);
+
+	for (int i = 0; i < threads; i++) {
+	    final int index = i;
+	    final Thread t = new Thread(() -> {
+		try {
+		    start.await();
+		    task.accept(index);
+		} catch (final InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		} finally {
+		    done.countDown();
+		}
+	    });
+	    t.setDaemon(true);
+	    t.start();
+	}
+
+	final long startTime = System.nanoTime();
+	start.countDown();
+	try {
+	    done.await();
+	} catch (final InterruptedException e) {
+	    throw new IllegalStateException(e);
+	}
+	return System.nanoTime() - startTime;
+    }
+
+    private Benchmarks() {
+	throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,77 @@
+package jalse.benchmarks;
+
+import java.util.Random;
+
+import jalse.DefaultJALSE;
+import jalse.JALSE;
+import jalse.attributes.Attributes;
+import jalse.attributes.NamedAttributeType;
+import jalse.entities.Entity;
+import jalse.entities.spatial.GridSpatialIndex;
+import jalse.entities.spatial.SpatialIndex;
+import jalse.entities.spatial.SpatialIndexes;
+import jalse.entities.spatial.TreeSpatialIndex;
+
+/**
+ * Compares radius queries using each {@link SpatialIndex} against a linear scan of every entity.
+ *
+ * @author Elliot Ford
+ *
+ */
+public class SpatialBenchmark {
+
+    private static final NamedAttributeType<double[]> POSITION = Attributes.newNamedTypeOf("position",
+	    double[].class);
+
+    private static final int ENTITIES = 20000;
+
+    private static final double SIZE = 1000.;
+
+    private static final double RADIUS = 20.;
+
+    private static final int QUERIES = 2000;
+
+    private static boolean within(final double[] a, final double[] b, final double radius) {
+	final double dx = a[0] - b[0];
+	final double dy = a[1] - b[1];
+	return dx * dx + dy * dy <= radius * radius;
+    }
+
+    public static void main(final String[] args) {
+	final JALSE jalse = new DefaultJALSE.Builder().setManualEngine().setNoEntityLimit().build();
+	final Random random = new Random(1234);
+	for (int i = 0; i < ENTITIES; i++) {
+	    final Entity e = jalse.newEntity();
+	    e.setAttribute(POSITION, new double[] { random.nextDouble() * SIZE, random.nextDouble() * SIZE });
+	}
+
+	final double[][] centres = new double[QUERIES][];
+	for (int i = 0; i < QUERIES; i++) {
+	    centres[i] = new double[] { random.nextDouble() * SIZE, random.nextDouble() * SIZE };
+	}
+
+	final SpatialIndex grid = SpatialIndexes.bindIndex(jalse, POSITION, p -> p, new GridSpatialIndex(2, RADIUS))
+		.getIndex();
+	final SpatialIndex tree = SpatialIndexes.bindIndex(jalse, POSITION, p -> p, new TreeSpatialIndex(2))
+		.getIndex();
+
+	for (final int threads : new int[] { 1, 4 }) {
+	    final long ops = (long) threads * QUERIES;
+	    Benchmarks.measure("radius linear scan", threads, ops, () -> t -> {
+		for (final double[] centre : centres) {
+		    jalse.streamEntities().filter(e -> within(e.getAttribute(POSITION), centre, RADIUS)).count();
+		}
+	    });
+	    Benchmarks.measure("radius GridSpatialIndex", threads, ops, () -> t -> {
+		for (final double[] centre : centres) {
+		    grid.getWithinRadius(centre, RADIUS).size();
+		}
+	    });
+	    Benchmarks.measure("radius TreeSpatialIndex", threads, ops, () -> t -> {
+		for (final double[] centre : centres) {
+		    tree.getWithinRadius(centre, RADIUS).size();
+		}
+	    });
+	}
+    }
+}
@@ -0,0 +1,34 @@
+package jalse.benchmarks;
+
+import jalse.entities.DefaultEntityContainer;
+import jalse.entities.DefaultEntityFactory;
+import jalse.entities.DefaultEntityFactory.AttributeStorage;
+import jalse.entities.DefaultEntityFactory.EntityIDMode;
+import jalse.entities.EntityContainer;
+
+/**
+ * Compares entity spawn throughput across threads for each {@link EntityIDMode}.
+ *
+ * @author Elliot Ford
+ *
+ */
+public class SpawnBenchmark {
+
+    private static final int SPAWNS_PER_THREAD = 20000;
+
+    public static void main(final String[] args) {
+	for (final int threads : new int[] { 1, 4, 8 }) {
+	    for (final EntityIDMode idMode : EntityIDMode.values()) {
+		Benchmarks.measure("spawn " + idMode, threads, (long) threads * SPAWNS_PER_THREAD, () -> {
+		    final EntityContainer container = new DefaultEntityContainer(
+			    new DefaultEntityFactory(Integer.MAX_VALUE, AttributeStorage.DEFAULT, idMode));
+		    return i -> {
+			for (int j = 0; j < SPAWNS_PER_THREAD; j++) {
+			    container.newEntity();
+			}
+		    };
+		});
+	    }
+	}
+    }
+}
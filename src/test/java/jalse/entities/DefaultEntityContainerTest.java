@@ -1,13 +1,23 @@
 package jalse.entities;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import jalse.DefaultJALSE;
+import jalse.attributes.Attributes;
 import jalse.attributes.DefaultAttributeContainer;
+import jalse.attributes.NamedAttributeType;
 
 public class DefaultEntityContainerTest {
 
@@ -95,12 +105,48 @@ public class DefaultEntityContainerTest {
 
     private interface TestEntity extends Entity {}
 
+    private interface TestSubEntity extends TestEntity {}
+
     private class TestEntityListener implements EntityListener {
 
 	public boolean killed;
+	public int created;
+	public int batches;
+	public int killBatches;
+	public int transferBatches;
+	public int transferred;
+	public int receiveBatches;
+	public int received;
+	public int movedIn;
+
+	@Override
+	public void entitiesCreated(final List<EntityEvent> events) {
+	    batches++;
+	    EntityListener.super.entitiesCreated(events);
+	}
+
+	@Override
+	public void entitiesKilled(final List<EntityEvent> events) {
+	    killBatches++;
+	    EntityListener.super.entitiesKilled(events);
+	}
+
+	@Override
+	public void entitiesReceived(final List<EntityEvent> events) {
+	    receiveBatches++;
+	    EntityListener.super.entitiesReceived(events);
+	}
+
+	@Override
+	public void entitiesTransferred(final List<EntityEvent> events) {
+	    transferBatches++;
+	    EntityListener.super.entitiesTransferred(events);
+	}
 
 	@Override
-	public void entityCreated(final EntityEvent event) {}
+	public void entityCreated(final EntityEvent event) {
+	    created++;
+	}
 
 	@Override
 	public void entityKilled(final EntityEvent event) {
@@ -108,10 +154,19 @@ public class DefaultEntityContainerTest {
 	}
 
 	@Override
-	public void entityReceived(final EntityEvent event) {}
+	public void entityMovedIn(final EntityEvent event) {
+	    movedIn++;
+	}
 
 	@Override
-	public void entityTransferred(final EntityEvent event) {}
+	public void entityReceived(final EntityEvent event) {
+	    received++;
+	}
+
+	@Override
+	public void entityTransferred(final EntityEvent event) {
+	    transferred++;
+	}
     }
 
     DefaultEntityContainer container;
@@ -146,6 +201,86 @@ public class DefaultEntityContainerTest {
 	container = null;
     }
 
+    @Test
+    public void attributeIndexAddRaceTest() {
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+	final AttributeValueIndex<Integer> index = new AttributeValueIndex<>(namedType, false);
+
+	// Updated between listening and reading (reads the stale value)
+	final DefaultEntity e = new DefaultEntity(new UUID(0, 0), new DefaultEntityFactory(), null,
+		DefaultAttributeContainer::new) {
+
+	    @Override
+	    public <T> T getAttribute(final NamedAttributeType<T> type) {
+		final T stale = super.getAttribute(type);
+		setAttribute(namedType, 2);
+		return stale;
+	    }
+	};
+	e.setAttribute(namedType, 1);
+	index.add(e);
+
+	Assert.assertEquals(Collections.singleton(e), index.find(2));
+	Assert.assertTrue(index.find(1).isEmpty());
+    }
+
+    @Test
+    public void attributeIndexKillTest() {
+	container = new DefaultEntityContainer();
+	final NamedAttributeType<String> state = Attributes.newNamedStringType("state");
+	final Entity e = container.newEntity();
+	e.setAttribute(state, "HUNGRY");
+	container.addAttributeIndex(state);
+
+	container.killEntity(e.getID());
+	Assert.assertTrue(e.getAttributeListeners(state).isEmpty());
+
+	// Stale reference
+	e.setAttribute(state, "FULL");
+	Assert.assertEquals(0, container.getEntityCount());
+	Assert.assertTrue(container.findEntities(state, "FULL").isEmpty());
+
+	// Killed together
+	final Entity other = container.newEntity();
+	container.killEntities(x -> true);
+	other.setAttribute(state, "FULL");
+	Assert.assertTrue(container.findEntities(state, "FULL").isEmpty());
+    }
+
+    @Test
+    public void attributeIndexTest() {
+	container = new DefaultEntityContainer();
+	final NamedAttributeType<String> state = Attributes.newNamedStringType("state");
+
+	final Entity hungry = container.newEntity();
+	hungry.setAttribute(state, "HUNGRY");
+	final Entity full = container.newEntity();
+	full.setAttribute(state, "FULL");
+
+	Assert.assertTrue(container.addAttributeIndex(state));
+	Assert.assertFalse(container.addAttributeIndex(state));
+	Assert.assertTrue(container.hasAttributeIndex(state));
+	Assert.assertEquals(Collections.singleton(hungry), container.findEntities(state, "HUNGRY"));
+
+	// Set, replaced and removed
+	final Entity created = container.newEntity();
+	created.setAttribute(state, "HUNGRY");
+	full.setAttribute(state, "HUNGRY");
+	hungry.removeAttribute(state);
+	Assert.assertEquals(new HashSet<>(Arrays.asList(created, full)), container.findEntities(state, "HUNGRY"));
+	Assert.assertTrue(container.findEntities(state, "FULL").isEmpty());
+
+	// Entities leaving
+	container.killEntity(created.getID());
+	full.transfer(new DefaultEntityContainer());
+	Assert.assertTrue(container.findEntities(state, "HUNGRY").isEmpty());
+
+	Assert.assertTrue(container.removeAttributeIndex(state));
+	Assert.assertFalse(container.hasAttributeIndex(state));
+	container.newEntity().setAttribute(state, "HUNGRY");
+	Assert.assertEquals(1, container.findEntities(state, "HUNGRY").size()); // Scans
+    }
+
     @Test
     public void delegateContainerTest() {
 	container = new DefaultEntityContainer();
@@ -164,6 +299,37 @@ public class DefaultEntityContainerTest {
 	container.newEntity(new UUID(0, 0));
     }
 
+    @Test
+    public void entitiesOfTypeTest() {
+	container = new DefaultEntityContainer();
+	final DefaultEntityContainer otherContainer = new DefaultEntityContainer();
+
+	final Entity e1 = container.newEntity(TestSubEntity.class);
+	final Entity e2 = container.newEntity(TestEntity.class);
+	final Entity e3 = container.newEntity();
+
+	Assert.assertEquals(2, container.getEntitiesOfType(TestEntity.class).size());
+	Assert.assertEquals(1, container.getEntitiesOfType(TestSubEntity.class).size());
+
+	e3.markAsType(TestSubEntity.class);
+	Assert.assertEquals(3, container.getEntitiesOfType(TestEntity.class).size());
+
+	e1.unmarkAsType(TestEntity.class); // Removes descendant too
+	Assert.assertEquals(1, container.getEntitiesOfType(TestSubEntity.class).size());
+
+	container.transferEntity(e3.getID(), otherContainer);
+	Assert.assertEquals(1, container.getEntitiesOfType(TestEntity.class).size());
+	Assert.assertEquals(1, otherContainer.getEntitiesOfType(TestSubEntity.class).size());
+
+	// Changes after transfer are only seen by the destination
+	e3.unmarkAsType(TestSubEntity.class);
+	Assert.assertTrue(otherContainer.getEntitiesOfType(TestSubEntity.class).isEmpty());
+	Assert.assertEquals(1, otherContainer.getEntitiesOfType(TestEntity.class).size());
+
+	e2.kill();
+	Assert.assertTrue(container.getEntitiesOfType(TestEntity.class).isEmpty());
+    }
+
     @Test
     public void entityListenerTest() {
 	container = new DefaultEntityContainer();
@@ -246,6 +412,29 @@ public class DefaultEntityContainerTest {
 	Assert.assertEquals(container.hashCode(), otherContainer.hashCode());
     }
 
+    @Test
+    public void killEntitiesFilterTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory();
+	container = new DefaultEntityContainer(factory);
+	final List<Entity> entities = container.newEntities(10);
+	entities.get(0).newEntities(3);
+	final TestEntityListener entityListener = new TestEntityListener();
+	container.addEntityListener(entityListener);
+
+	final Set<Entity> toKill = new HashSet<>(entities.subList(0, 5));
+	Assert.assertEquals(5, container.killEntities(toKill::contains));
+	Assert.assertEquals(1, entityListener.killBatches);
+	Assert.assertTrue(entityListener.killed);
+	Assert.assertEquals(5, container.getEntityCount());
+	Assert.assertEquals(5, factory.getEntityCount()); // Subtree too
+	Assert.assertFalse(entities.get(0).isAlive());
+
+	Assert.assertEquals(0, container.killEntities(toKill::contains));
+	container.killEntities();
+	Assert.assertEquals(2, entityListener.killBatches);
+	Assert.assertEquals(0, factory.getEntityCount());
+    }
+
     @Test
     public void killEntityTest() {
 	container = new DefaultEntityContainer();
@@ -275,6 +464,57 @@ public class DefaultEntityContainerTest {
 	Assert.assertTrue(entityListener.killed);
     }
 
+    @Test
+    public void newEntitiesTest() {
+	container = new DefaultEntityContainer(new DefaultEntityFactory(10));
+	final TestEntityListener entityListener = new TestEntityListener();
+	container.addEntityListener(entityListener);
+
+	final List<TestSubEntity> entities = container.newEntities(5, TestSubEntity.class);
+	Assert.assertEquals(5, entities.size());
+	Assert.assertEquals(5, container.getEntityCount());
+	Assert.assertEquals(5, container.streamEntitiesOfType(TestEntity.class).count());
+	Assert.assertTrue(entities.get(0).isMarkedAsType(TestEntity.class));
+	Assert.assertEquals(1, entityListener.batches);
+	Assert.assertEquals(5, entityListener.created);
+
+	// Limit checked before creating any
+	try {
+	    container.newEntities(6);
+	    Assert.fail();
+	} catch (final IllegalStateException e) {}
+	Assert.assertEquals(5, container.getEntityCount());
+
+	Assert.assertEquals(5, container.newEntities(5).size());
+	Assert.assertTrue(container.newEntities(0).isEmpty());
+	Assert.assertEquals(2, entityListener.batches);
+    }
+
+    @Test
+    public void persistentTest() {
+	container = new DefaultEntityContainer.Builder().setPersistent().build();
+	Assert.assertTrue(container.isPersistent());
+
+	final Entity entity1 = container.newEntity();
+	final Map<UUID, Entity> snapshot = container.snapshot();
+	final Entity entity2 = container.newEntity();
+	entity1.kill();
+
+	Assert.assertEquals(1, snapshot.size());
+	Assert.assertSame(entity1, snapshot.get(entity1.getID()));
+	Assert.assertEquals(Collections.singleton(entity2.getID()), container.snapshot().keySet());
+	Assert.assertEquals(1, container.streamEntities().count());
+
+	// Children of entities from a persistent factory are persistent
+	final DefaultEntityFactory factory = new DefaultEntityFactory();
+	factory.setPersistentMaps(true);
+	final DefaultEntity parent = (DefaultEntity) new DefaultEntityContainer(factory).newEntity();
+	final Entity child = parent.newEntity();
+	Assert.assertSame(child, parent.snapshotEntities().get(child.getID()));
+	Assert.assertTrue(parent.getOrNewEntities().isPersistent());
+	Assert.assertTrue(((DefaultAttributeContainer) parent.attributes).isPersistent());
+    }
+
     @Test
     public void receiveTest() {
 	container = new DefaultEntityContainer();
@@ -292,6 +532,233 @@ public class DefaultEntityContainerTest {
 	Assert.assertFalse(container.receiveEntity(entity));
     }
 
+    @Test
+    public void sortedAttributeIndexTest() {
+	container = new DefaultEntityContainer();
+	final NamedAttributeType<Integer> energy = Attributes.newNamedIntegerType("energy");
+	Assert.assertTrue(container.addSortedAttributeIndex(energy));
+
+	for (int i = 0; i < 20; i++) {
+	    container.newEntity().setAttribute(energy, i);
+	}
+
+	Assert.assertEquals(10, container.findEntitiesInRange(energy, null, 10).size());
+	Assert.assertEquals(5, container.findEntitiesInRange(energy, 5, 10).size());
+	Assert.assertEquals(20, container.findEntitiesInRange(energy, null, null).size());
+	Assert.assertEquals(1, container.findEntities(energy, 19).size());
+
+	// Updates move within the index
+	container.findEntities(energy, 19).forEach(e -> e.setAttribute(energy, 0));
+	Assert.assertEquals(2, container.findEntitiesInRange(energy, 0, 1).size());
+	Assert.assertTrue(container.findEntitiesInRange(energy, 19, null).isEmpty());
+
+	// Same results as scanning
+	Assert.assertTrue(container.removeAttributeIndex(energy));
+	Assert.assertEquals(2, container.findEntitiesInRange(energy, 0, 1).size());
+	Assert.assertEquals(11, container.findEntitiesInRange(energy, null, 10).size());
+    }
+
+    @Test
+    public void streamWhileKillingTest() {
+	container = new DefaultEntityContainer();
+
+	for (int i = 0; i < 10; i++) {
+	    container.newEntity();
+	}
+
+	// Streams are weakly consistent (no snapshot)
+	container.streamEntities().forEach(Entity::kill);
+	Assert.assertFalse(container.hasEntities());
+	Assert.assertEquals(0, container.streamEntityIDs().count());
+    }
+
+    @Test
+    public void transferEntitiesTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory();
+	container = new DefaultEntityContainer(factory);
+	final List<Entity> entities = container.newEntities(10);
+	final Entity parent = container.newEntity();
+	final TestEntityListener entityListener = new TestEntityListener();
+	container.addEntityListener(entityListener);
+	final TestEntityListener parentListener = new TestEntityListener();
+	parent.addEntityListener(parentListener);
+
+	// Within the same tree
+	final Set<UUID> ids = new HashSet<>();
+	entities.subList(0, 5).forEach(e -> ids.add(e.getID()));
+	final UUID unknown = new UUID(0, 0);
+	ids.add(unknown);
+
+	final Set<UUID> notTransferred = container.transferEntities(ids, parent);
+	Assert.assertEquals(Collections.singleton(unknown), notTransferred);
+	Assert.assertEquals(1, entityListener.transferBatches);
+	Assert.assertEquals(5, entityListener.transferred);
+	Assert.assertEquals(6, container.getEntityCount());
+	Assert.assertEquals(5, parent.getEntityCount());
+	Assert.assertEquals(parent, entities.get(0).getContainer());
+	Assert.assertEquals(11, factory.getEntityCount());
+	Assert.assertEquals(5, parentListener.movedIn);
+	Assert.assertEquals(0, parentListener.received);
+
+	Assert.assertTrue(container.transferEntity(entities.get(5).getID(), parent));
+	Assert.assertEquals(6, parentListener.movedIn);
+	Assert.assertEquals(0, parentListener.received);
+
+	// Into another tree
+	final DefaultEntityContainer otherContainer = new DefaultEntityContainer();
+	final TestEntityListener otherListener = new TestEntityListener();
+	otherContainer.addEntityListener(otherListener);
+
+	Assert.assertTrue(parent.transferAllEntities(otherContainer).isEmpty());
+	Assert.assertEquals(1, otherListener.receiveBatches);
+	Assert.assertEquals(6, otherListener.received);
+	Assert.assertEquals(0, otherListener.movedIn);
+	Assert.assertEquals(6, otherContainer.getEntityCount());
+	Assert.assertEquals(5, factory.getEntityCount());
+	Assert.assertEquals(otherContainer, entities.get(0).getContainer());
+    }
+
+    @Test
+    public void transferEntitiesFailureTest() {
+	container = new DefaultEntityContainer();
+	final List<Entity> entities = container.newEntities(2);
+	final TestEntityListener entityListener = new TestEntityListener();
+	container.addEntityListener(entityListener);
+
+	// Only imports the first entity
+	final DefaultEntityContainer otherContainer = new DefaultEntityContainer(new DefaultEntityFactory() {
+
+	    private boolean imported;
+
+	    @Override
+	    public boolean tryImportEntity(final Entity e, final EntityContainer target) {
+		if (imported) {
+		    return false;
+		}
+		imported = true;
+		return super.tryImportEntity(e, target);
+	    }
+	});
+	final TestEntityListener otherListener = new TestEntityListener();
+	otherContainer.addEntityListener(otherListener);
+
+	final Set<UUID> ids = new HashSet<>();
+	entities.forEach(e -> ids.add(e.getID()));
+
+	try {
+	    container.transferEntities(ids, otherContainer);
+	    Assert.fail();
+	} catch (final IllegalStateException e) {}
+
+	Assert.assertEquals(1, entityListener.transferBatches);
+	Assert.assertEquals(1, entityListener.transferred);
+	Assert.assertEquals(1, otherListener.receiveBatches);
+	Assert.assertEquals(1, otherListener.received);
+	Assert.assertEquals(1, otherContainer.getEntityCount());
+    }
+
+    @Test
+    public void transferEntitiesToJALSETest() {
+	final DefaultJALSE jalse = new DefaultJALSE.Builder().setManualEngine().build();
+	final Entity parent = jalse.newEntity();
+	final List<Entity> entities = parent.newEntities(5);
+	final TestEntityListener entityListener = new TestEntityListener();
+	parent.addEntityListener(entityListener);
+
+	final Set<UUID> ids = new HashSet<>();
+	entities.forEach(e -> ids.add(e.getID()));
+
+	// Transferred as a batch into the top level container
+	Assert.assertTrue(parent.transferEntities(ids, jalse).isEmpty());
+	Assert.assertEquals(1, entityListener.transferBatches);
+	Assert.assertEquals(5, entityListener.transferred);
+	Assert.assertEquals(6, jalse.getEntityCount());
+	Assert.assertEquals(jalse, entities.get(0).getContainer());
+    }
+
+    @Test
+    public void transferEntitiesToTypeTest() {
+	container = new DefaultEntityContainer();
+	final List<Entity> entities = container.newEntities(5);
+	final TestEntity parent = container.newEntity(TestEntity.class);
+	final TestEntityListener entityListener = new TestEntityListener();
+	container.addEntityListener(entityListener);
+
+	final Set<UUID> ids = new HashSet<>();
+	entities.forEach(e -> ids.add(e.getID()));
+
+	// Transferred as a batch into the proxied entity
+	Assert.assertTrue(container.transferEntities(ids, parent).isEmpty());
+	Assert.assertEquals(1, entityListener.transferBatches);
+	Assert.assertEquals(5, entityListener.transferred);
+	Assert.assertEquals(5, parent.getEntityCount());
+	Assert.assertEquals(1, container.getEntityCount());
+    }
+
+    @Test
+    public void treeCountTest() {
+	container = new DefaultEntityContainer();
+	final List<Entity> entities = container.newEntities(10);
+	entities.forEach(e -> e.newEntities(10).forEach(c -> c.newEntities(2)));
+	Assert.assertEquals(310, container.getTreeCount());
+	Assert.assertEquals(30, Entities.getEntityCountRecursively(entities.get(0)));
+
+	// Within the same tree
+	entities.get(0).transferAllEntities(entities.get(1));
+	Assert.assertEquals(0, Entities.getEntityCountRecursively(entities.get(0)));
+	Assert.assertEquals(60, Entities.getEntityCountRecursively(entities.get(1)));
+	Assert.assertEquals(310, container.getTreeCount());
+
+	// Into another tree
+	final DefaultEntityContainer otherContainer = new DefaultEntityContainer();
+	container.transferEntity(entities.get(1).getID(), otherContainer);
+	Assert.assertEquals(249, container.getTreeCount());
+	Assert.assertEquals(61, otherContainer.getTreeCount());
+
+	container.killEntity(entities.get(2).getID());
+	entities.get(3).getEntities().forEach(Entity::killEntities);
+	Assert.assertEquals(198, container.getTreeCount());
+	Assert.assertEquals(1, otherContainer.killEntities(e -> true));
+	Assert.assertEquals(0, otherContainer.getTreeCount());
+
+	// In parallel
+	entities.subList(3, 10).parallelStream().forEach(e -> {
+	    for (int i = 0; i < 10; i++) {
+		e.newEntity().newEntities(5);
+		e.getEntities().stream().findAny().ifPresent(c -> c.transfer(container));
+	    }
+	});
+
+	final AtomicInteger walked = new AtomicInteger();
+	Entities.walkEntityTree(container, e -> {
+	    walked.incrementAndGet();
+	    return EntityVisitor.EntityVisitResult.CONTINUE;
+	});
+	Assert.assertEquals(walked.get(), container.getTreeCount());
+    }
+
+    @Test
+    public void transferEntitiesOpposingTest() throws InterruptedException {
+	container = new DefaultEntityContainer();
+	final DefaultEntityContainer otherContainer = new DefaultEntityContainer(container.getFactory());
+	container.newEntities(100);
+	otherContainer.newEntities(100);
+
+	final Thread thread = new Thread(() -> {
+	    for (int i = 0; i < 100; i++) {
+		otherContainer.transferAllEntities(container);
+	    }
+	});
+	thread.start();
+	for (int i = 0; i < 100; i++) {
+	    container.transferAllEntities(otherContainer);
+	}
+	thread.join(10000);
+
+	Assert.assertFalse(thread.isAlive());
+	Assert.assertEquals(200, container.getEntityCount() + otherContainer.getEntityCount());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void transferSameContainerTest() {
 	container = new DefaultEntityContainer();
@@ -1,6 +1,10 @@
 package jalse.entities;
 
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -8,6 +12,14 @@ import org.junit.Test;
 
 import jalse.actions.Actions;
 import jalse.actions.ForkJoinActionEngine;
+import jalse.attributes.AttributeContainer;
+import jalse.attributes.Attributes;
+import jalse.attributes.ColumnarAttributeStore;
+import jalse.attributes.DefaultAttributeContainer;
+import jalse.attributes.NamedAttributeType;
+import jalse.attributes.OptimisticAttributeContainer;
+import jalse.entities.DefaultEntityFactory.AttributeStorage;
+import jalse.entities.DefaultEntityFactory.EntityIDMode;
 
 public class DefaultEntityFactoryTest {
 
@@ -20,6 +32,48 @@ public class DefaultEntityFactoryTest {
 	sourceContainer = new DefaultEntityContainer.Builder().build();
     }
 
+    @Test
+    public void bufferedAttributeStorageTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory(Integer.MAX_VALUE, AttributeStorage.BUFFERED);
+	final EntityContainer container = new DefaultEntityContainer(factory);
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final Entity entity = container.newEntity();
+	entity.setAttribute(namedType, 1);
+	Assert.assertNull(entity.getAttribute(namedType));
+
+	Assert.assertEquals(1, factory.getAttributeBuffer().swap());
+	Assert.assertEquals((Integer) 1, entity.getAttribute(namedType));
+	Assert.assertNull(new DefaultEntityFactory().getAttributeBuffer());
+    }
+
+    @Test
+    public void columnarAttributeStorageTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory(Integer.MAX_VALUE, AttributeStorage.COLUMNAR);
+	final EntityContainer container = new DefaultEntityContainer(factory);
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final Entity entity1 = container.newEntity();
+	final Entity entity2 = container.newEntity();
+	entity1.setAttribute(namedType, 1);
+	entity2.setAttribute(namedType, 2);
+
+	final ColumnarAttributeStore columns = factory.getAttributeColumns(container);
+	Assert.assertEquals(2, columns.getRowCount());
+	Assert.assertEquals(3, columns.streamColumn(namedType).mapToInt(Integer::intValue).sum());
+
+	// Move to a new parent (new columns)
+	final Entity parent = container.newEntity();
+	container.transferEntity(entity1.getID(), parent);
+	Assert.assertEquals((Integer) 1, entity1.getAttribute(namedType));
+	Assert.assertEquals(1, factory.getAttributeColumns(parent).getRowCount());
+
+	// Killing releases the row
+	entity2.kill();
+	Assert.assertEquals(1, columns.getRowCount()); // Parent only
+	Assert.assertEquals((Integer) 2, entity2.getAttribute(namedType));
+    }
+
     @Test
     public void createDefaultEntityFactory() {
 	final DefaultEntityFactory factory = new DefaultEntityFactory();
@@ -57,6 +111,33 @@ public class DefaultEntityFactoryTest {
 	factory.exportEntity(entity);
     }
 
+    @Test
+    public void getEntityTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory();
+	final EntityContainer container = new DefaultEntityContainer(factory);
+	final Entity parent = container.newEntity();
+	final Entity child = parent.newEntity();
+	final UUID randomID = UUID.randomUUID(); // Outside of the ID namespace
+	final Entity other = parent.newEntity(randomID);
+
+	Assert.assertEquals(parent, factory.getEntity(parent.getID()));
+	Assert.assertEquals(child, factory.getEntity(child.getID()));
+	Assert.assertEquals(other, factory.getEntity(randomID));
+	Assert.assertEquals(parent, factory.getEntity(child.getID()).getContainer());
+	Assert.assertTrue(Entities.findEntityRecursively(container, child.getID()));
+	Assert.assertTrue(Entities.findEntityRecursively(parent, child.getID()));
+	Assert.assertFalse(Entities.findEntityRecursively(child, parent.getID()));
+
+	// Same factory but another tree
+	final EntityContainer otherContainer = new DefaultEntityContainer(factory);
+	Assert.assertNull(Entities.getEntityRecursively(otherContainer, child.getID()));
+
+	parent.kill();
+	Assert.assertNull(factory.getEntity(parent.getID()));
+	Assert.assertNull(factory.getEntity(child.getID()));
+	Assert.assertFalse(Entities.findEntityRecursively(container, child.getID()));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void invalidEntityLimitTest() {
 	new DefaultEntityFactory(-1);
@@ -73,6 +154,132 @@ public class DefaultEntityFactoryTest {
 	factory.newEntity(new UUID(0, 1), targetContainer);
     }
 
+    @Test
+    public void optimisticAttributeStorageTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory(Integer.MAX_VALUE, AttributeStorage.OPTIMISTIC);
+	final EntityContainer container = new DefaultEntityContainer(factory);
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final DefaultEntity entity = (DefaultEntity) container.newEntity();
+	Assert.assertTrue(entity.attributes instanceof OptimisticAttributeContainer);
+	Assert.assertEquals(entity, ((OptimisticAttributeContainer) entity.attributes).getDelegateContainer());
+
+	entity.setAttribute(namedType, 1);
+	Assert.assertEquals((Integer) 1, entity.getAttribute(namedType));
+	Assert.assertEquals(1, entity.getAttributeCount());
+    }
+
+    @Test
+    public void parallelEntityLimitTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory(500);
+	final EntityContainer container = new DefaultEntityContainer(factory);
+	final AtomicInteger created = new AtomicInteger();
+
+	IntStream.range(0, 2000).parallel().forEach(i -> {
+	    try {
+		final Entity e = container.newEntity();
+		created.incrementAndGet();
+		if (i % 2 == 0) {
+		    container.killEntity(e.getID());
+		    created.decrementAndGet();
+		}
+	    } catch (final IllegalStateException e) {
+		// Limit reached
+	    }
+	});
+
+	Assert.assertEquals(created.get(), factory.getEntityCount());
+	Assert.assertEquals(created.get(), container.getEntityCount());
+	Assert.assertTrue(factory.getEntityCount() <= 500);
+    }
+
+    @Test
+    public void parallelEntityIDTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory();
+	final EntityContainer container = new DefaultEntityContainer(factory);
+	final Set<UUID> ids = ConcurrentHashMap.newKeySet();
+
+	IntStream.range(0, 10000).parallel().forEach(i -> ids.add(container.newEntity().getID()));
+
+	Assert.assertEquals(10000, ids.size());
+	Assert.assertEquals(10000, factory.getEntityCount());
+	Assert.assertTrue(ids.stream().allMatch(id -> id.getMostSignificantBits() == factory.getIDNamespace()));
+    }
+
+    @Test
+    public void poolStaleLeaseTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory();
+	factory.setPoolLimit(1);
+	final EntityContainer container = new DefaultEntityContainer(factory);
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final DefaultEntity entity1 = (DefaultEntity) container.newEntity();
+	final AttributeContainer stale = entity1.attributes; // Held by another thread mid update
+	entity1.kill();
+
+	final DefaultEntity entity2 = (DefaultEntity) container.newEntity();
+	entity2.setAttribute(namedType, 2);
+	Assert.assertTrue(((DefaultAttributeContainer.Lease) stale).isExpired());
+
+	try {
+	    stale.setAttribute(namedType, 1);
+	    Assert.fail();
+	} catch (final UnsupportedOperationException e) {
+	    // Expected
+	}
+
+	Assert.assertNull(stale.getAttribute(namedType));
+	Assert.assertEquals(0, stale.getInt(namedType));
+	Assert.assertEquals((Integer) 2, entity2.getAttribute(namedType));
+    }
+
+    @Test
+    public void poolTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory();
+	factory.setPoolLimit(1);
+	final EntityContainer container = new DefaultEntityContainer(factory);
+	final NamedAttributeType<Integer> namedType = Attributes.newNamedIntegerType("test");
+
+	final DefaultEntity entity1 = (DefaultEntity) container.newEntity();
+	entity1.setAttribute(namedType, 1);
+	final Object attributes = ((DefaultAttributeContainer.Lease) entity1.attributes).getContainer();
+	final Object tags = entity1.tags;
+	entity1.kill();
+
+	// Stale reference stays dead
+	Assert.assertFalse(entity1.isAlive());
+	Assert.assertNull(entity1.getAttribute(namedType));
+	Assert.assertEquals(0, entity1.streamTags().count());
+
+	// Attributes are reset and reused (tags could still be in use through a stale reference)
+	final DefaultEntity entity2 = (DefaultEntity) container.newEntity();
+	Assert.assertSame(attributes, ((DefaultAttributeContainer.Lease) entity2.attributes).getContainer());
+	Assert.assertNotSame(tags, entity2.tags);
+	Assert.assertNull(entity2.getAttribute(namedType));
+	Assert.assertTrue(entity2.isAlive());
+	Assert.assertFalse(entity1.isAlive());
+	Assert.assertNull(entity1.getAttribute(namedType));
+    }
+
+    @Test
+    public void sequentialEntityIDTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory(Integer.MAX_VALUE, AttributeStorage.DEFAULT,
+		EntityIDMode.SEQUENTIAL);
+	final EntityContainer container = new DefaultEntityContainer(factory);
+
+	final Entity entity1 = container.newEntity();
+	final Entity entity2 = entity1.newEntity();
+	Assert.assertEquals(new UUID(factory.getIDNamespace(), 1), entity1.getID());
+	Assert.assertEquals(new UUID(factory.getIDNamespace(), 2), entity2.getID());
+
+	// Explicit IDs can still be used
+	container.newEntity(new UUID(0, 1));
+	Assert.assertEquals(3, factory.getEntityCount());
+
+	entity1.kill();
+	Assert.assertEquals(1, factory.getEntityCount());
+    }
+
     @Test
     public void tryImportEntityTest() {
 	final DefaultEntityFactory factory = new DefaultEntityFactory();
@@ -83,6 +290,7 @@ public class DefaultEntityFactoryTest {
 	Assert.assertEquals(targetContainer, entity.getContainer());
 	Assert.assertEquals(factory.getEngine(), entity.getEngine());
 	Assert.assertEquals(factory.getEngine(), childEntity.getEngine());
+	Assert.assertEquals(2, factory.getEntityCount());
 
 	// Try importing the same entity twice.
 	Assert.assertFalse(factory.tryImportEntity(entity, targetContainer));
@@ -8,6 +8,8 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import jalse.DefaultJALSE;
+import jalse.JALSE;
 import jalse.actions.Action;
 import jalse.actions.ActionContext;
 import jalse.actions.DefaultActionScheduler;
@@ -15,6 +17,11 @@ import jalse.attributes.AttributeEvent;
 import jalse.attributes.AttributeListener;
 import jalse.attributes.Attributes;
 import jalse.attributes.DefaultAttributeContainer;
+import jalse.attributes.NamedAttributeType;
+import jalse.entities.annotations.GetAttribute;
+import jalse.entities.annotations.SetAttribute;
+import jalse.tags.RootContainer;
+import jalse.tags.TreeDepth;
 
 public class DefaultEntityTest {
 
@@ -48,6 +55,21 @@ public class DefaultEntityTest {
 
     private interface TestEntity extends Entity {}
 
+    private interface TestPrimitiveEntity extends Entity {
+
+	@GetAttribute
+	int getHealth();
+
+	@GetAttribute
+	double getSpeed();
+
+	@SetAttribute
+	int setHealth(int health);
+
+	@SetAttribute
+	void setSpeed(double speed);
+    }
+
     private interface TestEntity2 extends TestEntity {}
 
     private class TestEntityListener implements EntityListener {
@@ -248,6 +270,34 @@ public class DefaultEntityTest {
 	Assert.assertNull(entity.getEntity(new UUID(0, 3)));
     }
 
+    @Test
+    public void lazyAllocationTest() {
+	final DefaultEntityFactory factory = new DefaultEntityFactory();
+	final DefaultEntityContainer container = new DefaultEntityContainer(factory);
+	entity = (DefaultEntity) container.newEntity();
+	entity.setAttribute("test", Attributes.INTEGER_TYPE, 1);
+
+	// Idle leaf entity
+	Assert.assertEquals(0, entity.getEntityCount());
+	Assert.assertEquals(0, entity.streamEntities().count());
+	Assert.assertTrue(entity.getEntityListeners().isEmpty());
+	Assert.assertTrue(entity.getEntityTypeListeners().isEmpty());
+	Assert.assertFalse(entity.isMarkedAsType(TestEntity.class));
+	Assert.assertFalse(entity.killEntity(new UUID(0, 0)));
+	entity.cancelAllScheduledForActor();
+	Assert.assertNull(entity.entities);
+	Assert.assertNull(entity.scheduler);
+
+	// Created on first use
+	entity.newContextForActor(new TestAction());
+	Assert.assertNotNull(entity.scheduler);
+	Assert.assertEquals(factory.getEngine(), entity.scheduler.getEngine());
+
+	entity.newEntity();
+	Assert.assertNotNull(entity.entities);
+	Assert.assertEquals(1, entity.getEntityCount());
+    }
+
     @Test
     public void liveEntityTest() {
 	final UUID id = new UUID(0, 0);
@@ -303,6 +353,27 @@ public class DefaultEntityTest {
 	entity.newEntity(new UUID(0, 2), TestEntity.class, new DefaultAttributeContainer());
     }
 
+    @Test
+    public void primitiveAttributeTest() {
+	entity = createDefaultEntity();
+	final TestAttributeListener listener = new TestAttributeListener();
+	final NamedAttributeType<Integer> healthType = Attributes.newNamedIntegerType("health");
+	entity.addAttributeListener(healthType, listener);
+
+	final TestPrimitiveEntity primitiveEntity = Entities.asType(entity, TestPrimitiveEntity.class);
+	Assert.assertEquals(0, primitiveEntity.getHealth());
+	Assert.assertEquals(0, primitiveEntity.setHealth(10));
+	Assert.assertEquals(10, primitiveEntity.setHealth(20));
+	Assert.assertEquals(20, primitiveEntity.getHealth());
+	Assert.assertEquals(20, entity.getInt(healthType));
+	Assert.assertEquals((Integer) 20, entity.getAttribute(healthType));
+	Assert.assertEquals(20, listener.val);
+
+	primitiveEntity.setSpeed(1.5);
+	Assert.assertEquals(1.5, entity.getDouble("speed"), 0.0);
+	Assert.assertEquals(1.5, primitiveEntity.getSpeed(), 0.0);
+    }
+
     @Test
     public void receiveEntityTest() {
 	entity = createDefaultEntity();
@@ -336,4 +407,31 @@ public class DefaultEntityTest {
 	Assert.assertEquals(new DefaultActionScheduler<>(entity).getEngine(), entity.getEngine());
 	entity.scheduleForActor(new TestAction(), 1, 10, TimeUnit.SECONDS);
     }
+
+    @Test
+    public void treePositionTest() {
+	final JALSE jalse = new DefaultJALSE.Builder().setRandomID().build();
+	final JALSE other = new DefaultJALSE.Builder().setRandomID().build();
+
+	final Entity parent = jalse.newEntity().newEntity();
+	final Entity child = jalse.newEntity();
+	entity = (DefaultEntity) child.newEntity();
+
+	Assert.assertEquals(jalse, Entities.getRootContainer(entity));
+	Assert.assertEquals(2, entity.getDepth());
+
+	// Deeper in the same tree
+	child.transfer(parent);
+	Assert.assertEquals(4, entity.getDepth());
+	Assert.assertEquals(4, (int) entity.getSingletonTag(TreeDepth.class).getValue());
+
+	// Into another tree
+	child.transfer(other);
+	Assert.assertEquals(other, Entities.getRootContainer(entity));
+	Assert.assertEquals(2, entity.getDepth());
+	Assert.assertEquals(2, (int) entity.getSingletonTag(TreeDepth.class).getValue());
+	Assert.assertEquals(other.getID(), entity.getSingletonTag(RootContainer.class).getValue());
+	Assert.assertTrue(Entities.withinSameTree(entity, other));
+	Assert.assertFalse(Entities.withinSameTree(entity, jalse));
+    }
 }
@@ -0,0 +1,66 @@
+package jalse.entities;
+
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EntityIDMapTest {
+
+    @Test
+    public void addRemoveTest() {
+	final EntityIDMap<Long> ids = new EntityIDMap<>(1L);
+
+	for (long i = 1; i <= 1000; i++) {
+	    Assert.assertTrue(ids.add(new UUID(1L, i), i));
+	}
+	Assert.assertFalse(ids.add(new UUID(1L, 1), 0L));
+	Assert.assertEquals(1000, ids.size());
+
+	for (long i = 1; i <= 1000; i += 2) {
+	    Assert.assertTrue(ids.remove(new UUID(1L, i)));
+	}
+	Assert.assertEquals(500, ids.size());
+
+	for (long i = 1; i <= 1000; i++) {
+	    Assert.assertEquals(i % 2 == 0, ids.contains(new UUID(1L, i)));
+	    Assert.assertEquals(i % 2 == 0 ? (Long) i : null, ids.get(new UUID(1L, i)));
+	}
+    }
+
+    @Test
+    public void outsideNamespaceTest() {
+	final EntityIDMap<String> ids = new EntityIDMap<>(1L);
+	final UUID id = UUID.randomUUID();
+
+	Assert.assertTrue(ids.add(id, "a"));
+	Assert.assertFalse(ids.add(id, "b"));
+	Assert.assertTrue(ids.add(new UUID(1L, 0), "c")); // Zero is not stored as a primitive
+	Assert.assertTrue(ids.contains(id));
+	Assert.assertEquals("a", ids.get(id));
+	Assert.assertEquals(2, ids.size());
+
+	Assert.assertTrue(ids.remove(id));
+	Assert.assertFalse(ids.contains(id));
+	Assert.assertNull(ids.get(id));
+	Assert.assertEquals(1, ids.size());
+    }
+
+    @Test
+    public void replaceTest() {
+	final EntityIDMap<String> ids = new EntityIDMap<>(1L);
+	final UUID id = new UUID(1L, 1);
+	final UUID other = UUID.randomUUID();
+
+	Assert.assertFalse(ids.replace(id, "a"));
+	Assert.assertTrue(ids.add(id, null));
+	Assert.assertTrue(ids.contains(id));
+	Assert.assertNull(ids.get(id));
+	Assert.assertTrue(ids.replace(id, "a"));
+	Assert.assertEquals("a", ids.get(id));
+
+	Assert.assertTrue(ids.add(other, null));
+	Assert.assertTrue(ids.replace(other, "b"));
+	Assert.assertEquals("b", ids.get(other));
+    }
+}
@@ -0,0 +1,140 @@
+package jalse.entities;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jalse.attributes.Attributes;
+import jalse.attributes.NamedAttributeType;
+import jalse.entities.EntityQuery.Source;
+import jalse.tags.TreeDepth;
+
+public class EntityQueryTest {
+
+    private interface Animal extends Entity {}
+
+    private interface Plant extends Entity {}
+
+    private static final NamedAttributeType<String> STATE = Attributes.newNamedStringType("state");
+
+    private static final NamedAttributeType<Integer> ENERGY = Attributes.newNamedIntegerType("energy");
+
+    DefaultEntityContainer container;
+
+    @After
+    public void after() {
+	container = null;
+    }
+
+    private Set<Entity> populate() {
+	container = new DefaultEntityContainer();
+	final Set<Entity> hungryAnimals = new HashSet<>();
+	for (int i = 0; i < 100; i++) {
+	    final Entity e = i % 2 == 0 ? container.newEntity(Animal.class) : container.newEntity(Plant.class);
+	    e.setAttribute(STATE, i % 3 == 0 ? "HUNGRY" : "FULL");
+	    e.setAttribute(ENERGY, i);
+	    if (i % 2 == 0 && i % 3 == 0 && i < 50) {
+		hungryAnimals.add(e);
+	    }
+	}
+	return hungryAnimals;
+    }
+
+    @Test
+    public void estimateTest() {
+	container = new DefaultEntityContainer();
+	container.newEntities(10).forEach(e -> e.newEntities(10).forEach(c -> c.newEntities(10)));
+
+	final EntityQuery.Builder builder = new EntityQuery.Builder().setParallelThreshold(1000);
+	Assert.assertEquals(10, builder.build().estimateOf(container));
+	Assert.assertEquals(1110, builder.setWholeSubtree().build().estimateOf(container));
+
+	// Shallow queries on big trees stay sequential
+	final EntityQuery shallow = builder.setMaxDepth(2).build();
+	Assert.assertEquals(110, shallow.estimateOf(container));
+	Assert.assertFalse(shallow.stream(container).isParallel());
+    }
+
+    @Test
+    public void findTest() {
+	final Set<Entity> expected = populate();
+	final EntityQuery query = new EntityQuery.Builder().addType(Animal.class).addAttribute(STATE, "HUNGRY")
+		.addAttributeRange(ENERGY, null, 50).build();
+
+	Assert.assertEquals(expected, query.find(container));
+	Assert.assertEquals(expected.size(), query.count(container));
+	Assert.assertTrue(query.find(container).stream().allMatch(DefaultEntity.class::isInstance));
+
+	// Same result from every plan
+	container.addSortedAttributeIndex(ENERGY);
+	Assert.assertEquals(expected, query.find(container));
+	container.addAttributeIndex(STATE);
+	Assert.assertEquals(expected, query.find(container));
+    }
+
+    @Test
+    public void parallelTest() {
+	final Set<Entity> expected = populate();
+	final EntityQuery query = new EntityQuery.Builder().addType(Animal.class).addAttribute(STATE, "HUNGRY")
+		.addAttributeFilter(ENERGY, v -> v < 50).setParallelThreshold(0).build();
+
+	Assert.assertTrue(query.stream(container).isParallel());
+	Assert.assertEquals(expected, query.find(container));
+    }
+
+    @Test
+    public void planTest() {
+	populate();
+	final EntityQuery scan = new EntityQuery.Builder().addAttributeFilter(ENERGY, v -> v > 10).build();
+	final EntityQuery query = new EntityQuery.Builder().addType(Animal.class).addAttribute(STATE, "HUNGRY")
+		.addAttributeRange(ENERGY, 0, 10).build();
+
+	Assert.assertEquals(Source.SCAN, scan.planOf(container));
+	Assert.assertEquals(Source.TYPE_INDEX, query.planOf(container));
+
+	container.addSortedAttributeIndex(ENERGY);
+	Assert.assertEquals(Source.RANGE_INDEX, query.planOf(container));
+
+	container.addAttributeIndex(STATE);
+	Assert.assertEquals(Source.ATTRIBUTE_INDEX, query.planOf(container));
+	Assert.assertEquals(Source.SCAN, scan.planOf(container));
+    }
+
+    @Test
+    public void planUnsortedRangeTest() {
+	final Set<Entity> expected = populate();
+	final EntityQuery query = new EntityQuery.Builder().addType(Animal.class).addAttribute(STATE, "HUNGRY")
+		.addAttributeRange(ENERGY, null, 50).build();
+
+	// Ranges cannot use an unsorted index
+	container.addAttributeIndex(ENERGY);
+	Assert.assertFalse(container.hasSortedAttributeIndex(ENERGY));
+	Assert.assertEquals(Source.TYPE_INDEX, query.planOf(container));
+	Assert.assertEquals(expected, query.find(container));
+
+	final EntityQuery range = new EntityQuery.Builder().addAttributeRange(ENERGY, 10, 20).build();
+	Assert.assertEquals(Source.SCAN, range.planOf(container));
+	Assert.assertEquals(10, range.count(container));
+    }
+
+    @Test
+    public void subtreeTest() {
+	container = new DefaultEntityContainer();
+	final Entity parent = container.newEntity();
+	final Entity child = parent.newEntity(Animal.class);
+	final Entity grandchild = child.newEntity(Animal.class);
+
+	final EntityQuery.Builder builder = new EntityQuery.Builder().addType(Animal.class);
+	Assert.assertTrue(builder.build().find(container).isEmpty());
+	Assert.assertEquals(1, builder.setMaxDepth(2).build().count(container));
+	Assert.assertEquals(2, builder.setWholeSubtree().build().count(container));
+
+	// Tags
+	final EntityQuery deepest = builder.addTagFilter(TreeDepth.class, d -> d.getValue() == 2).build();
+	Assert.assertEquals(1, deepest.count(container));
+	Assert.assertTrue(deepest.find(container).contains(grandchild));
+    }
+}
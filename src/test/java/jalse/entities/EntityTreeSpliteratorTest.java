@@ -0,0 +1,92 @@
+package jalse.entities;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EntityTreeSpliteratorTest {
+
+    private static DefaultEntityContainer newTree() {
+	final DefaultEntityContainer container = new DefaultEntityContainer();
+	container.newEntities(10).forEach(e -> e.newEntities(10).forEach(c -> c.newEntities(5)));
+	return container;
+    }
+
+    @Test
+    public void depthFirstTest() {
+	final DefaultEntityContainer container = newTree();
+	final List<Entity> walked = Entities.walkEntities(container).collect(Collectors.toList());
+	Assert.assertEquals(610, walked.size());
+
+	// Each subtree is visited straight after its root
+	for (int i = 0; i < walked.size(); i += 61) {
+	    final Entity root = walked.get(i);
+	    Assert.assertEquals(container, root.getContainer());
+	    for (int j = i + 1; j < i + 61; j++) {
+		final EntityContainer parent = walked.get(j).getContainer();
+		Assert.assertTrue(root.equals(parent) || root.equals(((Entity) parent).getContainer()));
+	    }
+	}
+    }
+
+    @Test
+    public void maxDepthTest() {
+	final DefaultEntityContainer container = newTree();
+	final Spliterator<Entity> spliterator = new EntityTreeSpliterator(container, 2);
+
+	Assert.assertEquals(110, StreamSupport.stream(spliterator, false).count());
+    }
+
+    @Test
+    public void parallelTest() {
+	final DefaultEntityContainer container = newTree();
+	final List<UUID> ids = Entities.walkEntities(container).parallel().map(Entity::getID)
+		.collect(Collectors.toList());
+
+	Assert.assertEquals(610, ids.size());
+	Assert.assertEquals(new HashSet<>(ids), Entities.getEntityIDsRecursively(container));
+    }
+
+    @Test
+    public void splitTest() {
+	final DefaultEntityContainer container = newTree();
+	final Spliterator<Entity> spliterator = new EntityTreeSpliterator(container, Integer.MAX_VALUE);
+	Assert.assertEquals(610, spliterator.estimateSize());
+
+	final Spliterator<Entity> split = spliterator.trySplit();
+	Assert.assertNotNull(split);
+	Assert.assertEquals(305, split.estimateSize());
+	Assert.assertEquals(305, spliterator.estimateSize());
+
+	final Set<Entity> visited = new HashSet<>();
+	spliterator.forEachRemaining(visited::add);
+	split.forEachRemaining(e -> Assert.assertTrue(visited.add(e)));
+	Assert.assertEquals(610, visited.size());
+	Assert.assertEquals(0, spliterator.estimateSize());
+    }
+
+    @Test
+    public void splitSubtreeTest() {
+	final DefaultEntityContainer container = new DefaultEntityContainer();
+	container.newEntity().newEntities(4);
+	final Spliterator<Entity> spliterator = new EntityTreeSpliterator(container, Integer.MAX_VALUE);
+
+	// Only the root can be visited before splitting its children
+	final Set<Entity> visited = new HashSet<>();
+	Assert.assertNull(spliterator.trySplit());
+	Assert.assertTrue(spliterator.tryAdvance(visited::add));
+
+	final Spliterator<Entity> split = spliterator.trySplit();
+	Assert.assertNotNull(split);
+	spliterator.forEachRemaining(visited::add);
+	split.forEachRemaining(visited::add);
+	Assert.assertEquals(5, visited.size());
+    }
+}
@@ -0,0 +1,132 @@
+package jalse.entities;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jalse.entities.EntityVisitor.EntityVisitResult;
+import jalse.entities.EntityVisitor.WalkOrder;
+
+public class EntityTreeWalkerTest {
+
+    private static int depthOf(final Entity e, final EntityContainer root) {
+	int depth = 1;
+	for (EntityContainer c = e.getContainer(); c != root; c = ((Entity) c).getContainer()) {
+	    depth++;
+	}
+	return depth;
+    }
+
+    private static DefaultEntityContainer newTree() {
+	final DefaultEntityContainer container = new DefaultEntityContainer();
+	container.newEntities(5).forEach(e -> e.newEntities(4).forEach(c -> c.newEntities(3)));
+	return container;
+    }
+
+    private static List<Entity> walk(final EntityContainer container, final int maxDepth, final WalkOrder order,
+	    final EntityVisitor visitor) {
+	final List<Entity> visited = new ArrayList<>();
+	Entities.walkEntityTree(container, maxDepth, order, e -> {
+	    visited.add(e);
+	    return visitor.visit(e);
+	});
+	return visited;
+    }
+
+    @Test
+    public void breadthFirstTest() {
+	final DefaultEntityContainer container = newTree();
+	final List<Entity> visited = walk(container, Integer.MAX_VALUE, WalkOrder.BREADTH_FIRST,
+		e -> EntityVisitResult.CONTINUE);
+
+	Assert.assertEquals(85, visited.size());
+	Assert.assertEquals(85, new HashSet<>(visited).size());
+	for (int i = 1; i < visited.size(); i++) {
+	    Assert.assertTrue(depthOf(visited.get(i - 1), container) <= depthOf(visited.get(i), container));
+	}
+    }
+
+    @Test
+    public void depthFirstTest() {
+	final DefaultEntityContainer container = newTree();
+	final List<Entity> visited = walk(container, Integer.MAX_VALUE, WalkOrder.DEPTH_FIRST,
+		e -> EntityVisitResult.CONTINUE);
+
+	Assert.assertEquals(85, visited.size());
+	for (int i = 0; i < visited.size(); i += 17) { // Each top level subtree is visited together
+	    final Entity top = visited.get(i);
+	    Assert.assertEquals(container, top.getContainer());
+	    for (int j = i + 1; j < i + 17; j++) {
+		Assert.assertTrue(Entities.getEntityRecursively(top, visited.get(j).getID()) != null);
+	    }
+	}
+    }
+
+    @Test
+    public void exitTest() {
+	final DefaultEntityContainer container = newTree();
+	for (final WalkOrder order : WalkOrder.values()) {
+	    Assert.assertEquals(1, walk(container, Integer.MAX_VALUE, order, e -> EntityVisitResult.EXIT).size());
+	}
+    }
+
+    @Test
+    public void ignoreChildrenTest() {
+	final DefaultEntityContainer container = newTree();
+	for (final WalkOrder order : WalkOrder.values()) {
+	    Assert.assertEquals(5,
+		    walk(container, Integer.MAX_VALUE, order, e -> EntityVisitResult.IGNORE_CHILDREN).size());
+	}
+    }
+
+    @Test
+    public void ignoreSiblingsTest() {
+	final DefaultEntityContainer container = newTree();
+	for (final WalkOrder order : WalkOrder.values()) {
+	    // One entity at each depth
+	    final List<Entity> visited = walk(container, Integer.MAX_VALUE, order,
+		    e -> EntityVisitResult.IGNORE_SIBLINGS);
+	    Assert.assertEquals(3, visited.size());
+	}
+
+	// Earlier siblings keep their subtrees in depth first (already walked) but not in breadth first
+	final Set<Entity> first = new HashSet<>();
+	final List<Entity> visited = walk(container, Integer.MAX_VALUE, WalkOrder.BREADTH_FIRST, e -> {
+	    if (e.getContainer() == container && first.size() < 2) {
+		first.add(e);
+		return first.size() == 2 ? EntityVisitResult.IGNORE_SIBLINGS : EntityVisitResult.CONTINUE;
+	    }
+	    return EntityVisitResult.CONTINUE;
+	});
+	Assert.assertEquals(2 + 16, visited.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxDepthTest() {
+	Entities.walkEntityTree(new DefaultEntityContainer(), 0, WalkOrder.DEPTH_FIRST,
+		e -> EntityVisitResult.CONTINUE);
+    }
+
+    @Test
+    public void maxDepthTest() {
+	final DefaultEntityContainer container = newTree();
+	for (final WalkOrder order : WalkOrder.values()) {
+	    Assert.assertEquals(25, walk(container, 2, order, e -> EntityVisitResult.CONTINUE).size());
+	}
+    }
+
+    @Test
+    public void nestedWalkTest() {
+	final DefaultEntityContainer container = newTree();
+	final List<Entity> visited = walk(container, 1, WalkOrder.DEPTH_FIRST, e -> {
+	    Assert.assertEquals(16, walk(e, Integer.MAX_VALUE, WalkOrder.DEPTH_FIRST,
+		    c -> EntityVisitResult.CONTINUE).size());
+	    return EntityVisitResult.CONTINUE;
+	});
+	Assert.assertEquals(5, visited.size());
+    }
+}
@@ -0,0 +1,144 @@
+package jalse.entities.spatial;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jalse.DefaultJALSE;
+import jalse.JALSE;
+import jalse.entities.Entity;
+
+public class GridSpatialIndexTest {
+
+    static double distance(final double[] a, final double[] b) {
+	double sum = 0.;
+	for (int i = 0; i < a.length; i++) {
+	    sum += (a[i] - b[i]) * (a[i] - b[i]);
+	}
+	return Math.sqrt(sum);
+    }
+
+    /**
+     * Checks the index against a linear scan of every entity.
+     */
+    static void linearScanTest(final SpatialIndex index) {
+	final JALSE jalse = new DefaultJALSE.Builder().setNoEntityLimit().build();
+	final Random random = new Random(1234);
+	final int dimensions = index.getDimensions();
+
+	final List<Entity> entities = new ArrayList<>();
+	final List<double[]> points = new ArrayList<>();
+	for (int i = 0; i < 500; i++) {
+	    final Entity e = jalse.newEntity();
+	    final double[] point = randomPoint(random, dimensions);
+	    entities.add(e);
+	    points.add(point);
+	    index.update(e, point);
+	}
+
+	// Move some
+	for (int i = 0; i < 100; i++) {
+	    final double[] point = randomPoint(random, dimensions);
+	    points.set(i, point);
+	    index.update(entities.get(i), point);
+	}
+
+	// Remove some
+	for (int i = 400; i < 500; i++) {
+	    Assert.assertTrue(index.remove(entities.get(i)));
+	}
+	final List<Entity> remaining = entities.subList(0, 400);
+	Assert.assertEquals(400, index.size());
+
+	for (int q = 0; q < 20; q++) {
+	    final double[] centre = randomPoint(random, dimensions);
+	    final double radius = random.nextDouble() * 30.;
+
+	    final Set<Entity> expected = new HashSet<>();
+	    for (int i = 0; i < remaining.size(); i++) {
+		if (distance(points.get(i), centre) <= radius) {
+		    expected.add(remaining.get(i));
+		}
+	    }
+	    Assert.assertEquals(expected, index.getWithinRadius(centre, radius));
+
+	    final double[] min = new double[dimensions];
+	    final double[] max = new double[dimensions];
+	    for (int i = 0; i < dimensions; i++) {
+		min[i] = centre[i] - radius;
+		max[i] = centre[i] + radius / 2.;
+	    }
+	    final Set<Entity> expectedBox = new HashSet<>();
+	    for (int i = 0; i < remaining.size(); i++) {
+		if (AbstractSpatialIndex.withinBox(points.get(i), min, max)) {
+		    expectedBox.add(remaining.get(i));
+		}
+	    }
+	    Assert.assertEquals(expectedBox, index.getWithinBox(min, max));
+
+	    final List<Double> expectedNearest = points.subList(0, 400).stream().map(p -> distance(p, centre))
+		    .sorted(Comparator.naturalOrder()).limit(5).collect(Collectors.toList());
+	    final List<Double> nearest = index.getNearest(centre, 5).stream()
+		    .map(e -> distance(points.get(remaining.indexOf(e)), centre)).collect(Collectors.toList());
+	    Assert.assertEquals(expectedNearest, nearest);
+	}
+
+	index.clear();
+	Assert.assertEquals(0, index.size());
+	Assert.assertTrue(index.getNearest(new double[dimensions], 1).isEmpty());
+    }
+
+    static double[] randomPoint(final Random random, final int dimensions) {
+	final double[] point = new double[dimensions];
+	for (int i = 0; i < dimensions; i++) {
+	    point[i] = random.nextDouble() * 200. - 100.;
+	}
+	return point;
+    }
+
+    SpatialIndex index;
+
+    @After
+    public void after() {
+	index = null;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dimensionsTest() {
+	index = new GridSpatialIndex(2, 10.);
+	index.update(new DefaultJALSE.Builder().build().newEntity(), new double[] { 1., 2., 3. });
+    }
+
+    @Test
+    public void linearScanTest() {
+	index = new GridSpatialIndex(2, 10.);
+	linearScanTest(index);
+
+	index = new GridSpatialIndex(3, 5.);
+	linearScanTest(index);
+    }
+
+    @Test
+    public void updateTest() {
+	index = new GridSpatialIndex(2, 10.);
+	final Entity e = new DefaultJALSE.Builder().build().newEntity();
+
+	Assert.assertTrue(index.update(e, new double[] { 1., 1. }));
+	Assert.assertFalse(index.update(e, new double[] { 55., -12. }));
+	Assert.assertArrayEquals(new double[] { 55., -12. }, index.getPosition(e), 0.);
+	Assert.assertTrue(index.getWithinRadius(new double[] { 1., 1. }, 5.).isEmpty());
+	Assert.assertTrue(index.getWithinRadius(new double[] { 50., -10. }, 6.).contains(e));
+
+	Assert.assertTrue(index.remove(e));
+	Assert.assertFalse(index.contains(e));
+	Assert.assertNull(index.getPosition(e));
+    }
+}
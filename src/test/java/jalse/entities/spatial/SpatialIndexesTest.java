@@ -0,0 +1,131 @@
+package jalse.entities.spatial;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jalse.DefaultJALSE;
+import jalse.JALSE;
+import jalse.attributes.Attributes;
+import jalse.attributes.NamedAttributeType;
+import jalse.entities.Entity;
+
+public class SpatialIndexesTest {
+
+    private static class Position {
+
+	private final double x;
+	private final double y;
+
+	private Position(final double x, final double y) {
+	    this.x = x;
+	    this.y = y;
+	}
+    }
+
+    private static final NamedAttributeType<Position> POSITION = Attributes.newNamedTypeOf("position",
+	    Position.class);
+
+    private static double[] toPoint(final Position p) {
+	return new double[] { p.x, p.y };
+    }
+
+    SpatialIndexBinding<Position> binding;
+
+    @After
+    public void after() {
+	binding = null;
+    }
+
+    @Test
+    public void bindIndexTest() {
+	final JALSE jalse = new DefaultJALSE.Builder().build();
+	final Entity existing = jalse.newEntity();
+	existing.setAttribute(POSITION, new Position(1., 1.));
+
+	binding = SpatialIndexes.bindIndex(jalse, POSITION, SpatialIndexesTest::toPoint, new TreeSpatialIndex(2));
+	final SpatialIndex index = binding.getIndex();
+	Assert.assertTrue(binding.isBound());
+	Assert.assertTrue(index.contains(existing));
+
+	// Created
+	final Entity created = jalse.newEntity();
+	Assert.assertFalse(index.contains(created));
+	created.setAttribute(POSITION, new Position(10., 10.));
+	Assert.assertTrue(index.getWithinRadius(new double[] { 10., 10. }, 1.).contains(created));
+
+	// Moved
+	created.setAttribute(POSITION, new Position(-10., -10.));
+	Assert.assertTrue(index.getWithinRadius(new double[] { 10., 10. }, 1.).isEmpty());
+	Assert.assertEquals(created, index.getNearest(new double[] { -9., -9. }, 1).get(0));
+
+	// Removed
+	created.removeAttribute(POSITION);
+	Assert.assertFalse(index.contains(created));
+
+	// Killed
+	existing.kill();
+	Assert.assertEquals(0, index.size());
+
+	binding.unbind();
+	Assert.assertFalse(binding.isBound());
+	jalse.newEntity().setAttribute(POSITION, new Position(0., 0.));
+	Assert.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void killTest() {
+	final JALSE jalse = new DefaultJALSE.Builder().setEntityPoolLimit(0).build();
+	final Entity e = jalse.newEntity();
+	e.setAttribute(POSITION, new Position(1., 1.));
+	binding = SpatialIndexes.bindIndex(jalse, POSITION, SpatialIndexesTest::toPoint, new TreeSpatialIndex(2));
+
+	e.kill();
+	Assert.assertFalse(e.hasAttributeListener(POSITION, binding));
+
+	// Stale reference
+	e.setAttribute(POSITION, new Position(2., 2.));
+	Assert.assertEquals(0, jalse.getEntityCount());
+	Assert.assertEquals(0, binding.getIndex().size());
+    }
+
+    @Test
+    public void transferTest() {
+	final JALSE jalse = new DefaultJALSE.Builder().build();
+	final Entity parent = jalse.newEntity();
+	final Entity e = jalse.newEntity();
+	e.setAttribute(POSITION, new Position(5., 5.));
+
+	binding = SpatialIndexes.bindIndex(jalse, POSITION, SpatialIndexesTest::toPoint, new GridSpatialIndex(2, 4.));
+	Assert.assertTrue(binding.getIndex().contains(e));
+
+	e.transfer(parent);
+	Assert.assertFalse(binding.getIndex().contains(e));
+
+	// No longer listened to
+	e.setAttribute(POSITION, new Position(6., 6.));
+	Assert.assertFalse(binding.getIndex().contains(e));
+
+	// Moved in from the same tree
+	final SpatialIndexBinding<Position> parentBinding = SpatialIndexes.bindIndex(parent, POSITION,
+		SpatialIndexesTest::toPoint, new GridSpatialIndex(2, 4.));
+	final Entity sibling = jalse.newEntity();
+	sibling.setAttribute(POSITION, new Position(1., 1.));
+	sibling.transfer(parent);
+	Assert.assertTrue(parentBinding.getIndex().contains(sibling));
+
+	final Entity cousin = jalse.newEntity();
+	cousin.setAttribute(POSITION, new Position(2., 2.));
+	jalse.transferEntities(Collections.singleton(cousin.getID()), parent);
+	Assert.assertTrue(parentBinding.getIndex().contains(cousin));
+
+	// Received from another tree
+	final JALSE other = new DefaultJALSE.Builder().build();
+	final SpatialIndexBinding<Position> otherBinding = SpatialIndexes.bindIndex(other, POSITION,
+		SpatialIndexesTest::toPoint, new GridSpatialIndex(2, 4.));
+	e.transfer(other);
+	Assert.assertArrayEquals(new double[] { 6., 6. }, otherBinding.getIndex().getPosition(e), 0.);
+    }
+}
@@ -0,0 +1,71 @@
+package jalse.entities.spatial;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jalse.DefaultJALSE;
+import jalse.JALSE;
+import jalse.entities.Entity;
+
+public class TreeSpatialIndexTest {
+
+    SpatialIndex index;
+
+    @After
+    public void after() {
+	index = null;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dimensionsTest() {
+	index = new TreeSpatialIndex(4);
+    }
+
+    @Test
+    public void equalPointsTest() {
+	index = new TreeSpatialIndex(2, 2);
+	final JALSE jalse = new DefaultJALSE.Builder().build();
+
+	final List<Entity> entities = new ArrayList<>();
+	for (int i = 0; i < 20; i++) {
+	    final Entity e = jalse.newEntity();
+	    entities.add(e);
+	    index.update(e, new double[] { 3., 3. });
+	}
+
+	Assert.assertEquals(20, index.getWithinRadius(new double[] { 3., 3. }, 0.).size());
+	Assert.assertEquals(20, index.getNearest(new double[] { 0., 0. }, 30).size());
+
+	entities.forEach(index::remove);
+	Assert.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void growTest() {
+	index = new TreeSpatialIndex(3);
+	final JALSE jalse = new DefaultJALSE.Builder().build();
+
+	final Entity near = jalse.newEntity();
+	final Entity far = jalse.newEntity();
+	index.update(near, new double[] { 0.5, 0.5, 0.5 });
+	index.update(far, new double[] { -1e6, 2e6, 3e3 });
+
+	Assert.assertEquals(near, index.getNearest(new double[] { 0., 0., 0. }, 1).get(0));
+	Assert.assertEquals(far, index.getNearest(new double[] { -1e6, 1e6, 0. }, 1).get(0));
+	Assert.assertTrue(index.getWithinBox(new double[] { -2e6, 0., 0. }, new double[] { 0., 3e6, 1e4 })
+		.contains(far));
+    }
+
+    @Test
+    public void linearScanTest() {
+	index = new TreeSpatialIndex(2);
+	GridSpatialIndexTest.linearScanTest(index);
+
+	index = new TreeSpatialIndex(3, 4);
+	GridSpatialIndexTest.linearScanTest(index);
+    }
+}
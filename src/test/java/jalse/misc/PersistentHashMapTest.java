@@ -0,0 +1,110 @@
+package jalse.misc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersistentHashMapTest {
+
+    private static class CollidingKey {
+
+	private final int value;
+
+	private CollidingKey(final int value) {
+	    this.value = value;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+	    return obj instanceof CollidingKey && ((CollidingKey) obj).value == value;
+	}
+
+	@Override
+	public int hashCode() {
+	    return value % 3; // Full hash collisions
+	}
+    }
+
+    PersistentHashMap<Object, Integer> map;
+
+    @After
+    public void after() {
+	map = null;
+    }
+
+    @Test
+    public void collisionTest() {
+	map = PersistentHashMap.empty();
+	for (int i = 0; i < 30; i++) {
+	    map = map.plus(new CollidingKey(i), i);
+	}
+	map = map.plus(3, 3); // Same hash as some colliding keys
+
+	Assert.assertEquals(31, map.size());
+	for (int i = 0; i < 30; i++) {
+	    Assert.assertEquals((Integer) i, map.get(new CollidingKey(i)));
+	}
+
+	for (int i = 0; i < 30; i += 2) {
+	    map = map.minus(new CollidingKey(i));
+	}
+	Assert.assertEquals(16, map.size());
+	Assert.assertNull(map.get(new CollidingKey(0)));
+	Assert.assertEquals((Integer) 1, map.get(new CollidingKey(1)));
+	Assert.assertEquals((Integer) 3, map.get(3));
+    }
+
+    @Test
+    public void randomTest() {
+	final Random random = new Random(42);
+	final Map<Object, Integer> expected = new HashMap<>();
+	map = PersistentHashMap.empty();
+
+	for (int i = 0; i < 20000; i++) {
+	    final Integer key = random.nextInt(2000);
+	    if (random.nextBoolean()) {
+		expected.put(key, i);
+		map = map.plus(key, i);
+	    } else {
+		expected.remove(key);
+		map = map.minus(key);
+	    }
+	    Assert.assertEquals(expected.size(), map.size());
+	}
+
+	Assert.assertEquals(expected, map);
+	Assert.assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    public void structuralSharingTest() {
+	map = PersistentHashMap.empty();
+	for (int i = 0; i < 100; i++) {
+	    map = map.plus(i, i);
+	}
+
+	final PersistentHashMap<Object, Integer> snapshot = map;
+	map = map.plus(100, 100).minus(0);
+
+	Assert.assertEquals(100, snapshot.size());
+	Assert.assertEquals((Integer) 0, snapshot.get(0));
+	Assert.assertNull(snapshot.get(100));
+	Assert.assertEquals(100, map.size());
+	Assert.assertNull(map.get(0));
+
+	// No change returns the same map
+	Assert.assertSame(map, map.plus(100, map.get(100)));
+	Assert.assertSame(map, map.minus(-1));
+	Assert.assertTrue(map.minus(1).minus(2).plus(1, 1).plus(2, 2).equals(map));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unmodifiableTest() {
+	map = PersistentHashMap.empty();
+	map.plus(1, 1).put(2, 2);
+    }
+}
@@ -0,0 +1,77 @@
+package jalse.misc;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SnapshotMapTest {
+
+    SnapshotMap<Integer, Integer> map;
+
+    @After
+    public void after() {
+	map = null;
+    }
+
+    @Test
+    public void concurrentTest() {
+	map = new SnapshotMap<>();
+	IntStream.range(0, 10000).parallel().forEach(i -> map.put(i, i));
+	Assert.assertEquals(10000, map.size());
+
+	IntStream.range(0, 10000).parallel().forEach(i -> map.merge(i % 10, 1, Integer::sum));
+	Assert.assertEquals(10000, map.size());
+	Assert.assertEquals((Integer) 1000, map.get(0)); // 0 + 1000 merges
+    }
+
+    @Test
+    public void iteratorRemoveTest() {
+	map = new SnapshotMap<>();
+	for (int i = 0; i < 10; i++) {
+	    map.put(i, i);
+	}
+
+	final Iterator<Integer> it = map.keySet().iterator();
+	while (it.hasNext()) {
+	    if (it.next() % 2 == 0) {
+		it.remove();
+	    }
+	}
+	Assert.assertEquals(5, map.size());
+	Assert.assertFalse(map.containsKey(0));
+	Assert.assertTrue(map.containsKey(1));
+    }
+
+    @Test
+    public void snapshotTest() {
+	map = new SnapshotMap<>();
+	map.put(1, 1);
+	map.put(2, 2);
+
+	final Map<Integer, Integer> snapshot = map.snapshot();
+	final long streamed = map.values().stream().peek(v -> map.remove(v)).count();
+
+	Assert.assertEquals(2L, streamed);
+	Assert.assertTrue(map.isEmpty());
+	Assert.assertEquals(2, snapshot.size());
+	Assert.assertEquals((Integer) 1, snapshot.get(1));
+    }
+
+    @Test
+    public void updateTest() {
+	map = new SnapshotMap<>();
+
+	Assert.assertNull(map.put(1, 1));
+	Assert.assertEquals((Integer) 1, map.putIfAbsent(1, 2));
+	Assert.assertNull(map.replace(2, 2));
+	Assert.assertFalse(map.replace(1, 2, 3));
+	Assert.assertTrue(map.replace(1, 1, 3));
+	Assert.assertFalse(map.remove(1, 1));
+	Assert.assertEquals((Integer) 3, map.remove(1));
+	Assert.assertTrue(map.isEmpty());
+    }
+}